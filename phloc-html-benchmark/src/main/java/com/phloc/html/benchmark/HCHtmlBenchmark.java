@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.phloc.html.hc.conversion.HCSettings;
+import com.phloc.html.hc.html.HCA;
+import com.phloc.html.hc.html.HCDiv;
+import com.phloc.html.hc.html.HCH1;
+import com.phloc.html.hc.html.HCHtml;
+import com.phloc.html.hc.html.HCP;
+import com.phloc.html.hc.html.HCScriptOnDocumentReady;
+import com.phloc.html.hc.html.HCSpan;
+import com.phloc.html.hc.html.HCStyle;
+import com.phloc.html.hc.html.HCUL;
+import com.phloc.html.js.provider.UnparsedJSCodeProvider;
+
+/**
+ * Benchmark for the conversion of a complete {@link HCHtml} page via
+ * {@link HCSettings#getAsHTMLString(com.phloc.html.hc.IHCNode, boolean)}. The
+ * page is created inside the benchmark method, because HC nodes may only be
+ * converted once in a meaningful way.
+ * 
+ * @author Philip Helger
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5)
+@Measurement (iterations = 10)
+@Fork (1)
+public class HCHtmlBenchmark
+{
+  @Param ({ "10", "100" })
+  public int m_nSections;
+
+  @Param ({ "true", "false" })
+  public boolean m_bPrettyPrint;
+
+  static HCHtml createPage (final int nSections)
+  {
+    final HCHtml aHtml = new HCHtml ();
+    aHtml.getHead ().setPageTitle ("Benchmark page");
+    aHtml.getBody ().addChild (new HCH1 ().addChild ("Benchmark page"));
+    aHtml.getBody ().addChild (new HCStyle ("h1{color:red;}div.section{margin:0;}"));
+    for (int i = 0; i < nSections; ++i)
+    {
+      final HCDiv aSection = aHtml.getBody ().addAndReturnChild (new HCDiv ().setID ("section" + i));
+      aSection.addChild (new HCP ().addChild ("Paragraph " + i + " with <special> & \"escaped\" characters"));
+      aSection.addChild (new HCSpan ().addChild ("Span " + i));
+      aSection.addChild (new HCA ("http://www.phloc.com/page" + i).addChild ("Link " + i));
+      final HCUL aUL = aSection.addAndReturnChild (new HCUL ());
+      for (int j = 0; j < 5; ++j)
+        aUL.addItem ("Item " + i + "." + j);
+      aSection.addChild (new HCScriptOnDocumentReady (new UnparsedJSCodeProvider ("init(" + i + ");")));
+    }
+    return aHtml;
+  }
+
+  @Benchmark
+  public String getAsHTMLString ()
+  {
+    return HCSettings.getAsHTMLString (createPage (m_nSections), m_bPrettyPrint);
+  }
+}
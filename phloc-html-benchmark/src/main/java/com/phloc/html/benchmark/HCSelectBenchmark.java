@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.phloc.html.hc.conversion.HCSettings;
+import com.phloc.html.hc.html.HCSelect;
+
+/**
+ * Benchmark for the conversion of {@link HCSelect} elements with thousands of
+ * options, using both regular and compact options.
+ * 
+ * @author Philip Helger
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5)
+@Measurement (iterations = 10)
+@Fork (1)
+public class HCSelectBenchmark
+{
+  @Param ({ "1000", "10000" })
+  public int m_nOptions;
+
+  @Benchmark
+  public String getAsHTMLStringOptions ()
+  {
+    final HCSelect aSelect = new HCSelect ("select");
+    for (int i = 0; i < m_nOptions; ++i)
+      aSelect.addOption ("value" + i, "Option " + i, i == 7);
+    return HCSettings.getAsHTMLString (aSelect, false);
+  }
+
+  @Benchmark
+  public String getAsHTMLStringCompactOptions ()
+  {
+    final HCSelect aSelect = new HCSelect ("select");
+    for (int i = 0; i < m_nOptions; ++i)
+      aSelect.addCompactOption ("value" + i, "Option " + i, i == 7);
+    return HCSettings.getAsHTMLString (aSelect, false);
+  }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.phloc.html.hc.conversion.HCSettings;
+import com.phloc.html.hc.html.HCRow;
+import com.phloc.html.hc.html.HCTable;
+
+/**
+ * Benchmark for the conversion of large {@link HCTable} grids.
+ * 
+ * @author Philip Helger
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5)
+@Measurement (iterations = 10)
+@Fork (1)
+public class HCTableBenchmark
+{
+  @Param ({ "100", "1000" })
+  public int m_nRows;
+
+  @Param ({ "10" })
+  public int m_nColumns;
+
+  @Param ({ "true", "false" })
+  public boolean m_bPrettyPrint;
+
+  @Benchmark
+  public String getAsHTMLString ()
+  {
+    final HCTable aTable = new HCTable ();
+    final HCRow aHeaderRow = aTable.addHeaderRow ();
+    for (int nCol = 0; nCol < m_nColumns; ++nCol)
+      aHeaderRow.addCell ("Column " + nCol);
+    for (int nRow = 0; nRow < m_nRows; ++nRow)
+    {
+      final HCRow aRow = aTable.addBodyRow ();
+      for (int nCol = 0; nCol < m_nColumns; ++nCol)
+        aRow.addCell ("Cell " + nRow + "/" + nCol);
+    }
+    return HCSettings.getAsHTMLString (aTable, m_bPrettyPrint);
+  }
+}
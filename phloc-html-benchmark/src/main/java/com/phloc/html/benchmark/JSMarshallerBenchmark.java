@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.phloc.html.js.marshal.JSListType;
+import com.phloc.html.js.marshal.JSMapType;
+import com.phloc.html.js.marshal.JSMarshaller;
+import com.phloc.html.js.marshal.JSType;
+
+/**
+ * Benchmark for {@link JSMarshaller#objectToJSString(Object, JSType)} on
+ * nested maps and lists.
+ * 
+ * @author Philip Helger
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5)
+@Measurement (iterations = 10)
+@Fork (1)
+public class JSMarshallerBenchmark
+{
+  @Param ({ "10", "100" })
+  public int m_nEntries;
+
+  private Map <String, List <String>> m_aMap;
+  private JSType m_aMapType;
+  private List <List <String>> m_aNestedList;
+  private JSType m_aNestedListType;
+  private String [] m_aArray;
+
+  @Setup
+  public void setup ()
+  {
+    m_aMap = new LinkedHashMap <String, List <String>> ();
+    m_aNestedList = new ArrayList <List <String>> ();
+    for (int i = 0; i < m_nEntries; ++i)
+    {
+      final List <String> aValues = new ArrayList <String> ();
+      for (int j = 0; j < 10; ++j)
+        aValues.add ("value '" + i + "' \"" + j + "\"\n");
+      m_aMap.put ("key" + i, aValues);
+      m_aNestedList.add (aValues);
+    }
+    m_aMapType = new JSMapType (JSType.STRING, new JSListType (JSType.STRING));
+    m_aNestedListType = new JSListType (new JSListType (JSType.STRING));
+    m_aArray = m_aMap.keySet ().toArray (new String [m_aMap.size ()]);
+  }
+
+  @Benchmark
+  public String objectToJSStringMap ()
+  {
+    return JSMarshaller.objectToJSString (m_aMap, m_aMapType);
+  }
+
+  @Benchmark
+  public String objectToJSStringNestedList ()
+  {
+    return JSMarshaller.objectToJSString (m_aNestedList, m_aNestedListType);
+  }
+
+  @Benchmark
+  public String objectToJSStringArray ()
+  {
+    return JSMarshaller.objectToJSString (m_aArray);
+  }
+}
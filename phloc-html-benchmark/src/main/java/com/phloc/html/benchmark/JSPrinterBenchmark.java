@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.phloc.html.js.builder.AbstractJSBlock;
+import com.phloc.html.js.builder.JSAnonymousFunction;
+import com.phloc.html.js.builder.JSExpr;
+import com.phloc.html.js.builder.JSPackage;
+import com.phloc.html.js.builder.JSPrinter;
+import com.phloc.html.js.builder.JSVar;
+import com.phloc.html.js.builder.JSWriterSettings;
+import com.phloc.html.js.builder.jquery.JQuery;
+
+/**
+ * Benchmark for {@link JSPrinter#getAsString(JSPackage, JSWriterSettings)} on
+ * nested blocks and jQuery invocation chains. The package is created once,
+ * because printing does not modify it.
+ * 
+ * @author Philip Helger
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5)
+@Measurement (iterations = 10)
+@Fork (1)
+public class JSPrinterBenchmark
+{
+  @Param ({ "10", "100" })
+  public int m_nStatements;
+
+  @Param ({ "5" })
+  public int m_nDepth;
+
+  private JSPackage m_aPackage;
+
+  @Setup
+  public void setup ()
+  {
+    m_aPackage = new JSPackage ();
+    for (int i = 0; i < m_nStatements; ++i)
+    {
+      final JSAnonymousFunction aFunc = new JSAnonymousFunction ();
+      final JSVar aParam = aFunc.param ("p");
+      AbstractJSBlock aBlock = aFunc.body ();
+      for (int nDepth = 0; nDepth < m_nDepth; ++nDepth)
+      {
+        aBlock.var ("v" + nDepth, aParam.plus (nDepth));
+        aBlock = aBlock._if (aParam.lt (nDepth))._then ();
+      }
+      aBlock.add (JQuery.idRef ("id" + i).addClass ().arg ("active").show ().css ().arg ("color").arg ("red"));
+      aBlock._return (JSExpr.lit ("done " + i));
+      m_aPackage.add (JQuery.idRef ("button" + i).click ().arg (aFunc));
+    }
+  }
+
+  @Benchmark
+  public String getAsStringOptimized ()
+  {
+    return JSPrinter.getAsString (m_aPackage, JSWriterSettings.MINIMUM_CODE_SIZE);
+  }
+
+  @Benchmark
+  public String getAsStringPretty ()
+  {
+    return JSPrinter.getAsString (m_aPackage, JSWriterSettings.createForMinimumCodeSize (false));
+  }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.phloc.html.markdown.MarkdownConfiguration;
+import com.phloc.html.markdown.MarkdownProcessingResult;
+import com.phloc.html.markdown.MarkdownProcessor;
+
+/**
+ * Benchmark for {@link MarkdownProcessor#process(String)} on a realistic
+ * document containing headings, paragraphs with inline markup, lists, links,
+ * code blocks, block quotes and tables. 100 sections are about 50 KB of
+ * markdown. In safe mode all inline HTML is emitted as escaped text character
+ * by character, so the allocation rate of this variant mainly shows the costs
+ * of the created text nodes.
+ * 
+ * @author Philip Helger
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5)
+@Measurement (iterations = 10)
+@Fork (1)
+public class MarkdownProcessorBenchmark
+{
+  @Param ({ "10", "100" })
+  public int m_nSections;
+
+  @Param ({ "false", "true" })
+  public boolean m_bSafeMode;
+
+  private String m_sText;
+  private MarkdownConfiguration m_aConfig;
+
+  static String createDocument (final int nSections)
+  {
+    final StringBuilder aSB = new StringBuilder ();
+    aSB.append ("Benchmark document\n==================\n\n");
+    for (int i = 0; i < nSections; ++i)
+    {
+      aSB.append ("## Section ").append (i).append ("\n\n");
+      aSB.append ("This is *paragraph* number ")
+         .append (i)
+         .append (" with **strong text**, `inline code`, a [link](http://www.phloc.com/page")
+         .append (i)
+         .append (" \"Title\") and some <b>inline HTML</b> & entities.\n")
+         .append ("It continues on a second line to form a longer paragraph.\n\n");
+      aSB.append ("* First item\n* Second item with _emphasis_\n* Third item\n    * Nested item\n\n");
+      aSB.append ("1. Ordered one\n2. Ordered two\n\n");
+      aSB.append ("> A block quote\n> spanning two lines\n\n");
+      aSB.append ("    for (int i = 0; i < 10; ++i)\n      System.out.println (i);\n\n");
+      aSB.append ("Name | Value\n---- | -----\nkey").append (i).append (" | value").append (i).append ("\n\n");
+      aSB.append ("[ref").append (i).append ("]: http://www.phloc.com/ref").append (i).append ("\n\n");
+    }
+    return aSB.toString ();
+  }
+
+  @Setup
+  public void setup ()
+  {
+    m_sText = createDocument (m_nSections);
+    m_aConfig = m_bSafeMode ? MarkdownConfiguration.DEFAULT_SAFE : MarkdownConfiguration.DEFAULT;
+  }
+
+  @Benchmark
+  public MarkdownProcessingResult process () throws IOException
+  {
+    return new MarkdownProcessor (m_aConfig).process (m_sText);
+  }
+
+  @Benchmark
+  public String processAsHTMLString () throws IOException
+  {
+    return new MarkdownProcessor (m_aConfig).process (m_sText).getAsHTMLString ();
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.phloc.commons.microdom.IMicroDocument;
+import com.phloc.html.parser.XHTMLParser;
+
+/**
+ * Benchmark for {@link XHTMLParser#parseXHTMLFragment(String)}.
+ * 
+ * @author Philip Helger
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5)
+@Measurement (iterations = 10)
+@Fork (1)
+public class XHTMLParserBenchmark
+{
+  @Param ({ "10", "100" })
+  public int m_nSections;
+
+  private String m_sFragment;
+
+  @Setup
+  public void setup ()
+  {
+    final StringBuilder aSB = new StringBuilder ();
+    for (int i = 0; i < m_nSections; ++i)
+    {
+      aSB.append ("<div class=\"section\" id=\"section")
+         .append (i)
+         .append ("\"><h2>Section ")
+         .append (i)
+         .append ("</h2><p>Paragraph with <b>bold</b>, <i>italic</i> and an &amp; entity &nbsp;and ")
+         .append ("<a href=\"http://www.phloc.com/page")
+         .append (i)
+         .append ("\">a link</a>.</p><ul><li>One</li><li>Two</li><li>Three</li></ul>")
+         .append ("<img src=\"image.png\" alt=\"Image\" /><br /></div>");
+    }
+    m_sFragment = aSB.toString ();
+  }
+
+  @Benchmark
+  public IMicroDocument parseXHTMLFragment ()
+  {
+    return XHTMLParser.parseXHTMLFragment (m_sFragment);
+  }
+}
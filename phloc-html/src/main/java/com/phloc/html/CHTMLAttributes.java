@@ -17,8 +17,19 @@
  */
 package com.phloc.html;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
+import com.phloc.commons.annotations.ReturnsImmutableObject;
+import com.phloc.commons.collections.ContainerHelper;
+
 // ESCA-JAVA0116:
 /**
  * Contains constant HTML attribute names.
@@ -219,6 +230,79 @@ public final class CHTMLAttributes
   // https://developer.apple.com/library/ios/documentation/AppleApplications/Reference/SafariWebContent/ConfiguringWebApplications/ConfiguringWebApplications.html
   public static final String SIZES = "sizes";
 
+  private static final HTMLNameLookup <String> s_aLookup;
+  private static final Set <String> s_aAllNames;
+
+  static
+  {
+    // Collect all constant attribute names declared above, except for the
+    // attribute name prefixes
+    final Map <String, String> aMap = new HashMap <String, String> ();
+    for (final Field aField : CHTMLAttributes.class.getDeclaredFields ())
+    {
+      final int nModifiers = aField.getModifiers ();
+      if (Modifier.isPublic (nModifiers) &&
+          Modifier.isStatic (nModifiers) &&
+          Modifier.isFinal (nModifiers) &&
+          aField.getType () == String.class)
+      {
+        try
+        {
+          final String sName = (String) aField.get (null);
+          if (!sName.equals (HTML5_PREFIX_DATA) && !sName.equals (PREFIX_ARIA))
+            aMap.put (sName, sName);
+        }
+        catch (final IllegalAccessException ex)
+        {
+          throw new IllegalStateException ("Failed to access attribute constant " + aField.getName (), ex);
+        }
+      }
+    }
+    s_aLookup = new HTMLNameLookup <String> (aMap);
+    s_aAllNames = ContainerHelper.makeUnmodifiableNotNull (aMap.keySet ());
+  }
+
   private CHTMLAttributes ()
   {}
+
+  /**
+   * Check if the passed name is a known HTML attribute name using ASCII case
+   * insensitive compare.
+   * 
+   * @param sAttrName
+   *        The attribute name to check. May be <code>null</code>.
+   * @return <code>true</code> if it is a known HTML attribute,
+   *         <code>false</code> otherwise.
+   */
+  public static boolean isHTMLAttributeName (@Nullable final String sAttrName)
+  {
+    return s_aLookup.contains (sAttrName);
+  }
+
+  /**
+   * Get the constant attribute name for the passed name using ASCII case
+   * insensitive compare. This is a constant time lookup that does not create a
+   * lower cased copy of the passed name.
+   * 
+   * @param sAttrName
+   *        The attribute name to search. May be <code>null</code>.
+   * @return The matching constant of this class (e.g. {@link #CLASS}) or
+   *         <code>null</code> if no such attribute is known.
+   */
+  @Nullable
+  public static String getFromAttributeNameOrNull (@Nullable final String sAttrName)
+  {
+    return s_aLookup.get (sAttrName);
+  }
+
+  /**
+   * @return A set with the names of all attributes declared in this class.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public static Set <String> getAllAttributeNames ()
+  {
+    return s_aAllNames;
+  }
 }
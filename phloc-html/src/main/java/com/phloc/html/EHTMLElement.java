@@ -17,13 +17,17 @@
  */
 package com.phloc.html;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import com.phloc.commons.annotations.Nonempty;
+import com.phloc.commons.annotations.ReturnsImmutableObject;
+import com.phloc.commons.collections.ContainerHelper;
 import com.phloc.commons.microdom.IHasElementName;
 import com.phloc.commons.string.StringHelper;
 
@@ -154,8 +158,6 @@ public enum EHTMLElement implements IHasElementName
   VIDEO ("video", false, EHTMLContentModelType.FLOW),
   WBR ("wbr", true, EHTMLContentModelType.PHRASING);
 
-  private static final Set <String> s_aSelfClosedElements = new HashSet <String> ();
-
   private final String m_sElementNameLC;
   private final String m_sElementNameUC;
   private final boolean m_bMayBeSelfClosed;
@@ -239,19 +241,35 @@ public enum EHTMLElement implements IHasElementName
     return m_eType.isPhrasingElement ();
   }
 
-  @Nonnull
-  private static Set <String> _getSelfClosedSet ()
+  // Static fields of an enum are initialized after all enum constants
+  private static final HTMLNameLookup <EHTMLElement> s_aLookup;
+  private static final Set <String> s_aSelfClosedElements;
+
+  static
   {
-    if (s_aSelfClosedElements.isEmpty ())
+    final Map <String, EHTMLElement> aMap = new HashMap <String, EHTMLElement> ();
+    final Set <String> aSelfClosed = new HashSet <String> ();
+    for (final EHTMLElement e : values ())
     {
-      // Lazy init, because it cannot be done in the constructor!
-      for (final EHTMLElement e : values ())
-        if (e.mayBeSelfClosed ())
-        {
-          // Always use lower cased value
-          s_aSelfClosedElements.add (e.m_sElementNameLC);
-        }
+      aMap.put (e.m_sElementNameLC, e);
+      if (e.mayBeSelfClosed ())
+      {
+        // Always use lower cased value
+        aSelfClosed.add (e.m_sElementNameLC);
+      }
     }
+    s_aLookup = new HTMLNameLookup <EHTMLElement> (aMap);
+    s_aSelfClosedElements = ContainerHelper.makeUnmodifiableNotNull (aSelfClosed);
+  }
+
+  /**
+   * @return A set with the lower cased names of all elements that may be self
+   *         closed. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsImmutableObject
+  public static Set <String> getAllElementNamesThatMayBeSelfClosed ()
+  {
     return s_aSelfClosedElements;
   }
 
@@ -264,11 +282,8 @@ public enum EHTMLElement implements IHasElementName
    */
   public static boolean isTagThatMayBeSelfClosed (@Nullable final String sElementName)
   {
-    if (StringHelper.hasNoText (sElementName))
-      return false;
-
-    // Always check lower cased
-    return _getSelfClosedSet ().contains (sElementName.toLowerCase (CHTMLCharset.LOCALE));
+    final EHTMLElement eElement = getFromTagNameOrNull (sElementName);
+    return eElement != null && eElement.mayBeSelfClosed ();
   }
 
   /**
@@ -283,8 +298,9 @@ public enum EHTMLElement implements IHasElementName
     if (StringHelper.hasNoText (sElementName))
       return false;
 
-    // Always check lower cased
-    return !_getSelfClosedSet ().contains (sElementName.toLowerCase (CHTMLCharset.LOCALE));
+    // Unknown elements may not be self closed
+    final EHTMLElement eElement = getFromTagNameOrNull (sElementName);
+    return eElement == null || eElement.mayNotBeSelfClosed ();
   }
 
   /**
@@ -301,8 +317,9 @@ public enum EHTMLElement implements IHasElementName
   }
 
   /**
-   * Get the {@link EHTMLElement} for the passed tag name using case insensitive
-   * compare
+   * Get the {@link EHTMLElement} for the passed tag name using ASCII case
+   * insensitive compare. This is a constant time lookup that does not create a
+   * lower cased copy of the passed name.
    *
    * @param sTagName
    *        The case sensitive tag name to check.
@@ -312,10 +329,6 @@ public enum EHTMLElement implements IHasElementName
   @Nullable
   public static EHTMLElement getFromTagNameOrNull (@Nullable final String sTagName)
   {
-    if (StringHelper.hasText (sTagName))
-      for (final EHTMLElement eElement : values ())
-        if (eElement.m_sElementNameLC.equalsIgnoreCase (sTagName))
-          return eElement;
-    return null;
+    return s_aLookup.get (sTagName);
   }
 }
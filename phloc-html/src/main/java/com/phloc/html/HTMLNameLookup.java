@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html;
+
+import java.util.Map;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.string.ToStringGenerator;
+
+/**
+ * A precomputed, immutable lookup table for HTML names (element names and
+ * attribute names) using ASCII case insensitive matching. The lookup neither
+ * allocates a lower cased copy of the searched name nor iterates all
+ * contained entries. It is an open addressing hash table with linear probing
+ * and a load factor of at most 0.25, so that most lookups need a single
+ * probe.
+ * 
+ * @author Philip Helger
+ * @param <DATATYPE>
+ *        The type of the values to be looked up.
+ */
+@Immutable
+final class HTMLNameLookup <DATATYPE>
+{
+  private final String [] m_aKeys;
+  private final Object [] m_aValues;
+  private final int m_nMask;
+  private final int m_nSize;
+
+  /**
+   * Constructor
+   * 
+   * @param aMap
+   *        The map from name to value. The names must only contain ASCII
+   *        characters. May neither be <code>null</code> nor contain
+   *        <code>null</code> keys or values.
+   */
+  HTMLNameLookup (@Nonnull final Map <String, ? extends DATATYPE> aMap)
+  {
+    ValueEnforcer.notNull (aMap, "Map");
+
+    int nCapacity = 16;
+    while (nCapacity < aMap.size () * 4)
+      nCapacity <<= 1;
+    m_aKeys = new String [nCapacity];
+    m_aValues = new Object [nCapacity];
+    m_nMask = nCapacity - 1;
+
+    int nSize = 0;
+    for (final Map.Entry <String, ? extends DATATYPE> aEntry : aMap.entrySet ())
+    {
+      final String sKey = _toLowerCaseASCII (ValueEnforcer.notNull (aEntry.getKey (), "Key"));
+      final DATATYPE aValue = ValueEnforcer.notNull (aEntry.getValue (), "Value");
+
+      int nIndex = _getHash (sKey) & m_nMask;
+      while (m_aKeys[nIndex] != null && !m_aKeys[nIndex].equals (sKey))
+        nIndex = (nIndex + 1) & m_nMask;
+      if (m_aKeys[nIndex] == null)
+        nSize++;
+      m_aKeys[nIndex] = sKey;
+      m_aValues[nIndex] = aValue;
+    }
+    m_nSize = nSize;
+  }
+
+  private static char _toLowerCaseASCII (final char c)
+  {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  @Nonnull
+  private static String _toLowerCaseASCII (@Nonnull final String s)
+  {
+    final int nLen = s.length ();
+    final char [] aChars = new char [nLen];
+    for (int i = 0; i < nLen; ++i)
+    {
+      final char c = s.charAt (i);
+      if (c > 0x7f)
+        throw new IllegalArgumentException ("Only ASCII names are supported: '" + s + "'");
+      aChars[i] = _toLowerCaseASCII (c);
+    }
+    return new String (aChars);
+  }
+
+  private static int _getHash (@Nonnull final String s)
+  {
+    int nHash = 0;
+    final int nLen = s.length ();
+    for (int i = 0; i < nLen; ++i)
+      nHash = 31 * nHash + _toLowerCaseASCII (s.charAt (i));
+    // Spread the higher bits downwards
+    return nHash ^ (nHash >>> 16);
+  }
+
+  private static boolean _equalsLowerCaseKey (@Nonnull final String sLCKey, @Nonnull final String s)
+  {
+    final int nLen = sLCKey.length ();
+    if (s.length () != nLen)
+      return false;
+    for (int i = 0; i < nLen; ++i)
+      if (sLCKey.charAt (i) != _toLowerCaseASCII (s.charAt (i)))
+        return false;
+    return true;
+  }
+
+  /**
+   * @return The number of contained entries. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getSize ()
+  {
+    return m_nSize;
+  }
+
+  /**
+   * Get the value for the passed name, ignoring the ASCII case.
+   * 
+   * @param sName
+   *        The name to search. May be <code>null</code>.
+   * @return <code>null</code> if no such name is contained.
+   */
+  @Nullable
+  @SuppressWarnings ("unchecked")
+  public DATATYPE get (@Nullable final String sName)
+  {
+    if (sName == null || sName.length () == 0)
+      return null;
+
+    int nIndex = _getHash (sName) & m_nMask;
+    String sKey;
+    while ((sKey = m_aKeys[nIndex]) != null)
+    {
+      if (_equalsLowerCaseKey (sKey, sName))
+        return (DATATYPE) m_aValues[nIndex];
+      nIndex = (nIndex + 1) & m_nMask;
+    }
+    return null;
+  }
+
+  /**
+   * Check if the passed name is contained, ignoring the ASCII case.
+   * 
+   * @param sName
+   *        The name to search. May be <code>null</code>.
+   * @return <code>true</code> if the name is contained.
+   */
+  public boolean contains (@Nullable final String sName)
+  {
+    return get (sName) != null;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("size", m_nSize).append ("capacity", m_aKeys.length).toString ();
+  }
+}
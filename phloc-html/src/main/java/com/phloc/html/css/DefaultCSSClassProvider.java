@@ -18,36 +18,52 @@
 package com.phloc.html.css;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.phloc.commons.ValueEnforcer;
 import com.phloc.commons.annotations.Nonempty;
 import com.phloc.commons.hash.HashCodeGenerator;
-import com.phloc.commons.regex.RegExHelper;
 import com.phloc.commons.string.StringHelper;
 import com.phloc.commons.string.ToStringGenerator;
 
 /**
  * Default implementation of the {@link ICSSClassProvider} interface. Uses an
  * internal cache to reuse existing objects. Use
- * {@link DefaultCSSClassProvider#create(String)} to create objects!
+ * {@link DefaultCSSClassProvider#create(String)} to create objects!<br>
+ * The cache is thread-safe and bounded (see
+ * {@link #setMaxInternedCount(int)}). If the maximum number of cached objects
+ * is reached, new objects are still created but no longer cached. Therefore
+ * two objects for the same CSS class are equal but not necessarily identical -
+ * always use {@link #equals(Object)} and never <code>==</code> to compare
+ * them.
  * 
  * @author Philip Helger
  */
 @Immutable
 public final class DefaultCSSClassProvider implements ICSSClassProvider, Serializable
 {
+  /** The default maximum number of cached CSS class objects */
+  public static final int DEFAULT_MAX_INTERNED_COUNT = 10000;
+
   private static final Logger s_aLogger = LoggerFactory.getLogger (DefaultCSSClassProvider.class);
-  private static final Map <String, DefaultCSSClassProvider> s_aAll = new HashMap <String, DefaultCSSClassProvider> ();
+  private static final ConcurrentMap <String, DefaultCSSClassProvider> s_aAll = new ConcurrentHashMap <String, DefaultCSSClassProvider> ();
+  private static final AtomicInteger s_aMaxInternedCount = new AtomicInteger (DEFAULT_MAX_INTERNED_COUNT);
+  private static final AtomicLong s_aHits = new AtomicLong ();
+  private static final AtomicLong s_aMisses = new AtomicLong ();
 
   private final String m_sCSSClass;
-  private Integer m_aHashCode;
+  private final int m_nHashCode;
 
   private DefaultCSSClassProvider (@Nonnull @Nonempty final String sCSSClass)
   {
@@ -58,13 +74,14 @@ public final class DefaultCSSClassProvider implements ICSSClassProvider, Seriali
     {
       // Happens more frequently because people are reusing existing attributes
       // for configuration purposes.
-      if (!RegExHelper.stringMatchesPattern ("-?[_a-zA-Z]+[_a-zA-Z0-9-]*", sCSSClass))
+      if (!isValidCSSClassName (sCSSClass))
         s_aLogger.warn ("The CSS class '" + sCSSClass + "' does not match the naming requirements!");
     }
     if (sCSSClass.startsWith ("_"))
       throw new IllegalArgumentException ("The CSS class name '" + sCSSClass + "' may rise problems with IE6!");
 
     m_sCSSClass = sCSSClass;
+    m_nHashCode = new HashCodeGenerator (this).append (sCSSClass).getHashCode ();
   }
 
   @Nonnull
@@ -88,9 +105,7 @@ public final class DefaultCSSClassProvider implements ICSSClassProvider, Seriali
   @Override
   public int hashCode ()
   {
-    if (m_aHashCode == null)
-      m_aHashCode = new HashCodeGenerator (this).append (m_sCSSClass).getHashCodeObj ();
-    return m_aHashCode.intValue ();
+    return m_nHashCode;
   }
 
   @Override
@@ -99,15 +114,142 @@ public final class DefaultCSSClassProvider implements ICSSClassProvider, Seriali
     return new ToStringGenerator (this).append ("cssClass", m_sCSSClass).toString ();
   }
 
+  private static boolean _isNameStartChar (final char c)
+  {
+    return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  /**
+   * Check if the passed CSS class name matches the naming requirements. This
+   * is identical to the regular expression
+   * <code>-?[_a-zA-Z]+[_a-zA-Z0-9-]*</code>.
+   * 
+   * @param sCSSClass
+   *        The CSS class name to check. May be <code>null</code>.
+   * @return <code>true</code> if the name is valid, <code>false</code>
+   *         otherwise.
+   */
+  public static boolean isValidCSSClassName (@Nullable final String sCSSClass)
+  {
+    if (sCSSClass == null)
+      return false;
+
+    final int nLen = sCSSClass.length ();
+    int nIndex = 0;
+
+    // Optional leading hyphen
+    if (nIndex < nLen && sCSSClass.charAt (nIndex) == '-')
+      nIndex++;
+
+    // At least one name start char
+    if (nIndex >= nLen || !_isNameStartChar (sCSSClass.charAt (nIndex)))
+      return false;
+    nIndex++;
+
+    // Any number of name chars
+    for (; nIndex < nLen; ++nIndex)
+    {
+      final char c = sCSSClass.charAt (nIndex);
+      if (!_isNameStartChar (c) && !(c >= '0' && c <= '9') && c != '-')
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Get the CSS class object for the passed name. If an object for this name
+   * is already cached, the cached object is returned. Otherwise a new object
+   * is created and cached, as long as less than
+   * {@link #getMaxInternedCount()} objects are cached. Beyond that limit each
+   * call returns a new object, so there is no identity guarantee.
+   * 
+   * @param sCSSClass
+   *        The CSS class name. May neither be <code>null</code> nor empty.
+   * @return The CSS class object. Never <code>null</code>.
+   */
   @Nonnull
   public static DefaultCSSClassProvider create (@Nonnull @Nonempty final String sCSSClass)
   {
-    DefaultCSSClassProvider aProvider = s_aAll.get (sCSSClass);
+    final DefaultCSSClassProvider aProvider = s_aAll.get (sCSSClass);
     if (aProvider != null)
+    {
+      s_aHits.incrementAndGet ();
       return aProvider;
+    }
+
+    s_aMisses.incrementAndGet ();
+    final DefaultCSSClassProvider aNewProvider = new DefaultCSSClassProvider (sCSSClass);
+
+    // The bound is not strict in case of concurrent creation, but the map
+    // cannot grow endlessly
+    if (s_aAll.size () >= s_aMaxInternedCount.get ())
+      return aNewProvider;
 
-    aProvider = new DefaultCSSClassProvider (sCSSClass);
-    s_aAll.put (sCSSClass, aProvider);
-    return aProvider;
+    final DefaultCSSClassProvider aOldProvider = s_aAll.putIfAbsent (sCSSClass, aNewProvider);
+    return aOldProvider != null ? aOldProvider : aNewProvider;
+  }
+
+  /**
+   * @return The number of currently cached CSS class objects.
+   */
+  @Nonnegative
+  public static int getInternedCount ()
+  {
+    return s_aAll.size ();
+  }
+
+  /**
+   * @return The maximum number of CSS class objects to be cached.
+   */
+  @Nonnegative
+  public static int getMaxInternedCount ()
+  {
+    return s_aMaxInternedCount.get ();
+  }
+
+  /**
+   * Set the maximum number of CSS class objects to be cached. Already cached
+   * objects are not removed if the new maximum is lower than the current
+   * number of cached objects.
+   * 
+   * @param nMaxInternedCount
+   *        The maximum number to use. Must be &ge; 0. 0 means no caching at
+   *        all.
+   */
+  public static void setMaxInternedCount (@Nonnegative final int nMaxInternedCount)
+  {
+    ValueEnforcer.isGE0 (nMaxInternedCount, "MaxInternedCount");
+    s_aMaxInternedCount.set (nMaxInternedCount);
+  }
+
+  /**
+   * @return The number of {@link #create(String)} calls that were served from
+   *         the cache.
+   */
+  @Nonnegative
+  public static long getHitCount ()
+  {
+    return s_aHits.get ();
+  }
+
+  /**
+   * @return The number of {@link #create(String)} calls that were not served
+   *         from the cache.
+   */
+  @Nonnegative
+  public static long getMissCount ()
+  {
+    return s_aMisses.get ();
+  }
+
+  /**
+   * @return The ratio of cache hits to all {@link #create(String)} calls
+   *         between 0 and 1, or 0 if no call was made so far.
+   */
+  public static double getHitRate ()
+  {
+    final long nHits = s_aHits.get ();
+    final long nTotal = nHits + s_aMisses.get ();
+    return nTotal == 0 ? 0 : (double) nHits / nTotal;
   }
 }
@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.entities;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.DeclHandler;
+
+import com.phloc.commons.annotations.Nonempty;
+import com.phloc.commons.charset.CCharset;
+import com.phloc.commons.xml.sax.InputSourceFactory;
+import com.phloc.html.CHTMLDocTypes;
+
+/**
+ * A SAX entity resolver for the XHTML document types that resolves each
+ * document type to a pre-compiled DTD. The pre-compiled DTD is created once
+ * from the complete DTD as resolved by {@link HTMLEntityResolver}. It contains
+ * all element, attribute and general entity declarations with all parameter
+ * entities already expanded, so it consists of a single small file without any
+ * modules that needs to be read by the parser. The parse results are the same
+ * as with {@link HTMLEntityResolver}.
+ * 
+ * @author Philip Helger
+ */
+@Immutable
+public final class HTMLCompiledEntityResolver implements EntityResolver
+{
+  /**
+   * Collects all effective declarations of a DTD in a flat form.
+   * 
+   * @author Philip Helger
+   */
+  private static final class DTDCompiler implements DeclHandler
+  {
+    private final StringBuilder m_aSB = new StringBuilder ();
+
+    @Nonnull
+    private static String _getQuoted (@Nonnull final String sValue)
+    {
+      // Escape everything that would otherwise be interpreted again
+      return '"' + sValue.replace ("&", "&#38;").replace ("%", "&#37;").replace ("\"", "&#34;") + '"';
+    }
+
+    public void elementDecl (final String sName, final String sModel)
+    {
+      m_aSB.append ("<!ELEMENT ").append (sName).append (' ').append (sModel).append (">\n");
+    }
+
+    public void attributeDecl (final String sElementName,
+                               final String sAttrName,
+                               final String sType,
+                               final String sMode,
+                               final String sValue)
+    {
+      m_aSB.append ("<!ATTLIST ").append (sElementName).append (' ').append (sAttrName).append (' ').append (sType);
+      if (sMode != null)
+        m_aSB.append (' ').append (sMode);
+      if (sValue != null)
+        m_aSB.append (' ').append (_getQuoted (sValue));
+      m_aSB.append (">\n");
+    }
+
+    public void internalEntityDecl (final String sName, final String sValue)
+    {
+      // Parameter entities are already expanded in all other declarations
+      if (!sName.startsWith ("%"))
+        m_aSB.append ("<!ENTITY ").append (sName).append (' ').append (_getQuoted (sValue)).append (">\n");
+    }
+
+    public void externalEntityDecl (final String sName, final String sPublicID, final String sSystemID)
+    {
+      // The XHTML DTDs only use external parameter entities for the modules
+    }
+
+    @Nonnull
+    public String getCompiledDTD ()
+    {
+      return m_aSB.toString ();
+    }
+  }
+
+  private static final Logger s_aLogger = LoggerFactory.getLogger (HTMLCompiledEntityResolver.class);
+  private static final String SAX_PROPERTY_DECLARATION_HANDLER = "http://xml.org/sax/properties/declaration-handler";
+
+  private static final class SingletonHolder
+  {
+    static final HTMLCompiledEntityResolver s_aInstance = new HTMLCompiledEntityResolver ();
+  }
+
+  /** Maps public ID to the compiled DTD content */
+  private final Map <String, byte []> m_aCompiledMap = new HashMap <String, byte []> ();
+
+  private void _addCompiledDTD (@Nonnull @Nonempty final String sPublicID, @Nonnull @Nonempty final String sSystemID)
+  {
+    try
+    {
+      final DTDCompiler aCompiler = new DTDCompiler ();
+      final SAXParserFactory aFactory = SAXParserFactory.newInstance ();
+      aFactory.setNamespaceAware (true);
+      aFactory.setValidating (false);
+      final XMLReader aReader = aFactory.newSAXParser ().getXMLReader ();
+      aReader.setEntityResolver (HTMLEntityResolver.getInstance ());
+      aReader.setProperty (SAX_PROPERTY_DECLARATION_HANDLER, aCompiler);
+      aReader.parse (new InputSource (new StringReader ("<!DOCTYPE html PUBLIC \"" +
+                                                        sPublicID +
+                                                        "\" \"" +
+                                                        sSystemID +
+                                                        "\"><html/>")));
+      m_aCompiledMap.put (sPublicID, aCompiler.getCompiledDTD ().getBytes (CCharset.CHARSET_UTF_8_OBJ));
+    }
+    catch (final Exception ex)
+    {
+      // Use the complete DTD for this document type
+      s_aLogger.warn ("Failed to compile the DTD '" + sPublicID + "' - using the original DTD", ex);
+    }
+  }
+
+  private HTMLCompiledEntityResolver ()
+  {
+    _addCompiledDTD (CHTMLDocTypes.DOCTYPE_XHTML10_STRICT_QNAME, CHTMLDocTypes.DOCTYPE_XHTML10_STRICT_URI);
+    _addCompiledDTD (CHTMLDocTypes.DOCTYPE_XHTML10_TRANS_QNAME, CHTMLDocTypes.DOCTYPE_XHTML10_TRANS_URI);
+    _addCompiledDTD (CHTMLDocTypes.DOCTYPE_XHTML11_QNAME, CHTMLDocTypes.DOCTYPE_XHTML11_URI);
+  }
+
+  /**
+   * @return The global instance. The DTDs are compiled upon the first call.
+   */
+  @Nonnull
+  public static HTMLCompiledEntityResolver getInstance ()
+  {
+    return SingletonHolder.s_aInstance;
+  }
+
+  /**
+   * @param sPublicID
+   *        The public ID of the document type. May be <code>null</code>.
+   * @return <code>true</code> if a compiled DTD is present for the passed
+   *         public ID.
+   */
+  public boolean isCompiled (@Nullable final String sPublicID)
+  {
+    return m_aCompiledMap.containsKey (sPublicID);
+  }
+
+  @Nullable
+  public InputSource resolveEntity (@Nullable final String sPublicId, @Nullable final String sSystemId)
+  {
+    final byte [] aBytes = m_aCompiledMap.get (sPublicId);
+    if (aBytes != null)
+      return InputSourceFactory.create (aBytes);
+
+    // Not compiled - e.g. if compilation failed
+    return HTMLEntityResolver.getInstance ().resolveEntity (sPublicId);
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.phloc.commons.annotations.OverrideOnDemand;
+import com.phloc.commons.microdom.IMicroNode;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.customize.IHCCustomizer;
+import com.phloc.html.hc.utils.IHCSpecialNodeListModifier;
+
+/**
+ * Empty implementation of {@link IHCRenderListener}, so that only the
+ * interesting callbacks need to be overridden.
+ * 
+ * @author Philip Helger
+ */
+public abstract class AbstractHCRenderListener implements IHCRenderListener
+{
+  @OverrideOnDemand
+  public void onBeginConvertToNode (@Nonnull final IHCNode aNode)
+  {}
+
+  @OverrideOnDemand
+  public void onEndConvertToNode (@Nonnull final IHCNode aNode, @Nullable final IMicroNode aCreatedNode)
+  {}
+
+  @OverrideOnDemand
+  public void onBeginBeforeConvertToNode (@Nonnull final IHCNode aNode)
+  {}
+
+  @OverrideOnDemand
+  public void onEndBeforeConvertToNode (@Nonnull final IHCNode aNode)
+  {}
+
+  @OverrideOnDemand
+  public void onBeginCustomization (@Nonnull final IHCNode aNode, @Nonnull final IHCCustomizer aCustomizer)
+  {}
+
+  @OverrideOnDemand
+  public void onEndCustomization (@Nonnull final IHCNode aNode, @Nonnull final IHCCustomizer aCustomizer)
+  {}
+
+  @OverrideOnDemand
+  public void onBeginOutOfBandExtraction (@Nonnull final IHCNode aBaseNode)
+  {}
+
+  @OverrideOnDemand
+  public void onEndOutOfBandExtraction (@Nonnull final IHCNode aBaseNode, @Nonnegative final int nExtractedNodes)
+  {}
+
+  @OverrideOnDemand
+  public void onBeginSpecialNodeListModifier (@Nonnull final IHCSpecialNodeListModifier aModifier)
+  {}
+
+  @OverrideOnDemand
+  public void onEndSpecialNodeListModifier (@Nonnull final IHCSpecialNodeListModifier aModifier)
+  {}
+
+  @OverrideOnDemand
+  public void onBeginSerialization (@Nonnull final IHCNode aNode)
+  {}
+
+  @OverrideOnDemand
+  public void onEndSerialization (@Nonnull final IHCNode aNode, @Nonnegative final long nChars, final long nBytes)
+  {}
+}
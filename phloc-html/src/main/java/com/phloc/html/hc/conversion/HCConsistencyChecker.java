@@ -18,6 +18,7 @@
 package com.phloc.html.hc.conversion;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
@@ -29,27 +30,13 @@ import org.slf4j.LoggerFactory;
 
 import com.phloc.commons.annotations.PresentForCodeCoverage;
 import com.phloc.commons.annotations.ReturnsMutableCopy;
-import com.phloc.commons.cache.AnnotationUsageCache;
 import com.phloc.commons.state.EFinish;
 import com.phloc.commons.string.StringHelper;
-import com.phloc.html.EHTMLElement;
 import com.phloc.html.EHTMLVersion;
-import com.phloc.html.annotations.DeprecatedInHTML4;
-import com.phloc.html.annotations.DeprecatedInHTML5;
-import com.phloc.html.annotations.DeprecatedInXHTML1;
-import com.phloc.html.annotations.SinceHTML5;
 import com.phloc.html.hc.IHCElement;
 import com.phloc.html.hc.IHCHasChildren;
 import com.phloc.html.hc.IHCNode;
-import com.phloc.html.hc.html.AbstractHCBaseTable;
-import com.phloc.html.hc.html.HCA;
 import com.phloc.html.hc.html.HCBody;
-import com.phloc.html.hc.html.HCButton;
-import com.phloc.html.hc.html.HCForm;
-import com.phloc.html.hc.html.HCObject;
-import com.phloc.html.hc.html.HCPre;
-import com.phloc.html.hc.html5.HCMeter;
-import com.phloc.html.hc.html5.HCProgress;
 import com.phloc.html.hc.htmlext.HCUtils;
 import com.phloc.html.hc.htmlext.IHCIteratorCallback;
 
@@ -63,11 +50,6 @@ public final class HCConsistencyChecker
 {
   private static final Logger s_aLogger = LoggerFactory.getLogger (HCConsistencyChecker.class);
 
-  private static final AnnotationUsageCache s_aAUC_D_HTML4 = new AnnotationUsageCache (DeprecatedInHTML4.class);
-  private static final AnnotationUsageCache s_aAUC_D_XHTML1 = new AnnotationUsageCache (DeprecatedInXHTML1.class);
-  private static final AnnotationUsageCache s_aAUC_D_HTML5 = new AnnotationUsageCache (DeprecatedInHTML5.class);
-  private static final AnnotationUsageCache s_aAUC_S_HTML5 = new AnnotationUsageCache (SinceHTML5.class);
-
   @SuppressWarnings ("unused")
   @PresentForCodeCoverage
   private static final HCConsistencyChecker s_aInstance = new HCConsistencyChecker ();
@@ -86,128 +68,108 @@ public final class HCConsistencyChecker
     s_aLogger.warn (sMsg);
   }
 
-  private static void _checkDeprecation (final Class <?> aElementClass,
-                                         final String sElementName,
-                                         final EHTMLVersion eHTMLVersion)
-  {
-    if (s_aAUC_D_HTML4.hasAnnotation (aElementClass))
-      consistencyWarning ("The element '" + sElementName + "' was deprecated in HTML 4.0");
-    else
-      if (s_aAUC_D_XHTML1.hasAnnotation (aElementClass))
-        consistencyWarning ("The element '" + sElementName + "' is deprecated in XHTML1");
-      else
-        if (eHTMLVersion.isAtLeastHTML5 ())
-        {
-          // HTML5 specifics checks
-          if (s_aAUC_D_HTML5.hasAnnotation (aElementClass))
-            consistencyWarning ("The element '" + sElementName + "' is deprecated in HTML5");
-        }
-        else
-        {
-          // pre-HTML5 checks
-          if (s_aAUC_S_HTML5.hasAnnotation (aElementClass))
-            consistencyWarning ("The element '" + sElementName + "' is only available in HTML5");
-        }
-  }
-
-  private static void _checkA (final HCA aA)
-  {
-    if (HCUtils.recursiveContainsChildWithTagName (aA, EHTMLElement.A))
-      consistencyWarning ("A may never contain other links!");
-    if (HCUtils.recursiveContainsChildWithTagName (aA, EHTMLElement.SELECT))
-      consistencyWarning ("A contains invalid child element!");
-  }
-
-  private static void _checkButton (final HCButton aButton)
-  {
-    final IHCElement <?> aChild = HCUtils.recursiveGetFirstChildWithTagName (aButton,
-                                                                             EHTMLElement.A,
-                                                                             EHTMLElement.INPUT,
-                                                                             EHTMLElement.SELECT,
-                                                                             EHTMLElement.TEXTAREA,
-                                                                             EHTMLElement.LABEL,
-                                                                             EHTMLElement.BUTTON,
-                                                                             EHTMLElement.FORM,
-                                                                             EHTMLElement.FIELDSET,
-                                                                             EHTMLElement.IFRAME);
-    if (aChild != null)
-      consistencyWarning ("BUTTON element contains forbidden tag " + aChild.getElement ());
-  }
-
-  private static void _checkForm (final HCForm aForm)
-  {
-    if (HCUtils.recursiveContainsChildWithTagName (aForm, EHTMLElement.FORM))
-      consistencyWarning ("FORM contains other nested form");
-  }
-
-  private static void _checkMeter (final HCMeter aMeter)
+  /**
+   * Run all consistency checks on the passed node and all of its descendants
+   * in a single pass. The issues found are only returned and not logged.
+   * 
+   * @param aNode
+   *        The node to be checked. May not be <code>null</code>.
+   * @param eHTMLVersion
+   *        The HTML version to check against. May not be <code>null</code>.
+   * @return All issues found. Never <code>null</code> but maybe empty.
+   * @see HCConsistencyValidator
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public static List <HCConsistencyIssue> runConsistencyCheck (@Nonnull final IHCNode aNode,
+                                                               @Nonnull final EHTMLVersion eHTMLVersion)
   {
-    if (HCUtils.recursiveContainsChildWithTagName (aMeter, EHTMLElement.METER))
-      consistencyWarning ("METER contains other nested meter");
+    return HCConsistencyValidator.validate (aNode, eHTMLVersion);
   }
 
-  private static void _checkObject (final HCObject aValue)
+  /**
+   * Check whether the consistency checks were already run for an enclosing
+   * node of the conversion the passed settings belong to.
+   * 
+   * @param aConversionSettings
+   *        The conversion settings to query. May not be <code>null</code>.
+   * @return <code>true</code> if the passed settings were returned by
+   *         {@link #runConsistencyCheckForConversion(IHCNode, IHCConversionSettingsToNode)}
+   *         or are derived from such settings.
+   */
+  static boolean isConsistencyCheckPerformed (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
   {
-    if (aValue.getData () == null && aValue.getType () == null)
-      consistencyWarning ("OBJECT contains neither type nor data");
+    if (aConversionSettings instanceof HCFrozenConversionSettings)
+      return ((HCFrozenConversionSettings) aConversionSettings).isConsistencyCheckPerformed ();
+    if (aConversionSettings instanceof HCConversionSettings)
+      return ((HCConversionSettings) aConversionSettings).isConsistencyCheckPerformed ();
+    return false;
   }
 
-  private static void _checkPre (final HCPre aPre)
+  /**
+   * Run the consistency checks on the passed node tree at the beginning of its
+   * conversion. The checks are skipped, if they are disabled or if they were
+   * already run for an enclosing node of the same conversion. The issues found
+   * are passed to the {@link IHCConsistencyIssueHandler} of the settings or
+   * are logged, if no handler is present.<br>
+   * The returned settings must be used to convert the passed node, so that
+   * the descendants converted afterwards are not checked again. As this state
+   * is part of the settings, the checks of unrelated trees converted in the
+   * same thread are not affected. Settings that are neither
+   * {@link HCConversionSettings} nor {@link HCFrozenConversionSettings} nor
+   * any other {@link IHCConversionSettings} cannot carry this state, so they
+   * are returned unchanged and the descendants are checked again.
+   * 
+   * @param aNode
+   *        The node to be checked. May not be <code>null</code>.
+   * @param aConversionSettings
+   *        The conversion settings of the node. May not be <code>null</code>.
+   * @return The conversion settings to be used to convert the passed node.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  public static IHCConversionSettingsToNode runConsistencyCheckForConversion (@Nonnull final IHCNode aNode,
+                                                                              @Nonnull final IHCConversionSettingsToNode aConversionSettings)
   {
-    final IHCElement <?> aChild = HCUtils.recursiveGetFirstChildWithTagName (aPre,
-                                                                             EHTMLElement.IMG,
-                                                                             EHTMLElement.OBJECT,
-                                                                             EHTMLElement.SMALL,
-                                                                             EHTMLElement.SUB,
-                                                                             EHTMLElement.SUP);
-    if (aChild != null)
-      consistencyWarning ("PRE elements contains forbidden tag " + aChild.getElement ());
-  }
+    if (!aConversionSettings.areConsistencyChecksEnabled () || isConsistencyCheckPerformed (aConversionSettings))
+      return aConversionSettings;
 
-  private static void _checkProgress (final HCProgress aProgress)
-  {
-    if (HCUtils.recursiveContainsChildWithTagName (aProgress, EHTMLElement.PROGRESS))
-      consistencyWarning ("PROGRESS contains other nested progress");
-  }
+    final List <HCConsistencyIssue> aIssues = runConsistencyCheck (aNode, aConversionSettings.getHTMLVersion ());
+    if (!aIssues.isEmpty ())
+    {
+      final IHCConsistencyIssueHandler aHandler = HCSettings.getConsistencyIssueHandler (aConversionSettings);
+      for (final HCConsistencyIssue aIssue : aIssues)
+        if (aHandler != null)
+          aHandler.onConsistencyIssue (aIssue);
+        else
+          consistencyWarning (aIssue.getMessage ());
+    }
 
-  private static void _checkTable (@Nonnull final AbstractHCBaseTable <?> aTable)
-  {
-    AbstractHCBaseTable.checkInternalConsistency (aTable);
+    if (aConversionSettings instanceof HCFrozenConversionSettings)
+      return ((HCFrozenConversionSettings) aConversionSettings).getWithConsistencyCheckPerformed ();
+    if (aConversionSettings instanceof IHCConversionSettings)
+      return new HCConversionSettings ((IHCConversionSettings) aConversionSettings).setConsistencyCheckPerformed ();
+    return aConversionSettings;
   }
 
+  /**
+   * Run the consistency checks on the passed element and all of its
+   * descendants.
+   * 
+   * @param aElement
+   *        The element to be checked. May not be <code>null</code>.
+   * @param eHTMLVersion
+   *        The HTML version to check against. May not be <code>null</code>.
+   * @deprecated Use {@link #runConsistencyCheck(IHCNode, EHTMLVersion)}
+   *             instead, which returns the issues found instead of logging
+   *             them.
+   */
+  @Deprecated
   public static void runConsistencyCheckBeforeCreation (@Nonnull final IHCElement <?> aElement,
                                                         @Nonnull final EHTMLVersion eHTMLVersion)
   {
-    final String sElementName = aElement.getTagName ();
-    final Class <?> aElementClass = aElement.getClass ();
-
-    // Deprecation is checked for all elements
-    _checkDeprecation (aElementClass, sElementName, eHTMLVersion);
-
-    // Special checks based on the implementation
-    if (aElement instanceof HCA)
-      _checkA ((HCA) aElement);
-    else
-      if (aElement instanceof HCButton)
-        _checkButton ((HCButton) aElement);
-      else
-        if (aElement instanceof HCForm)
-          _checkForm ((HCForm) aElement);
-        else
-          if (aElement instanceof HCMeter)
-            _checkMeter ((HCMeter) aElement);
-          else
-            if (aElement instanceof HCObject)
-              _checkObject ((HCObject) aElement);
-            else
-              if (aElement instanceof HCPre)
-                _checkPre ((HCPre) aElement);
-              else
-                if (aElement instanceof HCProgress)
-                  _checkProgress ((HCProgress) aElement);
-                else
-                  if (aElement instanceof AbstractHCBaseTable <?>)
-                    _checkTable ((AbstractHCBaseTable <?>) aElement);
+    for (final HCConsistencyIssue aIssue : runConsistencyCheck (aElement, eHTMLVersion))
+      consistencyWarning (aIssue.getMessage ());
   }
 
   public static void checkIfLinkIsMasked (@Nullable final String sHref)
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.annotations.Nonempty;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.hc.IHCNode;
+
+/**
+ * A single problem found by the {@link HCConsistencyValidator}.
+ * 
+ * @author Philip Helger
+ */
+@Immutable
+public final class HCConsistencyIssue
+{
+  private final IHCNode m_aNode;
+  private final String m_sMessage;
+
+  public HCConsistencyIssue (@Nonnull final IHCNode aNode, @Nonnull @Nonempty final String sMessage)
+  {
+    m_aNode = ValueEnforcer.notNull (aNode, "Node");
+    m_sMessage = ValueEnforcer.notEmpty (sMessage, "Message");
+  }
+
+  /**
+   * @return The node the issue was found at. Never <code>null</code>.
+   */
+  @Nonnull
+  public IHCNode getNode ()
+  {
+    return m_aNode;
+  }
+
+  /**
+   * @return The human readable description of the issue. Neither
+   *         <code>null</code> nor empty.
+   */
+  @Nonnull
+  @Nonempty
+  public String getMessage ()
+  {
+    return m_sMessage;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("node", m_aNode).append ("message", m_sMessage).toString ();
+  }
+}
@@ -0,0 +1,307 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.annotations.Nonempty;
+import com.phloc.commons.annotations.ReturnsMutableCopy;
+import com.phloc.commons.cache.AnnotationUsageCache;
+import com.phloc.html.EHTMLElement;
+import com.phloc.html.EHTMLVersion;
+import com.phloc.html.annotations.DeprecatedInHTML4;
+import com.phloc.html.annotations.DeprecatedInHTML5;
+import com.phloc.html.annotations.DeprecatedInXHTML1;
+import com.phloc.html.annotations.SinceHTML5;
+import com.phloc.html.hc.IHCElement;
+import com.phloc.html.hc.IHCHasChildren;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.IHCWrappingNode;
+import com.phloc.html.hc.html.AbstractHCBaseTable;
+import com.phloc.html.hc.html.HCHead;
+import com.phloc.html.hc.html.HCHtml;
+import com.phloc.html.hc.html.HCObject;
+import com.phloc.html.hc.html.HCSelect;
+
+/**
+ * Validates a complete HC node tree in a single traversal. The set of
+ * currently open ancestor elements is kept in a {@link BitSet} indexed by
+ * {@link EHTMLElement#ordinal()}, so that checking whether an element is a
+ * forbidden descendant of any ancestor does not require to scan the subtree of
+ * each ancestor again. All findings are returned as
+ * {@link HCConsistencyIssue} objects instead of being logged.
+ * 
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public final class HCConsistencyValidator
+{
+  /**
+   * A single content model rule: the specified ancestor may not contain the
+   * specified descendant at any depth.
+   * 
+   * @author Philip Helger
+   */
+  private static final class ForbiddenDescendantRule
+  {
+    private final EHTMLElement m_eAncestor;
+    private final String m_sMessage;
+    private final boolean m_bAppendDescendant;
+
+    ForbiddenDescendantRule (@Nonnull final EHTMLElement eAncestor,
+                             @Nonnull @Nonempty final String sMessage,
+                             final boolean bAppendDescendant)
+    {
+      m_eAncestor = eAncestor;
+      m_sMessage = sMessage;
+      m_bAppendDescendant = bAppendDescendant;
+    }
+  }
+
+  private static final AnnotationUsageCache s_aAUC_D_HTML4 = new AnnotationUsageCache (DeprecatedInHTML4.class);
+  private static final AnnotationUsageCache s_aAUC_D_XHTML1 = new AnnotationUsageCache (DeprecatedInXHTML1.class);
+  private static final AnnotationUsageCache s_aAUC_D_HTML5 = new AnnotationUsageCache (DeprecatedInHTML5.class);
+  private static final AnnotationUsageCache s_aAUC_S_HTML5 = new AnnotationUsageCache (SinceHTML5.class);
+
+  // Key: the forbidden descendant; value: all rules it violates
+  private static final Map <EHTMLElement, List <ForbiddenDescendantRule>> s_aRules = new EnumMap <EHTMLElement, List <ForbiddenDescendantRule>> (EHTMLElement.class);
+
+  static
+  {
+    _addRule (EHTMLElement.A, "A may never contain other links!", false, EHTMLElement.A);
+    _addRule (EHTMLElement.A, "A contains invalid child element!", false, EHTMLElement.SELECT);
+    _addRule (EHTMLElement.BUTTON,
+              "BUTTON element contains forbidden tag ",
+              true,
+              EHTMLElement.A,
+              EHTMLElement.INPUT,
+              EHTMLElement.SELECT,
+              EHTMLElement.TEXTAREA,
+              EHTMLElement.LABEL,
+              EHTMLElement.BUTTON,
+              EHTMLElement.FORM,
+              EHTMLElement.FIELDSET,
+              EHTMLElement.IFRAME);
+    _addRule (EHTMLElement.FORM, "FORM contains other nested form", false, EHTMLElement.FORM);
+    _addRule (EHTMLElement.METER, "METER contains other nested meter", false, EHTMLElement.METER);
+    _addRule (EHTMLElement.PRE,
+              "PRE elements contains forbidden tag ",
+              true,
+              EHTMLElement.IMG,
+              EHTMLElement.OBJECT,
+              EHTMLElement.SMALL,
+              EHTMLElement.SUB,
+              EHTMLElement.SUP);
+    _addRule (EHTMLElement.PROGRESS, "PROGRESS contains other nested progress", false, EHTMLElement.PROGRESS);
+  }
+
+  private final EHTMLVersion m_eHTMLVersion;
+  private final BitSet m_aOpenAncestors = new BitSet (EHTMLElement.values ().length);
+  private final List <HCConsistencyIssue> m_aIssues = new ArrayList <HCConsistencyIssue> ();
+
+  private static void _addRule (@Nonnull final EHTMLElement eAncestor,
+                                @Nonnull @Nonempty final String sMessage,
+                                final boolean bAppendDescendant,
+                                @Nonnull final EHTMLElement... aDescendants)
+  {
+    final ForbiddenDescendantRule aRule = new ForbiddenDescendantRule (eAncestor, sMessage, bAppendDescendant);
+    for (final EHTMLElement eDescendant : aDescendants)
+    {
+      List <ForbiddenDescendantRule> aRules = s_aRules.get (eDescendant);
+      if (aRules == null)
+      {
+        aRules = new ArrayList <ForbiddenDescendantRule> ();
+        s_aRules.put (eDescendant, aRules);
+      }
+      aRules.add (aRule);
+    }
+  }
+
+  private HCConsistencyValidator (@Nonnull final EHTMLVersion eHTMLVersion)
+  {
+    m_eHTMLVersion = eHTMLVersion;
+  }
+
+  private void _addIssue (@Nonnull final IHCNode aNode, @Nonnull @Nonempty final String sMessage)
+  {
+    m_aIssues.add (new HCConsistencyIssue (aNode, sMessage));
+  }
+
+  private void _checkDeprecation (@Nonnull final IHCElement <?> aElement)
+  {
+    final Class <?> aElementClass = aElement.getClass ();
+    final String sElementName = aElement.getTagName ();
+    if (s_aAUC_D_HTML4.hasAnnotation (aElementClass))
+      _addIssue (aElement, "The element '" + sElementName + "' was deprecated in HTML 4.0");
+    else
+      if (s_aAUC_D_XHTML1.hasAnnotation (aElementClass))
+        _addIssue (aElement, "The element '" + sElementName + "' is deprecated in XHTML1");
+      else
+        if (m_eHTMLVersion.isAtLeastHTML5 ())
+        {
+          // HTML5 specifics checks
+          if (s_aAUC_D_HTML5.hasAnnotation (aElementClass))
+            _addIssue (aElement, "The element '" + sElementName + "' is deprecated in HTML5");
+        }
+        else
+        {
+          // pre-HTML5 checks
+          if (s_aAUC_S_HTML5.hasAnnotation (aElementClass))
+            _addIssue (aElement, "The element '" + sElementName + "' is only available in HTML5");
+        }
+  }
+
+  private void _checkForbiddenDescendant (@Nonnull final IHCElement <?> aElement, @Nonnull final EHTMLElement eElement)
+  {
+    final List <ForbiddenDescendantRule> aRules = s_aRules.get (eElement);
+    if (aRules != null)
+      for (final ForbiddenDescendantRule aRule : aRules)
+        if (m_aOpenAncestors.get (aRule.m_eAncestor.ordinal ()))
+          _addIssue (aElement, aRule.m_bAppendDescendant ? aRule.m_sMessage + eElement : aRule.m_sMessage);
+  }
+
+  private void _checkElement (@Nonnull final IHCElement <?> aElement, @Nonnull final EHTMLElement eElement)
+  {
+    // Deprecation is checked for all elements
+    _checkDeprecation (aElement);
+
+    // Content model checks based on the ancestors
+    if (!m_aOpenAncestors.isEmpty ())
+      _checkForbiddenDescendant (aElement, eElement);
+
+    // Special checks based on the implementation
+    if (aElement instanceof HCObject)
+    {
+      final HCObject aObject = (HCObject) aElement;
+      if (aObject.getData () == null && aObject.getType () == null)
+        _addIssue (aElement, "OBJECT contains neither type nor data");
+    }
+    else
+      if (aElement instanceof AbstractHCBaseTable <?>)
+      {
+        for (final String sWarning : AbstractHCBaseTable.getInternalConsistencyWarnings ((AbstractHCBaseTable <?>) aElement))
+          _addIssue (aElement, sWarning);
+      }
+  }
+
+  private void _validateAll (@Nonnull final Iterable <? extends IHCNode> aNodes)
+  {
+    for (final IHCNode aNode : aNodes)
+      _validate (aNode);
+  }
+
+  /**
+   * Validate all nodes that are emitted inside the passed node. Not all nodes
+   * keep their content as children, so the structure of these nodes is
+   * followed explicitly.
+   */
+  private void _validateContent (@Nonnull final IHCNode aNode)
+  {
+    if (aNode instanceof IHCHasChildren)
+    {
+      final IHCHasChildren aParent = (IHCHasChildren) aNode;
+      if (aParent.hasChildren ())
+        _validateAll (aParent.getChildren ());
+    }
+    else
+      if (aNode instanceof HCHtml)
+      {
+        final HCHtml aHtml = (HCHtml) aNode;
+        _validate (aHtml.getHead ());
+        _validate (aHtml.getBody ());
+      }
+      else
+        if (aNode instanceof HCHead)
+        {
+          final HCHead aHead = (HCHead) aNode;
+          _validateAll (aHead.getAllLinks ());
+          _validateAll (aHead.getAllCSSNodes ());
+          _validateAll (aHead.getAllJSNodes ());
+        }
+        else
+          if (aNode instanceof AbstractHCBaseTable <?>)
+          {
+            final AbstractHCBaseTable <?> aTable = (AbstractHCBaseTable <?>) aNode;
+            if (aTable.getColGroup () != null)
+              _validate (aTable.getColGroup ());
+            _validate (aTable.getHead ());
+            _validate (aTable.getFoot ());
+            _validate (aTable.getBody ());
+          }
+          else
+            if (aNode instanceof HCSelect)
+              _validateAll (((HCSelect) aNode).getAllOptionNodes ());
+            else
+              if (aNode instanceof IHCWrappingNode)
+                _validate (((IHCWrappingNode) aNode).getWrappedNode ());
+  }
+
+  private void _validate (@Nonnull final IHCNode aNode)
+  {
+    int nOpenedIndex = -1;
+    if (aNode instanceof IHCElement <?>)
+    {
+      final IHCElement <?> aElement = (IHCElement <?>) aNode;
+      final EHTMLElement eElement = aElement.getElement ();
+      _checkElement (aElement, eElement);
+
+      // Only the outermost of nested equal elements opens the bit
+      final int nIndex = eElement.ordinal ();
+      if (!m_aOpenAncestors.get (nIndex))
+      {
+        m_aOpenAncestors.set (nIndex);
+        nOpenedIndex = nIndex;
+      }
+    }
+
+    _validateContent (aNode);
+
+    if (nOpenedIndex >= 0)
+      m_aOpenAncestors.clear (nOpenedIndex);
+  }
+
+  /**
+   * Validate the passed node and all of its descendants in a single pass.
+   * 
+   * @param aNode
+   *        The node to start validating at. May not be <code>null</code>.
+   * @param eHTMLVersion
+   *        The HTML version to validate against. May not be <code>null</code>.
+   * @return A list with all issues found, in document order. Never
+   *         <code>null</code> but maybe empty.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public static List <HCConsistencyIssue> validate (@Nonnull final IHCNode aNode, @Nonnull final EHTMLVersion eHTMLVersion)
+  {
+    ValueEnforcer.notNull (aNode, "Node");
+    ValueEnforcer.notNull (eHTMLVersion, "HTMLVersion");
+
+    final HCConsistencyValidator aValidator = new HCConsistencyValidator (eHTMLVersion);
+    aValidator._validate (aNode);
+    return aValidator.m_aIssues;
+  }
+}
@@ -17,6 +17,8 @@
  */
 package com.phloc.html.hc.conversion;
 
+import java.util.concurrent.Executor;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
@@ -59,6 +61,12 @@ public class HCConversionSettings implements IHCConversionSettings
   private boolean m_bConsistencyChecksEnabled;
   private boolean m_bExtractOutOfBandNodes;
   private IHCCustomizer m_aCustomizer;
+  private IHCRenderListener m_aRenderListener;
+  private Executor m_aParallelConversionExecutor;
+  private IHCConsistencyIssueHandler m_aConsistencyIssueHandler;
+  // Only set in the settings used inside a conversion, whose consistency
+  // checks were already run for an enclosing node
+  private boolean m_bConsistencyCheckPerformed;
 
   @Nonnull
   public static XMLWriterSettings createDefaultXMLWriterSettings ()
@@ -134,6 +142,10 @@ public class HCConversionSettings implements IHCConversionSettings
     m_bConsistencyChecksEnabled = aBase.areConsistencyChecksEnabled ();
     m_bExtractOutOfBandNodes = aBase.isExtractOutOfBandNodes ();
     m_aCustomizer = aBase.getCustomizer ();
+    m_aRenderListener = HCSettings.getRenderListener (aBase);
+    m_aParallelConversionExecutor = HCSettings.getParallelConversionExecutor (aBase);
+    m_aConsistencyIssueHandler = HCSettings.getConsistencyIssueHandler (aBase);
+    m_bConsistencyCheckPerformed = HCConsistencyChecker.isConsistencyCheckPerformed (aBase);
   }
 
   @Nonnull
@@ -230,6 +242,45 @@ public class HCConversionSettings implements IHCConversionSettings
     return m_bConsistencyChecksEnabled;
   }
 
+  /**
+   * Set the handler that receives the issues found by the consistency checks.
+   *
+   * @param aConsistencyIssueHandler
+   *        The handler to be used. May be <code>null</code> to log all issues,
+   *        which is the default.
+   * @return this
+   */
+  @Nonnull
+  public HCConversionSettings setConsistencyIssueHandler (@Nullable final IHCConsistencyIssueHandler aConsistencyIssueHandler)
+  {
+    m_aConsistencyIssueHandler = aConsistencyIssueHandler;
+    return this;
+  }
+
+  /**
+   * @return The handler that receives the issues found by the consistency
+   *         checks. May be <code>null</code>, in which case all issues are
+   *         logged.
+   * @see HCSettings#getConsistencyIssueHandler(IHCConversionSettingsToNode)
+   */
+  @Nullable
+  public IHCConsistencyIssueHandler getConsistencyIssueHandler ()
+  {
+    return m_aConsistencyIssueHandler;
+  }
+
+  @Nonnull
+  HCConversionSettings setConsistencyCheckPerformed ()
+  {
+    m_bConsistencyCheckPerformed = true;
+    return this;
+  }
+
+  boolean isConsistencyCheckPerformed ()
+  {
+    return m_bConsistencyCheckPerformed;
+  }
+
   /**
    * Enable or disable the extraction of out-of-band nodes.
    *
@@ -270,6 +321,65 @@ public class HCConversionSettings implements IHCConversionSettings
     return m_aCustomizer;
   }
 
+  /**
+   * Set the render listener to be informed about the different conversion
+   * phases, e.g. for performance monitoring.
+   *
+   * @param aRenderListener
+   *        The render listener to be used. May be <code>null</code> to disable
+   *        all render events.
+   * @return this
+   * @see HCRenderMetrics
+   */
+  @Nonnull
+  public HCConversionSettings setRenderListener (@Nullable final IHCRenderListener aRenderListener)
+  {
+    m_aRenderListener = aRenderListener;
+    return this;
+  }
+
+  /**
+   * @return The render listener to be informed about the different conversion
+   *         phases. May be <code>null</code>, which is the default, in which
+   *         case no events are created at all.
+   * @see HCSettings#getRenderListener(IHCConversionSettingsToNode)
+   */
+  @Nullable
+  public IHCRenderListener getRenderListener ()
+  {
+    return m_aRenderListener;
+  }
+
+  /**
+   * Set the executor to be used to convert the children of
+   * {@link com.phloc.html.hc.impl.HCParallelNodeList} objects in parallel. The
+   * executor is not shut down by this class.
+   *
+   * @param aParallelConversionExecutor
+   *        The executor to be used. May be <code>null</code> to convert all
+   *        nodes sequentially.
+   * @return this
+   */
+  @Nonnull
+  public HCConversionSettings setParallelConversionExecutor (@Nullable final Executor aParallelConversionExecutor)
+  {
+    m_aParallelConversionExecutor = aParallelConversionExecutor;
+    return this;
+  }
+
+  /**
+   * @return The executor to be used to convert the children of
+   *         {@link com.phloc.html.hc.impl.HCParallelNodeList} objects in
+   *         parallel. May be <code>null</code>, which is the default, in which
+   *         case all nodes are converted sequentially.
+   * @see HCSettings#getParallelConversionExecutor(IHCConversionSettingsToNode)
+   */
+  @Nullable
+  public Executor getParallelConversionExecutor ()
+  {
+    return m_aParallelConversionExecutor;
+  }
+
   @Nonnull
   public HCConversionSettings getClone ()
   {
@@ -288,6 +398,19 @@ public class HCConversionSettings implements IHCConversionSettings
     return m_eHTMLVersion.equals (eHTMLVersion) ? this : getClone (eHTMLVersion);
   }
 
+  /**
+   * Get an immutable version of this settings object that can safely be shared
+   * between threads. Later modifications of this object are not reflected in
+   * the returned object.
+   *
+   * @return A new frozen object. Never <code>null</code>.
+   */
+  @Nonnull
+  public HCFrozenConversionSettings getFrozen ()
+  {
+    return new HCFrozenConversionSettings (this);
+  }
+
   @Override
   public String toString ()
   {
@@ -297,6 +420,9 @@ public class HCConversionSettings implements IHCConversionSettings
                                        .append ("consistencyChecksEnabled", m_bConsistencyChecksEnabled)
                                        .append ("extractOutOfBandNodes", m_bExtractOutOfBandNodes)
                                        .append ("customizer", m_aCustomizer)
+                                       .appendIfNotNull ("renderListener", m_aRenderListener)
+                                       .appendIfNotNull ("parallelConversionExecutor", m_aParallelConversionExecutor)
+                                       .appendIfNotNull ("consistencyIssueHandler", m_aConsistencyIssueHandler)
                                        .toString ();
   }
 }
@@ -17,11 +17,15 @@
  */
 package com.phloc.html.hc.conversion;
 
+import java.util.concurrent.Executor;
+
 import javax.annotation.Nonnull;
-import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
 
 import com.phloc.commons.ValueEnforcer;
 import com.phloc.commons.annotations.OverrideOnDemand;
+import com.phloc.commons.annotations.ReturnsMutableCopy;
 import com.phloc.commons.xml.serialize.EXMLSerializeIndent;
 import com.phloc.commons.xml.serialize.IXMLWriterSettings;
 import com.phloc.css.writer.CSSWriterSettings;
@@ -30,26 +34,48 @@ import com.phloc.html.hc.customize.IHCCustomizer;
 
 /**
  * Default implementation of {@link IHCConversionSettingsProvider} using a
- * provided {@link EHTMLVersion}.
+ * provided {@link EHTMLVersion}.<br>
+ * Reading the conversion settings is lock-free: the settings are stored in an
+ * immutable snapshot that is replaced as a whole (copy-on-write) whenever one
+ * of the setters is invoked. The settings returned by
+ * {@link #getFrozenConversionSettings(boolean)} are
+ * {@link HCFrozenConversionSettings} objects and can therefore be shared
+ * between threads without copying.
  *
  * @author Philip Helger
  */
-@NotThreadSafe
+@ThreadSafe
 public class HCConversionSettingsProvider implements IHCConversionSettingsProvider
 {
-  private final HCConversionSettings m_aCSPrettyPrint;
-  private HCConversionSettings m_aCSOptimized;
+  /**
+   * The snapshot of the current settings. The optimized settings are created
+   * lazily, because they are derived using an overridable method.
+   *
+   * @author Philip Helger
+   */
+  private static final class Snapshot
+  {
+    private final HCFrozenConversionSettings m_aCSPrettyPrint;
+    private volatile HCFrozenConversionSettings m_aCSOptimized;
+
+    Snapshot (@Nonnull final HCFrozenConversionSettings aCSPrettyPrint)
+    {
+      m_aCSPrettyPrint = aCSPrettyPrint;
+    }
+  }
+
+  private volatile Snapshot m_aSnapshot;
 
   public HCConversionSettingsProvider (@Nonnull final EHTMLVersion eHTMLVersion)
   {
     ValueEnforcer.notNull (eHTMLVersion, "HTMLVersion");
-    m_aCSPrettyPrint = new HCConversionSettings (eHTMLVersion);
+    m_aSnapshot = new Snapshot (new HCConversionSettings (eHTMLVersion).getFrozen ());
   }
 
   @Nonnull
   public EHTMLVersion getHTMLVersion ()
   {
-    return m_aCSPrettyPrint.getHTMLVersion ();
+    return m_aSnapshot.m_aCSPrettyPrint.getHTMLVersion ();
   }
 
   /**
@@ -66,67 +92,155 @@ public class HCConversionSettingsProvider implements IHCConversionSettingsProvid
   }
 
   @Nonnull
-  private HCConversionSettings _getOrCreateOptimized ()
+  private HCFrozenConversionSettings _getOrCreateOptimized (@Nonnull final Snapshot aSnapshot)
   {
-    if (m_aCSOptimized == null)
+    HCFrozenConversionSettings ret = aSnapshot.m_aCSOptimized;
+    if (ret == null)
     {
-      // Lazily create optimized version
-      m_aCSOptimized = m_aCSPrettyPrint.getClone ();
-      // Modify settings
-      modifyOptimizedConversionSettings (m_aCSOptimized);
+      // Ensure the optimized version is created only once per snapshot
+      synchronized (aSnapshot)
+      {
+        ret = aSnapshot.m_aCSOptimized;
+        if (ret == null)
+        {
+          // Lazily create optimized version
+          final HCConversionSettings aCSOptimized = aSnapshot.m_aCSPrettyPrint.getClone ();
+          // Modify settings
+          modifyOptimizedConversionSettings (aCSOptimized);
+          ret = aCSOptimized.getFrozen ();
+          aSnapshot.m_aCSOptimized = ret;
+        }
+      }
     }
-    return m_aCSOptimized;
+    return ret;
   }
 
+  /**
+   * Get the shared immutable conversion settings using default pretty print
+   * mode.
+   *
+   * @return The non-<code>null</code> conversion settings object.
+   */
   @Nonnull
+  public HCFrozenConversionSettings getFrozenConversionSettings ()
+  {
+    return getFrozenConversionSettings (HCSettings.isDefaultPrettyPrint ());
+  }
+
+  /**
+   * Get the shared immutable conversion settings. This is the version that
+   * should be used for rendering, as no object is created.
+   *
+   * @param bPrettyPrint
+   *        Should the output be indented and aligned (pretty printed)?
+   * @return The non-<code>null</code> conversion settings object.
+   */
+  @Nonnull
+  public HCFrozenConversionSettings getFrozenConversionSettings (final boolean bPrettyPrint)
+  {
+    final Snapshot aSnapshot = m_aSnapshot;
+    return bPrettyPrint ? aSnapshot.m_aCSPrettyPrint : _getOrCreateOptimized (aSnapshot);
+  }
+
+  /**
+   * Get a copy of the conversion settings using default pretty print mode.
+   * Modifying the returned object has no effect on this provider - use the
+   * setters of this class instead.
+   *
+   * @return A new mutable conversion settings object.
+   * @see #getFrozenConversionSettings()
+   */
+  @Nonnull
+  @ReturnsMutableCopy
   public HCConversionSettings getConversionSettings ()
   {
-    return getConversionSettings (HCSettings.isDefaultPrettyPrint ());
+    return getFrozenConversionSettings ().getClone ();
   }
 
+  /**
+   * Get a copy of the conversion settings. Modifying the returned object has no
+   * effect on this provider - use the setters of this class instead.
+   *
+   * @param bPrettyPrint
+   *        Should the output be indented and aligned (pretty printed)?
+   * @return A new mutable conversion settings object.
+   * @see #getFrozenConversionSettings(boolean)
+   */
   @Nonnull
+  @ReturnsMutableCopy
   public HCConversionSettings getConversionSettings (final boolean bPrettyPrint)
   {
-    return bPrettyPrint ? m_aCSPrettyPrint : _getOrCreateOptimized ();
+    return getFrozenConversionSettings (bPrettyPrint).getClone ();
+  }
+
+  /**
+   * @return A new copy of the current pretty print settings that can be
+   *         modified and published with {@link #_publish(HCConversionSettings)}
+   */
+  @Nonnull
+  private HCConversionSettings _getCopyForModification ()
+  {
+    return m_aSnapshot.m_aCSPrettyPrint.getClone ();
+  }
+
+  private void _publish (@Nonnull final HCConversionSettings aCSPrettyPrint)
+  {
+    m_aSnapshot = new Snapshot (aCSPrettyPrint.getFrozen ());
+  }
+
+  @Nonnull
+  public synchronized HCConversionSettingsProvider setXMLWriterSettings (@Nonnull final IXMLWriterSettings aXMLWriterSettings)
+  {
+    _publish (_getCopyForModification ().setXMLWriterSettings (aXMLWriterSettings));
+    return this;
+  }
+
+  @Nonnull
+  public synchronized HCConversionSettingsProvider setCSSWriterSettings (@Nonnull final CSSWriterSettings aCSSWriterSettings)
+  {
+    _publish (_getCopyForModification ().setCSSWriterSettings (aCSSWriterSettings));
+    return this;
+  }
+
+  @Nonnull
+  public synchronized HCConversionSettingsProvider setConsistencyChecksEnabled (final boolean bConsistencyChecksEnabled)
+  {
+    _publish (_getCopyForModification ().setConsistencyChecksEnabled (bConsistencyChecksEnabled));
+    return this;
   }
 
   @Nonnull
-  public HCConversionSettingsProvider setXMLWriterSettings (@Nonnull final IXMLWriterSettings aXMLWriterSettings)
+  public synchronized HCConversionSettingsProvider setExtractOutOfBandNodes (final boolean bExtractOutOfBandNodes)
   {
-    m_aCSPrettyPrint.setXMLWriterSettings (aXMLWriterSettings);
-    m_aCSOptimized = null;
+    _publish (_getCopyForModification ().setExtractOutOfBandNodes (bExtractOutOfBandNodes));
     return this;
   }
 
   @Nonnull
-  public HCConversionSettingsProvider setCSSWriterSettings (@Nonnull final CSSWriterSettings aCSSWriterSettings)
+  public synchronized HCConversionSettingsProvider setCustomizer (@Nonnull final IHCCustomizer aCustomizer)
   {
-    m_aCSPrettyPrint.setCSSWriterSettings (aCSSWriterSettings);
-    m_aCSOptimized = null;
+    _publish (_getCopyForModification ().setCustomizer (aCustomizer));
     return this;
   }
 
   @Nonnull
-  public HCConversionSettingsProvider setConsistencyChecksEnabled (final boolean bConsistencyChecksEnabled)
+  public synchronized HCConversionSettingsProvider setConsistencyIssueHandler (@Nullable final IHCConsistencyIssueHandler aConsistencyIssueHandler)
   {
-    m_aCSPrettyPrint.setConsistencyChecksEnabled (bConsistencyChecksEnabled);
-    m_aCSOptimized = null;
+    _publish (_getCopyForModification ().setConsistencyIssueHandler (aConsistencyIssueHandler));
     return this;
   }
 
   @Nonnull
-  public HCConversionSettingsProvider setExtractOutOfBandNodes (final boolean bExtractOutOfBandNodes)
+  public synchronized HCConversionSettingsProvider setRenderListener (@Nullable final IHCRenderListener aRenderListener)
   {
-    m_aCSPrettyPrint.setExtractOutOfBandNodes (bExtractOutOfBandNodes);
-    m_aCSOptimized = null;
+    _publish (_getCopyForModification ().setRenderListener (aRenderListener));
     return this;
   }
 
   @Nonnull
-  public HCConversionSettingsProvider setCustomizer (@Nonnull final IHCCustomizer aCustomizer)
+  public synchronized HCConversionSettingsProvider setParallelConversionExecutor (@Nullable final Executor aParallelConversionExecutor)
   {
-    m_aCSPrettyPrint.setCustomizer (aCustomizer);
-    m_aCSOptimized = null;
+    _publish (_getCopyForModification ().setParallelConversionExecutor (aParallelConversionExecutor));
     return this;
   }
 }
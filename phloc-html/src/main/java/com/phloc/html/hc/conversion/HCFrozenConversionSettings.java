@@ -0,0 +1,292 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.annotations.ReturnsMutableCopy;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.commons.xml.serialize.IXMLWriterSettings;
+import com.phloc.commons.xml.serialize.XMLWriterSettings;
+import com.phloc.css.ICSSWriterSettings;
+import com.phloc.css.writer.CSSWriterSettings;
+import com.phloc.html.EHTMLVersion;
+import com.phloc.html.hc.customize.IHCCustomizer;
+
+/**
+ * An immutable version of {@link HCConversionSettings} that can safely be
+ * shared between threads. The XML and CSS writer settings are copied upon
+ * construction and are only exposed via their read-only interfaces. All values
+ * that are derived from the settings are computed only once.<br>
+ * The objects returned by {@link #getWithoutNamespaces()} and
+ * {@link #getCloneIfNecessary(EHTMLVersion)} are cached, so that they can be
+ * used for every request without creating new objects.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class HCFrozenConversionSettings implements IHCConversionSettings
+{
+  private final EHTMLVersion m_eHTMLVersion;
+  private final String m_sHTMLNamespaceURI;
+  private final XMLWriterSettings m_aXMLWriterSettings;
+  private final CSSWriterSettings m_aCSSWriterSettings;
+  private final boolean m_bConsistencyChecksEnabled;
+  private final boolean m_bExtractOutOfBandNodes;
+  private final IHCCustomizer m_aCustomizer;
+  private final IHCRenderListener m_aRenderListener;
+  private final Executor m_aParallelConversionExecutor;
+  private final IHCConsistencyIssueHandler m_aConsistencyIssueHandler;
+  private final boolean m_bConsistencyCheckPerformed;
+  // Lazily created. As this object is immutable, creating it more than once
+  // in case of a race does no harm.
+  private volatile HCFrozenConversionSettings m_aWithoutNamespaces;
+  // The variants for other HTML versions, indexed by the ordinal
+  private final AtomicReferenceArray <HCFrozenConversionSettings> m_aOtherVersions;
+  // The variant used inside a conversion, whose consistency checks were
+  // already run for an enclosing node
+  private volatile HCFrozenConversionSettings m_aWithConsistencyCheckPerformed;
+
+  /**
+   * Constructor
+   *
+   * @param aBase
+   *        Object to copy the settings from. May not be <code>null</code>.
+   */
+  public HCFrozenConversionSettings (@Nonnull final IHCConversionSettings aBase)
+  {
+    this (aBase, HCConsistencyChecker.isConsistencyCheckPerformed (aBase));
+  }
+
+  private HCFrozenConversionSettings (@Nonnull final IHCConversionSettings aBase,
+                                      final boolean bConsistencyCheckPerformed)
+  {
+    ValueEnforcer.notNull (aBase, "Base");
+
+    m_eHTMLVersion = aBase.getHTMLVersion ();
+    m_sHTMLNamespaceURI = m_eHTMLVersion.getNamespaceURI ();
+    m_aXMLWriterSettings = new XMLWriterSettings (aBase.getXMLWriterSettings ());
+    m_aCSSWriterSettings = new CSSWriterSettings (aBase.getCSSWriterSettings ());
+    m_bConsistencyChecksEnabled = aBase.areConsistencyChecksEnabled ();
+    m_bExtractOutOfBandNodes = aBase.isExtractOutOfBandNodes ();
+    m_aCustomizer = aBase.getCustomizer ();
+    m_aRenderListener = HCSettings.getRenderListener (aBase);
+    m_aParallelConversionExecutor = HCSettings.getParallelConversionExecutor (aBase);
+    m_aConsistencyIssueHandler = HCSettings.getConsistencyIssueHandler (aBase);
+    m_bConsistencyCheckPerformed = bConsistencyCheckPerformed;
+    m_aOtherVersions = new AtomicReferenceArray <HCFrozenConversionSettings> (EHTMLVersion.values ().length);
+  }
+
+  @Nonnull
+  public EHTMLVersion getHTMLVersion ()
+  {
+    return m_eHTMLVersion;
+  }
+
+  @Nullable
+  public String getHTMLNamespaceURI ()
+  {
+    return m_sHTMLNamespaceURI;
+  }
+
+  @Nonnull
+  public IXMLWriterSettings getXMLWriterSettings ()
+  {
+    return m_aXMLWriterSettings;
+  }
+
+  @Nonnull
+  @ReturnsMutableCopy
+  public XMLWriterSettings getMutableXMLWriterSettings ()
+  {
+    return m_aXMLWriterSettings.getClone ();
+  }
+
+  @Nonnull
+  public ICSSWriterSettings getCSSWriterSettings ()
+  {
+    return m_aCSSWriterSettings;
+  }
+
+  @Nonnull
+  @ReturnsMutableCopy
+  public CSSWriterSettings getMutableCSSWriterSettings ()
+  {
+    return new CSSWriterSettings (m_aCSSWriterSettings);
+  }
+
+  public boolean areConsistencyChecksEnabled ()
+  {
+    return m_bConsistencyChecksEnabled;
+  }
+
+  public boolean isExtractOutOfBandNodes ()
+  {
+    return m_bExtractOutOfBandNodes;
+  }
+
+  @Nonnull
+  public IHCCustomizer getCustomizer ()
+  {
+    return m_aCustomizer;
+  }
+
+  /**
+   * @return The render listener to be informed about the different conversion
+   *         phases. May be <code>null</code>.
+   * @see HCSettings#getRenderListener(IHCConversionSettingsToNode)
+   */
+  @Nullable
+  public IHCRenderListener getRenderListener ()
+  {
+    return m_aRenderListener;
+  }
+
+  /**
+   * @return The executor to be used to convert the children of
+   *         {@link com.phloc.html.hc.impl.HCParallelNodeList} objects in
+   *         parallel. May be <code>null</code>.
+   * @see HCSettings#getParallelConversionExecutor(IHCConversionSettingsToNode)
+   */
+  @Nullable
+  public Executor getParallelConversionExecutor ()
+  {
+    return m_aParallelConversionExecutor;
+  }
+
+  /**
+   * @return The handler that receives the issues found by the consistency
+   *         checks. May be <code>null</code>.
+   * @see HCSettings#getConsistencyIssueHandler(IHCConversionSettingsToNode)
+   */
+  @Nullable
+  public IHCConsistencyIssueHandler getConsistencyIssueHandler ()
+  {
+    return m_aConsistencyIssueHandler;
+  }
+
+  boolean isConsistencyCheckPerformed ()
+  {
+    return m_bConsistencyCheckPerformed;
+  }
+
+  @Nonnull
+  HCFrozenConversionSettings getWithConsistencyCheckPerformed ()
+  {
+    if (m_bConsistencyCheckPerformed)
+      return this;
+
+    HCFrozenConversionSettings ret = m_aWithConsistencyCheckPerformed;
+    if (ret == null)
+    {
+      ret = new HCFrozenConversionSettings (this, true);
+      m_aWithConsistencyCheckPerformed = ret;
+    }
+    return ret;
+  }
+
+  /**
+   * @return A mutable copy of this settings.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public HCConversionSettings getClone ()
+  {
+    return new HCConversionSettings (this);
+  }
+
+  /**
+   * @return A mutable copy of this settings using the passed HTML version.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public HCConversionSettings getClone (@Nonnull final EHTMLVersion eHTMLVersion)
+  {
+    return new HCConversionSettings (this, eHTMLVersion);
+  }
+
+  /**
+   * Get the frozen settings for the passed HTML version. The variants for other
+   * HTML versions are created only once.
+   *
+   * @param eHTMLVersion
+   *        The HTML version to use. May not be <code>null</code>.
+   * @return this, if the HTML version is identical, the cached frozen variant
+   *         for the passed HTML version otherwise.
+   */
+  @Nonnull
+  public HCFrozenConversionSettings getCloneIfNecessary (@Nonnull final EHTMLVersion eHTMLVersion)
+  {
+    if (m_eHTMLVersion.equals (eHTMLVersion))
+      return this;
+
+    final int nIndex = eHTMLVersion.ordinal ();
+    HCFrozenConversionSettings ret = m_aOtherVersions.get (nIndex);
+    if (ret == null)
+    {
+      ret = new HCFrozenConversionSettings (getClone (eHTMLVersion));
+      m_aOtherVersions.set (nIndex, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * Get settings that are equal to this settings, except that no XML
+   * namespaces are emitted. The result is cached.
+   *
+   * @return Never <code>null</code>. If namespaces are already disabled, this
+   *         is returned.
+   */
+  @Nonnull
+  public HCFrozenConversionSettings getWithoutNamespaces ()
+  {
+    if (!m_aXMLWriterSettings.isEmitNamespaces ())
+      return this;
+
+    HCFrozenConversionSettings ret = m_aWithoutNamespaces;
+    if (ret == null)
+    {
+      final HCConversionSettings aCS = getClone ();
+      aCS.getXMLWriterSettings ().setEmitNamespaces (false);
+      ret = new HCFrozenConversionSettings (aCS);
+      m_aWithoutNamespaces = ret;
+    }
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("htmlVersion", m_eHTMLVersion)
+                                       .append ("XMLWriterSettings", m_aXMLWriterSettings)
+                                       .append ("CSSWriterSettings", m_aCSSWriterSettings)
+                                       .append ("consistencyChecksEnabled", m_bConsistencyChecksEnabled)
+                                       .append ("extractOutOfBandNodes", m_bExtractOutOfBandNodes)
+                                       .append ("customizer", m_aCustomizer)
+                                       .appendIfNotNull ("renderListener", m_aRenderListener)
+                                       .appendIfNotNull ("parallelConversionExecutor", m_aParallelConversionExecutor)
+                                       .appendIfNotNull ("consistencyIssueHandler", m_aConsistencyIssueHandler)
+                                       .toString ();
+  }
+}
@@ -0,0 +1,635 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.charset.CCharset;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.CHTMLAttributes;
+import com.phloc.html.EHTMLElement;
+
+/**
+ * A {@link Writer} that encodes directly into an {@link OutputStream} using a
+ * pooled byte buffer, so that no intermediate String and no char to byte copy
+ * of the whole document is needed. ASCII characters are written without
+ * calling a {@link CharsetEncoder}, UTF-8 is encoded manually and only non
+ * ASCII characters of other charsets are passed to an encoder. Consecutive non
+ * ASCII characters are collected and encoded together with a reusable char
+ * buffer directly into the byte buffer. The tags of all
+ * {@link EHTMLElement}s and the names of all {@link CHTMLAttributes} are
+ * available as pre-encoded byte arrays.<br>
+ * Because the pre-encoded tokens are ASCII bytes and the encoder is only used
+ * for parts of the text, only UTF-8 and stateless single byte charsets are
+ * supported (see {@link #isSupportedCharset(Charset)}). The encoder is
+ * finished at the end of every write operation.
+ * 
+ * @author Philip Helger
+ */
+@NotThreadSafe
+final class HCHTMLByteWriter extends Writer
+{
+  /** The size of the pooled byte buffer */
+  public static final int BUFFER_SIZE = 8 * 1024;
+
+  /** The number of non ASCII chars that are encoded together */
+  private static final int ENCODE_CHARS = 256;
+
+  private static final ThreadLocal <byte []> s_aBufferPool = new ThreadLocal <byte []> ();
+  private static final Map <Charset, Boolean> s_aSupportedCharsets = new ConcurrentHashMap <Charset, Boolean> ();
+  private static final byte [][] s_aStartTags;
+  private static final byte [][] s_aEndTags;
+  private static final Map <String, byte []> s_aAttrNames;
+
+  static
+  {
+    final EHTMLElement [] aElements = EHTMLElement.values ();
+    s_aStartTags = new byte [aElements.length] [];
+    s_aEndTags = new byte [aElements.length] [];
+    for (final EHTMLElement eElement : aElements)
+    {
+      s_aStartTags[eElement.ordinal ()] = _getASCIIBytes ("<" + eElement.getElementName ());
+      s_aEndTags[eElement.ordinal ()] = _getASCIIBytes ("</" + eElement.getElementName () + ">");
+    }
+
+    final Map <String, byte []> aAttrNames = new HashMap <String, byte []> ();
+    for (final String sAttrName : CHTMLAttributes.getAllAttributeNames ())
+      aAttrNames.put (sAttrName, _getASCIIBytes (" " + sAttrName + "=\""));
+    s_aAttrNames = aAttrNames;
+  }
+
+  private final OutputStream m_aOS;
+  private final Charset m_aCharset;
+  private final boolean m_bUTF8;
+  private CharsetEncoder m_aEncoder;
+  private CharBuffer m_aEncodeIn;
+  private ByteBuffer m_aEncodeOut;
+  private byte [] m_aBuffer;
+  private int m_nPos = 0;
+  private long m_nFlushedBytes = 0;
+  private long m_nWrittenChars = 0;
+  private char m_cPendingHighSurrogate = 0;
+  // true if a high surrogate or chars to be encoded are pending
+  private boolean m_bPending = false;
+
+  /**
+   * Constructor
+   * 
+   * @param aOS
+   *        The output stream to write to. May not be <code>null</code>. The
+   *        stream is only closed if {@link #close()} is called.
+   * @param aCharset
+   *        The charset to be used. May not be <code>null</code> and must be a
+   *        supported charset.
+   */
+  public HCHTMLByteWriter (@Nonnull @WillNotClose final OutputStream aOS, @Nonnull final Charset aCharset)
+  {
+    ValueEnforcer.notNull (aOS, "OutputStream");
+    ValueEnforcer.notNull (aCharset, "Charset");
+    if (!isSupportedCharset (aCharset))
+      throw new IllegalArgumentException ("The charset " + aCharset + " is not supported");
+
+    m_aOS = aOS;
+    m_aCharset = aCharset;
+    m_bUTF8 = aCharset.equals (CCharset.CHARSET_UTF_8_OBJ);
+    m_aBuffer = s_aBufferPool.get ();
+    if (m_aBuffer == null)
+      m_aBuffer = new byte [BUFFER_SIZE];
+    else
+    {
+      // Nested writers in the same thread use their own buffer
+      s_aBufferPool.remove ();
+    }
+  }
+
+  @Nonnull
+  private static byte [] _getASCIIBytes (@Nonnull final String sText)
+  {
+    final byte [] ret = new byte [sText.length ()];
+    for (int i = 0; i < ret.length; ++i)
+      ret[i] = (byte) sText.charAt (i);
+    return ret;
+  }
+
+  /**
+   * Check if the passed charset can be used by this writer. This is the case
+   * for UTF-8 and for all single byte charsets that encode all ASCII
+   * characters as the respective byte (e.g. ISO-8859-x, windows-125x or
+   * US-ASCII). Multi byte charsets (e.g. UTF-16, Shift_JIS or the stateful
+   * ISO-2022-JP) are not supported, even if they are ASCII compatible.
+   * 
+   * @param aCharset
+   *        The charset to check. May be <code>null</code>.
+   * @return <code>true</code> if the charset is supported, <code>false</code>
+   *         otherwise.
+   */
+  public static boolean isSupportedCharset (@Nullable final Charset aCharset)
+  {
+    if (aCharset == null)
+      return false;
+
+    Boolean aSupported = s_aSupportedCharsets.get (aCharset);
+    if (aSupported == null)
+    {
+      boolean bSupported = false;
+      if (aCharset.equals (CCharset.CHARSET_UTF_8_OBJ))
+        bSupported = true;
+      else
+        if (aCharset.canEncode () && aCharset.newEncoder ().maxBytesPerChar () == 1.0f)
+        {
+          final char [] aASCII = new char [0x80];
+          for (int i = 0; i < aASCII.length; ++i)
+            aASCII[i] = (char) i;
+          final byte [] aEncoded = new String (aASCII).getBytes (aCharset);
+          bSupported = aEncoded.length == aASCII.length;
+          for (int i = 0; bSupported && i < aEncoded.length; ++i)
+            bSupported = aEncoded[i] == i;
+        }
+      aSupported = Boolean.valueOf (bSupported);
+      s_aSupportedCharsets.put (aCharset, aSupported);
+    }
+    return aSupported.booleanValue ();
+  }
+
+  private void _ensureBuffer () throws IOException
+  {
+    if (m_aBuffer == null)
+      throw new IOException ("Writer was already finished");
+  }
+
+  private void _writeBufferToStream () throws IOException
+  {
+    if (m_nPos > 0)
+    {
+      m_aOS.write (m_aBuffer, 0, m_nPos);
+      m_nFlushedBytes += m_nPos;
+      m_nPos = 0;
+    }
+  }
+
+  private void _writeByte (final int nByte) throws IOException
+  {
+    if (m_nPos == m_aBuffer.length)
+      _writeBufferToStream ();
+    m_aBuffer[m_nPos++] = (byte) nByte;
+  }
+
+  private void _writeBytes (@Nonnull final byte [] aBytes, final int nOfs, final int nLen) throws IOException
+  {
+    if (nLen > m_aBuffer.length - m_nPos)
+    {
+      _writeBufferToStream ();
+      if (nLen > m_aBuffer.length)
+      {
+        m_aOS.write (aBytes, nOfs, nLen);
+        m_nFlushedBytes += nLen;
+        return;
+      }
+    }
+    System.arraycopy (aBytes, nOfs, m_aBuffer, m_nPos, nLen);
+    m_nPos += nLen;
+  }
+
+  private void _updatePending ()
+  {
+    m_bPending = m_cPendingHighSurrogate != 0 || (m_aEncodeIn != null && m_aEncodeIn.position () > 0);
+  }
+
+  /**
+   * Handle the result of an encoder call.
+   * 
+   * @param aResult
+   *        The result of the encoder.
+   * @return <code>true</code> if the encoder is done, <code>false</code> if
+   *         it must be called again.
+   * @throws IOException
+   *         In case writing fails or the input cannot be encoded
+   */
+  private boolean _handleEncoderResult (@Nonnull final CoderResult aResult) throws IOException
+  {
+    m_nPos = m_aEncodeOut.position ();
+    if (aResult.isUnderflow ())
+      return true;
+    if (aResult.isOverflow ())
+      _writeBufferToStream ();
+    else
+      aResult.throwException ();
+    return false;
+  }
+
+  /**
+   * Encode all collected non ASCII chars into the byte buffer.
+   * 
+   * @param bEndOfInput
+   *        <code>true</code> if no more input follows in this write operation.
+   *        In this case the encoder is finished and reset afterwards.
+   * @throws IOException
+   *         In case writing fails
+   */
+  private void _encodePendingChars (final boolean bEndOfInput) throws IOException
+  {
+    final CharBuffer aIn = m_aEncodeIn;
+    if (aIn != null && (bEndOfInput || aIn.position () > 0))
+    {
+      aIn.flip ();
+      final ByteBuffer aOut = m_aEncodeOut;
+      boolean bDone;
+      do
+      {
+        aOut.limit (m_aBuffer.length);
+        aOut.position (m_nPos);
+        // Surrogates are always passed in pairs, so all chars are consumed
+        bDone = _handleEncoderResult (m_aEncoder.encode (aIn, aOut, bEndOfInput));
+      } while (!bDone);
+      aIn.clear ();
+
+      if (bEndOfInput)
+      {
+        do
+        {
+          aOut.limit (m_aBuffer.length);
+          aOut.position (m_nPos);
+          bDone = _handleEncoderResult (m_aEncoder.flush (aOut));
+        } while (!bDone);
+        m_aEncoder.reset ();
+      }
+    }
+    _updatePending ();
+  }
+
+  private void _writeASCII (final int c) throws IOException
+  {
+    if (m_bPending)
+      _encodePendingChars (false);
+    _writeByte (c);
+  }
+
+  private void _writeCodePoint (final int nCodePoint) throws IOException
+  {
+    if (m_bUTF8)
+    {
+      if (m_aBuffer.length - m_nPos < 4)
+        _writeBufferToStream ();
+      final byte [] aBuf = m_aBuffer;
+      if (nCodePoint < 0x800)
+      {
+        aBuf[m_nPos++] = (byte) (0xc0 | (nCodePoint >> 6));
+        aBuf[m_nPos++] = (byte) (0x80 | (nCodePoint & 0x3f));
+      }
+      else
+        if (nCodePoint < 0x10000)
+        {
+          aBuf[m_nPos++] = (byte) (0xe0 | (nCodePoint >> 12));
+          aBuf[m_nPos++] = (byte) (0x80 | ((nCodePoint >> 6) & 0x3f));
+          aBuf[m_nPos++] = (byte) (0x80 | (nCodePoint & 0x3f));
+        }
+        else
+        {
+          aBuf[m_nPos++] = (byte) (0xf0 | (nCodePoint >> 18));
+          aBuf[m_nPos++] = (byte) (0x80 | ((nCodePoint >> 12) & 0x3f));
+          aBuf[m_nPos++] = (byte) (0x80 | ((nCodePoint >> 6) & 0x3f));
+          aBuf[m_nPos++] = (byte) (0x80 | (nCodePoint & 0x3f));
+        }
+    }
+    else
+    {
+      if (m_aEncoder == null)
+      {
+        // Same replacement behaviour as in an OutputStreamWriter
+        m_aEncoder = m_aCharset.newEncoder ()
+                               .onMalformedInput (CodingErrorAction.REPLACE)
+                               .onUnmappableCharacter (CodingErrorAction.REPLACE);
+        m_aEncodeIn = CharBuffer.allocate (ENCODE_CHARS);
+        m_aEncodeOut = ByteBuffer.wrap (m_aBuffer);
+      }
+      if (m_aEncodeIn.remaining () < 2)
+        _encodePendingChars (false);
+      if (nCodePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT)
+        m_aEncodeIn.put ((char) nCodePoint);
+      else
+      {
+        final int nOffset = nCodePoint - Character.MIN_SUPPLEMENTARY_CODE_POINT;
+        m_aEncodeIn.put ((char) (Character.MIN_HIGH_SURROGATE + (nOffset >> 10)));
+        m_aEncodeIn.put ((char) (Character.MIN_LOW_SURROGATE + (nOffset & 0x3ff)));
+      }
+    }
+  }
+
+  private void _writeNonASCII (final char c) throws IOException
+  {
+    if (m_cPendingHighSurrogate != 0)
+    {
+      final char cHigh = m_cPendingHighSurrogate;
+      m_cPendingHighSurrogate = 0;
+      if (Character.isLowSurrogate (c))
+      {
+        _writeCodePoint (Character.toCodePoint (cHigh, c));
+        _updatePending ();
+        return;
+      }
+      // Unpaired high surrogate
+      _writeASCII ('?');
+    }
+
+    if (c < 0x80)
+      _writeASCII (c);
+    else
+      if (Character.isHighSurrogate (c))
+        m_cPendingHighSurrogate = c;
+      else
+        if (Character.isLowSurrogate (c))
+        {
+          // Unpaired low surrogate
+          _writeASCII ('?');
+        }
+        else
+          _writeCodePoint (c);
+    _updatePending ();
+  }
+
+  @Override
+  public void write (final int c) throws IOException
+  {
+    _ensureBuffer ();
+    m_nWrittenChars++;
+    final char ch = (char) c;
+    if (ch < 0x80 && !m_bPending)
+      _writeByte (ch);
+    else
+      _writeNonASCII (ch);
+  }
+
+  @Override
+  public void write (@Nonnull final char [] aBuf, final int nOfs, final int nLen) throws IOException
+  {
+    _ensureBuffer ();
+    m_nWrittenChars += nLen;
+    final int nEnd = nOfs + nLen;
+    for (int i = nOfs; i < nEnd; ++i)
+    {
+      final char c = aBuf[i];
+      if (c < 0x80 && !m_bPending)
+      {
+        if (m_nPos == m_aBuffer.length)
+          _writeBufferToStream ();
+        m_aBuffer[m_nPos++] = (byte) c;
+      }
+      else
+        _writeNonASCII (c);
+    }
+  }
+
+  @Override
+  public void write (@Nonnull final String sStr, final int nOfs, final int nLen) throws IOException
+  {
+    _writeChars (sStr, nOfs, nOfs + nLen);
+  }
+
+  private void _writeChars (@Nonnull final CharSequence aCS, final int nStart, final int nEnd) throws IOException
+  {
+    _ensureBuffer ();
+    m_nWrittenChars += nEnd - nStart;
+    for (int i = nStart; i < nEnd; ++i)
+    {
+      final char c = aCS.charAt (i);
+      if (c < 0x80 && !m_bPending)
+      {
+        if (m_nPos == m_aBuffer.length)
+          _writeBufferToStream ();
+        m_aBuffer[m_nPos++] = (byte) c;
+      }
+      else
+        _writeNonASCII (c);
+    }
+  }
+
+  @Override
+  @Nonnull
+  public HCHTMLByteWriter append (@Nullable final CharSequence aCS) throws IOException
+  {
+    // Avoid the toString call of the default implementation
+    if (aCS == null)
+      write ("null");
+    else
+      _writeChars (aCS, 0, aCS.length ());
+    return this;
+  }
+
+  @Override
+  @Nonnull
+  public HCHTMLByteWriter append (@Nullable final CharSequence aCS, final int nStart, final int nEnd) throws IOException
+  {
+    if (aCS == null)
+      return append ("null".subSequence (nStart, nEnd));
+    _writeChars (aCS, nStart, nEnd);
+    return this;
+  }
+
+  private void _writeToken (@Nonnull final byte [] aToken) throws IOException
+  {
+    if (m_bPending)
+      _encodePendingChars (false);
+    // All tokens are ASCII, so each byte is a char
+    m_nWrittenChars += aToken.length;
+    _writeBytes (aToken, 0, aToken.length);
+  }
+
+  /**
+   * Write the start of an opening tag (e.g. <code>&lt;div</code>).
+   * 
+   * @param eElement
+   *        The HTML element matching the tag name. May be <code>null</code>.
+   * @param sTagName
+   *        The tag name to write. May not be <code>null</code>.
+   * @throws IOException
+   *         In case writing fails
+   */
+  void writeStartTag (@Nullable final EHTMLElement eElement, @Nonnull final String sTagName) throws IOException
+  {
+    _ensureBuffer ();
+    if (eElement != null && eElement.getElementName ().equals (sTagName))
+    {
+      final byte [] aToken = s_aStartTags[eElement.ordinal ()];
+      _writeToken (aToken);
+    }
+    else
+    {
+      write ('<');
+      write (sTagName);
+    }
+  }
+
+  /**
+   * Write a closing tag (e.g. <code>&lt;/div&gt;</code>).
+   * 
+   * @param eElement
+   *        The HTML element matching the tag name. May be <code>null</code>.
+   * @param sTagName
+   *        The tag name to write. May not be <code>null</code>.
+   * @throws IOException
+   *         In case writing fails
+   */
+  void writeEndTag (@Nullable final EHTMLElement eElement, @Nonnull final String sTagName) throws IOException
+  {
+    _ensureBuffer ();
+    if (eElement != null && eElement.getElementName ().equals (sTagName))
+    {
+      final byte [] aToken = s_aEndTags[eElement.ordinal ()];
+      _writeToken (aToken);
+    }
+    else
+    {
+      write ("</");
+      write (sTagName);
+      write ('>');
+    }
+  }
+
+  /**
+   * Write the start of an attribute including the leading space and the
+   * opening quote (e.g. <code> class="</code>).
+   * 
+   * @param sAttrName
+   *        The attribute name. May not be <code>null</code>.
+   * @throws IOException
+   *         In case writing fails
+   */
+  void writeAttributeStart (@Nonnull final String sAttrName) throws IOException
+  {
+    _ensureBuffer ();
+    final byte [] aToken = s_aAttrNames.get (sAttrName);
+    if (aToken != null)
+      _writeToken (aToken);
+    else
+    {
+      write (' ');
+      write (sAttrName);
+      write ("=\"");
+    }
+  }
+
+  /**
+   * @return The number of bytes written so far, including the bytes that are
+   *         still buffered.
+   */
+  @Nonnegative
+  public long getWrittenByteCount ()
+  {
+    return m_nFlushedBytes + m_nPos;
+  }
+
+  /**
+   * @return The number of chars written so far. This is the number of chars
+   *         that were passed to this writer, independent of the number of bytes
+   *         they are encoded to.
+   */
+  @Nonnegative
+  public long getWrittenCharCount ()
+  {
+    return m_nWrittenChars;
+  }
+
+  /**
+   * Finish the current write operation: encode all pending chars, finish and
+   * reset the encoder and pass all buffered bytes to the output stream without
+   * flushing the output stream.
+   * 
+   * @throws IOException
+   *         In case writing fails
+   */
+  void writeBufferedBytes () throws IOException
+  {
+    _ensureBuffer ();
+    if (m_cPendingHighSurrogate != 0)
+    {
+      // Unpaired high surrogate at the end
+      m_cPendingHighSurrogate = 0;
+      _writeASCII ('?');
+    }
+    _encodePendingChars (true);
+    _writeBufferToStream ();
+  }
+
+  /**
+   * Return the byte buffer to the pool of the current thread. The writer may
+   * not be used afterwards. Calling this method more than once has no effect.
+   */
+  void releaseBuffer ()
+  {
+    if (m_aBuffer != null)
+    {
+      s_aBufferPool.set (m_aBuffer);
+      m_aBuffer = null;
+    }
+  }
+
+  @Override
+  public void flush () throws IOException
+  {
+    if (m_aBuffer != null)
+    {
+      _encodePendingChars (false);
+      _writeBufferToStream ();
+    }
+    m_aOS.flush ();
+  }
+
+  @Override
+  public void close () throws IOException
+  {
+    if (m_aBuffer != null)
+    {
+      try
+      {
+        writeBufferedBytes ();
+      }
+      finally
+      {
+        releaseBuffer ();
+      }
+    }
+    m_aOS.close ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("charset", m_aCharset)
+                                       .append ("writtenBytes", getWrittenByteCount ())
+                                       .append ("writtenChars", m_nWrittenChars)
+                                       .toString ();
+  }
+}
@@ -0,0 +1,691 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.phloc.commons.CGlobal;
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.microdom.EMicroNodeType;
+import com.phloc.commons.microdom.IMicroCDATA;
+import com.phloc.commons.microdom.IMicroComment;
+import com.phloc.commons.microdom.IMicroDocumentType;
+import com.phloc.commons.microdom.IMicroElement;
+import com.phloc.commons.microdom.IMicroEntityReference;
+import com.phloc.commons.microdom.IMicroNode;
+import com.phloc.commons.microdom.IMicroProcessingInstruction;
+import com.phloc.commons.microdom.IMicroText;
+import com.phloc.commons.string.StringHelper;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.commons.xml.CXML;
+import com.phloc.commons.xml.EXMLIncorrectCharacterHandling;
+import com.phloc.commons.xml.serialize.EXMLSerializeFormat;
+import com.phloc.commons.xml.serialize.EXMLSerializeVersion;
+import com.phloc.commons.xml.serialize.IXMLWriterSettings;
+import com.phloc.commons.xml.serialize.XMLEmitterPhloc;
+import com.phloc.commons.xml.serialize.XMLMaskHelper;
+import com.phloc.html.EHTMLElement;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.impl.AbstractHCNode;
+import com.phloc.html.hc.impl.HCConditionalCommentNode;
+import com.phloc.html.hc.impl.HCFlushPoint;
+import com.phloc.html.hc.impl.HCMicroNodePlaceholder;
+
+/**
+ * A streaming HTML serializer for HC nodes. In contrast to the default way of
+ * first converting the whole HC tree to a micro node tree and serializing this
+ * tree to a String afterwards, this class converts each HC node only shallowly
+ * (see
+ * {@link AbstractHCNode#convertToShallowNode(IHCConversionSettingsToNode)})
+ * right before it is written and writes the result directly to a
+ * {@link Writer}. So at no point in time the micro node tree of the whole
+ * document is present in memory.<br>
+ * The formatting rules of the {@link IXMLWriterSettings} contained in the
+ * conversion settings are honoured (format, indentation, namespace emitting and
+ * incorrect character handling). The charset of the XML writer settings is
+ * only used for the XML declaration, because the encoding is up to the passed
+ * {@link Writer}. When writing to an {@link OutputStream} the charset of the
+ * XML writer settings is used to encode the output directly into a pooled byte
+ * buffer, using pre-encoded tokens for all known element and attribute names.<br>
+ * Whenever a {@link HCFlushPoint} is encountered, the writer is flushed. This
+ * can be used for progressive rendering (see
+ * {@link com.phloc.html.hc.html.HCHtml#setProgressiveRendering(boolean)}).
+ * For {@link HCConditionalCommentNode} objects the comment markers are written
+ * directly around the wrapped node, so that the wrapped content is serialized
+ * only once.
+ * 
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public final class HCHTMLSerializer
+{
+  /**
+   * A writer that counts the written characters. Only used if a render
+   * listener is present.
+   *
+   * @author Philip Helger
+   */
+  private static final class CountingWriter extends FilterWriter
+  {
+    private long m_nChars = 0;
+
+    CountingWriter (@Nonnull final Writer aWriter)
+    {
+      super (aWriter);
+    }
+
+    @Override
+    public void write (final int c) throws IOException
+    {
+      out.write (c);
+      m_nChars++;
+    }
+
+    @Override
+    public void write (final char [] aBuf, final int nOfs, final int nLen) throws IOException
+    {
+      out.write (aBuf, nOfs, nLen);
+      m_nChars += nLen;
+    }
+
+    @Override
+    public void write (final String sStr, final int nOfs, final int nLen) throws IOException
+    {
+      out.write (sStr, nOfs, nLen);
+      m_nChars += nLen;
+    }
+  }
+
+  /**
+   * An output stream that counts the written bytes. Only used if a render
+   * listener is present and the output is not written via a
+   * {@link HCHTMLByteWriter}.
+   *
+   * @author Philip Helger
+   */
+  private static final class CountingOutputStream extends FilterOutputStream
+  {
+    private long m_nBytes = 0;
+
+    CountingOutputStream (@Nonnull final OutputStream aOS)
+    {
+      super (aOS);
+    }
+
+    @Override
+    public void write (final int b) throws IOException
+    {
+      out.write (b);
+      m_nBytes++;
+    }
+
+    @Override
+    public void write (final byte [] aBuf, final int nOfs, final int nLen) throws IOException
+    {
+      out.write (aBuf, nOfs, nLen);
+      m_nBytes += nLen;
+    }
+  }
+
+  private final IHCConversionSettings m_aConversionSettings;
+  private final IXMLWriterSettings m_aXWS;
+  private final boolean m_bHTMLFormat;
+  private final boolean m_bIndent;
+  private final boolean m_bAlign;
+  private final boolean m_bEmitNamespaces;
+  private final String m_sIndentation;
+  private final String m_sNewline;
+  private final EXMLIncorrectCharacterHandling m_eIncorrectCharHandling;
+  private final StringBuilder m_aIndent = new StringBuilder ();
+  private Writer m_aWriter;
+  private HCHTMLByteWriter m_aByteWriter;
+  // The settings used to convert the nodes of the current write operation
+  private IHCConversionSettingsToNode m_aNodeConversionSettings;
+
+  /**
+   * Constructor
+   * 
+   * @param aConversionSettings
+   *        The conversion settings to be used. May not be <code>null</code>.
+   */
+  public HCHTMLSerializer (@Nonnull final IHCConversionSettings aConversionSettings)
+  {
+    m_aConversionSettings = ValueEnforcer.notNull (aConversionSettings, "ConversionSettings");
+    m_aXWS = aConversionSettings.getXMLWriterSettings ();
+    m_bHTMLFormat = m_aXWS.getFormat () == EXMLSerializeFormat.XHTML;
+    m_bIndent = m_aXWS.getIndent ().isIndent ();
+    m_bAlign = m_aXWS.getIndent ().isAlign ();
+    m_bEmitNamespaces = m_aXWS.isEmitNamespaces ();
+    m_sIndentation = m_aXWS.getIndentationString ();
+    m_sNewline = m_aXWS.getNewlineString ();
+    m_eIncorrectCharHandling = m_aXWS.getIncorrectCharacterHandling ();
+  }
+
+  /**
+   * @return The conversion settings used. Never <code>null</code>.
+   */
+  @Nonnull
+  public IHCConversionSettings getConversionSettings ()
+  {
+    return m_aConversionSettings;
+  }
+
+  @Nullable
+  private IMicroNode _convertShallow (@Nonnull final IHCNode aHCNode)
+  {
+    if (aHCNode instanceof AbstractHCNode)
+      return ((AbstractHCNode) aHCNode).convertToShallowNode (m_aNodeConversionSettings);
+    return aHCNode.convertToNode (m_aNodeConversionSettings);
+  }
+
+  /**
+   * Resolve all placeholders and containers of the passed node, so that the
+   * target list contains the same nodes, as if the node would have been
+   * appended to a micro element.
+   * 
+   * @param aNode
+   *        The node to be resolved. May be <code>null</code>.
+   * @param aTarget
+   *        The target list. May not be <code>null</code>.
+   */
+  private void _flatten (@Nullable final IMicroNode aNode, @Nonnull final List <IMicroNode> aTarget)
+  {
+    if (aNode != null)
+    {
+      if (aNode instanceof HCMicroNodePlaceholder)
+      {
+        final IHCNode aHCNode = ((HCMicroNodePlaceholder) aNode).getHCNode ();
+        if (aHCNode instanceof HCFlushPoint)
+        {
+          // Keep the placeholder - it is handled when writing
+          aTarget.add (aNode);
+        }
+        else
+          if (aHCNode instanceof HCConditionalCommentNode)
+          {
+            // Keep the placeholder - the markers are written directly around
+            // the wrapped node
+            if (aHCNode.canConvertToNode (m_aNodeConversionSettings))
+            {
+              aHCNode.beforeConvertToNode (m_aNodeConversionSettings);
+              aTarget.add (aNode);
+            }
+          }
+          else
+            _flatten (_convertShallow (aHCNode), aTarget);
+      }
+      else
+        if (aNode.getType () == EMicroNodeType.CONTAINER)
+        {
+          if (aNode.hasChildren ())
+            for (final IMicroNode aChild : aNode.getChildren ())
+              _flatten (aChild, aTarget);
+        }
+        else
+          aTarget.add (aNode);
+    }
+  }
+
+  private static boolean _isFlushPoint (@Nullable final IMicroNode aNode)
+  {
+    return aNode instanceof HCMicroNodePlaceholder &&
+           ((HCMicroNodePlaceholder) aNode).getHCNode () instanceof HCFlushPoint;
+  }
+
+  @Nullable
+  private static IMicroNode _getFirstNonFlushPoint (@Nonnull final List <IMicroNode> aNodes,
+                                                    final int nStartIndex,
+                                                    final int nDelta)
+  {
+    for (int i = nStartIndex; i >= 0 && i < aNodes.size (); i += nDelta)
+    {
+      final IMicroNode aNode = aNodes.get (i);
+      if (!_isFlushPoint (aNode))
+        return aNode;
+    }
+    return null;
+  }
+
+  private static boolean _isInlineNode (@Nonnull final IMicroNode aNode)
+  {
+    if (aNode instanceof HCMicroNodePlaceholder)
+    {
+      // Conditional comment
+      return false;
+    }
+    final EMicroNodeType eType = aNode.getType ();
+    if (eType == EMicroNodeType.TEXT)
+      return !((IMicroText) aNode).isElementContentWhitespace ();
+    return eType == EMicroNodeType.ENTITY_REFERENCE;
+  }
+
+  private static boolean _mayBeSelfClosed (@Nullable final EHTMLElement eElement)
+  {
+    return eElement == null || eElement.mayBeSelfClosed ();
+  }
+
+  private void _writeMasked (@Nullable final CharSequence aText) throws IOException
+  {
+    // Use the same masking as the MicroWriter
+    if (aText != null && aText.length () > 0)
+      m_aWriter.write (XMLMaskHelper.getMaskedXMLText (EXMLSerializeVersion.XML_10,
+                                                       m_eIncorrectCharHandling,
+                                                       aText.toString ()));
+  }
+
+  private void _writeAttribute (@Nonnull final String sName, @Nonnull final String sValue) throws IOException
+  {
+    if (m_aByteWriter != null)
+      m_aByteWriter.writeAttributeStart (sName);
+    else
+    {
+      m_aWriter.write (' ');
+      m_aWriter.write (sName);
+      m_aWriter.write ("=\"");
+    }
+    _writeMasked (sValue);
+    m_aWriter.write ('"');
+  }
+
+  private void _writeStartTag (@Nullable final EHTMLElement eElement, @Nonnull final String sTagName) throws IOException
+  {
+    if (m_aByteWriter != null)
+      m_aByteWriter.writeStartTag (eElement, sTagName);
+    else
+    {
+      m_aWriter.write ('<');
+      m_aWriter.write (sTagName);
+    }
+  }
+
+  private void _writeEndTag (@Nullable final EHTMLElement eElement, @Nonnull final String sTagName) throws IOException
+  {
+    if (m_aByteWriter != null)
+      m_aByteWriter.writeEndTag (eElement, sTagName);
+    else
+    {
+      m_aWriter.write ("</");
+      m_aWriter.write (sTagName);
+      m_aWriter.write ('>');
+    }
+  }
+
+  private void _writeIndent () throws IOException
+  {
+    if (m_bIndent && m_aIndent.length () > 0)
+      m_aWriter.append (m_aIndent);
+  }
+
+  private void _writeNewline () throws IOException
+  {
+    if (m_bAlign)
+      m_aWriter.write (m_sNewline);
+  }
+
+  private void _writeElement (@Nonnull final IMicroElement aElement,
+                              @Nullable final IMicroNode aPrevSibling,
+                              @Nullable final IMicroNode aNextSibling,
+                              @Nullable final String sParentNamespaceURI,
+                              final boolean bIsRootElement) throws IOException
+  {
+    final String sTagName = aElement.getTagName ();
+    final EHTMLElement eElement = EHTMLElement.getFromTagNameOrNull (sTagName);
+
+    // Resolve the direct children (placeholders and containers)
+    final List <IMicroNode> aChildren = new ArrayList <IMicroNode> ();
+    if (aElement.hasChildren ())
+      for (final IMicroNode aChild : aElement.getChildren ())
+        _flatten (aChild, aChildren);
+
+    final boolean bHasChildren = !aChildren.isEmpty ();
+    final boolean bIndentPrev = aPrevSibling == null || !_isInlineNode (aPrevSibling) || bIsRootElement;
+    final boolean bIndentNext = aNextSibling == null || !_isInlineNode (aNextSibling) || bIsRootElement;
+    final IMicroNode aFirstChild = _getFirstNonFlushPoint (aChildren, 0, 1);
+    final boolean bHasChildElement = aFirstChild != null && !_isInlineNode (aFirstChild);
+
+    if (bIndentPrev)
+      _writeIndent ();
+
+    // Start tag with all attributes
+    _writeStartTag (eElement, sTagName);
+    final Map <String, String> aAttrs = aElement.getAllAttributes ();
+    if (aAttrs != null)
+      for (final Map.Entry <String, String> aEntry : aAttrs.entrySet ())
+        _writeAttribute (aEntry.getKey (), aEntry.getValue ());
+
+    String sNamespaceURI = aElement.getNamespaceURI ();
+    if (StringHelper.hasText (sNamespaceURI))
+    {
+      if (m_bEmitNamespaces && !sNamespaceURI.equals (sParentNamespaceURI))
+        _writeAttribute (CXML.XML_ATTR_XMLNS, sNamespaceURI);
+    }
+    else
+      sNamespaceURI = sParentNamespaceURI;
+
+    if (bHasChildren)
+    {
+      m_aWriter.write ('>');
+      if (bHasChildElement)
+        _writeNewline ();
+
+      m_aIndent.append (m_sIndentation);
+      _writeNodeList (aChildren, sNamespaceURI, false);
+      m_aIndent.setLength (m_aIndent.length () - m_sIndentation.length ());
+
+      if (bHasChildElement)
+        _writeIndent ();
+      _writeEndTag (eElement, sTagName);
+    }
+    else
+      if (aElement.hasChildren () && !_mayBeSelfClosed (eElement))
+      {
+        // Only placeholders that resolved to nothing - the converted element
+        // would have received an empty text node in this case
+        m_aWriter.write ('>');
+        _writeEndTag (eElement, sTagName);
+      }
+      else
+        m_aWriter.write (m_bHTMLFormat ? " />" : "/>");
+
+    if (bIndentNext)
+      _writeNewline ();
+  }
+
+  private void _writeConditionalComment (@Nonnull final HCConditionalCommentNode aConditionalComment) throws IOException
+  {
+    if (m_aXWS.getSerializeComments ().isEmit ())
+    {
+      _writeIndent ();
+      m_aWriter.write (XMLEmitterPhloc.COMMENT_START);
+      m_aWriter.write (aConditionalComment.getConditionalStart (m_aXWS));
+
+      // The wrapped node is written as if it would be serialized stand-alone
+      final String sOldIndent = m_aIndent.toString ();
+      m_aIndent.setLength (0);
+      final List <IMicroNode> aNodes = new ArrayList <IMicroNode> ();
+      _flatten (new HCMicroNodePlaceholder (aConditionalComment.getWrappedNode ()), aNodes);
+      _writeNodeList (aNodes, null, false);
+      m_aIndent.setLength (0);
+      m_aIndent.append (sOldIndent);
+
+      m_aWriter.write (HCConditionalCommentNode.CONDITIONAL_END);
+      m_aWriter.write (XMLEmitterPhloc.COMMENT_END);
+      _writeNewline ();
+    }
+  }
+
+  private void _writeNode (@Nonnull final IMicroNode aNode,
+                           @Nullable final IMicroNode aPrevSibling,
+                           @Nullable final IMicroNode aNextSibling,
+                           @Nullable final String sParentNamespaceURI,
+                           final boolean bParentIsDocument) throws IOException
+  {
+    if (aNode instanceof HCMicroNodePlaceholder)
+    {
+      // Only flush points and conditional comments are not resolved when
+      // flattening
+      final IHCNode aHCNode = ((HCMicroNodePlaceholder) aNode).getHCNode ();
+      if (aHCNode instanceof HCFlushPoint)
+        m_aWriter.flush ();
+      else
+        _writeConditionalComment ((HCConditionalCommentNode) aHCNode);
+      return;
+    }
+
+    switch (aNode.getType ())
+    {
+      case ELEMENT:
+        _writeElement ((IMicroElement) aNode, aPrevSibling, aNextSibling, sParentNamespaceURI, bParentIsDocument);
+        break;
+      case TEXT:
+      {
+        final IMicroText aText = (IMicroText) aNode;
+        if (aText.isEscape ())
+          _writeMasked (aText.getData ());
+        else
+          m_aWriter.append (aText.getData ());
+        break;
+      }
+      case CDATA:
+        m_aWriter.write ("<![CDATA[");
+        m_aWriter.append (((IMicroCDATA) aNode).getData ());
+        m_aWriter.write ("]]>");
+        break;
+      case ENTITY_REFERENCE:
+        m_aWriter.write ('&');
+        m_aWriter.write (((IMicroEntityReference) aNode).getName ());
+        m_aWriter.write (';');
+        break;
+      case COMMENT:
+        if (m_aXWS.getSerializeComments ().isEmit ())
+        {
+          _writeIndent ();
+          m_aWriter.write (XMLEmitterPhloc.COMMENT_START);
+          m_aWriter.append (((IMicroComment) aNode).getData ());
+          m_aWriter.write (XMLEmitterPhloc.COMMENT_END);
+          _writeNewline ();
+        }
+        break;
+      case DOCUMENT_TYPE:
+        if (m_aXWS.getSerializeDocType ().isEmit ())
+        {
+          m_aWriter.write (XMLEmitterPhloc.getDocTypeHTMLRepresentation (EXMLSerializeVersion.XML_10,
+                                                                         m_eIncorrectCharHandling,
+                                                                         (IMicroDocumentType) aNode));
+          _writeNewline ();
+        }
+        break;
+      case PROCESSING_INSTRUCTION:
+      {
+        final IMicroProcessingInstruction aPI = (IMicroProcessingInstruction) aNode;
+        m_aWriter.write ("<?");
+        m_aWriter.write (aPI.getTarget ());
+        if (StringHelper.hasText (aPI.getData ()))
+        {
+          m_aWriter.write (' ');
+          m_aWriter.write (aPI.getData ());
+        }
+        m_aWriter.write ("?>");
+        _writeNewline ();
+        break;
+      }
+      case DOCUMENT:
+      {
+        if (!m_bHTMLFormat)
+        {
+          m_aWriter.write ("<?xml version=\"1.0\" encoding=\"");
+          m_aWriter.write (m_aXWS.getCharsetObj ().name ());
+          m_aWriter.write ("\"?>");
+          m_aWriter.write (m_sNewline);
+        }
+        final List <IMicroNode> aChildren = new ArrayList <IMicroNode> ();
+        if (aNode.hasChildren ())
+          for (final IMicroNode aChild : aNode.getChildren ())
+            _flatten (aChild, aChildren);
+        _writeNodeList (aChildren, sParentNamespaceURI, true);
+        break;
+      }
+      default:
+        throw new IllegalStateException ("Unsupported micro node type: " + aNode);
+    }
+  }
+
+  private void _writeNodeList (@Nonnull final List <IMicroNode> aNodes,
+                               @Nullable final String sParentNamespaceURI,
+                               final boolean bParentIsDocument) throws IOException
+  {
+    final int nCount = aNodes.size ();
+    for (int i = 0; i < nCount; ++i)
+    {
+      final IMicroNode aPrevSibling = _getFirstNonFlushPoint (aNodes, i - 1, -1);
+      final IMicroNode aNextSibling = _getFirstNonFlushPoint (aNodes, i + 1, 1);
+      _writeNode (aNodes.get (i), aPrevSibling, aNextSibling, sParentNamespaceURI, bParentIsDocument);
+    }
+  }
+
+  /**
+   * Write the passed HC node to the passed writer.
+   * 
+   * @param aHCNode
+   *        The HC node to be written. May not be <code>null</code>.
+   * @param aWriter
+   *        The writer to write to. May not be <code>null</code>. The writer is
+   *        neither flushed nor closed by this method.
+   * @throws IOException
+   *         In case writing fails
+   */
+  public void write (@Nonnull final IHCNode aHCNode, @Nonnull @WillNotClose final Writer aWriter) throws IOException
+  {
+    ValueEnforcer.notNull (aHCNode, "HCNode");
+    ValueEnforcer.notNull (aWriter, "Writer");
+
+    final IHCRenderListener aListener = HCSettings.getRenderListener (m_aConversionSettings);
+    if (aListener == null)
+      _write (aHCNode, aWriter, null);
+    else
+    {
+      final CountingWriter aCountingWriter = new CountingWriter (aWriter);
+      aListener.onBeginSerialization (aHCNode);
+      try
+      {
+        _write (aHCNode, aCountingWriter, null);
+      }
+      finally
+      {
+        aListener.onEndSerialization (aHCNode, aCountingWriter.m_nChars, CGlobal.ILLEGAL_ULONG);
+      }
+    }
+  }
+
+  /**
+   * Write the passed HC node to the passed output stream using the charset of
+   * the XML writer settings. For UTF-8 and for all single byte charsets that
+   * encode ASCII as is (e.g. ISO-8859-1) the output is encoded directly into a
+   * pooled byte buffer without creating an intermediate String. Other charsets
+   * (like UTF-16 or Shift_JIS) are handled via an {@link OutputStreamWriter}. If a render listener is present, the number of
+   * written chars and the number of written bytes are reported.
+   * 
+   * @param aHCNode
+   *        The HC node to be written. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. May not be <code>null</code>. The
+   *        stream is not closed by this method.
+   * @throws IOException
+   *         In case writing fails
+   */
+  public void write (@Nonnull final IHCNode aHCNode, @Nonnull @WillNotClose final OutputStream aOS) throws IOException
+  {
+    ValueEnforcer.notNull (aHCNode, "HCNode");
+    ValueEnforcer.notNull (aOS, "OutputStream");
+
+    final IHCRenderListener aListener = HCSettings.getRenderListener (m_aConversionSettings);
+    final Charset aCharset = m_aXWS.getCharsetObj ();
+    if (!HCHTMLByteWriter.isSupportedCharset (aCharset))
+    {
+      if (aListener == null)
+      {
+        final Writer aWriter = new OutputStreamWriter (aOS, aCharset);
+        _write (aHCNode, aWriter, null);
+        aWriter.flush ();
+      }
+      else
+      {
+        final CountingOutputStream aCountingOS = new CountingOutputStream (aOS);
+        final CountingWriter aCountingWriter = new CountingWriter (new OutputStreamWriter (aCountingOS, aCharset));
+        aListener.onBeginSerialization (aHCNode);
+        try
+        {
+          _write (aHCNode, aCountingWriter, null);
+          aCountingWriter.flush ();
+        }
+        finally
+        {
+          aListener.onEndSerialization (aHCNode, aCountingWriter.m_nChars, aCountingOS.m_nBytes);
+        }
+      }
+      return;
+    }
+
+    final HCHTMLByteWriter aByteWriter = new HCHTMLByteWriter (aOS, aCharset);
+    if (aListener != null)
+      aListener.onBeginSerialization (aHCNode);
+    try
+    {
+      _write (aHCNode, aByteWriter, aByteWriter);
+      aByteWriter.writeBufferedBytes ();
+    }
+    finally
+    {
+      // The byte writer counts on its own
+      if (aListener != null)
+        aListener.onEndSerialization (aHCNode, aByteWriter.getWrittenCharCount (), aByteWriter.getWrittenByteCount ());
+      aByteWriter.releaseBuffer ();
+    }
+  }
+
+  private void _write (@Nonnull final IHCNode aHCNode,
+                       @Nonnull final Writer aWriter,
+                       @Nullable final HCHTMLByteWriter aByteWriter) throws IOException
+  {
+    m_aWriter = aWriter;
+    m_aByteWriter = aByteWriter;
+    m_aNodeConversionSettings = m_aConversionSettings;
+    try
+    {
+      // The children are converted one after another while writing, so the
+      // consistency checks are run once for the prepared tree in advance
+      if (m_aConversionSettings.areConsistencyChecksEnabled () && aHCNode.canConvertToNode (m_aConversionSettings))
+      {
+        aHCNode.beforeConvertToNode (m_aConversionSettings);
+        m_aNodeConversionSettings = HCConsistencyChecker.runConsistencyCheckForConversion (aHCNode,
+                                                                                          m_aConversionSettings);
+      }
+
+      final List <IMicroNode> aNodes = new ArrayList <IMicroNode> ();
+      _flatten (new HCMicroNodePlaceholder (aHCNode), aNodes);
+      _writeNodeList (aNodes, null, false);
+    }
+    finally
+    {
+      m_aWriter = null;
+      m_aByteWriter = null;
+      m_aNodeConversionSettings = null;
+      m_aIndent.setLength (0);
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("conversionSettings", m_aConversionSettings).toString ();
+  }
+}
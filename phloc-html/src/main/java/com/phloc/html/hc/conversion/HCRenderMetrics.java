@@ -0,0 +1,480 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.annotations.ReturnsMutableCopy;
+import com.phloc.commons.microdom.IMicroElement;
+import com.phloc.commons.microdom.IMicroNode;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.EHTMLElement;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.customize.IHCCustomizer;
+import com.phloc.html.hc.utils.IHCSpecialNodeListModifier;
+
+/**
+ * A low overhead {@link IHCRenderListener} that aggregates timing histograms
+ * per node class, per customizer class and per special node list modifier
+ * class, as well as counters for converted nodes, created elements per
+ * {@link EHTMLElement}, emitted attributes and serialized characters and
+ * bytes.<br>
+ * To reduce the overhead in production, a sample rate can be specified: with a
+ * sample rate of <i>n</i> only every <i>n</i>-th top-level rendering is
+ * measured, all other renderings only cost a thread-local lookup per event.
+ * Each serialization (e.g. via
+ * {@link IHCNode#getAsHTMLString(IHCConversionSettings)} or the streaming
+ * {@link HCHTMLSerializer}) is one top-level rendering, including all nodes
+ * that are converted lazily while writing. The children of a
+ * {@link com.phloc.html.hc.impl.HCParallelNodeList} are converted without
+ * render listener, so only the list as a whole is measured.
+ * 
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class HCRenderMetrics extends AbstractHCRenderListener
+{
+  /** The default sample rate: measure every rendering */
+  public static final int DEFAULT_SAMPLE_RATE = 1;
+
+  /**
+   * The per-thread state of the currently running events.
+   * 
+   * @author Philip Helger
+   */
+  private static final class ThreadState
+  {
+    private long [] m_aStartNanos = new long [32];
+    private long [] m_aChildNanos = new long [32];
+    private int m_nDepth = 0;
+    private boolean m_bSampled = false;
+  }
+
+  private final int m_nSampleRate;
+  private final ThreadLocal <ThreadState> m_aState = new ThreadLocal <ThreadState> ();
+  private final AtomicLong m_aRenderingCount = new AtomicLong ();
+  private final AtomicLong m_aSampledRenderingCount = new AtomicLong ();
+  private final ConcurrentMap <Class <?>, HCRenderTimingStatistics> m_aConvert = new ConcurrentHashMap <Class <?>, HCRenderTimingStatistics> ();
+  private final ConcurrentMap <Class <?>, HCRenderTimingStatistics> m_aBeforeConvert = new ConcurrentHashMap <Class <?>, HCRenderTimingStatistics> ();
+  private final ConcurrentMap <Class <?>, HCRenderTimingStatistics> m_aCustomization = new ConcurrentHashMap <Class <?>, HCRenderTimingStatistics> ();
+  private final ConcurrentMap <Class <?>, HCRenderTimingStatistics> m_aModifiers = new ConcurrentHashMap <Class <?>, HCRenderTimingStatistics> ();
+  private final HCRenderTimingStatistics m_aOutOfBandExtraction = new HCRenderTimingStatistics ();
+  private final HCRenderTimingStatistics m_aSerialization = new HCRenderTimingStatistics ();
+  private final AtomicLong m_aConvertedNodes = new AtomicLong ();
+  private final AtomicLong m_aCreatedElements = new AtomicLong ();
+  private final AtomicLong m_aEmittedAttributes = new AtomicLong ();
+  private final AtomicLong m_aExtractedOutOfBandNodes = new AtomicLong ();
+  private final AtomicLong m_aSerializedChars = new AtomicLong ();
+  private final AtomicLong m_aSerializedBytes = new AtomicLong ();
+  private final AtomicLongArray m_aElementCounts = new AtomicLongArray (EHTMLElement.values ().length);
+
+  /**
+   * Constructor measuring every rendering.
+   */
+  public HCRenderMetrics ()
+  {
+    this (DEFAULT_SAMPLE_RATE);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param nSampleRate
+   *        Only measure every n-th top-level rendering. Must be &gt; 0.
+   */
+  public HCRenderMetrics (@Nonnegative final int nSampleRate)
+  {
+    ValueEnforcer.isGT0 (nSampleRate, "SampleRate");
+    m_nSampleRate = nSampleRate;
+  }
+
+  /**
+   * @return The sample rate as specified in the constructor. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getSampleRate ()
+  {
+    return m_nSampleRate;
+  }
+
+  @Nonnull
+  private ThreadState _getState ()
+  {
+    ThreadState ret = m_aState.get ();
+    if (ret == null)
+    {
+      ret = new ThreadState ();
+      m_aState.set (ret);
+    }
+    return ret;
+  }
+
+  private void _begin ()
+  {
+    final ThreadState aState = _getState ();
+    if (aState.m_nDepth == 0)
+    {
+      // A new top-level rendering starts
+      aState.m_bSampled = m_aRenderingCount.getAndIncrement () % m_nSampleRate == 0;
+      if (aState.m_bSampled)
+        m_aSampledRenderingCount.incrementAndGet ();
+    }
+
+    final int nDepth = aState.m_nDepth;
+    if (nDepth == aState.m_aStartNanos.length)
+    {
+      final long [] aNewStart = new long [nDepth * 2];
+      System.arraycopy (aState.m_aStartNanos, 0, aNewStart, 0, nDepth);
+      aState.m_aStartNanos = aNewStart;
+      final long [] aNewChild = new long [nDepth * 2];
+      System.arraycopy (aState.m_aChildNanos, 0, aNewChild, 0, nDepth);
+      aState.m_aChildNanos = aNewChild;
+    }
+    aState.m_aStartNanos[nDepth] = aState.m_bSampled ? System.nanoTime () : 0;
+    aState.m_aChildNanos[nDepth] = 0;
+    aState.m_nDepth = nDepth + 1;
+  }
+
+  /**
+   * Finish the current event.
+   * 
+   * @param aTargetMap
+   *        The map with the statistics to update. May be <code>null</code> if
+   *        aStats is present.
+   * @param aKey
+   *        The key within the map. Only used if a map is present.
+   * @param aStats
+   *        The statistics object to update if no map is present.
+   * @return <code>true</code> if the current rendering is sampled.
+   */
+  private boolean _end (@Nullable final ConcurrentMap <Class <?>, HCRenderTimingStatistics> aTargetMap,
+                        @Nullable final Class <?> aKey,
+                        @Nullable final HCRenderTimingStatistics aStats)
+  {
+    final ThreadState aState = m_aState.get ();
+    if (aState == null || aState.m_nDepth == 0)
+    {
+      // Unbalanced end event - ignore
+      return false;
+    }
+
+    final int nDepth = --aState.m_nDepth;
+    if (!aState.m_bSampled)
+      return false;
+
+    final long nDuration = Math.max (0, System.nanoTime () - aState.m_aStartNanos[nDepth]);
+    final long nSelf = Math.max (0, nDuration - aState.m_aChildNanos[nDepth]);
+    if (nDepth > 0)
+      aState.m_aChildNanos[nDepth - 1] += nDuration;
+
+    HCRenderTimingStatistics aRealStats = aStats;
+    if (aTargetMap != null)
+    {
+      aRealStats = aTargetMap.get (aKey);
+      if (aRealStats == null)
+      {
+        final HCRenderTimingStatistics aNewStats = new HCRenderTimingStatistics ();
+        aRealStats = aTargetMap.putIfAbsent (aKey, aNewStats);
+        if (aRealStats == null)
+          aRealStats = aNewStats;
+      }
+    }
+    if (aRealStats != null)
+      aRealStats.addDuration (nDuration, nSelf);
+    return true;
+  }
+
+  @Override
+  public void onBeginConvertToNode (@Nonnull final IHCNode aNode)
+  {
+    _begin ();
+  }
+
+  @Override
+  public void onEndConvertToNode (@Nonnull final IHCNode aNode, @Nullable final IMicroNode aCreatedNode)
+  {
+    if (_end (m_aConvert, aNode.getClass (), null))
+    {
+      m_aConvertedNodes.incrementAndGet ();
+      if (aCreatedNode instanceof IMicroElement)
+      {
+        final IMicroElement aElement = (IMicroElement) aCreatedNode;
+        m_aCreatedElements.incrementAndGet ();
+        m_aEmittedAttributes.addAndGet (aElement.getAttributeCount ());
+        final EHTMLElement eElement = EHTMLElement.getFromTagNameOrNull (aElement.getTagName ());
+        if (eElement != null)
+          m_aElementCounts.incrementAndGet (eElement.ordinal ());
+      }
+    }
+  }
+
+  @Override
+  public void onBeginBeforeConvertToNode (@Nonnull final IHCNode aNode)
+  {
+    _begin ();
+  }
+
+  @Override
+  public void onEndBeforeConvertToNode (@Nonnull final IHCNode aNode)
+  {
+    _end (m_aBeforeConvert, aNode.getClass (), null);
+  }
+
+  @Override
+  public void onBeginCustomization (@Nonnull final IHCNode aNode, @Nonnull final IHCCustomizer aCustomizer)
+  {
+    _begin ();
+  }
+
+  @Override
+  public void onEndCustomization (@Nonnull final IHCNode aNode, @Nonnull final IHCCustomizer aCustomizer)
+  {
+    _end (m_aCustomization, aCustomizer.getClass (), null);
+  }
+
+  @Override
+  public void onBeginOutOfBandExtraction (@Nonnull final IHCNode aBaseNode)
+  {
+    _begin ();
+  }
+
+  @Override
+  public void onEndOutOfBandExtraction (@Nonnull final IHCNode aBaseNode, @Nonnegative final int nExtractedNodes)
+  {
+    if (_end (null, null, m_aOutOfBandExtraction))
+      m_aExtractedOutOfBandNodes.addAndGet (nExtractedNodes);
+  }
+
+  @Override
+  public void onBeginSpecialNodeListModifier (@Nonnull final IHCSpecialNodeListModifier aModifier)
+  {
+    _begin ();
+  }
+
+  @Override
+  public void onEndSpecialNodeListModifier (@Nonnull final IHCSpecialNodeListModifier aModifier)
+  {
+    _end (m_aModifiers, aModifier.getClass (), null);
+  }
+
+  @Override
+  public void onBeginSerialization (@Nonnull final IHCNode aNode)
+  {
+    _begin ();
+  }
+
+  @Override
+  public void onEndSerialization (@Nonnull final IHCNode aNode, @Nonnegative final long nChars, final long nBytes)
+  {
+    if (_end (null, null, m_aSerialization))
+    {
+      m_aSerializedChars.addAndGet (nChars);
+      if (nBytes >= 0)
+        m_aSerializedBytes.addAndGet (nBytes);
+    }
+  }
+
+  /**
+   * @return The total number of top-level renderings. Each event that is not
+   *         nested inside another event (e.g. the conversion of the outermost
+   *         node) starts a new rendering.
+   */
+  @Nonnegative
+  public long getRenderingCount ()
+  {
+    return m_aRenderingCount.get ();
+  }
+
+  /**
+   * @return The number of top-level renderings that were measured. All other
+   *         values only refer to the sampled renderings.
+   */
+  @Nonnegative
+  public long getSampledRenderingCount ()
+  {
+    return m_aSampledRenderingCount.get ();
+  }
+
+  @Nonnull
+  @ReturnsMutableCopy
+  private static Map <Class <?>, HCRenderTimingStatistics> _copy (@Nonnull final Map <Class <?>, HCRenderTimingStatistics> aMap)
+  {
+    return new HashMap <Class <?>, HCRenderTimingStatistics> (aMap);
+  }
+
+  /**
+   * @return The conversion timings per HC node class. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public Map <Class <?>, HCRenderTimingStatistics> getAllConvertToNodeStatistics ()
+  {
+    return _copy (m_aConvert);
+  }
+
+  /**
+   * @return The one-time preparation timings per HC node class. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public Map <Class <?>, HCRenderTimingStatistics> getAllBeforeConvertToNodeStatistics ()
+  {
+    return _copy (m_aBeforeConvert);
+  }
+
+  /**
+   * @return The customization timings per customizer class. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public Map <Class <?>, HCRenderTimingStatistics> getAllCustomizationStatistics ()
+  {
+    return _copy (m_aCustomization);
+  }
+
+  /**
+   * @return The timings per special node list modifier class. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public Map <Class <?>, HCRenderTimingStatistics> getAllSpecialNodeListModifierStatistics ()
+  {
+    return _copy (m_aModifiers);
+  }
+
+  /**
+   * @return The timings of the out-of-band node extraction. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public HCRenderTimingStatistics getOutOfBandExtractionStatistics ()
+  {
+    return m_aOutOfBandExtraction;
+  }
+
+  /**
+   * @return The timings of the serializations, including the conversion of
+   *         the serialized nodes. Never <code>null</code>.
+   */
+  @Nonnull
+  public HCRenderTimingStatistics getSerializationStatistics ()
+  {
+    return m_aSerialization;
+  }
+
+  /**
+   * @return The number of converted HC nodes.
+   */
+  @Nonnegative
+  public long getConvertedNodeCount ()
+  {
+    return m_aConvertedNodes.get ();
+  }
+
+  /**
+   * @return The number of micro elements created by HC nodes.
+   */
+  @Nonnegative
+  public long getCreatedElementCount ()
+  {
+    return m_aCreatedElements.get ();
+  }
+
+  /**
+   * Get the number of created micro elements of the passed type.
+   * 
+   * @param eElement
+   *        The HTML element to query. May not be <code>null</code>.
+   * @return The number of created elements with the passed name.
+   */
+  @Nonnegative
+  public long getCreatedElementCount (@Nonnull final EHTMLElement eElement)
+  {
+    ValueEnforcer.notNull (eElement, "Element");
+    return m_aElementCounts.get (eElement.ordinal ());
+  }
+
+  /**
+   * @return The number of attributes of all micro elements created by HC
+   *         nodes.
+   */
+  @Nonnegative
+  public long getEmittedAttributeCount ()
+  {
+    return m_aEmittedAttributes.get ();
+  }
+
+  /**
+   * @return The number of extracted out-of-band nodes.
+   */
+  @Nonnegative
+  public long getExtractedOutOfBandNodeCount ()
+  {
+    return m_aExtractedOutOfBandNodes.get ();
+  }
+
+  /**
+   * @return The number of serialized characters of all serializations.
+   */
+  @Nonnegative
+  public long getSerializedCharCount ()
+  {
+    return m_aSerializedChars.get ();
+  }
+
+  /**
+   * @return The number of bytes emitted by all serializations to an
+   *         {@link java.io.OutputStream}. Serializations to a String or a
+   *         {@link java.io.Writer} are not contained, as the encoding is done
+   *         by the caller.
+   */
+  @Nonnegative
+  public long getSerializedByteCount ()
+  {
+    return m_aSerializedBytes.get ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("sampleRate", m_nSampleRate)
+                                       .append ("renderingCount", getRenderingCount ())
+                                       .append ("sampledRenderingCount", getSampledRenderingCount ())
+                                       .append ("convertedNodes", getConvertedNodeCount ())
+                                       .append ("createdElements", getCreatedElementCount ())
+                                       .append ("emittedAttributes", getEmittedAttributeCount ())
+                                       .append ("extractedOutOfBandNodes", getExtractedOutOfBandNodeCount ())
+                                       .append ("serializedChars", getSerializedCharCount ())
+                                       .append ("serializedBytes", getSerializedByteCount ())
+                                       .toString ();
+  }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.phloc.commons.annotations.ReturnsMutableCopy;
+import com.phloc.commons.string.ToStringGenerator;
+
+/**
+ * Thread-safe timing statistics for a single kind of render event as collected
+ * by {@link HCRenderMetrics}. Besides the total, minimum and maximum durations
+ * a histogram with logarithmic buckets is maintained: bucket <i>n</i> counts
+ * all durations between 2<sup>n</sup> (inclusive) and 2<sup>n+1</sup>
+ * (exclusive) nanoseconds, bucket 0 also contains all durations of 0
+ * nanoseconds.
+ * 
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class HCRenderTimingStatistics
+{
+  /** The number of histogram buckets. The last bucket takes all the rest. */
+  public static final int HISTOGRAM_BUCKETS = 40;
+
+  private final AtomicLong m_aInvocationCount = new AtomicLong ();
+  private final AtomicLong m_aTotalNanos = new AtomicLong ();
+  private final AtomicLong m_aTotalSelfNanos = new AtomicLong ();
+  private final AtomicLong m_aMinNanos = new AtomicLong (Long.MAX_VALUE);
+  private final AtomicLong m_aMaxNanos = new AtomicLong (Long.MIN_VALUE);
+  private final AtomicLongArray m_aHistogram = new AtomicLongArray (HISTOGRAM_BUCKETS);
+
+  HCRenderTimingStatistics ()
+  {}
+
+  /**
+   * Get the histogram bucket for the passed duration.
+   * 
+   * @param nNanos
+   *        The duration in nanoseconds. Should be &ge; 0.
+   * @return The bucket index. Always &ge; 0 and &lt;
+   *         {@link #HISTOGRAM_BUCKETS}.
+   */
+  @Nonnegative
+  public static int getBucketIndex (final long nNanos)
+  {
+    if (nNanos <= 1)
+      return 0;
+    final int nIndex = 63 - Long.numberOfLeadingZeros (nNanos);
+    return Math.min (nIndex, HISTOGRAM_BUCKETS - 1);
+  }
+
+  void addDuration (@Nonnegative final long nNanos, @Nonnegative final long nSelfNanos)
+  {
+    m_aInvocationCount.incrementAndGet ();
+    m_aTotalNanos.addAndGet (nNanos);
+    m_aTotalSelfNanos.addAndGet (nSelfNanos);
+    m_aHistogram.incrementAndGet (getBucketIndex (nNanos));
+
+    long nOld;
+    while ((nOld = m_aMinNanos.get ()) > nNanos)
+      if (m_aMinNanos.compareAndSet (nOld, nNanos))
+        break;
+    while ((nOld = m_aMaxNanos.get ()) < nNanos)
+      if (m_aMaxNanos.compareAndSet (nOld, nNanos))
+        break;
+  }
+
+  /**
+   * @return The number of recorded events.
+   */
+  @Nonnegative
+  public long getInvocationCount ()
+  {
+    return m_aInvocationCount.get ();
+  }
+
+  /**
+   * @return The sum of all recorded durations in nanoseconds, including the
+   *         durations of nested events.
+   */
+  @Nonnegative
+  public long getTotalNanos ()
+  {
+    return m_aTotalNanos.get ();
+  }
+
+  /**
+   * @return The sum of all recorded durations in nanoseconds, excluding the
+   *         durations of nested events (e.g. excluding the conversion of child
+   *         nodes).
+   */
+  @Nonnegative
+  public long getTotalSelfNanos ()
+  {
+    return m_aTotalSelfNanos.get ();
+  }
+
+  /**
+   * @return The minimum recorded duration in nanoseconds or 0 if nothing was
+   *         recorded.
+   */
+  @Nonnegative
+  public long getMinNanos ()
+  {
+    final long ret = m_aMinNanos.get ();
+    return ret == Long.MAX_VALUE ? 0 : ret;
+  }
+
+  /**
+   * @return The maximum recorded duration in nanoseconds or 0 if nothing was
+   *         recorded.
+   */
+  @Nonnegative
+  public long getMaxNanos ()
+  {
+    final long ret = m_aMaxNanos.get ();
+    return ret == Long.MIN_VALUE ? 0 : ret;
+  }
+
+  /**
+   * @return The average duration in nanoseconds or 0 if nothing was recorded.
+   */
+  @Nonnegative
+  public long getAverageNanos ()
+  {
+    final long nCount = m_aInvocationCount.get ();
+    return nCount == 0 ? 0 : m_aTotalNanos.get () / nCount;
+  }
+
+  /**
+   * @return A copy of the histogram. The array has
+   *         {@link #HISTOGRAM_BUCKETS} elements.
+   * @see #getBucketIndex(long)
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public long [] getHistogram ()
+  {
+    final long [] ret = new long [HISTOGRAM_BUCKETS];
+    for (int i = 0; i < HISTOGRAM_BUCKETS; ++i)
+      ret[i] = m_aHistogram.get (i);
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("invocationCount", getInvocationCount ())
+                                       .append ("totalNanos", getTotalNanos ())
+                                       .append ("totalSelfNanos", getTotalSelfNanos ())
+                                       .append ("minNanos", getMinNanos ())
+                                       .append ("maxNanos", getMaxNanos ())
+                                       .toString ();
+  }
+}
@@ -17,12 +17,15 @@
  */
 package com.phloc.html.hc.conversion;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.nio.charset.Charset;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
 import javax.annotation.concurrent.ThreadSafe;
 
 import com.phloc.commons.GlobalDebug;
@@ -36,8 +39,9 @@ import com.phloc.html.hc.customize.IHCCustomizer;
 @ThreadSafe
 public final class HCSettings
 {
-  private static final ReadWriteLock s_aRWLock = new ReentrantReadWriteLock ();
-  private static IHCConversionSettingsProvider s_aSettingsProvider = new HCConversionSettingsProvider (EHTMLVersion.DEFAULT);
+  // Volatile instead of a lock, because it is read for every conversion but
+  // written very rarely
+  private static volatile IHCConversionSettingsProvider s_aSettingsProvider = new HCConversionSettingsProvider (EHTMLVersion.DEFAULT);
 
   private HCSettings ()
   {}
@@ -61,15 +65,7 @@ public final class HCSettings
   {
     ValueEnforcer.notNull (aConversionSettingsProvider, "ConversionSettingsProvider");
 
-    s_aRWLock.writeLock ().lock ();
-    try
-    {
-      s_aSettingsProvider = aConversionSettingsProvider;
-    }
-    finally
-    {
-      s_aRWLock.writeLock ().unlock ();
-    }
+    s_aSettingsProvider = aConversionSettingsProvider;
   }
 
   /**
@@ -80,15 +76,7 @@ public final class HCSettings
   @Nonnull
   public static IHCConversionSettingsProvider getConversionSettingsProvider ()
   {
-    s_aRWLock.readLock ().lock ();
-    try
-    {
-      return s_aSettingsProvider;
-    }
-    finally
-    {
-      s_aRWLock.readLock ().unlock ();
-    }
+    return s_aSettingsProvider;
   }
 
   /**
@@ -100,7 +88,11 @@ public final class HCSettings
   @Nonnull
   public static IHCConversionSettings getConversionSettings ()
   {
-    return getConversionSettingsProvider ().getConversionSettings ();
+    final IHCConversionSettingsProvider aProvider = getConversionSettingsProvider ();
+    // Avoid copying the settings of the default provider
+    if (aProvider instanceof HCConversionSettingsProvider)
+      return ((HCConversionSettingsProvider) aProvider).getFrozenConversionSettings ();
+    return aProvider.getConversionSettings ();
   }
 
   /**
@@ -113,7 +105,100 @@ public final class HCSettings
   @Nonnull
   public static IHCConversionSettings getConversionSettings (final boolean bPrettyPrint)
   {
-    return getConversionSettingsProvider ().getConversionSettings (bPrettyPrint);
+    final IHCConversionSettingsProvider aProvider = getConversionSettingsProvider ();
+    // Avoid copying the settings of the default provider
+    if (aProvider instanceof HCConversionSettingsProvider)
+      return ((HCConversionSettingsProvider) aProvider).getFrozenConversionSettings (bPrettyPrint);
+    return aProvider.getConversionSettings (bPrettyPrint);
+  }
+
+  /**
+   * Get conversion settings that are equal to the passed settings, except that
+   * no XML namespaces are emitted. For {@link HCFrozenConversionSettings} the
+   * cached variant is used, all other settings are copied.
+   * 
+   * @param aConversionSettings
+   *        The source conversion settings. May not be <code>null</code>.
+   * @return The non-<code>null</code> conversion settings without namespaces.
+   *         If namespaces are already disabled, the passed object is returned.
+   */
+  @Nonnull
+  public static IHCConversionSettings getConversionSettingsWithoutNamespaces (@Nonnull final IHCConversionSettings aConversionSettings)
+  {
+    if (aConversionSettings instanceof HCFrozenConversionSettings)
+      return ((HCFrozenConversionSettings) aConversionSettings).getWithoutNamespaces ();
+    if (!aConversionSettings.getXMLWriterSettings ().isEmitNamespaces ())
+      return aConversionSettings;
+
+    // Create a copy
+    final HCConversionSettings aRealCS = new HCConversionSettings (aConversionSettings);
+    // And modify the copied XML settings
+    aRealCS.getXMLWriterSettings ().setEmitNamespaces (false);
+    return aRealCS;
+  }
+
+  /**
+   * Get the render listener of the passed conversion settings. The render
+   * listener is not part of the {@link IHCConversionSettingsToNode} interface,
+   * so it is only available for {@link HCConversionSettings} and
+   * {@link HCFrozenConversionSettings}.
+   * 
+   * @param aConversionSettings
+   *        The conversion settings to query. May not be <code>null</code>.
+   * @return The render listener to be used or <code>null</code> if no render
+   *         events should be created.
+   */
+  @Nullable
+  public static IHCRenderListener getRenderListener (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    if (aConversionSettings instanceof HCFrozenConversionSettings)
+      return ((HCFrozenConversionSettings) aConversionSettings).getRenderListener ();
+    if (aConversionSettings instanceof HCConversionSettings)
+      return ((HCConversionSettings) aConversionSettings).getRenderListener ();
+    return null;
+  }
+
+  /**
+   * Get the executor for parallel conversion of the passed conversion
+   * settings. The executor is not part of the
+   * {@link IHCConversionSettingsToNode} interface, so it is only available for
+   * {@link HCConversionSettings} and {@link HCFrozenConversionSettings}.
+   * 
+   * @param aConversionSettings
+   *        The conversion settings to query. May not be <code>null</code>.
+   * @return The executor to be used by
+   *         {@link com.phloc.html.hc.impl.HCParallelNodeList} or
+   *         <code>null</code> if all nodes should be converted sequentially.
+   */
+  @Nullable
+  public static Executor getParallelConversionExecutor (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    if (aConversionSettings instanceof HCFrozenConversionSettings)
+      return ((HCFrozenConversionSettings) aConversionSettings).getParallelConversionExecutor ();
+    if (aConversionSettings instanceof HCConversionSettings)
+      return ((HCConversionSettings) aConversionSettings).getParallelConversionExecutor ();
+    return null;
+  }
+
+  /**
+   * Get the handler for the issues found by the consistency checks of the
+   * passed conversion settings. The handler is not part of the
+   * {@link IHCConversionSettingsToNode} interface, so it is only available for
+   * {@link HCConversionSettings} and {@link HCFrozenConversionSettings}.
+   * 
+   * @param aConversionSettings
+   *        The conversion settings to query. May not be <code>null</code>.
+   * @return The handler to be used or <code>null</code> if all issues should
+   *         be logged.
+   */
+  @Nullable
+  public static IHCConsistencyIssueHandler getConsistencyIssueHandler (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    if (aConversionSettings instanceof HCFrozenConversionSettings)
+      return ((HCFrozenConversionSettings) aConversionSettings).getConsistencyIssueHandler ();
+    if (aConversionSettings instanceof HCConversionSettings)
+      return ((HCConversionSettings) aConversionSettings).getConsistencyIssueHandler ();
+    return null;
   }
 
   /**
@@ -343,11 +428,127 @@ public final class HCSettings
   public static String getAsHTMLStringWithoutNamespaces (@Nonnull final IHCNode aHCNode,
                                                          @Nonnull final IHCConversionSettings aConversionSettings)
   {
-    // Create a copy
-    final HCConversionSettings aRealCS = new HCConversionSettings (aConversionSettings);
-    // And modify the copied XML settings
-    aRealCS.getXMLWriterSettings ().setEmitNamespaces (false);
-    return getAsHTMLString (aHCNode, aRealCS);
+    return getAsHTMLString (aHCNode, getConversionSettingsWithoutNamespaces (aConversionSettings));
+  }
+
+  /**
+   * Write the passed HC node as HTML to the passed writer using default pretty
+   * print mode. This is the streaming alternative to
+   * {@link #getAsHTMLString(IHCNode)}.
+   * 
+   * @param aHCNode
+   *        The node to be written. May not be <code>null</code>.
+   * @param aWriter
+   *        The writer to write to. May not be <code>null</code>. The writer is
+   *        not closed.
+   * @throws IOException
+   *         In case writing fails
+   */
+  public static void writeHTML (@Nonnull final IHCNode aHCNode, @Nonnull @WillNotClose final Writer aWriter) throws IOException
+  {
+    writeHTML (aHCNode, aWriter, getConversionSettings ());
+  }
+
+  /**
+   * Write the passed HC node as HTML to the passed writer.
+   * 
+   * @param aHCNode
+   *        The node to be written. May not be <code>null</code>.
+   * @param aWriter
+   *        The writer to write to. May not be <code>null</code>. The writer is
+   *        not closed.
+   * @param bPrettyPrint
+   *        For pretty printed output?
+   * @throws IOException
+   *         In case writing fails
+   */
+  public static void writeHTML (@Nonnull final IHCNode aHCNode,
+                                @Nonnull @WillNotClose final Writer aWriter,
+                                final boolean bPrettyPrint) throws IOException
+  {
+    writeHTML (aHCNode, aWriter, getConversionSettings (bPrettyPrint));
+  }
+
+  /**
+   * Write the passed HC node as HTML to the passed writer using the passed
+   * conversion settings.
+   * 
+   * @param aHCNode
+   *        The node to be written. May not be <code>null</code>.
+   * @param aWriter
+   *        The writer to write to. May not be <code>null</code>. The writer is
+   *        not closed.
+   * @param aConversionSettings
+   *        The conversion settings to be used. May not be <code>null</code>.
+   * @throws IOException
+   *         In case writing fails
+   */
+  public static void writeHTML (@Nonnull final IHCNode aHCNode,
+                                @Nonnull @WillNotClose final Writer aWriter,
+                                @Nonnull final IHCConversionSettings aConversionSettings) throws IOException
+  {
+    new HCHTMLSerializer (aConversionSettings).write (aHCNode, aWriter);
+  }
+
+  /**
+   * Write the passed HC node as HTML to the passed output stream using default
+   * pretty print mode. The charset returned by {@link #getHTMLCharset()} is
+   * used.
+   * 
+   * @param aHCNode
+   *        The node to be written. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. May not be <code>null</code>. The
+   *        stream is not closed.
+   * @throws IOException
+   *         In case writing fails
+   */
+  public static void writeHTML (@Nonnull final IHCNode aHCNode, @Nonnull @WillNotClose final OutputStream aOS) throws IOException
+  {
+    writeHTML (aHCNode, aOS, getConversionSettings ());
+  }
+
+  /**
+   * Write the passed HC node as HTML to the passed output stream. The charset
+   * returned by {@link #getHTMLCharset(boolean)} is used.
+   * 
+   * @param aHCNode
+   *        The node to be written. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. May not be <code>null</code>. The
+   *        stream is not closed.
+   * @param bPrettyPrint
+   *        For pretty printed output?
+   * @throws IOException
+   *         In case writing fails
+   */
+  public static void writeHTML (@Nonnull final IHCNode aHCNode,
+                                @Nonnull @WillNotClose final OutputStream aOS,
+                                final boolean bPrettyPrint) throws IOException
+  {
+    writeHTML (aHCNode, aOS, getConversionSettings (bPrettyPrint));
+  }
+
+  /**
+   * Write the passed HC node as HTML to the passed output stream using the
+   * passed conversion settings. The output is encoded with the charset of the
+   * contained XML writer settings.
+   * 
+   * @param aHCNode
+   *        The node to be written. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. May not be <code>null</code>. The
+   *        stream is not closed.
+   * @param aConversionSettings
+   *        The conversion settings to be used. May not be <code>null</code>.
+   * @throws IOException
+   *         In case writing fails
+   */
+  public static void writeHTML (@Nonnull final IHCNode aHCNode,
+                                @Nonnull @WillNotClose final OutputStream aOS,
+                                @Nonnull final IHCConversionSettings aConversionSettings) throws IOException
+  {
+    new HCHTMLSerializer (aConversionSettings).write (aHCNode, aOS);
   }
 
   /**
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Callback interface that receives the issues found by the consistency checks
+ * that are run as part of the conversion of HC nodes. A handler is registered
+ * via
+ * {@link HCConversionSettings#setConsistencyIssueHandler(IHCConsistencyIssueHandler)}
+ * . If no handler is registered, the issues are logged. As the same conversion
+ * settings may be used by multiple threads in parallel, implementations must
+ * be thread-safe.
+ * 
+ * @author Philip Helger
+ * @see HCConsistencyChecker#runConsistencyCheckForConversion(com.phloc.html.hc.IHCNode,
+ *      IHCConversionSettingsToNode)
+ */
+public interface IHCConsistencyIssueHandler
+{
+  /**
+   * Called for every issue found by the consistency checks, in document order.
+   * 
+   * @param aIssue
+   *        The issue found. Never <code>null</code>.
+   */
+  void onConsistencyIssue (@Nonnull HCConsistencyIssue aIssue);
+}
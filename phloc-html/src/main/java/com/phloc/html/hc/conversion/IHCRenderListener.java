@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.phloc.commons.microdom.IMicroNode;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.customize.IHCCustomizer;
+import com.phloc.html.hc.utils.IHCSpecialNodeListModifier;
+
+/**
+ * Listener interface that is informed about the different phases of the
+ * conversion of HC nodes to micro nodes and about the serialization. Each
+ * "begin" callback is followed by exactly one matching "end" callback on the
+ * same thread, also if the phase failed. Phases may be nested (e.g. the
+ * conversion of a child node happens inside the conversion of its parent
+ * node). The conversion events of a rendering via
+ * {@link IHCNode#getAsHTMLString(IHCConversionSettings)} or via the
+ * {@link HCHTMLSerializer} are always nested inside the serialization events,
+ * also if the nodes are converted lazily while writing.<br>
+ * A render listener is registered via
+ * {@link HCConversionSettings#setRenderListener(IHCRenderListener)}. If no
+ * listener is registered, no events are created at all. As the same
+ * conversion settings may be used by multiple threads in parallel,
+ * implementations must be thread-safe.
+ * 
+ * @author Philip Helger
+ * @see AbstractHCRenderListener
+ * @see HCRenderMetrics
+ */
+public interface IHCRenderListener
+{
+  /**
+   * Called before a node is converted to a micro node.
+   * 
+   * @param aNode
+   *        The node to be converted. Never <code>null</code>.
+   */
+  void onBeginConvertToNode (@Nonnull IHCNode aNode);
+
+  /**
+   * Called after a node was converted to a micro node.
+   * 
+   * @param aNode
+   *        The node that was converted. Never <code>null</code>.
+   * @param aCreatedNode
+   *        The created micro node. May be <code>null</code> if the conversion
+   *        failed or created nothing.
+   */
+  void onEndConvertToNode (@Nonnull IHCNode aNode, @Nullable IMicroNode aCreatedNode);
+
+  /**
+   * Called before the one-time preparation of a node is performed.
+   * 
+   * @param aNode
+   *        The node to be prepared. Never <code>null</code>.
+   */
+  void onBeginBeforeConvertToNode (@Nonnull IHCNode aNode);
+
+  /**
+   * Called after the one-time preparation of a node was performed.
+   * 
+   * @param aNode
+   *        The node that was prepared. Never <code>null</code>.
+   */
+  void onEndBeforeConvertToNode (@Nonnull IHCNode aNode);
+
+  /**
+   * Called before the customizer is invoked on a single node.
+   * 
+   * @param aNode
+   *        The node to be customized. Never <code>null</code>.
+   * @param aCustomizer
+   *        The customizer to be invoked. Never <code>null</code>.
+   */
+  void onBeginCustomization (@Nonnull IHCNode aNode, @Nonnull IHCCustomizer aCustomizer);
+
+  /**
+   * Called after the customizer was invoked on a single node.
+   * 
+   * @param aNode
+   *        The node that was customized. Never <code>null</code>.
+   * @param aCustomizer
+   *        The customizer that was invoked. Never <code>null</code>.
+   */
+  void onEndCustomization (@Nonnull IHCNode aNode, @Nonnull IHCCustomizer aCustomizer);
+
+  /**
+   * Called before the out-of-band nodes are extracted from a node tree and
+   * handed to the customizer.
+   * 
+   * @param aBaseNode
+   *        The node from which the out-of-band nodes are extracted. Never
+   *        <code>null</code>.
+   */
+  void onBeginOutOfBandExtraction (@Nonnull IHCNode aBaseNode);
+
+  /**
+   * Called after the out-of-band nodes were extracted and handled.
+   * 
+   * @param aBaseNode
+   *        The node from which the out-of-band nodes were extracted. Never
+   *        <code>null</code>.
+   * @param nExtractedNodes
+   *        The number of extracted out-of-band nodes.
+   */
+  void onEndOutOfBandExtraction (@Nonnull IHCNode aBaseNode, @Nonnegative int nExtractedNodes);
+
+  /**
+   * Called before a special node list modifier is applied. This is only called
+   * if the render listener is passed to
+   * {@link com.phloc.html.hc.utils.HCSpecialNodeHandler#getMergedInlineCSSAndJSNodes(Iterable, boolean, IHCRenderListener)}
+   * , because the {@link IHCCustomizer} has no access to the conversion
+   * settings. Otherwise the modifiers are part of the out-of-band extraction.
+   * 
+   * @param aModifier
+   *        The modifier to be applied. Never <code>null</code>.
+   */
+  void onBeginSpecialNodeListModifier (@Nonnull IHCSpecialNodeListModifier aModifier);
+
+  /**
+   * Called after a special node list modifier was applied.
+   * 
+   * @param aModifier
+   *        The modifier that was applied. Never <code>null</code>.
+   */
+  void onEndSpecialNodeListModifier (@Nonnull IHCSpecialNodeListModifier aModifier);
+
+  /**
+   * Called before a node is converted and serialized to a String, a
+   * {@link java.io.Writer} or an {@link java.io.OutputStream}.
+   * 
+   * @param aNode
+   *        The node to be serialized. Never <code>null</code>.
+   */
+  void onBeginSerialization (@Nonnull IHCNode aNode);
+
+  /**
+   * Called after a node was completely serialized.
+   * 
+   * @param aNode
+   *        The node that was serialized. Never <code>null</code>.
+   * @param nChars
+   *        The number of characters emitted.
+   * @param nBytes
+   *        The number of bytes emitted, if the node was written to an
+   *        {@link java.io.OutputStream}. If the node was serialized to a String
+   *        or a {@link java.io.Writer}, the encoding is not known and
+   *        {@link com.phloc.commons.CGlobal#ILLEGAL_ULONG} is passed.
+   */
+  void onEndSerialization (@Nonnull IHCNode aNode, @Nonnegative long nChars, long nBytes);
+}
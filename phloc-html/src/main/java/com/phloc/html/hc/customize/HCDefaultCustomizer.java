@@ -66,6 +66,7 @@ import com.phloc.html.js.EJSEvent;
 import com.phloc.html.js.builder.JSExpr;
 import com.phloc.html.js.builder.JSInvocation;
 import com.phloc.html.js.builder.jquery.JQuery;
+import com.phloc.html.js.provider.SealedJSCodeProvider;
 
 // ESCA-JAVA0116:
 /**
@@ -98,6 +99,10 @@ public class HCDefaultCustomizer extends HCEmptyCustomizer
   // JS Code
   public static final JSInvocation JS_BLUR = JSExpr.invoke ("blur"); //$NON-NLS-1$
 
+  // The sealed version of JS_BLUR, which is emitted for every unfocusable
+  // element
+  private static final SealedJSCodeProvider JS_BLUR_SEALED = JSExpr.seal (JS_BLUR);
+
   private static final Logger s_aLogger = LoggerFactory.getLogger (HCDefaultCustomizer.class);
 
   private final boolean m_bCreateControlCSSClasses;
@@ -206,7 +211,7 @@ public class HCDefaultCustomizer extends HCEmptyCustomizer
 
       // Unfocusable?
       if (aElement.isUnfocusable ())
-        aElement.setEventHandler (EJSEvent.ONFOCUS, JS_BLUR);
+        aElement.setEventHandler (EJSEvent.ONFOCUS, JS_BLUR_SEALED);
 
       // Added "disabled" class on disabled element
       if (aElement instanceof IHCCanBeDisabled <?>)
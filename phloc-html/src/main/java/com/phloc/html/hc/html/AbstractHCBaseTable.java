@@ -853,7 +853,8 @@ public abstract class AbstractHCBaseTable <IMPLTYPE extends AbstractHCBaseTable
 
   private static void _checkConsistency (@Nonnull final String sContext,
                                          @Nonnull final AbstractHCTablePart <?> aPart,
-                                         @Nonnegative final int nCols)
+                                         @Nonnegative final int nCols,
+                                         @Nonnull final List <String> aWarnings)
   {
     int nRowIndex = 0;
     boolean bTotalHasRowSpans = false;
@@ -864,14 +865,14 @@ public abstract class AbstractHCBaseTable <IMPLTYPE extends AbstractHCBaseTable
         // Pass null if no row spans are defined!
         final int nRowCols = _getEffectiveCellCount (aBodyRow, bTotalHasRowSpans ? aTotalRowSpans : null);
         if (nRowCols != nCols)
-          HCConsistencyChecker.consistencyWarning (sContext +
-                                                   " row #" +
-                                                   (nRowIndex + 1) +
-                                                   " has " +
-                                                   nRowCols +
-                                                   " cells but was expecting " +
-                                                   nCols +
-                                                   " cells");
+          aWarnings.add (sContext +
+                         " row #" +
+                         (nRowIndex + 1) +
+                         " has " +
+                         nRowCols +
+                         " cells but was expecting " +
+                         nCols +
+                         " cells");
         // Add row span at the end of the row so that it affects following rows
         {
           final int [] aRowRowSpans = new int [aBodyRow.getCellCount ()];
@@ -901,6 +902,23 @@ public abstract class AbstractHCBaseTable <IMPLTYPE extends AbstractHCBaseTable
   }
 
   public static void checkInternalConsistency (@Nonnull final AbstractHCBaseTable <?> aBaseTable)
+  {
+    for (final String sWarning : getInternalConsistencyWarnings (aBaseTable))
+      HCConsistencyChecker.consistencyWarning (sWarning);
+  }
+
+  /**
+   * Check whether all rows of the passed table have the same number of
+   * effective cells.
+   * 
+   * @param aBaseTable
+   *        The table to check. May not be <code>null</code>.
+   * @return A list with all consistency warnings. Never <code>null</code> but
+   *         empty if the table is consistent.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public static List <String> getInternalConsistencyWarnings (@Nonnull final AbstractHCBaseTable <?> aBaseTable)
   {
     // Determine number of columns to use
     int nCols = 0;
@@ -916,9 +934,11 @@ public abstract class AbstractHCBaseTable <IMPLTYPE extends AbstractHCBaseTable
     String sPrefix = "Table";
     if (StringHelper.hasText (aBaseTable.getID ()))
       sPrefix += " with ID " + aBaseTable.getID ();
-    _checkConsistency (sPrefix + " header", aBaseTable.m_aHead, nCols);
-    _checkConsistency (sPrefix + " body", aBaseTable.m_aBody, nCols);
-    _checkConsistency (sPrefix + " footer", aBaseTable.m_aFoot, nCols);
+    final List <String> ret = new ArrayList <String> ();
+    _checkConsistency (sPrefix + " header", aBaseTable.m_aHead, nCols, ret);
+    _checkConsistency (sPrefix + " body", aBaseTable.m_aBody, nCols, ret);
+    _checkConsistency (sPrefix + " footer", aBaseTable.m_aFoot, nCols, ret);
+    return ret;
   }
 
   @Override
@@ -35,7 +35,9 @@ import com.phloc.html.hc.conversion.IHCConversionSettingsToNode;
 import com.phloc.html.hc.impl.AbstractHCElementWithChildren;
 import com.phloc.html.js.CJS;
 import com.phloc.html.js.IJSCodeProvider;
+import com.phloc.html.js.JSCodeHelper;
 import com.phloc.html.js.builder.IJSStatement;
+import com.phloc.html.js.builder.JSPrinter;
 
 /**
  * Represents an HTML &lt;form&gt; element
@@ -239,7 +241,11 @@ public abstract class AbstractHCForm <IMPLTYPE extends AbstractHCForm <IMPLTYPE>
     super.applyProperties (aElement, aConversionSettings);
 
     if (m_aAction != null)
-      aElement.setAttribute (CHTMLAttributes.ACTION, CJS.JS_PREFIX + m_aAction.getJSCode ());
+    {
+      final StringBuilder aSB = new StringBuilder (CJS.JS_PREFIX);
+      JSCodeHelper.appendJSCode (aSB, m_aAction, JSPrinter.getSettings ());
+      aElement.setAttribute (CHTMLAttributes.ACTION, aSB.toString ());
+    }
     else
       if (StringHelper.hasText (m_sAction))
         aElement.setAttribute (CHTMLAttributes.ACTION, m_sAction);
@@ -379,7 +379,7 @@ public class HCHead extends AbstractHCElement <HCHead>
                             @Nonnull final IHCConversionSettingsToNode aConversionSettings)
   {
     for (final HCLink aLink : m_aLinks)
-      eHead.appendChild (aLink.convertToNode (aConversionSettings));
+      eHead.appendChild (convertChildToNode (aLink, aConversionSettings));
   }
 
   @OverrideOnDemand
@@ -388,11 +388,12 @@ public class HCHead extends AbstractHCElement <HCHead>
   {
     int nCSSExternals = 0;
     for (final IHCNode aCSS : m_aCSS)
-    {
       if (aCSS instanceof IHCCSSNode && !((IHCCSSNode) aCSS).isInlineCSS ())
         ++nCSSExternals;
-      eHead.appendChild (aCSS.convertToNode (aConversionSettings));
-    }
+
+    // Subsequent conditional comments share the comment markers
+    for (final IHCNode aCSS : HCSpecialNodeHandler.getMergedConditionalCommentNodes (m_aCSS))
+      eHead.appendChild (convertChildToNode (aCSS, aConversionSettings));
 
     // Sources:
     // http://acidmartin.wordpress.com/2008/11/25/the-32-external-css-files-limitation-of-internet-explorer-and-more/
@@ -407,8 +408,8 @@ public class HCHead extends AbstractHCElement <HCHead>
   protected void emitJS (@Nonnull final IMicroElement eHead,
                          @Nonnull final IHCConversionSettingsToNode aConversionSettings)
   {
-    for (final IHCNode aJS : m_aJS)
-      eHead.appendChild (aJS.convertToNode (aConversionSettings));
+    for (final IHCNode aJS : HCSpecialNodeHandler.getMergedConditionalCommentNodes (m_aJS))
+      eHead.appendChild (convertChildToNode (aJS, aConversionSettings));
   }
 
   @Override
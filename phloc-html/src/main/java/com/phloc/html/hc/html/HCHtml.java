@@ -34,9 +34,12 @@ import com.phloc.html.EHTMLVersion;
 import com.phloc.html.hc.IHCNode;
 import com.phloc.html.hc.IHCNodeWithChildren;
 import com.phloc.html.hc.api.EHCTextDirection;
+import com.phloc.html.hc.conversion.HCSettings;
 import com.phloc.html.hc.conversion.IHCConversionSettingsToNode;
+import com.phloc.html.hc.conversion.IHCRenderListener;
 import com.phloc.html.hc.htmlext.HCUtils;
 import com.phloc.html.hc.impl.AbstractHCElement;
+import com.phloc.html.hc.impl.HCFlushPoint;
 import com.phloc.html.hc.utils.HCSpecialNodeHandler;
 
 /**
@@ -46,8 +49,12 @@ import com.phloc.html.hc.utils.HCSpecialNodeHandler;
  */
 public class HCHtml extends AbstractHCElement <HCHtml>
 {
+  /** By default progressive rendering is disabled */
+  public static final boolean DEFAULT_PROGRESSIVE_RENDERING = false;
+
   private HCHead m_aHead;
   private HCBody m_aBody;
+  private boolean m_bProgressiveRendering = DEFAULT_PROGRESSIVE_RENDERING;
 
   /**
    * Create a new HTML object
@@ -108,6 +115,38 @@ public class HCHtml extends AbstractHCElement <HCHtml>
     return m_aBody;
   }
 
+  /**
+   * @return <code>true</code> if progressive rendering is enabled,
+   *         <code>false</code> if not.
+   */
+  public final boolean isProgressiveRendering ()
+  {
+    return m_bProgressiveRendering;
+  }
+
+  /**
+   * Enable or disable progressive rendering. If enabled, a {@link HCFlushPoint}
+   * is emitted directly after the head element. When this document is written
+   * with {@link com.phloc.html.hc.conversion.HCSettings#writeHTML} the doctype
+   * and the complete head (incl. all CSS and JS references) are therefore
+   * flushed to the client before the body is converted, so that the browser
+   * can start fetching the referenced resources early. Additional flush points
+   * can be placed anywhere in the body by adding {@link HCFlushPoint} nodes.
+   * All out-of-band nodes of the body are still moved to the head upfront,
+   * because this happens on the HC tree before anything is written.<br>
+   * This setting has no effect on regular conversion.
+   * 
+   * @param bProgressiveRendering
+   *        <code>true</code> to enable progressive rendering
+   * @return this
+   */
+  @Nonnull
+  public final HCHtml setProgressiveRendering (final boolean bProgressiveRendering)
+  {
+    m_bProgressiveRendering = bProgressiveRendering;
+    return this;
+  }
+
   public static void extractAndHandleOutOfBandNodes (@Nonnull final IHCConversionSettingsToNode aConversionSettings,
                                                      @Nonnull final IHCNodeWithChildren <?> aBaseNode,
                                                      @Nonnull final HCHead aHead,
@@ -117,11 +156,30 @@ public class HCHtml extends AbstractHCElement <HCHtml>
 
     if (aConversionSettings.isExtractOutOfBandNodes ())
     {
-      // Extract all out-of-band nodes
-      final List <IHCNode> aExtractedOutOfBandNodes = HCSpecialNodeHandler.recursiveExtractAndRemoveOutOfBandNodes (aBaseNode);
+      final IHCRenderListener aListener = HCSettings.getRenderListener (aConversionSettings);
+      if (aListener == null)
+      {
+        // Extract all out-of-band nodes
+        final List <IHCNode> aExtractedOutOfBandNodes = HCSpecialNodeHandler.recursiveExtractAndRemoveOutOfBandNodes (aBaseNode);
 
-      // Call out-of-band node handler
-      aConversionSettings.getCustomizer ().handleOutOfBandNodes (aExtractedOutOfBandNodes, aHead, aBody);
+        // Call out-of-band node handler
+        aConversionSettings.getCustomizer ().handleOutOfBandNodes (aExtractedOutOfBandNodes, aHead, aBody);
+      }
+      else
+      {
+        int nExtracted = 0;
+        aListener.onBeginOutOfBandExtraction (aBaseNode);
+        try
+        {
+          final List <IHCNode> aExtractedOutOfBandNodes = HCSpecialNodeHandler.recursiveExtractAndRemoveOutOfBandNodes (aBaseNode);
+          nExtracted = aExtractedOutOfBandNodes.size ();
+          aConversionSettings.getCustomizer ().handleOutOfBandNodes (aExtractedOutOfBandNodes, aHead, aBody);
+        }
+        finally
+        {
+          aListener.onEndOutOfBandExtraction (aBaseNode, nExtracted);
+        }
+      }
     }
   }
 
@@ -157,13 +215,24 @@ public class HCHtml extends AbstractHCElement <HCHtml>
     applyProperties (aRoot, aConversionSettings);
 
     // Use the getter, to ensure the elements are not null
-    final IMicroNode eBody = getBody ().convertToNode (aConversionSettings);
+    final IMicroNode eBody = convertChildToNode (getBody (), aConversionSettings);
     aRoot.appendChild (eBody);
 
     // Create head after body but insert it before the body
-    final IMicroNode eHead = getHead ().convertToNode (aConversionSettings);
+    // Note: in shallow conversion mode head and body are converted in document
+    // order, which is fine, because all out-of-band nodes were already moved
+    // to the head in internalBeforeConvertToNode
+    final IMicroNode eHead = convertChildToNode (getHead (), aConversionSettings);
     aRoot.insertAtIndex (0, eHead);
 
+    if (m_bProgressiveRendering)
+    {
+      // Flush directly after the head - results in null in regular mode
+      final IMicroNode aFlushPoint = convertChildToNode (new HCFlushPoint (), aConversionSettings);
+      if (aFlushPoint != null)
+        aRoot.insertAtIndex (1, aFlushPoint);
+    }
+
     // Done!
     return aDoc;
   }
@@ -181,6 +250,7 @@ public class HCHtml extends AbstractHCElement <HCHtml>
     return ToStringGenerator.getDerived (super.toString ())
                             .appendIfNotNull ("head", m_aHead)
                             .appendIfNotNull ("body", m_aBody)
+                            .append ("progressiveRendering", m_bProgressiveRendering)
                             .toString ();
   }
 }
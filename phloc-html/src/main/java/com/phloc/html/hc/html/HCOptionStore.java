@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.html;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.phloc.commons.microdom.IMicroContainer;
+import com.phloc.commons.microdom.IMicroElement;
+import com.phloc.commons.microdom.impl.MicroContainer;
+import com.phloc.commons.microdom.impl.MicroElement;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.CHTMLAttributeValues;
+import com.phloc.html.CHTMLAttributes;
+import com.phloc.html.EHTMLElement;
+import com.phloc.html.hc.conversion.IHCConversionSettingsToNode;
+import com.phloc.html.hc.impl.AbstractHCNode;
+import com.phloc.html.hc.impl.HCTextNode;
+
+/**
+ * A compact store for a large number of simple options of an {@link HCSelect}.
+ * Instead of one {@link HCOption} object per option, only the values and texts
+ * are stored in parallel arrays and the selection state in a {@link BitSet}.
+ * The option elements are created directly when converting. An {@link HCOption}
+ * object is only created if it is explicitly requested - from then on the
+ * option object defines the state of the respective option.
+ * 
+ * @author Philip Helger
+ */
+@NotThreadSafe
+final class HCOptionStore extends AbstractHCNode
+{
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private String [] m_aValues = new String [DEFAULT_CAPACITY];
+  private String [] m_aTexts = new String [DEFAULT_CAPACITY];
+  private final BitSet m_aSelected = new BitSet ();
+  private int m_nSize = 0;
+  // Lazily created
+  private HCOption [] m_aMaterialized;
+  private int m_nMaterializedCount = 0;
+
+  HCOptionStore ()
+  {}
+
+  @Nonnegative
+  int size ()
+  {
+    return m_nSize;
+  }
+
+  void add (@Nullable final String sValue, @Nullable final String sText, final boolean bSelected)
+  {
+    if (m_nSize == m_aValues.length)
+    {
+      final int nNewCapacity = m_nSize * 2;
+      m_aValues = Arrays.copyOf (m_aValues, nNewCapacity);
+      m_aTexts = Arrays.copyOf (m_aTexts, nNewCapacity);
+      if (m_aMaterialized != null)
+        m_aMaterialized = Arrays.copyOf (m_aMaterialized, nNewCapacity);
+    }
+    m_aValues[m_nSize] = sValue;
+    m_aTexts[m_nSize] = sText;
+    if (bSelected)
+      m_aSelected.set (m_nSize);
+    m_nSize++;
+  }
+
+  void remove (@Nonnegative final int nIndex)
+  {
+    final int nMoved = m_nSize - nIndex - 1;
+    if (nMoved > 0)
+    {
+      System.arraycopy (m_aValues, nIndex + 1, m_aValues, nIndex, nMoved);
+      System.arraycopy (m_aTexts, nIndex + 1, m_aTexts, nIndex, nMoved);
+      if (m_aMaterialized != null)
+      {
+        if (m_aMaterialized[nIndex] != null)
+          m_nMaterializedCount--;
+        System.arraycopy (m_aMaterialized, nIndex + 1, m_aMaterialized, nIndex, nMoved);
+      }
+      for (int i = nIndex; i < m_nSize - 1; ++i)
+        m_aSelected.set (i, m_aSelected.get (i + 1));
+    }
+    else
+      if (m_aMaterialized != null && m_aMaterialized[nIndex] != null)
+        m_nMaterializedCount--;
+
+    m_nSize--;
+    m_aValues[m_nSize] = null;
+    m_aTexts[m_nSize] = null;
+    m_aSelected.clear (m_nSize);
+    if (m_aMaterialized != null)
+      m_aMaterialized[m_nSize] = null;
+  }
+
+  @Nullable
+  private HCOption _getMaterialized (@Nonnegative final int nIndex)
+  {
+    return m_aMaterialized == null ? null : m_aMaterialized[nIndex];
+  }
+
+  /**
+   * Get the option at the specified index as an {@link HCOption}. The object
+   * is created on the first request and from then on defines the state of the
+   * option.
+   * 
+   * @param nIndex
+   *        The index to use. Must be &ge; 0 and &lt; {@link #size()}.
+   * @return The option object. Never <code>null</code>.
+   */
+  @Nonnull
+  HCOption getOption (@Nonnegative final int nIndex)
+  {
+    if (m_aMaterialized == null)
+      m_aMaterialized = new HCOption [m_aValues.length];
+
+    HCOption ret = m_aMaterialized[nIndex];
+    if (ret == null)
+    {
+      ret = new HCOption ().setValue (m_aValues[nIndex])
+                           .addChild (HCTextNode.createOnDemand (m_aTexts[nIndex]))
+                           .setSelected (m_aSelected.get (nIndex));
+      m_aMaterialized[nIndex] = ret;
+      m_nMaterializedCount++;
+    }
+    return ret;
+  }
+
+  void getAllOptions (@Nonnull final List <HCOption> aTarget)
+  {
+    for (int i = 0; i < m_nSize; ++i)
+      aTarget.add (getOption (i));
+  }
+
+  boolean isSelected (@Nonnegative final int nIndex)
+  {
+    final HCOption aOption = _getMaterialized (nIndex);
+    return aOption != null ? aOption.isSelected () : m_aSelected.get (nIndex);
+  }
+
+  void getAllSelectedOptions (@Nonnull final List <HCOption> aTarget)
+  {
+    if (m_nMaterializedCount == 0)
+    {
+      for (int i = m_aSelected.nextSetBit (0); i >= 0; i = m_aSelected.nextSetBit (i + 1))
+        aTarget.add (getOption (i));
+    }
+    else
+      for (int i = 0; i < m_nSize; ++i)
+        if (isSelected (i))
+          aTarget.add (getOption (i));
+  }
+
+  @Nonnegative
+  int getSelectedCount ()
+  {
+    if (m_nMaterializedCount == 0)
+      return m_aSelected.cardinality ();
+
+    int ret = 0;
+    for (int i = 0; i < m_nSize; ++i)
+      if (isSelected (i))
+        ret++;
+    return ret;
+  }
+
+  boolean hasSelected ()
+  {
+    if (m_nMaterializedCount == 0)
+      return !m_aSelected.isEmpty ();
+
+    for (int i = 0; i < m_nSize; ++i)
+      if (isSelected (i))
+        return true;
+    return false;
+  }
+
+  @Override
+  public boolean canConvertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    return m_nSize > 0;
+  }
+
+  @Override
+  @Nonnull
+  protected IMicroContainer internalConvertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    final IMicroContainer ret = new MicroContainer ();
+    final String sNamespaceURI = aConversionSettings.getHTMLNamespaceURI ();
+    final String sElementName = EHTMLElement.OPTION.getElementNameLowerCase ();
+    for (int i = 0; i < m_nSize; ++i)
+    {
+      final HCOption aOption = _getMaterialized (i);
+      if (aOption != null)
+        ret.appendChild (aOption.convertToNode (aConversionSettings));
+      else
+      {
+        // Create the same output as HCOption
+        final IMicroElement eOption = new MicroElement (sNamespaceURI, sElementName);
+        if (m_aSelected.get (i))
+          eOption.setAttribute (CHTMLAttributes.SELECTED, CHTMLAttributeValues.SELECTED);
+        if (m_aValues[i] != null)
+          eOption.setAttribute (CHTMLAttributes.VALUE, m_aValues[i]);
+        // Ensure opening and closing tag are written
+        eOption.appendText (m_aTexts[i] != null ? m_aTexts[i] : "");
+        ret.appendChild (eOption);
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return ToStringGenerator.getDerived (super.toString ())
+                            .append ("size", m_nSize)
+                            .append ("selectedCount", getSelectedCount ())
+                            .append ("materializedCount", m_nMaterializedCount)
+                            .toString ();
+  }
+}
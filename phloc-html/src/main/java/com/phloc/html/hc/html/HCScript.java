@@ -17,12 +17,14 @@
  */
 package com.phloc.html.hc.html;
 
+import java.io.IOException;
 import java.util.Locale;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
 import javax.annotation.concurrent.GuardedBy;
 
 import org.slf4j.Logger;
@@ -41,6 +43,9 @@ import com.phloc.commons.xml.serialize.XMLWriterSettings;
 import com.phloc.html.annotations.OutOfBandNode;
 import com.phloc.html.hc.conversion.IHCConversionSettingsToNode;
 import com.phloc.html.js.IJSCodeProvider;
+import com.phloc.html.js.IJSStreamingCodeProvider;
+import com.phloc.html.js.JSCodeHelper;
+import com.phloc.html.js.builder.JSWriterSettings;
 import com.phloc.html.js.provider.UnparsedJSCodeProvider;
 
 /**
@@ -51,7 +56,7 @@ import com.phloc.html.js.provider.UnparsedJSCodeProvider;
  * @see HCScriptOnDocumentReady
  */
 @OutOfBandNode
-public class HCScript extends AbstractHCScript <HCScript> implements IJSCodeProvider
+public class HCScript extends AbstractHCScript <HCScript> implements IJSStreamingCodeProvider
 {
   public static enum EMode
   {
@@ -182,6 +187,12 @@ public class HCScript extends AbstractHCScript <HCScript> implements IJSCodeProv
     return m_aProvider.getJSCode ();
   }
 
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    JSCodeHelper.writeJSCode (m_aProvider, aAppendable, aSettings);
+  }
+
   /**
    * @return The masking mode. Never <code>null</code>.
    */
@@ -20,6 +20,7 @@ package com.phloc.html.hc.html;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nonnegative;
@@ -46,7 +47,12 @@ import com.phloc.html.hc.impl.HCTextNode;
 import com.phloc.html.request.IHCRequestField;
 
 /**
- * Represents an HTML &lt;select&gt; element
+ * Represents an HTML &lt;select&gt; element<br>
+ * For selects with a huge number of simple options (e.g. thousands of
+ * countries or time zones) the <code>addCompactOption</code> methods should be
+ * used. These options are kept in a compact store and {@link HCOption} objects
+ * are only created when they are explicitly requested (e.g. via
+ * {@link #getOptions()}).
  * 
  * @author Philip Helger
  */
@@ -217,6 +223,84 @@ public class HCSelect extends AbstractHCControl <HCSelect>
     return addOptionAtIndex (nIndex, aOption);
   }
 
+  @Nonnull
+  private HCOptionStore _getTrailingOptionStore ()
+  {
+    // Ensure list is present
+    if (m_aOptions == null)
+      m_aOptions = new ArrayList <IHCNode> ();
+
+    // Append to the last store, so that the order of all options is retained
+    final IHCNode aLast = ContainerHelper.getLastElement (m_aOptions);
+    if (aLast instanceof HCOptionStore)
+      return (HCOptionStore) aLast;
+
+    final HCOptionStore ret = new HCOptionStore ();
+    m_aOptions.add (ret);
+    return ret;
+  }
+
+  /**
+   * Add a simple option to the compact option store. The option is selected if
+   * the value is contained in the preselected values. Note:
+   * {@link #onAddOption(HCOption)} is not invoked for compact options.
+   * 
+   * @param sValue
+   *        The option value. May be <code>null</code>.
+   * @param sText
+   *        The option text. May be <code>null</code>.
+   * @return this
+   */
+  @Nonnull
+  public final HCSelect addCompactOption (@Nullable final String sValue, @Nullable final String sText)
+  {
+    return addCompactOption (sValue, sText, isPreselectedValue (sValue));
+  }
+
+  /**
+   * Add a simple option to the compact option store. Note:
+   * {@link #onAddOption(HCOption)} is not invoked for compact options.
+   * 
+   * @param sValue
+   *        The option value. May be <code>null</code>.
+   * @param sText
+   *        The option text. May be <code>null</code>.
+   * @param bSelected
+   *        <code>true</code> if the option should be selected
+   * @return this
+   */
+  @Nonnull
+  public final HCSelect addCompactOption (@Nullable final String sValue,
+                                          @Nullable final String sText,
+                                          final boolean bSelected)
+  {
+    _getTrailingOptionStore ().add (sValue, sText, bSelected);
+    return this;
+  }
+
+  /**
+   * Add many simple options to the compact option store. Each option is
+   * selected if the value is contained in the preselected values.
+   * 
+   * @param aValueToText
+   *        A map from option value to option text. The iteration order of the
+   *        map is used. May not be <code>null</code>.
+   * @return this
+   */
+  @Nonnull
+  public final HCSelect addCompactOptions (@Nonnull final Map <String, String> aValueToText)
+  {
+    ValueEnforcer.notNull (aValueToText, "ValueToText");
+
+    if (!aValueToText.isEmpty ())
+    {
+      final HCOptionStore aStore = _getTrailingOptionStore ();
+      for (final Map.Entry <String, String> aEntry : aValueToText.entrySet ())
+        aStore.add (aEntry.getKey (), aEntry.getValue (), isPreselectedValue (aEntry.getKey ()));
+    }
+    return this;
+  }
+
   @Nonnull
   public final HCSelect addOptionGroup (@Nullable final HCOptGroup aOptGroup)
   {
@@ -237,7 +321,7 @@ public class HCSelect extends AbstractHCControl <HCSelect>
     {
       final List <IHCNode> aRest = new ArrayList <IHCNode> ();
       for (final IHCNode aChild : m_aOptions)
-        if (!(aChild instanceof HCOption))
+        if (!(aChild instanceof HCOption) && !(aChild instanceof HCOptionStore))
           aRest.add (aChild);
       m_aOptions = aRest;
     }
@@ -268,11 +352,26 @@ public class HCSelect extends AbstractHCControl <HCSelect>
       for (final IHCNode aChild : m_aOptions)
       {
         if (aChild instanceof HCOption)
+        {
           if (nMatch++ == nIndex)
           {
             m_aOptions.remove (nTotalIndex);
             break;
           }
+        }
+        else
+          if (aChild instanceof HCOptionStore)
+          {
+            final HCOptionStore aStore = (HCOptionStore) aChild;
+            if (nIndex < nMatch + aStore.size ())
+            {
+              aStore.remove (nIndex - nMatch);
+              if (aStore.size () == 0)
+                m_aOptions.remove (nTotalIndex);
+              break;
+            }
+            nMatch += aStore.size ();
+          }
         ++nTotalIndex;
       }
     }
@@ -311,6 +410,9 @@ public class HCSelect extends AbstractHCControl <HCSelect>
       for (final IHCNode aChild : m_aOptions)
         if (aChild instanceof HCOption)
           ret++;
+        else
+          if (aChild instanceof HCOptionStore)
+            ret += ((HCOptionStore) aChild).size ();
     return ret;
   }
 
@@ -329,7 +431,8 @@ public class HCSelect extends AbstractHCControl <HCSelect>
   }
 
   /**
-   * @return A non-<code>null</code> list of all available options.
+   * @return A non-<code>null</code> list of all available options. Note: this
+   *         creates {@link HCOption} objects for all compact options.
    */
   @Nonnull
   @ReturnsMutableCopy
@@ -340,9 +443,25 @@ public class HCSelect extends AbstractHCControl <HCSelect>
       for (final IHCNode aChild : m_aOptions)
         if (aChild instanceof HCOption)
           ret.add ((HCOption) aChild);
+        else
+          if (aChild instanceof HCOptionStore)
+            ((HCOptionStore) aChild).getAllOptions (ret);
     return ret;
   }
 
+  /**
+   * @return A non-<code>null</code> list of all option and option group nodes
+   *         in the order they are emitted. Compactly added options are
+   *         contained as opaque nodes and are not converted to
+   *         {@link HCOption} objects.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public final List <IHCNode> getAllOptionNodes ()
+  {
+    return ContainerHelper.newList (m_aOptions);
+  }
+
   /**
    * @return A non-<code>null</code> list of all available option groups.
    */
@@ -370,16 +489,29 @@ public class HCSelect extends AbstractHCControl <HCSelect>
   public final HCOption getOptionAtIndex (@Nonnegative final int nIndex)
   {
     HCOption ret = null;
-    if (m_aOptions != null)
+    if (m_aOptions != null && nIndex >= 0)
     {
       int nMatch = 0;
       for (final IHCNode aChild : m_aOptions)
         if (aChild instanceof HCOption)
+        {
           if (nMatch++ == nIndex)
           {
             ret = (HCOption) aChild;
             break;
           }
+        }
+        else
+          if (aChild instanceof HCOptionStore)
+          {
+            final HCOptionStore aStore = (HCOptionStore) aChild;
+            if (nIndex < nMatch + aStore.size ())
+            {
+              ret = aStore.getOption (nIndex - nMatch);
+              break;
+            }
+            nMatch += aStore.size ();
+          }
     }
     return ret;
   }
@@ -417,7 +549,7 @@ public class HCSelect extends AbstractHCControl <HCSelect>
   {
     if (m_aOptions != null)
       for (final IHCNode aChild : m_aOptions)
-        if (aChild instanceof HCOption)
+        if (aChild instanceof HCOption || (aChild instanceof HCOptionStore && ((HCOptionStore) aChild).size () > 0))
           return true;
     return false;
   }
@@ -444,8 +576,14 @@ public class HCSelect extends AbstractHCControl <HCSelect>
     final List <HCOption> ret = new ArrayList <HCOption> ();
     if (m_aOptions != null)
       for (final IHCNode aChild : m_aOptions)
-        if (aChild instanceof HCOption && ((HCOption) aChild).isSelected ())
-          ret.add ((HCOption) aChild);
+        if (aChild instanceof HCOption)
+        {
+          if (((HCOption) aChild).isSelected ())
+            ret.add ((HCOption) aChild);
+        }
+        else
+          if (aChild instanceof HCOptionStore)
+            ((HCOptionStore) aChild).getAllSelectedOptions (ret);
     return ret;
   }
 
@@ -458,8 +596,14 @@ public class HCSelect extends AbstractHCControl <HCSelect>
     int ret = 0;
     if (m_aOptions != null)
       for (final IHCNode aChild : m_aOptions)
-        if (aChild instanceof HCOption && ((HCOption) aChild).isSelected ())
-          ++ret;
+        if (aChild instanceof HCOption)
+        {
+          if (((HCOption) aChild).isSelected ())
+            ++ret;
+        }
+        else
+          if (aChild instanceof HCOptionStore)
+            ret += ((HCOptionStore) aChild).getSelectedCount ();
     return ret;
   }
 
@@ -472,8 +616,14 @@ public class HCSelect extends AbstractHCControl <HCSelect>
   {
     if (m_aOptions != null)
       for (final IHCNode aChild : m_aOptions)
-        if (aChild instanceof HCOption && ((HCOption) aChild).isSelected ())
-          return true;
+        if (aChild instanceof HCOption)
+        {
+          if (((HCOption) aChild).isSelected ())
+            return true;
+        }
+        else
+          if (aChild instanceof HCOptionStore && ((HCOptionStore) aChild).hasSelected ())
+            return true;
     return false;
   }
 
@@ -64,7 +64,6 @@ import com.phloc.html.hc.api.EHCTextDirection;
 import com.phloc.html.hc.api5.EHCContentEditable;
 import com.phloc.html.hc.api5.EHCDraggable;
 import com.phloc.html.hc.api5.EHCDropZone;
-import com.phloc.html.hc.conversion.HCConsistencyChecker;
 import com.phloc.html.hc.conversion.IHCConversionSettingsToNode;
 import com.phloc.html.js.EJSEvent;
 import com.phloc.html.js.IJSCodeProvider;
@@ -887,9 +886,7 @@ public abstract class AbstractHCElement <THISTYPE extends AbstractHCElement <THI
   @OverridingMethodsMustInvokeSuper
   protected IMicroNode internalConvertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
   {
-    // Run some consistency checks if desired
-    if (aConversionSettings.areConsistencyChecksEnabled ())
-      HCConsistencyChecker.runConsistencyCheckBeforeCreation (this, aConversionSettings.getHTMLVersion ());
+    // Consistency checks are run once for the whole tree in convertToNode
 
     // Create the element
     final IMicroElement ret = createElement (aConversionSettings);
@@ -334,7 +334,7 @@ public abstract class AbstractHCElementWithInternalChildren <THISTYPE extends Ab
     super.applyProperties (aElement, aConversionSettings);
     if (hasChildren ())
       for (final CHILDTYPE aChild : getChildrenFormEmitting (m_aChildren))
-        aElement.appendChild (aChild.convertToNode (aConversionSettings));
+        aElement.appendChild (convertChildToNode (aChild, aConversionSettings));
 
     if (!aElement.hasChildren ())
     {
@@ -346,7 +346,7 @@ public abstract class AbstractHCHasChildrenMutable <THISTYPE extends AbstractHCH
     final IMicroContainer ret = new MicroContainer ();
     if (hasChildren ())
       for (final CHILDTYPE aNode : m_aChildren)
-        ret.appendChild (aNode.convertToNode (aConversionSettings));
+        ret.appendChild (convertChildToNode (aNode, aConversionSettings));
     return ret;
   }
 
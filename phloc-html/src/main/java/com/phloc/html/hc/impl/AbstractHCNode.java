@@ -17,13 +17,18 @@
  */
 package com.phloc.html.hc.impl;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.List;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
 import javax.annotation.concurrent.NotThreadSafe;
 
+import com.phloc.commons.CGlobal;
 import com.phloc.commons.annotations.Nonempty;
 import com.phloc.commons.annotations.OverrideOnDemand;
 import com.phloc.commons.microdom.IMicroNode;
@@ -32,8 +37,13 @@ import com.phloc.commons.string.ToStringGenerator;
 import com.phloc.html.hc.IHCHasChildren;
 import com.phloc.html.hc.IHCHasChildrenMutable;
 import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.conversion.HCConsistencyChecker;
+import com.phloc.html.hc.conversion.HCHTMLSerializer;
+import com.phloc.html.hc.conversion.HCSettings;
 import com.phloc.html.hc.conversion.IHCConversionSettings;
 import com.phloc.html.hc.conversion.IHCConversionSettingsToNode;
+import com.phloc.html.hc.conversion.IHCRenderListener;
+import com.phloc.html.hc.customize.IHCCustomizer;
 
 /**
  * Default implementation of the {@link IHCNode} interface.
@@ -45,6 +55,7 @@ public abstract class AbstractHCNode implements IHCNode
 {
   private boolean m_bCustomized = false;
   private boolean m_bConvertedToNode = false;
+  private transient boolean m_bShallowConversion = false;
 
   public void onAdded (@Nonnegative final int nIndex, @Nonnull final IHCHasChildrenMutable <?, ?> aParent)
   {}
@@ -69,7 +80,22 @@ public abstract class AbstractHCNode implements IHCNode
       m_bCustomized = true;
 
       // Run the global customizer
-      aConversionSettings.getCustomizer ().customizeNode (aParentNode, this, aConversionSettings.getHTMLVersion ());
+      final IHCCustomizer aCustomizer = aConversionSettings.getCustomizer ();
+      final IHCRenderListener aListener = HCSettings.getRenderListener (aConversionSettings);
+      if (aListener == null)
+        aCustomizer.customizeNode (aParentNode, this, aConversionSettings.getHTMLVersion ());
+      else
+      {
+        aListener.onBeginCustomization (this, aCustomizer);
+        try
+        {
+          aCustomizer.customizeNode (aParentNode, this, aConversionSettings.getHTMLVersion ());
+        }
+        finally
+        {
+          aListener.onEndCustomization (this, aCustomizer);
+        }
+      }
 
       if (this instanceof IHCHasChildren)
       {
@@ -127,7 +153,21 @@ public abstract class AbstractHCNode implements IHCNode
       m_bConvertedToNode = true;
 
       // Call internal method exactly once
-      internalBeforeConvertToNode (aConversionSettings);
+      final IHCRenderListener aListener = HCSettings.getRenderListener (aConversionSettings);
+      if (aListener == null)
+        internalBeforeConvertToNode (aConversionSettings);
+      else
+      {
+        aListener.onBeginBeforeConvertToNode (this);
+        try
+        {
+          internalBeforeConvertToNode (aConversionSettings);
+        }
+        finally
+        {
+          aListener.onEndBeforeConvertToNode (this);
+        }
+      }
     }
   }
 
@@ -155,23 +195,102 @@ public abstract class AbstractHCNode implements IHCNode
   }
 
   @Nullable
-  public final IMicroNode convertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  private IMicroNode _convertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
   {
-    if (!canConvertToNode (aConversionSettings))
-      return null;
-
     // Before conversion
     beforeConvertToNode (aConversionSettings);
 
+    // Check the whole tree once, if this is the outermost node of the
+    // conversion. The returned settings prevent that the descendants are
+    // checked again.
+    final IHCConversionSettingsToNode aNodeConversionSettings = HCConsistencyChecker.runConsistencyCheckForConversion (this,
+                                                                                                                     aConversionSettings);
+
     // Main conversion
-    final IMicroNode aOriginalNode = internalConvertToNode (aConversionSettings);
+    final IMicroNode aOriginalNode = internalConvertToNode (aNodeConversionSettings);
 
     // After convert
-    final IMicroNode ret = internalAfterConvertToNode (aConversionSettings, aOriginalNode);
+    final IMicroNode ret = internalAfterConvertToNode (aNodeConversionSettings, aOriginalNode);
 
     return ret;
   }
 
+  @Nullable
+  public final IMicroNode convertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    if (!canConvertToNode (aConversionSettings))
+      return null;
+
+    final IHCRenderListener aListener = HCSettings.getRenderListener (aConversionSettings);
+    if (aListener == null)
+      return _convertToNode (aConversionSettings);
+
+    // The preparation and the consistency checks are reported as part of the
+    // conversion
+    IMicroNode ret = null;
+    aListener.onBeginConvertToNode (this);
+    try
+    {
+      ret = _convertToNode (aConversionSettings);
+      return ret;
+    }
+    finally
+    {
+      aListener.onEndConvertToNode (this, ret);
+    }
+  }
+
+  /**
+   * Convert this node to a micro node, but represent all child HC nodes that
+   * are converted via
+   * {@link #convertChildToNode(IHCNode, IHCConversionSettingsToNode)} by
+   * {@link HCMicroNodePlaceholder} objects. This is used by the streaming
+   * {@link HCHTMLSerializer}, so that the micro node tree of the whole document
+   * is never created at once. The result of this method must therefore never
+   * be passed to a regular micro node serializer.
+   * 
+   * @param aConversionSettings
+   *        The conversion settings to be used. May not be <code>null</code>.
+   * @return The created micro node with placeholders. May be <code>null</code>
+   *         if this node cannot be converted.
+   */
+  @Nullable
+  public final IMicroNode convertToShallowNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    m_bShallowConversion = true;
+    try
+    {
+      return convertToNode (aConversionSettings);
+    }
+    finally
+    {
+      m_bShallowConversion = false;
+    }
+  }
+
+  /**
+   * Convert a child node of this node. In regular mode this is identical to
+   * calling {@link IHCNode#convertToNode(IHCConversionSettingsToNode)} on the
+   * child. In shallow mode (see
+   * {@link #convertToShallowNode(IHCConversionSettingsToNode)}) a placeholder
+   * is returned instead and the child is converted when it is serialized.
+   * 
+   * @param aChild
+   *        The child node to be converted. May not be <code>null</code>.
+   * @param aConversionSettings
+   *        The conversion settings to be used. May not be <code>null</code>.
+   * @return The converted child node or a placeholder for it. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  protected final IMicroNode convertChildToNode (@Nonnull final IHCNode aChild,
+                                                 @Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    if (m_bShallowConversion)
+      return new HCMicroNodePlaceholder (aChild);
+    return aChild.convertToNode (aConversionSettings);
+  }
+
   @Nonnull
   public final HCConditionalCommentNode getAsConditionalCommentNode (@Nonnull @Nonempty final String sCondition)
   {
@@ -181,7 +300,7 @@ public abstract class AbstractHCNode implements IHCNode
   }
 
   @Nonnull
-  public final String getAsHTMLString (@Nonnull final IHCConversionSettings aConversionSettings)
+  private String _getAsHTMLString (@Nonnull final IHCConversionSettings aConversionSettings)
   {
     final IMicroNode aNode = convertToNode (aConversionSettings);
     if (aNode == null)
@@ -189,6 +308,70 @@ public abstract class AbstractHCNode implements IHCNode
     return MicroWriter.getNodeAsString (aNode, aConversionSettings.getXMLWriterSettings ());
   }
 
+  @Nonnull
+  public final String getAsHTMLString (@Nonnull final IHCConversionSettings aConversionSettings)
+  {
+    final IHCRenderListener aListener = HCSettings.getRenderListener (aConversionSettings);
+    if (aListener == null)
+      return _getAsHTMLString (aConversionSettings);
+
+    // The conversion is reported as part of the serialization
+    String ret = null;
+    aListener.onBeginSerialization (this);
+    try
+    {
+      ret = _getAsHTMLString (aConversionSettings);
+      return ret;
+    }
+    finally
+    {
+      aListener.onEndSerialization (this, ret == null ? 0 : ret.length (), CGlobal.ILLEGAL_ULONG);
+    }
+  }
+
+  /**
+   * Write the HTML representation of this node directly to the passed writer.
+   * In contrast to {@link #getAsHTMLString(IHCConversionSettings)} neither the
+   * complete micro node tree nor the complete HTML string is created in memory.
+   * For arbitrary {@link IHCNode} implementations use
+   * {@link com.phloc.html.hc.conversion.HCSettings#writeHTML(IHCNode, Writer, IHCConversionSettings)}.
+   * 
+   * @param aWriter
+   *        The writer to write to. May not be <code>null</code>. The writer is
+   *        not closed by this method.
+   * @param aConversionSettings
+   *        The conversion settings to be used. May not be <code>null</code>.
+   * @throws IOException
+   *         In case writing fails
+   */
+  public final void writeTo (@Nonnull @WillNotClose final Writer aWriter,
+                             @Nonnull final IHCConversionSettings aConversionSettings) throws IOException
+  {
+    new HCHTMLSerializer (aConversionSettings).write (this, aWriter);
+  }
+
+  /**
+   * Write the HTML representation of this node directly to the passed output
+   * stream, using the charset of the XML writer settings contained in the
+   * passed conversion settings. This avoids both the complete HTML string and
+   * the copy of the encoded bytes. For arbitrary {@link IHCNode}
+   * implementations use
+   * {@link com.phloc.html.hc.conversion.HCSettings#writeHTML(IHCNode, OutputStream, IHCConversionSettings)}.
+   * 
+   * @param aOS
+   *        The output stream to write to. May not be <code>null</code>. The
+   *        stream is not closed by this method.
+   * @param aConversionSettings
+   *        The conversion settings to be used. May not be <code>null</code>.
+   * @throws IOException
+   *         In case writing fails
+   */
+  public final void writeTo (@Nonnull @WillNotClose final OutputStream aOS,
+                             @Nonnull final IHCConversionSettings aConversionSettings) throws IOException
+  {
+    new HCHTMLSerializer (aConversionSettings).write (this, aOS);
+  }
+
   @OverrideOnDemand
   @Nonnull
   public String getPlainText ()
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.impl;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.OverridingMethodsMustInvokeSuper;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.annotations.Nonempty;
+import com.phloc.commons.microdom.IMicroContainer;
+import com.phloc.commons.microdom.impl.MicroContainer;
+import com.phloc.commons.microdom.impl.MicroText;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.IHCNodeBuilder;
+import com.phloc.html.hc.conversion.IHCConversionSettingsToNode;
+import com.phloc.html.hc.html.HCHtml;
+
+/**
+ * A node that renders the node created by an {@link IHCNodeBuilder} only once
+ * per cache key, content version and conversion settings and afterwards emits
+ * the cached markup verbatim. This is meant for large, rarely changing parts of
+ * a page like navigation menus, footers or option lists. Whenever the content
+ * changes, the version must be increased - old versions are evicted from the
+ * {@link HCFragmentCache} over time.<br>
+ * The out-of-band nodes (like JS and CSS) of the built node are extracted upon
+ * rendering and are replayed as children of this node on every usage, so that
+ * {@link HCHtml#extractAndHandleOutOfBandNodes} can still move them to the
+ * head or the end of the body. They are cached in their serialized form and
+ * each usage gets its own copies, so they must be serializable like all HC
+ * nodes. If out-of-band node extraction is disabled in the conversion
+ * settings, they are part of the cached markup. The markup is serialized
+ * without namespace declarations, as it is meant to be embedded into a
+ * surrounding document.<br>
+ * Like all HC nodes, an object of this class should be used for a single
+ * rendering only. The builder is only invoked on a cache miss.
+ *
+ * @author Philip Helger
+ */
+public class HCCachedFragment extends AbstractHCNodeList <HCCachedFragment>
+{
+  private final IHCNodeBuilder m_aBuilder;
+  private final String m_sCacheKey;
+  private final long m_nVersion;
+  private final HCFragmentCache m_aCache;
+  private HCFragmentCache.CachedFragment m_aFragment;
+
+  /**
+   * Constructor using the default fragment cache.
+   *
+   * @param aBuilder
+   *        The builder for the node to be cached. May not be <code>null</code>.
+   * @param sCacheKey
+   *        The cache key. May neither be <code>null</code> nor empty.
+   * @param nVersion
+   *        The version of the content. Must be changed whenever the content
+   *        created by the builder changes.
+   */
+  public HCCachedFragment (@Nonnull final IHCNodeBuilder aBuilder,
+                           @Nonnull @Nonempty final String sCacheKey,
+                           final long nVersion)
+  {
+    this (aBuilder, sCacheKey, nVersion, HCFragmentCache.getDefaultInstance ());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aBuilder
+   *        The builder for the node to be cached. May not be <code>null</code>.
+   * @param sCacheKey
+   *        The cache key. May neither be <code>null</code> nor empty.
+   * @param nVersion
+   *        The version of the content. Must be changed whenever the content
+   *        created by the builder changes.
+   * @param aCache
+   *        The cache to use. May not be <code>null</code>.
+   */
+  public HCCachedFragment (@Nonnull final IHCNodeBuilder aBuilder,
+                           @Nonnull @Nonempty final String sCacheKey,
+                           final long nVersion,
+                           @Nonnull final HCFragmentCache aCache)
+  {
+    m_aBuilder = ValueEnforcer.notNull (aBuilder, "Builder");
+    m_sCacheKey = ValueEnforcer.notEmpty (sCacheKey, "CacheKey");
+    m_nVersion = nVersion;
+    m_aCache = ValueEnforcer.notNull (aCache, "Cache");
+  }
+
+  /**
+   * @return The builder that is invoked on a cache miss. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public IHCNodeBuilder getBuilder ()
+  {
+    return m_aBuilder;
+  }
+
+  /**
+   * @return The cache key. Neither <code>null</code> nor empty.
+   */
+  @Nonnull
+  @Nonempty
+  public String getCacheKey ()
+  {
+    return m_sCacheKey;
+  }
+
+  /**
+   * @return The content version.
+   */
+  public long getVersion ()
+  {
+    return m_nVersion;
+  }
+
+  /**
+   * @return The cache used. Never <code>null</code>.
+   */
+  @Nonnull
+  public HCFragmentCache getCache ()
+  {
+    return m_aCache;
+  }
+
+  /**
+   * @return The cached markup of this node or <code>null</code> if this node
+   *         was not yet converted.
+   */
+  @Nullable
+  public String getCachedMarkup ()
+  {
+    return m_aFragment == null ? null : m_aFragment.getMarkup ();
+  }
+
+  @Override
+  @OverridingMethodsMustInvokeSuper
+  public boolean canConvertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    // Before resolving, it is unknown whether there is any markup
+    if (m_aFragment == null || m_aFragment.getMarkup ().length () > 0)
+      return true;
+    return super.canConvertToNode (aConversionSettings);
+  }
+
+  @Override
+  @OverridingMethodsMustInvokeSuper
+  protected void internalBeforeConvertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    m_aFragment = m_aCache.getOrRender (m_sCacheKey, m_nVersion, m_aBuilder, aConversionSettings);
+
+    // Replay the out-of-band nodes, so that they can be extracted by the
+    // surrounding HCHtml. Each call returns new node objects.
+    removeAllChildren ();
+    for (final IHCNode aOutOfBandNode : m_aFragment.getOutOfBandNodes ())
+      addChild (aOutOfBandNode);
+
+    super.internalBeforeConvertToNode (aConversionSettings);
+  }
+
+  @Override
+  @Nonnull
+  @OverridingMethodsMustInvokeSuper
+  protected IMicroContainer internalConvertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    final IMicroContainer ret = new MicroContainer ();
+    if (m_aFragment.getMarkup ().length () > 0)
+      ret.appendChild (new MicroText (m_aFragment.getMarkup ()).setEscape (false));
+
+    // Append all out-of-band nodes that were not extracted
+    ret.appendChild (super.internalConvertToNode (aConversionSettings));
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return ToStringGenerator.getDerived (super.toString ())
+                            .append ("cacheKey", m_sCacheKey)
+                            .append ("version", m_nVersion)
+                            .toString ();
+  }
+}
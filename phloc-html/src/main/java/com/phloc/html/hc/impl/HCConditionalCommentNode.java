@@ -29,6 +29,7 @@ import com.phloc.commons.ValueEnforcer;
 import com.phloc.commons.annotations.Nonempty;
 import com.phloc.commons.charset.CCharset;
 import com.phloc.commons.microdom.IMicroNode;
+import com.phloc.commons.microdom.impl.MicroComment;
 import com.phloc.commons.microdom.serialize.MicroWriter;
 import com.phloc.commons.string.StringHelper;
 import com.phloc.commons.string.ToStringGenerator;
@@ -53,6 +54,8 @@ import com.phloc.html.hc.conversion.IHCConversionSettingsToNode;
 public class HCConditionalCommentNode extends AbstractHCWrappingNode
 {
   public static final String DEFAULT_LINE_SEPARATOR = XMLWriterSettings.DEFAULT_NEWLINE_STRING;
+  /** The text that ends the content of a conditional comment */
+  public static final String CONDITIONAL_END = "<![endif]";
   public static final Version IE5 = new Version (5);
   public static final Version IE6 = new Version (6);
   public static final Version IE7 = new Version (7);
@@ -121,18 +124,36 @@ public class HCConditionalCommentNode extends AbstractHCWrappingNode
     return this;
   }
 
+  /**
+   * Get the text that starts the content of the conditional comment - that is
+   * everything between the comment start and the wrapped node.
+   *
+   * @param aXMLWriterSettings
+   *        The XML writer settings to be used. May not be <code>null</code>.
+   * @return The condition in brackets, optionally followed by the line
+   *         separator. Neither <code>null</code> nor empty.
+   */
   @Nonnull
   @Nonempty
-  private String _getCommentText (@Nonnull final IMicroNode aNode, @Nonnull final IXMLWriterSettings aXMLWriterSettings)
+  public String getConditionalStart (@Nonnull final IXMLWriterSettings aXMLWriterSettings)
   {
     // Only create a newline when alignment is enabled
     final String sLineSeparator = aXMLWriterSettings.getIndent ().isAlign () ? m_sLineSeparator : "";
-    return '[' +
-           m_sCondition +
-           "]>" +
-           sLineSeparator +
-           MicroWriter.getNodeAsString (aNode, aXMLWriterSettings) +
-           "<![endif]";
+    return '[' + m_sCondition + "]>" + sLineSeparator;
+  }
+
+  @Nonnull
+  @Nonempty
+  private String _getCommentText (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    // First convert the contained node to a micro node
+    final IMicroNode aWrappedMicroNode = m_aWrappedNode.convertToNode (aConversionSettings);
+    final IXMLWriterSettings aXMLWriterSettings = aConversionSettings.getXMLWriterSettings ();
+
+    // Now wrap the created XML in the special format required for a conditional
+    // comment
+    final String sWrappedXML = MicroWriter.getNodeAsString (aWrappedMicroNode, aXMLWriterSettings);
+    return getConditionalStart (aXMLWriterSettings) + sWrappedXML + CONDITIONAL_END;
   }
 
   /**
@@ -147,19 +168,17 @@ public class HCConditionalCommentNode extends AbstractHCWrappingNode
   @Nonnull
   public HCCommentNode getCommentNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
   {
-    // First convert the contained node to a micro node
-    final IMicroNode aWrappedMicroNode = m_aWrappedNode.convertToNode (aConversionSettings);
-    // Now wrap the created XML in the special format required for a conditional
-    // comment
-    final String sWrappedXML = _getCommentText (aWrappedMicroNode, aConversionSettings.getXMLWriterSettings ());
-    return new HCCommentNode (sWrappedXML);
+    return new HCCommentNode (_getCommentText (aConversionSettings));
   }
 
   @Override
   @Nullable
   protected IMicroNode internalConvertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
   {
-    return getCommentNode (aConversionSettings).convertToNode (aConversionSettings);
+    // Create the comment directly without an intermediate HC node. Note: the
+    // streaming HCHTMLSerializer does not call this method but writes the
+    // conditional comment markers directly around the wrapped node.
+    return new MicroComment (_getCommentText (aConversionSettings));
   }
 
   @Override
@@ -17,6 +17,9 @@
  */
 package com.phloc.html.hc.impl;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.annotation.Nonnull;
 
 import com.phloc.commons.ValueEnforcer;
@@ -24,33 +27,72 @@ import com.phloc.commons.microdom.EMicroNodeType;
 import com.phloc.commons.microdom.IMicroCDATA;
 import com.phloc.commons.microdom.IMicroNode;
 import com.phloc.commons.microdom.IMicroText;
+import com.phloc.commons.microdom.impl.MicroText;
+import com.phloc.commons.microdom.serialize.MicroWriter;
 import com.phloc.commons.microdom.utils.MicroRecursiveIterator;
 import com.phloc.commons.string.StringHelper;
 import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.commons.xml.serialize.IXMLWriterSettings;
+import com.phloc.commons.xml.serialize.XMLWriterSettings;
 import com.phloc.html.hc.conversion.IHCConversionSettingsToNode;
 
 /**
  * This is a simple wrapper around any {@link IMicroNode} so it can easily be
- * used in a HC* construction!
+ * used in a HC* construction!<br>
+ * By default the wrapped node is cloned upon each conversion, because a micro
+ * node can only have a single parent. In <b>frozen</b> mode the wrapped node is
+ * considered immutable: it is serialized only once per XML writer settings
+ * (without namespace declarations, as it is embedded into the surrounding
+ * document) and emitted as pre-escaped content, and the plain text is
+ * calculated only once. Frozen wrappers may therefore be rendered many times
+ * without cloning, but the wrapped node must not be modified anymore.
  * 
  * @author Philip Helger
  */
 public class HCDOMWrapper extends AbstractHCNode
 {
   private final IMicroNode m_aNode;
+  private final boolean m_bFrozen;
+  // Only used in frozen mode
+  private final Map <HCXMLWriterSettingsFingerprint, String> m_aSerializedCache;
+  private volatile String m_sPlainText;
 
   /**
-   * Constructor.
+   * Constructor for a non-frozen wrapper.
    * 
    * @param aNode
    *        The node to be wrapped. May not be <code>null</code>.
    */
   public HCDOMWrapper (@Nonnull final IMicroNode aNode)
+  {
+    this (aNode, false);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param aNode
+   *        The node to be wrapped. May not be <code>null</code>.
+   * @param bFrozen
+   *        <code>true</code> if the passed node is never modified afterwards
+   *        and the serialized form can be cached.
+   */
+  public HCDOMWrapper (@Nonnull final IMicroNode aNode, final boolean bFrozen)
   {
     ValueEnforcer.notNull (aNode, "Node");
     if (aNode.hasParent ())
       throw new IllegalArgumentException ("Passed MicroNode may not have a parent!");
     m_aNode = aNode;
+    m_bFrozen = bFrozen;
+    m_aSerializedCache = bFrozen ? new ConcurrentHashMap <HCXMLWriterSettingsFingerprint, String> () : null;
+  }
+
+  private HCDOMWrapper (@Nonnull final HCDOMWrapper aOther)
+  {
+    m_aNode = aOther.m_aNode;
+    m_bFrozen = true;
+    m_aSerializedCache = aOther.m_aSerializedCache;
+    m_sPlainText = aOther.getPlainText ();
   }
 
   /**
@@ -62,10 +104,78 @@ public class HCDOMWrapper extends AbstractHCNode
     return m_aNode;
   }
 
+  /**
+   * @return <code>true</code> if this wrapper is in frozen mode and the wrapped
+   *         node must not be modified.
+   */
+  public boolean isFrozen ()
+  {
+    return m_bFrozen;
+  }
+
+  /**
+   * Create a new frozen wrapper around the same node. The new wrapper shares
+   * the serialized forms and the plain text of this wrapper, so that a frozen
+   * node that is needed in many renderings is serialized only once per XML
+   * writer settings, while each rendering uses its own HC node.
+   * 
+   * @return A new frozen wrapper. Never <code>null</code>.
+   * @throws IllegalStateException
+   *         If this wrapper is not frozen
+   */
+  @Nonnull
+  public HCDOMWrapper getFrozenCopy ()
+  {
+    if (!m_bFrozen)
+      throw new IllegalStateException ("Only frozen wrappers can be copied");
+    return new HCDOMWrapper (this);
+  }
+
+  /**
+   * Get the wrapped node serialized with the passed settings but without
+   * namespace declarations. In frozen mode the result is cached.
+   * 
+   * @param aXWS
+   *        The XML writer settings to use. May not be <code>null</code>.
+   * @return The serialized node. Never <code>null</code>.
+   */
+  @Nonnull
+  public String getSerializedNode (@Nonnull final IXMLWriterSettings aXWS)
+  {
+    ValueEnforcer.notNull (aXWS, "XMLWriterSettings");
+
+    if (!m_bFrozen)
+      return _serialize (aXWS);
+
+    final HCXMLWriterSettingsFingerprint aKey = new HCXMLWriterSettingsFingerprint (aXWS);
+    String ret = m_aSerializedCache.get (aKey);
+    if (ret == null)
+    {
+      // Serializing twice in concurrent calls does no harm
+      ret = _serialize (aXWS);
+      m_aSerializedCache.put (aKey, ret);
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private String _serialize (@Nonnull final IXMLWriterSettings aXWS)
+  {
+    final XMLWriterSettings aRealXWS = new XMLWriterSettings (aXWS);
+    aRealXWS.setEmitNamespaces (false);
+    return MicroWriter.getNodeAsString (m_aNode, aRealXWS);
+  }
+
   @Override
   @Nonnull
   protected IMicroNode internalConvertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
   {
+    if (m_bFrozen)
+    {
+      // Emit the pre-serialized content as-is
+      return new MicroText (getSerializedNode (aConversionSettings.getXMLWriterSettings ())).setEscape (false);
+    }
+
     // Always return a clone, because otherwise upon first generation the node
     // will be assigned a parent, and upon second generation an exception is
     // thrown, because a parent is already present!
@@ -75,6 +185,21 @@ public class HCDOMWrapper extends AbstractHCNode
   @Override
   @Nonnull
   public String getPlainText ()
+  {
+    if (!m_bFrozen)
+      return _getPlainText ();
+
+    String ret = m_sPlainText;
+    if (ret == null)
+    {
+      ret = _getPlainText ();
+      m_sPlainText = ret;
+    }
+    return ret;
+  }
+
+  @Nonnull
+  private String _getPlainText ()
   {
     final StringBuilder ret = new StringBuilder ();
     for (final IMicroNode aNode : new MicroRecursiveIterator (m_aNode))
@@ -106,6 +231,9 @@ public class HCDOMWrapper extends AbstractHCNode
   @Override
   public String toString ()
   {
-    return ToStringGenerator.getDerived (super.toString ()).append ("node", m_aNode).toString ();
+    return ToStringGenerator.getDerived (super.toString ())
+                            .append ("node", m_aNode)
+                            .append ("frozen", m_bFrozen)
+                            .toString ();
   }
 }
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.impl;
+
+import javax.annotation.Nonnull;
+
+import com.phloc.commons.microdom.IMicroContainer;
+import com.phloc.commons.microdom.impl.MicroContainer;
+import com.phloc.html.hc.conversion.IHCConversionSettingsToNode;
+
+/**
+ * A node that never creates any output. It only marks a position where the
+ * streaming {@link com.phloc.html.hc.conversion.HCHTMLSerializer} flushes the
+ * underlying writer, so that the already created parts of a page can be sent
+ * to the client, while the rest is still being rendered.
+ * 
+ * @author Philip Helger
+ */
+public class HCFlushPoint extends AbstractHCNode
+{
+  public HCFlushPoint ()
+  {}
+
+  @Override
+  public boolean canConvertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    // Never part of the regular output
+    return false;
+  }
+
+  @Override
+  @Nonnull
+  protected IMicroContainer internalConvertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    return new MicroContainer ();
+  }
+}
@@ -0,0 +1,491 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.impl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.phloc.commons.annotations.Nonempty;
+import com.phloc.commons.annotations.ReturnsMutableCopy;
+import com.phloc.commons.equals.EqualsUtils;
+import com.phloc.commons.hash.HashCodeGenerator;
+import com.phloc.commons.io.streams.NonBlockingByteArrayInputStream;
+import com.phloc.commons.io.streams.NonBlockingByteArrayOutputStream;
+import com.phloc.commons.io.streams.StreamUtils;
+import com.phloc.commons.microdom.IMicroNode;
+import com.phloc.commons.microdom.serialize.MicroWriter;
+import com.phloc.commons.state.EChange;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.commons.xml.serialize.XMLWriterSettings;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.IHCNodeBuilder;
+import com.phloc.html.hc.conversion.IHCConversionSettingsToNode;
+import com.phloc.html.hc.htmlext.HCUtils;
+import com.phloc.html.hc.utils.AbstractBoundedLRUCache;
+import com.phloc.html.hc.utils.HCSpecialNodeHandler;
+
+/**
+ * A bounded LRU cache for the pre-rendered markup of {@link HCCachedFragment}
+ * objects. Each entry is identified by the cache key and version of the
+ * fragment as well as by a fingerprint of the conversion settings used. The
+ * cache is bounded both by the number of entries and by the total number of
+ * cached characters - whatever limit is hit first evicts the least recently
+ * used entries.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class HCFragmentCache
+{
+  /** The default maximum number of cached entries */
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+  /** The default maximum number of cached characters */
+  public static final long DEFAULT_MAX_CHARS = 4 * 1024 * 1024;
+
+  private static final HCFragmentCache s_aDefaultInstance = new HCFragmentCache (DEFAULT_MAX_ENTRIES,
+                                                                                 DEFAULT_MAX_CHARS);
+
+  /**
+   * The immutable result of rendering a fragment once. The out-of-band nodes
+   * are kept in their serialized form, so that every user of the entry gets
+   * its own node objects.
+   *
+   * @author Philip Helger
+   */
+  @Immutable
+  static final class CachedFragment
+  {
+    private final String m_sMarkup;
+    private final byte [] m_aSerializedOutOfBandNodes;
+
+    CachedFragment (@Nonnull final String sMarkup, @Nullable final byte [] aSerializedOutOfBandNodes)
+    {
+      m_sMarkup = sMarkup;
+      m_aSerializedOutOfBandNodes = aSerializedOutOfBandNodes;
+    }
+
+    /**
+     * @return The serialized markup without the out-of-band nodes. Never
+     *         <code>null</code> but maybe empty.
+     */
+    @Nonnull
+    String getMarkup ()
+    {
+      return m_sMarkup;
+    }
+
+    /**
+     * @return A new copy of the out-of-band nodes that were extracted upon
+     *         rendering. The nodes are already customized and prepared. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    @ReturnsMutableCopy
+    List <IHCNode> getOutOfBandNodes ()
+    {
+      if (m_aSerializedOutOfBandNodes == null)
+        return new ArrayList <IHCNode> ();
+      return _deserializeNodes (m_aSerializedOutOfBandNodes);
+    }
+  }
+
+  /**
+   * The parts of the conversion settings that influence the created markup.
+   *
+   * @author Philip Helger
+   */
+  @Immutable
+  private static final class SettingsFingerprint
+  {
+    private final Object [] m_aValues;
+    private final int m_nHashCode;
+
+    SettingsFingerprint (@Nonnull final IHCConversionSettingsToNode aSettings)
+    {
+      m_aValues = new Object [] { aSettings.getHTMLVersion (),
+                                  Boolean.valueOf (aSettings.isExtractOutOfBandNodes ()),
+                                  Boolean.valueOf (aSettings.areConsistencyChecksEnabled ()),
+                                  aSettings.getCustomizer (),
+                                  Boolean.valueOf (aSettings.getCSSWriterSettings ().isOptimizedOutput ()),
+                                  new HCXMLWriterSettingsFingerprint (aSettings.getXMLWriterSettings ()) };
+      final HashCodeGenerator aHCG = new HashCodeGenerator (this);
+      for (final Object aValue : m_aValues)
+        aHCG.append (aValue);
+      m_nHashCode = aHCG.getHashCode ();
+    }
+
+    @Override
+    public boolean equals (final Object o)
+    {
+      if (o == this)
+        return true;
+      if (!(o instanceof SettingsFingerprint))
+        return false;
+      final SettingsFingerprint rhs = (SettingsFingerprint) o;
+      if (m_nHashCode != rhs.m_nHashCode)
+        return false;
+      for (int i = 0; i < m_aValues.length; ++i)
+        if (!EqualsUtils.equals (m_aValues[i], rhs.m_aValues[i]))
+          return false;
+      return true;
+    }
+
+    @Override
+    public int hashCode ()
+    {
+      return m_nHashCode;
+    }
+  }
+
+  @Immutable
+  private static final class CacheKey
+  {
+    private final String m_sCacheKey;
+    private final long m_nVersion;
+    private final SettingsFingerprint m_aSettings;
+    private final int m_nHashCode;
+
+    CacheKey (@Nonnull final String sCacheKey,
+              final long nVersion,
+              @Nonnull final IHCConversionSettingsToNode aSettings)
+    {
+      m_sCacheKey = sCacheKey;
+      m_nVersion = nVersion;
+      m_aSettings = new SettingsFingerprint (aSettings);
+      m_nHashCode = new HashCodeGenerator (this).append (sCacheKey)
+                                                .append (nVersion)
+                                                .append (m_aSettings)
+                                                .getHashCode ();
+    }
+
+    @Override
+    public boolean equals (final Object o)
+    {
+      if (o == this)
+        return true;
+      if (!(o instanceof CacheKey))
+        return false;
+      final CacheKey rhs = (CacheKey) o;
+      return m_nHashCode == rhs.m_nHashCode &&
+             m_sCacheKey.equals (rhs.m_sCacheKey) &&
+             m_nVersion == rhs.m_nVersion &&
+             m_aSettings.equals (rhs.m_aSettings);
+    }
+
+    @Override
+    public int hashCode ()
+    {
+      return m_nHashCode;
+    }
+  }
+
+  /**
+   * The bounded LRU map, limited by entries and markup characters.
+   *
+   * @author Philip Helger
+   */
+  private static final class FragmentLRUCache extends AbstractBoundedLRUCache <CacheKey, CachedFragment>
+  {
+    FragmentLRUCache (@Nonnegative final int nMaxEntries, @Nonnegative final long nMaxChars)
+    {
+      super (nMaxEntries, nMaxChars);
+    }
+
+    @Override
+    protected long getValueSize (@Nonnull final CachedFragment aValue)
+    {
+      return aValue.getMarkup ().length ();
+    }
+  }
+
+  private final FragmentLRUCache m_aCache;
+
+  /**
+   * Constructor
+   *
+   * @param nMaxEntries
+   *        The maximum number of entries to keep. Must be &gt; 0.
+   * @param nMaxChars
+   *        The maximum number of markup characters to keep over all entries.
+   *        Must be &gt; 0.
+   */
+  public HCFragmentCache (@Nonnegative final int nMaxEntries, @Nonnegative final long nMaxChars)
+  {
+    m_aCache = new FragmentLRUCache (nMaxEntries, nMaxChars);
+  }
+
+  /**
+   * @return The global default cache instance used by {@link HCCachedFragment}
+   *         objects that were created without an explicit cache.
+   */
+  @Nonnull
+  public static HCFragmentCache getDefaultInstance ()
+  {
+    return s_aDefaultInstance;
+  }
+
+  @Nonnegative
+  public int getMaxEntries ()
+  {
+    return m_aCache.getMaxEntries ();
+  }
+
+  @Nonnegative
+  public long getMaxChars ()
+  {
+    return m_aCache.getMaxSize ();
+  }
+
+  /**
+   * @return The number of currently cached entries.
+   */
+  @Nonnegative
+  public int getEntryCount ()
+  {
+    return m_aCache.getEntryCount ();
+  }
+
+  /**
+   * @return The number of markup characters currently cached.
+   */
+  @Nonnegative
+  public long getCachedCharCount ()
+  {
+    return m_aCache.getTotalSize ();
+  }
+
+  /**
+   * @return The number of lookups that were served from the cache.
+   */
+  @Nonnegative
+  public long getHitCount ()
+  {
+    return m_aCache.getHitCount ();
+  }
+
+  /**
+   * @return The number of lookups that required rendering.
+   */
+  @Nonnegative
+  public long getMissCount ()
+  {
+    return m_aCache.getMissCount ();
+  }
+
+  /**
+   * @return The number of entries that were removed because a limit was hit.
+   */
+  @Nonnegative
+  public long getEvictionCount ()
+  {
+    return m_aCache.getEvictionCount ();
+  }
+
+  /**
+   * Reset the hit, miss and eviction counters. The cache content is not
+   * touched.
+   */
+  public void resetStatistics ()
+  {
+    m_aCache.resetStatistics ();
+  }
+
+  /**
+   * Remove all entries.
+   *
+   * @return {@link EChange}
+   */
+  @Nonnull
+  public EChange clearCache ()
+  {
+    return m_aCache.clear ();
+  }
+
+  /**
+   * Remove all entries of the passed cache key - independent of the version
+   * and the conversion settings.
+   *
+   * @param sCacheKey
+   *        The cache key to remove. May be <code>null</code>.
+   * @return {@link EChange}
+   */
+  @Nonnull
+  public EChange removeCacheKey (@Nullable final String sCacheKey)
+  {
+    if (sCacheKey == null)
+      return EChange.UNCHANGED;
+
+    EChange eChange = EChange.UNCHANGED;
+    for (final CacheKey aKey : m_aCache.getAllKeys ())
+      if (aKey.m_sCacheKey.equals (sCacheKey))
+      {
+        if (m_aCache.remove (aKey).isChanged ())
+          eChange = EChange.CHANGED;
+      }
+    return eChange;
+  }
+
+  @Nullable
+  private static byte [] _serializeNodes (@Nonnull final List <IHCNode> aNodes)
+  {
+    if (aNodes.isEmpty ())
+      return null;
+
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    ObjectOutputStream aOOS = null;
+    try
+    {
+      aOOS = new ObjectOutputStream (aBAOS);
+      aOOS.writeObject (new ArrayList <IHCNode> (aNodes));
+      aOOS.flush ();
+      return aBAOS.toByteArray ();
+    }
+    catch (final IOException ex)
+    {
+      throw new IllegalStateException ("The out-of-band nodes of a cached fragment must be serializable", ex);
+    }
+    finally
+    {
+      StreamUtils.close (aOOS);
+    }
+  }
+
+  @Nonnull
+  @SuppressWarnings ("unchecked")
+  private static List <IHCNode> _deserializeNodes (@Nonnull final byte [] aBytes)
+  {
+    ObjectInputStream aOIS = null;
+    try
+    {
+      aOIS = new ObjectInputStream (new NonBlockingByteArrayInputStream (aBytes));
+      return (List <IHCNode>) aOIS.readObject ();
+    }
+    catch (final IOException ex)
+    {
+      throw new IllegalStateException ("Failed to read the out-of-band nodes of a cached fragment", ex);
+    }
+    catch (final ClassNotFoundException ex)
+    {
+      throw new IllegalStateException ("Failed to read the out-of-band nodes of a cached fragment", ex);
+    }
+    finally
+    {
+      StreamUtils.close (aOIS);
+    }
+  }
+
+  /**
+   * Render the node of the passed builder. The node is customized, prepared
+   * and - if enabled in the settings - the out-of-band nodes are extracted
+   * before it is serialized.
+   */
+  @Nonnull
+  private static CachedFragment _render (@Nonnull final IHCNodeBuilder aBuilder,
+                                         @Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    final IHCNode aNode = aBuilder.build ();
+    if (aNode == null)
+      return new CachedFragment ("", null);
+
+    // Use a wrapping list, so that out-of-band nodes on the top level can be
+    // extracted as well
+    final HCNodeList aWrapper = new HCNodeList ().addChild (aNode);
+    HCUtils.customizeNodes (aWrapper, aConversionSettings);
+    aWrapper.beforeConvertToNode (aConversionSettings);
+
+    final List <IHCNode> aOutOfBandNodes = aConversionSettings.isExtractOutOfBandNodes ()
+                                                                                         ? HCSpecialNodeHandler.recursiveExtractAndRemoveOutOfBandNodes (aWrapper)
+                                                                                         : new ArrayList <IHCNode> ();
+
+    // Keep them in their serialized form, as the node objects must not be
+    // shared between different renderings
+    final byte [] aSerializedOutOfBandNodes = _serializeNodes (aOutOfBandNodes);
+
+    final IMicroNode aMicroNode = aWrapper.convertToNode (aConversionSettings);
+    if (aMicroNode == null)
+      return new CachedFragment ("", aSerializedOutOfBandNodes);
+
+    // The fragment is embedded into a surrounding document that already
+    // declares the namespace
+    final XMLWriterSettings aXWS = aConversionSettings.getMutableXMLWriterSettings ();
+    aXWS.setEmitNamespaces (false);
+    final String sMarkup = MicroWriter.getNodeAsString (aMicroNode, aXWS);
+    return new CachedFragment (sMarkup, aSerializedOutOfBandNodes);
+  }
+
+  /**
+   * Get the cached fragment for the passed parameters, or render and cache it.
+   * If the same fragment is requested concurrently it may be rendered more
+   * than once, but the builder is never invoked while the cache is locked.
+   *
+   * @param sCacheKey
+   *        The cache key. May neither be <code>null</code> nor empty.
+   * @param nVersion
+   *        The content version.
+   * @param aBuilder
+   *        The builder to be used on a cache miss. May not be
+   *        <code>null</code>.
+   * @param aConversionSettings
+   *        The conversion settings to use. May not be <code>null</code>.
+   * @return The cached fragment. Never <code>null</code>.
+   */
+  @Nonnull
+  CachedFragment getOrRender (@Nonnull @Nonempty final String sCacheKey,
+                              final long nVersion,
+                              @Nonnull final IHCNodeBuilder aBuilder,
+                              @Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    final CacheKey aKey = new CacheKey (sCacheKey, nVersion, aConversionSettings);
+    CachedFragment ret = m_aCache.get (aKey);
+    if (ret == null)
+    {
+      ret = _render (aBuilder, aConversionSettings);
+      m_aCache.put (aKey, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * @return A snapshot of all cache keys in LRU order (least recently used
+   *         first). Mainly for debugging purposes.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public List <String> getAllCacheKeys ()
+  {
+    final List <String> ret = new ArrayList <String> ();
+    for (final CacheKey aKey : m_aCache.getAllKeys ())
+      ret.add (aKey.m_sCacheKey);
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("cache", m_aCache).toString ();
+  }
+}
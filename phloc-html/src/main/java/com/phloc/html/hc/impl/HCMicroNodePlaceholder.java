@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.impl;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.microdom.EMicroNodeType;
+import com.phloc.commons.microdom.IMicroNode;
+import com.phloc.commons.microdom.IMicroProcessingInstruction;
+import com.phloc.commons.microdom.impl.AbstractMicroNode;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.hc.IHCNode;
+
+/**
+ * A micro node that is a placeholder for a not yet converted HC node. It is
+ * only created in the shallow conversion mode (see
+ * {@link AbstractHCNode#convertToShallowNode(com.phloc.html.hc.conversion.IHCConversionSettingsToNode)}
+ * ) and is resolved by the streaming serializer
+ * {@link com.phloc.html.hc.conversion.HCHTMLSerializer} at the time it is
+ * written. The placeholder is a processing instruction for this serializer
+ * with the target {@link #PI_TARGET}, so it is neither merged nor flattened
+ * when appended to a micro element. It must never be passed to a regular micro
+ * node serializer!
+ * 
+ * @author Philip Helger
+ */
+@Immutable
+public final class HCMicroNodePlaceholder extends AbstractMicroNode implements IMicroProcessingInstruction
+{
+  /** The processing instruction target of all placeholders */
+  public static final String PI_TARGET = "phloc-hc-node";
+
+  private final IHCNode m_aHCNode;
+
+  public HCMicroNodePlaceholder (@Nonnull final IHCNode aHCNode)
+  {
+    m_aHCNode = ValueEnforcer.notNull (aHCNode, "HCNode");
+  }
+
+  /**
+   * @return The HC node to be converted when this placeholder is serialized.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  public IHCNode getHCNode ()
+  {
+    return m_aHCNode;
+  }
+
+  @Nonnull
+  public EMicroNodeType getType ()
+  {
+    return EMicroNodeType.PROCESSING_INSTRUCTION;
+  }
+
+  @Nonnull
+  public String getNodeName ()
+  {
+    return PI_TARGET;
+  }
+
+  @Nonnull
+  public String getTarget ()
+  {
+    return PI_TARGET;
+  }
+
+  @Nullable
+  public String getData ()
+  {
+    return null;
+  }
+
+  @Nonnull
+  public HCMicroNodePlaceholder getClone ()
+  {
+    // Must be a new object because of the potentially assigned parent
+    return new HCMicroNodePlaceholder (m_aHCNode);
+  }
+
+  public boolean isEqualContent (@Nullable final IMicroNode aNode)
+  {
+    return aNode instanceof HCMicroNodePlaceholder && ((HCMicroNodePlaceholder) aNode).m_aHCNode == m_aHCNode;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("HCNode", m_aHCNode).toString ();
+  }
+}
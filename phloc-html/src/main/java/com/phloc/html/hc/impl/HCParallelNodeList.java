@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.phloc.commons.microdom.IMicroContainer;
+import com.phloc.commons.microdom.IMicroNode;
+import com.phloc.commons.microdom.impl.MicroContainer;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.conversion.HCConversionSettings;
+import com.phloc.html.hc.conversion.HCSettings;
+import com.phloc.html.hc.conversion.IHCConversionSettings;
+import com.phloc.html.hc.conversion.IHCConversionSettingsToNode;
+import com.phloc.html.hc.conversion.IHCRenderListener;
+
+/**
+ * A special node list, whose children are converted to micro nodes in
+ * parallel, using the executor provided by
+ * {@link HCConversionSettings#setParallelConversionExecutor(Executor)}. This is
+ * meant for large pages with many independent and expensive sections (e.g.
+ * dashboards with many widgets). If no executor is present or less than 2
+ * children are present, this class behaves exactly like {@link HCNodeList}.
+ * <br>
+ * Only the conversion itself is performed in parallel. The customization,
+ * the preparation ({@link #beforeConvertToNode(IHCConversionSettingsToNode)})
+ * and the extraction of out-of-band nodes are performed upfront in the calling
+ * thread in document order, and the converted children are appended in their
+ * original order. Therefore the created output is identical to the output of
+ * a sequential conversion.<br>
+ * Note: the children must be independent of each other, so they must not
+ * share any HC nodes and must not modify each other during conversion. The
+ * children are always converted completely, also in the streaming mode of
+ * {@link com.phloc.html.hc.conversion.HCHTMLSerializer}.<br>
+ * The render listener events are bound to the thread they occur in, so the
+ * children are converted without a render listener. A registered
+ * {@link IHCRenderListener} therefore only sees the conversion of this list as
+ * a whole (incl. the time spent waiting for the children) as part of the
+ * surrounding rendering, and never a separate rendering per child.
+ * 
+ * @author Philip Helger
+ */
+public class HCParallelNodeList extends AbstractHCNodeList <HCParallelNodeList>
+{
+  public HCParallelNodeList ()
+  {}
+
+  /**
+   * Get the conversion settings for the children. Render listener events must
+   * not cross thread boundaries, so the children are converted without a
+   * render listener.
+   * 
+   * @param aConversionSettings
+   *        The conversion settings of this list. May not be <code>null</code>.
+   * @return The conversion settings to be used for the children. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  private static IHCConversionSettingsToNode _getChildConversionSettings (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    if (HCSettings.getRenderListener (aConversionSettings) == null)
+      return aConversionSettings;
+    // Only the settings classes carry a render listener
+    return new HCConversionSettings ((IHCConversionSettings) aConversionSettings).setRenderListener (null);
+  }
+
+  @Nullable
+  private static IMicroNode _getResult (@Nonnull final FutureTask <IMicroNode> aTask)
+  {
+    // Run the task in this thread, if no executor thread picked it up so far.
+    // This guarantees progress even if the executor is saturated or nested
+    // parallel lists are converted.
+    aTask.run ();
+    try
+    {
+      return aTask.get ();
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+      throw new IllegalStateException ("Interrupted while waiting for parallel conversion", ex);
+    }
+    catch (final ExecutionException ex)
+    {
+      final Throwable aCause = ex.getCause ();
+      if (aCause instanceof RuntimeException)
+        throw (RuntimeException) aCause;
+      if (aCause instanceof Error)
+        throw (Error) aCause;
+      throw new IllegalStateException ("Failed to convert node in parallel", aCause);
+    }
+  }
+
+  @Override
+  @Nonnull
+  protected IMicroContainer internalConvertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+  {
+    final Executor aExecutor = HCSettings.getParallelConversionExecutor (aConversionSettings);
+    if (aExecutor == null || getChildCount () < 2)
+      return super.internalConvertToNode (aConversionSettings);
+
+    // Submit all but the first child - the first child is converted in this
+    // thread
+    final List <IHCNode> aChildren = getChildren ();
+    final IHCConversionSettingsToNode aChildSettings = _getChildConversionSettings (aConversionSettings);
+    final List <FutureTask <IMicroNode>> aTasks = new ArrayList <FutureTask <IMicroNode>> (aChildren.size ());
+    for (final IHCNode aChild : aChildren)
+    {
+      final FutureTask <IMicroNode> aTask = new FutureTask <IMicroNode> (new Callable <IMicroNode> ()
+      {
+        public IMicroNode call ()
+        {
+          return aChild.convertToNode (aChildSettings);
+        }
+      });
+      if (!aTasks.isEmpty ())
+      {
+        try
+        {
+          aExecutor.execute (aTask);
+        }
+        catch (final RejectedExecutionException ex)
+        {
+          // Ignore - the task is run in this thread
+        }
+      }
+      aTasks.add (aTask);
+    }
+
+    // Stitch the results in the original order
+    final IMicroContainer ret = new MicroContainer ();
+    for (final FutureTask <IMicroNode> aTask : aTasks)
+      ret.appendChild (_getResult (aTask));
+    return ret;
+  }
+}
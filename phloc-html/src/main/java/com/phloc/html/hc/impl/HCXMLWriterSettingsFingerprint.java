@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.impl;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.phloc.commons.equals.EqualsUtils;
+import com.phloc.commons.hash.HashCodeGenerator;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.commons.xml.serialize.IXMLWriterSettings;
+
+/**
+ * An immutable snapshot of all {@link IXMLWriterSettings} properties that
+ * influence the serialized markup. It can be used as a cache key, as the
+ * writer settings themselves may be mutable.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class HCXMLWriterSettingsFingerprint
+{
+  private final Object [] m_aValues;
+  private final int m_nHashCode;
+
+  public HCXMLWriterSettingsFingerprint (@Nonnull final IXMLWriterSettings aXWS)
+  {
+    m_aValues = new Object [] { aXWS.getFormat (),
+                                aXWS.getIndent (),
+                                aXWS.getIndentationString (),
+                                aXWS.getNewlineString (),
+                                aXWS.getCharsetObj (),
+                                aXWS.getSerializeDocType (),
+                                aXWS.getSerializeComments (),
+                                aXWS.getIncorrectCharacterHandling (),
+                                Boolean.valueOf (aXWS.isEmitNamespaces ()) };
+    final HashCodeGenerator aHCG = new HashCodeGenerator (this);
+    for (final Object aValue : m_aValues)
+      aHCG.append (aValue);
+    m_nHashCode = aHCG.getHashCode ();
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (!(o instanceof HCXMLWriterSettingsFingerprint))
+      return false;
+    final HCXMLWriterSettingsFingerprint rhs = (HCXMLWriterSettingsFingerprint) o;
+    if (m_nHashCode != rhs.m_nHashCode)
+      return false;
+    for (int i = 0; i < m_aValues.length; ++i)
+      if (!EqualsUtils.equals (m_aValues[i], rhs.m_aValues[i]))
+        return false;
+    return true;
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return m_nHashCode;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("values", m_aValues).toString ();
+  }
+}
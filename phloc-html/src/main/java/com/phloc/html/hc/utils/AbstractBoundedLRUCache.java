@@ -0,0 +1,329 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.annotations.ReturnsMutableCopy;
+import com.phloc.commons.state.EChange;
+import com.phloc.commons.string.ToStringGenerator;
+
+/**
+ * A thread-safe LRU cache that is bounded both by the number of entries and by
+ * the total size of all values, as determined by
+ * {@link #getValueSize(Object)}. Whatever limit is hit first evicts the least
+ * recently used entries. The values are created by the caller between
+ * {@link #get(Object)} and {@link #put(Object, Object)}, so that expensive
+ * rendering never happens while the cache is locked.
+ * 
+ * @author Philip Helger
+ * @param <KEYTYPE>
+ *        The cache key type. Must implement equals and hashCode.
+ * @param <VALUETYPE>
+ *        The cached value type.
+ */
+@ThreadSafe
+public abstract class AbstractBoundedLRUCache <KEYTYPE, VALUETYPE>
+{
+  private final int m_nMaxEntries;
+  private final long m_nMaxSize;
+  private final Lock m_aLock = new ReentrantLock ();
+  // Access ordered map, so the least recently used entry comes first
+  private final LinkedHashMap <KEYTYPE, VALUETYPE> m_aMap = new LinkedHashMap <KEYTYPE, VALUETYPE> (16, 0.75f, true);
+  private long m_nTotalSize = 0;
+  private final AtomicLong m_aHits = new AtomicLong ();
+  private final AtomicLong m_aMisses = new AtomicLong ();
+  private final AtomicLong m_aEvictions = new AtomicLong ();
+
+  /**
+   * Constructor
+   * 
+   * @param nMaxEntries
+   *        The maximum number of entries to keep. Must be &gt; 0.
+   * @param nMaxSize
+   *        The maximum total size of all values. Must be &gt; 0.
+   */
+  protected AbstractBoundedLRUCache (@Nonnegative final int nMaxEntries, @Nonnegative final long nMaxSize)
+  {
+    ValueEnforcer.isGT0 (nMaxEntries, "MaxEntries");
+    ValueEnforcer.isGT0 (nMaxSize, "MaxSize");
+    m_nMaxEntries = nMaxEntries;
+    m_nMaxSize = nMaxSize;
+  }
+
+  /**
+   * Determine the size of the passed value. Must return the same result for
+   * the same value every time it is called.
+   * 
+   * @param aValue
+   *        The value to measure. Never <code>null</code>.
+   * @return The size in the unit of the maximum size. Must be &ge; 0.
+   */
+  @Nonnegative
+  protected abstract long getValueSize (@Nonnull VALUETYPE aValue);
+
+  @Nonnegative
+  public final int getMaxEntries ()
+  {
+    return m_nMaxEntries;
+  }
+
+  @Nonnegative
+  public final long getMaxSize ()
+  {
+    return m_nMaxSize;
+  }
+
+  /**
+   * @return The number of currently cached entries.
+   */
+  @Nonnegative
+  public final int getEntryCount ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      return m_aMap.size ();
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * @return The total size of all currently cached values.
+   */
+  @Nonnegative
+  public final long getTotalSize ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      return m_nTotalSize;
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * @return The number of lookups that were served from the cache.
+   */
+  @Nonnegative
+  public final long getHitCount ()
+  {
+    return m_aHits.get ();
+  }
+
+  /**
+   * @return The number of lookups that found no entry.
+   */
+  @Nonnegative
+  public final long getMissCount ()
+  {
+    return m_aMisses.get ();
+  }
+
+  /**
+   * @return The number of entries that were removed because a limit was hit.
+   */
+  @Nonnegative
+  public final long getEvictionCount ()
+  {
+    return m_aEvictions.get ();
+  }
+
+  /**
+   * Reset the hit, miss and eviction counters. The cache content is not
+   * touched.
+   */
+  public final void resetStatistics ()
+  {
+    m_aHits.set (0);
+    m_aMisses.set (0);
+    m_aEvictions.set (0);
+  }
+
+  /**
+   * Look up the passed key and mark the entry as most recently used. Each call
+   * counts as either a hit or a miss.
+   * 
+   * @param aKey
+   *        The key to look up. May not be <code>null</code>.
+   * @return <code>null</code> if no such entry is cached.
+   */
+  @Nullable
+  public final VALUETYPE get (@Nonnull final KEYTYPE aKey)
+  {
+    VALUETYPE ret;
+    m_aLock.lock ();
+    try
+    {
+      ret = m_aMap.get (aKey);
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+    if (ret != null)
+      m_aHits.incrementAndGet ();
+    else
+      m_aMisses.incrementAndGet ();
+    return ret;
+  }
+
+  /**
+   * Add or replace an entry and evict the least recently used entries until
+   * all limits are met again. The new entry is only evicted if its value alone
+   * exceeds the maximum size.
+   * 
+   * @param aKey
+   *        The key to use. May not be <code>null</code>.
+   * @param aValue
+   *        The value to cache. May not be <code>null</code>.
+   */
+  public final void put (@Nonnull final KEYTYPE aKey, @Nonnull final VALUETYPE aValue)
+  {
+    ValueEnforcer.notNull (aKey, "Key");
+    ValueEnforcer.notNull (aValue, "Value");
+
+    final long nSize = getValueSize (aValue);
+    m_aLock.lock ();
+    try
+    {
+      final VALUETYPE aOld = m_aMap.put (aKey, aValue);
+      if (aOld != null)
+        m_nTotalSize -= getValueSize (aOld);
+      m_nTotalSize += nSize;
+
+      final Iterator <VALUETYPE> it = m_aMap.values ().iterator ();
+      while (m_aMap.size () > 1 && (m_aMap.size () > m_nMaxEntries || m_nTotalSize > m_nMaxSize))
+      {
+        m_nTotalSize -= getValueSize (it.next ());
+        it.remove ();
+        m_aEvictions.incrementAndGet ();
+      }
+
+      if (m_nTotalSize > m_nMaxSize)
+      {
+        m_aMap.clear ();
+        m_nTotalSize = 0;
+        m_aEvictions.incrementAndGet ();
+      }
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * Remove the entry with the passed key.
+   * 
+   * @param aKey
+   *        The key to remove. May be <code>null</code>.
+   * @return {@link EChange}
+   */
+  @Nonnull
+  public final EChange remove (@Nullable final KEYTYPE aKey)
+  {
+    if (aKey == null)
+      return EChange.UNCHANGED;
+
+    m_aLock.lock ();
+    try
+    {
+      final VALUETYPE aOld = m_aMap.remove (aKey);
+      if (aOld == null)
+        return EChange.UNCHANGED;
+      m_nTotalSize -= getValueSize (aOld);
+      return EChange.CHANGED;
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * Remove all entries.
+   * 
+   * @return {@link EChange}
+   */
+  @Nonnull
+  public final EChange clear ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      if (m_aMap.isEmpty ())
+        return EChange.UNCHANGED;
+      m_aMap.clear ();
+      m_nTotalSize = 0;
+      return EChange.CHANGED;
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  /**
+   * @return A snapshot of all keys in LRU order (least recently used first).
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public final List <KEYTYPE> getAllKeys ()
+  {
+    m_aLock.lock ();
+    try
+    {
+      return new ArrayList <KEYTYPE> (m_aMap.keySet ());
+    }
+    finally
+    {
+      m_aLock.unlock ();
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("maxEntries", m_nMaxEntries)
+                                       .append ("maxSize", m_nMaxSize)
+                                       .append ("hits", m_aHits.get ())
+                                       .append ("misses", m_aMisses.get ())
+                                       .append ("evictions", m_aEvictions.get ())
+                                       .toString ();
+  }
+}
@@ -47,6 +47,7 @@ import com.phloc.html.hc.IHCHasChildren;
 import com.phloc.html.hc.IHCJSNode;
 import com.phloc.html.hc.IHCNode;
 import com.phloc.html.hc.IHCNodeWithChildren;
+import com.phloc.html.hc.conversion.IHCRenderListener;
 import com.phloc.html.hc.html.HCLink;
 import com.phloc.html.hc.html.HCScript;
 import com.phloc.html.hc.html.HCScriptFile;
@@ -347,7 +348,8 @@ public final class HCSpecialNodeHandler
   private static final Map <String, IHCSpecialNodeListModifier> s_aModifiers = new HashMap <String, IHCSpecialNodeListModifier> ();
 
   @Nonnull
-  private static Iterable <? extends IHCNode> _applyModifiers (@Nonnull final Iterable <? extends IHCNode> aNodes)
+  private static Iterable <? extends IHCNode> _applyModifiers (@Nonnull final Iterable <? extends IHCNode> aNodes,
+                                                              @Nullable final IHCRenderListener aListener)
   {
     final Set <Class <? extends IHCSpecialNodeListModifier>> aModifiersToApply = new LinkedHashSet <Class <? extends IHCSpecialNodeListModifier>> ();
     for (final IHCNode aNode : aNodes)
@@ -376,7 +378,20 @@ public final class HCSpecialNodeHandler
       if (aModifier != null)
       {
         // Invocation successful
-        ret = aModifier.modifySpecialNodes (ret);
+        if (aListener == null)
+          ret = aModifier.modifySpecialNodes (ret);
+        else
+        {
+          aListener.onBeginSpecialNodeListModifier (aModifier);
+          try
+          {
+            ret = aModifier.modifySpecialNodes (ret);
+          }
+          finally
+          {
+            aListener.onEndSpecialNodeListModifier (aModifier);
+          }
+        }
       }
     }
     return ret;
@@ -401,11 +416,39 @@ public final class HCSpecialNodeHandler
   @ReturnsMutableCopy
   public static List <IHCNode> getMergedInlineCSSAndJSNodes (@Nonnull final Iterable <? extends IHCNode> aNodes,
                                                              final boolean bKeepOnDocumentReady)
+  {
+    return getMergedInlineCSSAndJSNodes (aNodes, bKeepOnDocumentReady, null);
+  }
+
+  /**
+   * Merge all inline CSS and JS elements contained in the source nodes into one
+   * script elements
+   * 
+   * @param aNodes
+   *        Source list of nodes. May not be <code>null</code>.
+   * @param bKeepOnDocumentReady
+   *        if <code>true</code> than all combined document.ready() scripts are
+   *        kept as document.ready() scripts. If <code>false</code> than all
+   *        document.ready() scripts are converted to regular scripts and are
+   *        executed after all other scripts. For AJAX calls, this should be
+   *        <code>false</code>.
+   * @param aRenderListener
+   *        The render listener to be informed about the applied
+   *        {@link IHCSpecialNodeListModifier} objects. May be <code>null</code>
+   *        .
+   * @return Target list. It contains all non-script nodes and at last one JS
+   *         inline node (HCScript).
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public static List <IHCNode> getMergedInlineCSSAndJSNodes (@Nonnull final Iterable <? extends IHCNode> aNodes,
+                                                             final boolean bKeepOnDocumentReady,
+                                                             @Nullable final IHCRenderListener aRenderListener)
   {
     ValueEnforcer.notNull (aNodes, "Nodes");
 
     // Apply all modifiers
-    final Iterable <? extends IHCNode> aRealSpecialNodes = _applyModifiers (aNodes);
+    final Iterable <? extends IHCNode> aRealSpecialNodes = _applyModifiers (aNodes, aRenderListener);
 
     // Do standard aggregations of CSS and JS
     final List <IHCNode> ret = new ArrayList <IHCNode> ();
@@ -485,6 +528,61 @@ public final class HCSpecialNodeHandler
     return ret;
   }
 
+  private static boolean _isSameCondition (@Nonnull final HCConditionalCommentNode aCC1,
+                                           @Nonnull final HCConditionalCommentNode aCC2)
+  {
+    return aCC1.getCondition ().equals (aCC2.getCondition ()) &&
+           aCC1.getLineSeparator ().equals (aCC2.getLineSeparator ());
+  }
+
+  /**
+   * Merge all subsequent conditional comments with the same condition into a
+   * single conditional comment, so that the comment markers are emitted only
+   * once. E.g. two CSS files that are both only for IE 7 are emitted within the
+   * same conditional comment. This should only be used for lists of nodes that
+   * are already sorted (like the CSS and JS nodes of the head), because the
+   * merged nodes are no longer recognized as CSS or JS nodes.
+   * 
+   * @param aNodes
+   *        Source list of nodes. May not be <code>null</code>.
+   * @return Target list. It contains all nodes of the source list, where
+   *         subsequent conditional comments with the same condition are
+   *         replaced with a new conditional comment wrapping an
+   *         {@link HCNodeList} of all their wrapped nodes. The source nodes
+   *         themselves are not modified.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public static List <IHCNode> getMergedConditionalCommentNodes (@Nonnull final Iterable <? extends IHCNode> aNodes)
+  {
+    ValueEnforcer.notNull (aNodes, "Nodes");
+
+    final List <IHCNode> ret = new ArrayList <IHCNode> ();
+    HCConditionalCommentNode aMergedCC = null;
+    HCNodeList aMergedContent = null;
+    for (final IHCNode aNode : aNodes)
+    {
+      final IHCNode aLastNode = ContainerHelper.getLastElement (ret);
+      if (aNode instanceof HCConditionalCommentNode &&
+          aLastNode instanceof HCConditionalCommentNode &&
+          _isSameCondition ((HCConditionalCommentNode) aLastNode, (HCConditionalCommentNode) aNode))
+      {
+        if (aLastNode != aMergedCC)
+        {
+          // Start a new shared conditional comment
+          final HCConditionalCommentNode aLastCC = (HCConditionalCommentNode) aLastNode;
+          aMergedContent = new HCNodeList ().addChild (aLastCC.getWrappedNode ());
+          aMergedCC = new HCConditionalCommentNode (aLastCC.getCondition (), aMergedContent).setLineSeparator (aLastCC.getLineSeparator ());
+          ret.set (ret.size () - 1, aMergedCC);
+        }
+        aMergedContent.addChild (((HCConditionalCommentNode) aNode).getWrappedNode ());
+      }
+      else
+        ret.add (aNode);
+    }
+    return ret;
+  }
+
   @Nonnull
   @ReturnsMutableCopy
   public static List <IHCNode> getWithoutSpecialNodes (@Nonnull final Iterable <? extends IHCNode> aNodes,
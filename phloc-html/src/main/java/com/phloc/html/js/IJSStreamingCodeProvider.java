@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.js;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
+
+import com.phloc.html.js.builder.JSWriterSettings;
+
+/**
+ * Extended {@link IJSCodeProvider} that can write its JavaScript code directly
+ * to an {@link Appendable}. This avoids building intermediate strings when
+ * composite providers are emitted. Use
+ * {@link JSCodeHelper#writeJSCode(IJSCodeProvider, Appendable, JSWriterSettings)}
+ * to write an arbitrary {@link IJSCodeProvider}, as it falls back to
+ * {@link #getJSCode()} for providers not implementing this interface.
+ *
+ * @author Philip Helger
+ */
+public interface IJSStreamingCodeProvider extends IJSCodeProvider
+{
+  /**
+   * Write the JavaScript code of this object. When using the settings from
+   * {@link com.phloc.html.js.builder.JSPrinter#getSettings()} the written code
+   * must be identical to the result of {@link #getJSCode()}.
+   *
+   * @param aAppendable
+   *        The target to write to. May not be <code>null</code>.
+   * @param aSettings
+   *        The settings to be used. May not be <code>null</code>.
+   * @throws IOException
+   *         In case writing fails
+   */
+  void writeJSCode (@Nonnull @WillNotClose Appendable aAppendable, @Nonnull JSWriterSettings aSettings) throws IOException;
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.js;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.Immutable;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.html.js.builder.JSWriterSettings;
+
+/**
+ * Helper methods to write {@link IJSCodeProvider} objects in a streaming way.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class JSCodeHelper
+{
+  private JSCodeHelper ()
+  {}
+
+  /**
+   * Write the JS code of the passed provider. If the provider implements
+   * {@link IJSStreamingCodeProvider} it is written directly, else the result of
+   * {@link IJSCodeProvider#getJSCode()} is appended.
+   *
+   * @param aProvider
+   *        The provider to write. May be <code>null</code> in which case
+   *        nothing happens.
+   * @param aAppendable
+   *        The target to write to. May not be <code>null</code>.
+   * @param aSettings
+   *        The JS settings to use. May not be <code>null</code>.
+   * @throws IOException
+   *         In case writing fails
+   */
+  public static void writeJSCode (@Nullable final IJSCodeProvider aProvider,
+                                  @Nonnull @WillNotClose final Appendable aAppendable,
+                                  @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    ValueEnforcer.notNull (aAppendable, "Appendable");
+    ValueEnforcer.notNull (aSettings, "Settings");
+
+    if (aProvider instanceof IJSStreamingCodeProvider)
+      ((IJSStreamingCodeProvider) aProvider).writeJSCode (aAppendable, aSettings);
+    else
+      if (aProvider != null)
+      {
+        final String sJSCode = aProvider.getJSCode ();
+        if (sJSCode != null)
+          aAppendable.append (sJSCode);
+      }
+  }
+
+  /**
+   * Append the JS code of the passed provider to a {@link StringBuilder}.
+   *
+   * @param aSB
+   *        The string builder to append to. May not be <code>null</code>.
+   * @param aProvider
+   *        The provider to write. May be <code>null</code> in which case
+   *        nothing happens.
+   * @param aSettings
+   *        The JS settings to use. May not be <code>null</code>.
+   */
+  public static void appendJSCode (@Nonnull final StringBuilder aSB,
+                                   @Nullable final IJSCodeProvider aProvider,
+                                   @Nonnull final JSWriterSettings aSettings)
+  {
+    try
+    {
+      writeJSCode (aProvider, aSB, aSettings);
+    }
+    catch (final IOException ex)
+    {
+      throw new IllegalStateException ("Failed to append JS code", ex);
+    }
+  }
+
+  /**
+   * Get the JS code of the passed streaming provider as a string.
+   *
+   * @param aProvider
+   *        The provider to write. May not be <code>null</code>.
+   * @param aSettings
+   *        The JS settings to use. May not be <code>null</code>.
+   * @return The JS code and never <code>null</code>.
+   */
+  @Nonnull
+  public static String getJSCode (@Nonnull final IJSStreamingCodeProvider aProvider,
+                                  @Nonnull final JSWriterSettings aSettings)
+  {
+    ValueEnforcer.notNull (aProvider, "Provider");
+    final StringBuilder aSB = new StringBuilder ();
+    appendJSCode (aSB, aProvider, aSettings);
+    return aSB.toString ();
+  }
+}
@@ -30,6 +30,8 @@ import com.phloc.commons.annotations.ReturnsMutableCopy;
 import com.phloc.commons.microdom.IMicroElement;
 import com.phloc.commons.state.EChange;
 import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.js.builder.JSPrinter;
+import com.phloc.html.js.builder.JSWriterSettings;
 import com.phloc.html.js.provider.CollectingJSCodeProvider;
 
 /**
@@ -131,13 +133,19 @@ public final class JSEventMap implements Serializable
   public void applyToElement (@Nonnull final IMicroElement aElement)
   {
     // Loop over all events in the defined order for consistent results
+    final JSWriterSettings aSettings = JSPrinter.getSettings ();
+    final StringBuilder aSB = new StringBuilder ();
     for (final EJSEvent eEvent : EJSEvent.values ())
     {
       final IJSCodeProvider aProvider = m_aEvents.get (eEvent);
       if (aProvider != null)
       {
-        final String sJSCode = aProvider.getJSCode ();
-        aElement.setAttribute (eEvent.getEvent (), CJS.JS_PREFIX + sJSCode);
+        // Write the prefix and the collected handlers of this event into the
+        // buffer, that is reused for all events
+        aSB.setLength (0);
+        aSB.append (CJS.JS_PREFIX);
+        JSCodeHelper.appendJSCode (aSB, aProvider, aSettings);
+        aElement.setAttribute (eEvent.getEvent (), aSB.toString ());
       }
     }
   }
@@ -17,12 +17,16 @@
  */
 package com.phloc.html.js.builder;
 
+import java.io.IOException;
+
 import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
 
 import com.phloc.commons.annotations.CodingStyleguideUnaware;
 import com.phloc.commons.annotations.Nonempty;
 import com.phloc.commons.hash.HashCodeGenerator;
 import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.js.IJSStreamingCodeProvider;
 import com.phloc.json.IJSON;
 import com.phloc.json2.IJson;
 
@@ -31,7 +35,7 @@ import com.phloc.json2.IJson;
  * 
  * @author Philip Helger
  */
-public abstract class AbstractJSExpression implements IJSExpression
+public abstract class AbstractJSExpression implements IJSExpression, IJSStreamingCodeProvider
 {
   @Nonnull
   public final AbstractJSExpression minus ()
@@ -819,6 +823,12 @@ public abstract class AbstractJSExpression implements IJSExpression
     return JSPrinter.getAsString (this);
   }
 
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    JSPrinter.writeGeneratable (this, aAppendable, aSettings);
+  }
+
   @Override
   public boolean equals (final Object o)
   {
@@ -17,6 +17,7 @@
  */
 package com.phloc.html.js.builder;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -25,6 +26,7 @@ import java.util.List;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
 
 import com.phloc.commons.ValueEnforcer;
 import com.phloc.commons.annotations.Nonempty;
@@ -709,6 +711,13 @@ public abstract class AbstractJSInvocation <IMPLTYPE extends AbstractJSInvocatio
     return JSPrinter.getAsString ((IJSStatement) this);
   }
 
+  @Override
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    JSPrinter.writeStatement (this, aAppendable, aSettings);
+  }
+
   @Override
   public boolean equals (final Object o)
   {
@@ -17,8 +17,11 @@
  */
 package com.phloc.html.js.builder;
 
+import java.io.IOException;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
 
 import com.phloc.commons.ValueEnforcer;
 import com.phloc.commons.annotations.Nonempty;
@@ -81,6 +84,13 @@ public class JSAssignment extends AbstractJSExpression implements IJSStatement
     return JSPrinter.getAsString ((IJSStatement) this);
   }
 
+  @Override
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    JSPrinter.writeStatement (this, aAppendable, aSettings);
+  }
+
   @Override
   public boolean equals (final Object o)
   {
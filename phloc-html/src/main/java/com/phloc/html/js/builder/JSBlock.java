@@ -17,13 +17,17 @@
  */
 package com.phloc.html.js.builder;
 
+import java.io.IOException;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
 
 import com.phloc.commons.annotations.CodingStyleguideUnaware;
 import com.phloc.commons.hash.HashCodeGenerator;
 import com.phloc.commons.string.ToStringGenerator;
 import com.phloc.html.js.IJSCodeProvider;
+import com.phloc.html.js.IJSStreamingCodeProvider;
 
 /**
  * A block of JS code, which may contain statements and local declarations.
@@ -35,7 +39,7 @@ import com.phloc.html.js.IJSCodeProvider;
  * 
  * @author Philip Helger
  */
-public class JSBlock extends AbstractJSBlock implements IJSGeneratable, IJSStatement
+public class JSBlock extends AbstractJSBlock implements IJSGeneratable, IJSStatement, IJSStreamingCodeProvider
 {
   public static final boolean DEFAULT_BRACES_REQUIRED = true;
   public static final boolean DEFAULT_INDENT_REQUIRED = true;
@@ -158,7 +162,7 @@ public class JSBlock extends AbstractJSBlock implements IJSGeneratable, IJSState
         if (aJSCode instanceof IJSStatement)
           aFormatter.stmt ((IJSStatement) aJSCode);
         else
-          aFormatter.plain (aJSCode.getJSCode ());
+          aFormatter.jsCode (aJSCode);
     }
   }
 
@@ -175,6 +179,12 @@ public class JSBlock extends AbstractJSBlock implements IJSGeneratable, IJSState
     return JSPrinter.getAsString ((IJSGeneratable) this);
   }
 
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    JSPrinter.writeGeneratable (this, aAppendable, aSettings);
+  }
+
   @Override
   public boolean equals (final Object o)
   {
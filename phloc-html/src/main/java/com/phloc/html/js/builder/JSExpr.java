@@ -29,6 +29,8 @@ import com.phloc.commons.annotations.CodingStyleguideUnaware;
 import com.phloc.commons.annotations.Nonempty;
 import com.phloc.commons.annotations.PresentForCodeCoverage;
 import com.phloc.commons.collections.ArrayHelper;
+import com.phloc.html.js.IJSCodeProvider;
+import com.phloc.html.js.provider.SealedJSCodeProvider;
 import com.phloc.json.IJSON;
 import com.phloc.json2.IJson;
 
@@ -335,4 +337,19 @@ public final class JSExpr
   {
     return new JSExprDirect (sSource);
   }
+
+  /**
+   * Seal the passed JS code provider, so that its JS code is created only once
+   * per settings. The passed object must not be modified afterwards.
+   *
+   * @param aProvider
+   *        The provider to seal. May not be <code>null</code>.
+   * @return The sealed provider and never <code>null</code>.
+   * @see SealedJSCodeProvider
+   */
+  @Nonnull
+  public static SealedJSCodeProvider seal (@Nonnull final IJSCodeProvider aProvider)
+  {
+    return SealedJSCodeProvider.create (aProvider);
+  }
 }
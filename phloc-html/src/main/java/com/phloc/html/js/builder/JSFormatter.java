@@ -18,6 +18,7 @@
 package com.phloc.html.js.builder;
 
 import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
@@ -25,16 +26,27 @@ import java.util.Collection;
 
 import javax.annotation.Nonnull;
 import javax.annotation.WillCloseWhenClosed;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.NotThreadSafe;
 
 import com.phloc.commons.ValueEnforcer;
+import com.phloc.html.js.IJSCodeProvider;
+import com.phloc.html.js.JSCodeHelper;
 
 /**
  * This is a utility class for managing indentation and other basic formatting
- * for {@link PrintWriter}.
+ * for an {@link Appendable}. A formatter is meant to be used for a single
+ * generation run only. Writing is done directly on the passed
+ * {@link Appendable}, so no {@link PrintWriter} synchronization is involved.
+ * New lines are only written when further content follows, so trailing new
+ * lines are only emitted upon {@link #flush()} or {@link #close()}. If writing
+ * to the {@link Appendable} fails, nothing more is written and the original
+ * {@link IOException} is thrown by {@link #flush()} and {@link #close()}.
  *
  * @author Philip Helger
  */
-public class JSFormatter implements Closeable
+@NotThreadSafe
+public class JSFormatter implements Closeable, Flushable
 {
   public static final String DEFAULT_INDENT = "  ";
 
@@ -44,9 +56,9 @@ public class JSFormatter implements Closeable
   private final String m_sIndentSpace;
 
   /**
-   * Stream associated with this JFormatter
+   * Target associated with this JFormatter
    */
-  private final PrintWriter m_aPW;
+  private final Appendable m_aAppendable;
   /**
    * Current number of indentation strings to print
    */
@@ -56,18 +68,26 @@ public class JSFormatter implements Closeable
 
   private boolean m_bAtBeginningOfLine = true;
 
+  private int m_nPendingNewLines = 0;
+
+  // The first exception that occurred while writing
+  private IOException m_aException;
+
   private boolean m_bIndentAndAlign = true;
 
   private boolean m_bGenerateTypeNames = true;
 
   private boolean m_bGenerateComments = true;
 
+  // Lazily created from the fields above
+  private JSWriterSettings m_aSettings;
+
   /**
    * Creates a formatter with default incremental indentations of 2 spaces.
    */
   public JSFormatter (@Nonnull @WillCloseWhenClosed final Writer aWriter)
   {
-    this (aWriter instanceof PrintWriter ? (PrintWriter) aWriter : new PrintWriter (aWriter));
+    this (aWriter, DEFAULT_INDENT);
   }
 
   /**
@@ -88,10 +108,36 @@ public class JSFormatter implements Closeable
    */
   public JSFormatter (@Nonnull @WillCloseWhenClosed final PrintWriter aPrintWriter, @Nonnull final String sIndentSpace)
   {
-    m_aPW = ValueEnforcer.notNull (aPrintWriter, "PrintWriter");
+    this ((Writer) aPrintWriter, sIndentSpace);
+  }
+
+  private JSFormatter (@Nonnull @WillCloseWhenClosed final Writer aWriter, @Nonnull final String sIndentSpace)
+  {
+    m_aAppendable = ValueEnforcer.notNull (aWriter, "Writer");
     m_sIndentSpace = ValueEnforcer.notNull (sIndentSpace, "IndentSpace");
   }
 
+  /**
+   * Creates a formatter that writes to an arbitrary {@link Appendable} (e.g. a
+   * {@link StringBuilder}) using the passed settings.
+   *
+   * @param aAppendable
+   *        The target to write to. May not be <code>null</code>. It is only
+   *        closed in {@link #close()} if it is {@link Closeable}.
+   * @param aSettings
+   *        The settings to use. May not be <code>null</code>.
+   */
+  public JSFormatter (@Nonnull @WillNotClose final Appendable aAppendable, @Nonnull final JSWriterSettings aSettings)
+  {
+    ValueEnforcer.notNull (aSettings, "Settings");
+    m_aAppendable = ValueEnforcer.notNull (aAppendable, "Appendable");
+    m_sIndentSpace = aSettings.getIndent ();
+    m_bIndentAndAlign = aSettings.isIndentAndAlign ();
+    m_bGenerateTypeNames = aSettings.isGenerateTypeNames ();
+    m_bGenerateComments = aSettings.isGenerateComments ();
+    m_aSettings = aSettings;
+  }
+
   public boolean indentAndAlign ()
   {
     return m_bIndentAndAlign;
@@ -101,6 +147,7 @@ public class JSFormatter implements Closeable
   public JSFormatter indentAndAlign (final boolean bIndentAndAlign)
   {
     m_bIndentAndAlign = bIndentAndAlign;
+    m_aSettings = null;
     return this;
   }
 
@@ -113,6 +160,7 @@ public class JSFormatter implements Closeable
   public JSFormatter generateTypeNames (final boolean bGenerateTypeNames)
   {
     m_bGenerateTypeNames = bGenerateTypeNames;
+    m_aSettings = null;
     return this;
   }
 
@@ -125,15 +173,85 @@ public class JSFormatter implements Closeable
   public JSFormatter generateComments (final boolean bGenerateComments)
   {
     m_bGenerateComments = bGenerateComments;
+    m_aSettings = null;
     return this;
   }
 
+  /**
+   * @return The current settings of this formatter as an immutable object.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  public JSWriterSettings getSettings ()
+  {
+    JSWriterSettings ret = m_aSettings;
+    if (ret == null)
+    {
+      ret = new JSWriterSettings (m_bIndentAndAlign, m_bGenerateTypeNames, m_bGenerateComments, m_sIndentSpace);
+      m_aSettings = ret;
+    }
+    return ret;
+  }
+
+  private void _throwException () throws IOException
+  {
+    if (m_aException != null)
+      throw m_aException;
+  }
+
+  /**
+   * Write all pending new lines and flush the target if it is
+   * {@link Flushable}.
+   *
+   * @throws IOException
+   *         If writing to the target failed at any time
+   */
+  public void flush () throws IOException
+  {
+    _flushNewLines ();
+    _throwException ();
+    if (m_aAppendable instanceof Flushable)
+      ((Flushable) m_aAppendable).flush ();
+  }
+
   /**
    * Closes this formatter.
+   *
+   * @throws IOException
+   *         If writing to the target failed at any time
    */
   public void close () throws IOException
   {
-    m_aPW.close ();
+    _flushNewLines ();
+    if (m_aAppendable instanceof Closeable)
+      ((Closeable) m_aAppendable).close ();
+    _throwException ();
+  }
+
+  private void _append (final char c)
+  {
+    if (m_aException == null)
+      try
+      {
+        m_aAppendable.append (c);
+      }
+      catch (final IOException ex)
+      {
+        m_aException = ex;
+      }
+  }
+
+  private void _append (@Nonnull final String s)
+  {
+    if (m_aException == null)
+      try
+      {
+        m_aAppendable.append (s);
+      }
+      catch (final IOException ex)
+      {
+        m_aException = ex;
+      }
   }
 
   /**
@@ -190,12 +308,19 @@ public class JSFormatter implements Closeable
     return this;
   }
 
+  private void _flushNewLines ()
+  {
+    for (; m_nPendingNewLines > 0; --m_nPendingNewLines)
+      _append ('\n');
+  }
+
   private void _spaceIfNeeded ()
   {
     if (m_bAtBeginningOfLine)
     {
+      _flushNewLines ();
       if (m_nIndentLevel > 0)
-        m_aPW.print (m_sIndentCache);
+        _append (m_sIndentCache);
       m_bAtBeginningOfLine = false;
     }
   }
@@ -210,7 +335,7 @@ public class JSFormatter implements Closeable
   public JSFormatter plain (final char cChar)
   {
     _spaceIfNeeded ();
-    m_aPW.print (cChar);
+    _append (cChar);
     return this;
   }
 
@@ -224,7 +349,32 @@ public class JSFormatter implements Closeable
   public JSFormatter plain (@Nonnull final String sText)
   {
     _spaceIfNeeded ();
-    m_aPW.print (sText);
+    _append (sText);
+    return this;
+  }
+
+  /**
+   * Print the code of the passed {@link IJSCodeProvider} into the stream. If
+   * the provider supports it, the code is written directly using the settings
+   * of this formatter.
+   *
+   * @param aProvider
+   *        The code provider to be printed. May not be <code>null</code>.
+   * @return this
+   */
+  @Nonnull
+  public JSFormatter jsCode (@Nonnull final IJSCodeProvider aProvider)
+  {
+    _spaceIfNeeded ();
+    if (m_aException == null)
+      try
+      {
+        JSCodeHelper.writeJSCode (aProvider, m_aAppendable, getSettings ());
+      }
+      catch (final IOException ex)
+      {
+        m_aException = ex;
+      }
     return this;
   }
 
@@ -262,7 +412,7 @@ public class JSFormatter implements Closeable
   @Nonnull
   public JSFormatter nlFix ()
   {
-    m_aPW.print ('\n');
+    m_nPendingNewLines++;
     m_bAtBeginningOfLine = true;
     return this;
   }
@@ -17,12 +17,14 @@
  */
 package com.phloc.html.js.builder;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
 
 import com.phloc.commons.annotations.Nonempty;
 import com.phloc.commons.annotations.ReturnsMutableCopy;
@@ -30,6 +32,7 @@ import com.phloc.commons.collections.ContainerHelper;
 import com.phloc.commons.equals.EqualsUtils;
 import com.phloc.commons.hash.HashCodeGenerator;
 import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.js.IJSStreamingCodeProvider;
 import com.phloc.html.js.marshal.JSMarshaller;
 
 /**
@@ -37,7 +40,7 @@ import com.phloc.html.js.marshal.JSMarshaller;
  *
  * @author Philip Helger
  */
-public class JSFunction implements IJSDocCommentable, IJSDeclaration
+public class JSFunction implements IJSDocCommentable, IJSDeclaration, IJSStreamingCodeProvider
 {
   /**
    * JS doc comments for this function
@@ -256,6 +259,12 @@ public class JSFunction implements IJSDocCommentable, IJSDeclaration
     return JSPrinter.getAsString (this);
   }
 
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    JSPrinter.writeDeclaration (this, aAppendable, aSettings);
+  }
+
   @Override
   public boolean equals (final Object o)
   {
@@ -17,14 +17,19 @@
  */
 package com.phloc.html.js.builder;
 
+import java.io.IOException;
+
 import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
+
+import com.phloc.html.js.IJSStreamingCodeProvider;
 
 /**
  * A JS package. This is the entry point for all functions, declarations etc.
  * 
  * @author Philip Helger
  */
-public class JSPackage extends AbstractJSBlock
+public class JSPackage extends AbstractJSBlock implements IJSStreamingCodeProvider
 {
   /**
    * Package constructor
@@ -37,4 +42,10 @@ public class JSPackage extends AbstractJSBlock
   {
     return JSPrinter.getAsString (this);
   }
+
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    JSPrinter.writePackage (this, aAppendable, aSettings);
+  }
 }
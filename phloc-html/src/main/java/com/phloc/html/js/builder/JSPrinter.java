@@ -17,74 +17,212 @@
  */
 package com.phloc.html.js.builder;
 
+import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.annotation.Nonnull;
 import javax.annotation.WillClose;
 import javax.annotation.WillNotClose;
-import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
 
 import com.phloc.commons.ValueEnforcer;
-import com.phloc.commons.io.streams.NonBlockingStringWriter;
 import com.phloc.commons.io.streams.StreamUtils;
 import com.phloc.html.js.IJSCodeProvider;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 /**
- * Helper class to get the textual representation of JSDOM objects
+ * Helper class to get the textual representation of JSDOM objects. The global
+ * settings are stored as an immutable {@link JSWriterSettings} object, so
+ * changing them does not affect a generation that is currently running in
+ * another thread. All methods are also available with explicit settings.
  *
  * @author Philip Helger
  */
-@NotThreadSafe
+@ThreadSafe
 public final class JSPrinter
 {
-  public static final boolean DEFAULT_INDENT_AND_ALIGN = false;
-  public static final boolean DEFAULT_GENERATE_TYPE_NAMES = false;
-  public static final boolean DEFAULT_GENERATE_COMMENTS = true;
+  public static final boolean DEFAULT_INDENT_AND_ALIGN = JSWriterSettings.DEFAULT_INDENT_AND_ALIGN;
+  public static final boolean DEFAULT_GENERATE_TYPE_NAMES = JSWriterSettings.DEFAULT_GENERATE_TYPE_NAMES;
+  public static final boolean DEFAULT_GENERATE_COMMENTS = JSWriterSettings.DEFAULT_GENERATE_COMMENTS;
 
-  private static boolean s_bIndentAndAlign = DEFAULT_INDENT_AND_ALIGN;
-  private static boolean s_bGenerateTypeNames = DEFAULT_GENERATE_TYPE_NAMES;
-  private static boolean s_bGenerateComments = DEFAULT_GENERATE_COMMENTS;
+  /** Buffers bigger than this are not kept for reuse */
+  private static final int MAX_REUSED_BUFFER_CAPACITY = 64 * 1024;
+
+  /**
+   * The per-thread buffers used in {@link JSPrinter#getAsString(IJSGeneratable)}
+   * etc. As code generation may be nested (e.g. a block requesting the code of
+   * a contained provider), one buffer per nesting level is kept.
+   *
+   * @author Philip Helger
+   */
+  private static final class BufferStack
+  {
+    private final List <StringBuilder> m_aBuffers = new ArrayList <StringBuilder> ();
+    private int m_nUsed = 0;
+
+    @Nonnull
+    StringBuilder acquire ()
+    {
+      if (m_nUsed == m_aBuffers.size ())
+        m_aBuffers.add (new StringBuilder (256));
+      return m_aBuffers.get (m_nUsed++);
+    }
+
+    void release (@Nonnull final StringBuilder aSB)
+    {
+      m_nUsed--;
+      if (aSB.capacity () > MAX_REUSED_BUFFER_CAPACITY)
+        m_aBuffers.set (m_nUsed, new StringBuilder (256));
+      else
+        aSB.setLength (0);
+    }
+  }
+
+  private static final ThreadLocal <BufferStack> s_aBuffers = new ThreadLocal <BufferStack> ();
+
+  /**
+   * An {@link Appendable} that drops all leading and trailing whitespaces, so
+   * that the streamed output is identical to the trimmed result of the
+   * getAsString methods. Whitespaces are held back until a following non
+   * whitespace char is written.
+   *
+   * @author Philip Helger
+   */
+  private static final class TrimmingAppendable implements Appendable
+  {
+    private final Appendable m_aTarget;
+    private final StringBuilder m_aPendingWhitespaces = new StringBuilder ();
+    private boolean m_bStarted = false;
+
+    TrimmingAppendable (@Nonnull final Appendable aTarget)
+    {
+      m_aTarget = aTarget;
+    }
+
+    public Appendable append (final char c) throws IOException
+    {
+      if (c <= ' ')
+      {
+        if (m_bStarted)
+          m_aPendingWhitespaces.append (c);
+      }
+      else
+      {
+        if (m_aPendingWhitespaces.length () > 0)
+        {
+          m_aTarget.append (m_aPendingWhitespaces);
+          m_aPendingWhitespaces.setLength (0);
+        }
+        m_aTarget.append (c);
+        m_bStarted = true;
+      }
+      return this;
+    }
+
+    public Appendable append (final CharSequence aCS, final int nStart, final int nEnd) throws IOException
+    {
+      // Find the last non whitespace char
+      int nLast = nEnd - 1;
+      while (nLast >= nStart && aCS.charAt (nLast) <= ' ')
+        nLast--;
+      if (nLast < nStart)
+      {
+        // Only whitespaces
+        if (m_bStarted)
+          m_aPendingWhitespaces.append (aCS, nStart, nEnd);
+        return this;
+      }
+
+      int nFirst = nStart;
+      if (!m_bStarted)
+      {
+        while (aCS.charAt (nFirst) <= ' ')
+          nFirst++;
+        m_bStarted = true;
+      }
+      else
+        if (m_aPendingWhitespaces.length () > 0)
+        {
+          m_aTarget.append (m_aPendingWhitespaces);
+          m_aPendingWhitespaces.setLength (0);
+        }
+      m_aTarget.append (aCS, nFirst, nLast + 1);
+      if (nLast + 1 < nEnd)
+        m_aPendingWhitespaces.append (aCS, nLast + 1, nEnd);
+      return this;
+    }
+
+    public Appendable append (final CharSequence aCS) throws IOException
+    {
+      if (aCS == null)
+        return append ("null", 0, 4); //$NON-NLS-1$
+      return append (aCS, 0, aCS.length ());
+    }
+  }
+
+  private static volatile JSWriterSettings s_aSettings = JSWriterSettings.DEFAULT_SETTINGS;
 
   private JSPrinter ()
   {}
 
+  /**
+   * @return The global settings used by all methods without an explicit
+   *         settings parameter. Never <code>null</code>.
+   */
+  @Nonnull
+  public static JSWriterSettings getSettings ()
+  {
+    return s_aSettings;
+  }
+
+  /**
+   * Set the global settings used by all methods without an explicit settings
+   * parameter.
+   *
+   * @param aSettings
+   *        The new settings. May not be <code>null</code>.
+   */
+  public static void setSettings (@Nonnull final JSWriterSettings aSettings)
+  {
+    s_aSettings = ValueEnforcer.notNull (aSettings, "Settings");
+  }
+
   public static void setToDefault ()
   {
-    s_bIndentAndAlign = DEFAULT_INDENT_AND_ALIGN;
-    s_bGenerateTypeNames = DEFAULT_GENERATE_TYPE_NAMES;
-    s_bGenerateComments = DEFAULT_GENERATE_COMMENTS;
+    setSettings (JSWriterSettings.DEFAULT_SETTINGS);
   }
 
-  public static void setIndentAndAlign (final boolean bIndentAndAlign)
+  public static synchronized void setIndentAndAlign (final boolean bIndentAndAlign)
   {
-    s_bIndentAndAlign = bIndentAndAlign;
+    s_aSettings = s_aSettings.getWithIndentAndAlign (bIndentAndAlign);
   }
 
   public static boolean isIndentAndAlign ()
   {
-    return s_bIndentAndAlign;
+    return s_aSettings.isIndentAndAlign ();
   }
 
-  public static void setGenerateTypeNames (final boolean bGenerateTypeNames)
+  public static synchronized void setGenerateTypeNames (final boolean bGenerateTypeNames)
   {
-    s_bGenerateTypeNames = bGenerateTypeNames;
+    s_aSettings = s_aSettings.getWithGenerateTypeNames (bGenerateTypeNames);
   }
 
   public static boolean isGenerateTypeNames ()
   {
-    return s_bGenerateTypeNames;
+    return s_aSettings.isGenerateTypeNames ();
   }
 
-  public static void setGenerateComments (final boolean bGenerateComments)
+  public static synchronized void setGenerateComments (final boolean bGenerateComments)
   {
-    s_bGenerateComments = bGenerateComments;
+    s_aSettings = s_aSettings.getWithGenerateComments (bGenerateComments);
   }
 
   public static boolean isGenerateComments ()
   {
-    return s_bGenerateComments;
+    return s_aSettings.isGenerateComments ();
   }
 
   /**
@@ -97,18 +235,21 @@ public final class JSPrinter
    */
   public static void setMinimumCodeSize (final boolean bMinimumCodeSize)
   {
-    setIndentAndAlign (!bMinimumCodeSize);
-    setGenerateTypeNames (!bMinimumCodeSize);
-    setGenerateComments (!bMinimumCodeSize);
+    setSettings (JSWriterSettings.createForMinimumCodeSize (bMinimumCodeSize));
   }
 
   @SuppressWarnings ("resource")
   @Nonnull
   public static JSFormatter createFormatter (@Nonnull @WillNotClose final Writer aWriter)
   {
-    return new JSFormatter (aWriter).indentAndAlign (s_bIndentAndAlign)
-                                    .generateTypeNames (s_bGenerateTypeNames)
-                                    .generateComments (s_bGenerateComments);
+    return createFormatter (aWriter, s_aSettings);
+  }
+
+  @Nonnull
+  public static JSFormatter createFormatter (@Nonnull @WillNotClose final Appendable aAppendable,
+                                             @Nonnull final JSWriterSettings aSettings)
+  {
+    return new JSFormatter (aAppendable, aSettings);
   }
 
   @SuppressFBWarnings (value = { "OBL_UNSATISFIED_OBLIGATION" })
@@ -171,7 +312,7 @@ public final class JSPrinter
             writePackageInternal ((JSPackage) aObj, aFormatter);
           }
           else
-            aFormatter.plain (aObj.getJSCode ());
+            aFormatter.jsCode (aObj);
   }
 
   @SuppressFBWarnings (value = { "OBL_UNSATISFIED_OBLIGATION" })
@@ -188,42 +329,237 @@ public final class JSPrinter
     }
   }
 
+  /**
+   * Write the passed object to the passed {@link Appendable} without any
+   * intermediate string. Leading and trailing whitespaces are not written, so
+   * the result is identical to
+   * {@link #getAsString(IJSGeneratable, JSWriterSettings)}.
+   *
+   * @param aGeneratable
+   *        The object to be written. May not be <code>null</code>.
+   * @param aAppendable
+   *        The target to write to. May not be <code>null</code>.
+   * @param aSettings
+   *        The settings to use. May not be <code>null</code>.
+   * @throws IOException
+   *         If writing to the {@link Appendable} failed
+   */
+  public static void writeGeneratable (@Nonnull final IJSGeneratable aGeneratable,
+                                       @Nonnull @WillNotClose final Appendable aAppendable,
+                                       @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    final JSFormatter aFormatter = createFormatter (new TrimmingAppendable (aAppendable), aSettings);
+    aFormatter.generatable (aGeneratable);
+    aFormatter.flush ();
+  }
+
+  /**
+   * Write the passed declaration to the passed {@link Appendable} without any
+   * intermediate string. Leading and trailing whitespaces are not written, so
+   * the result is identical to
+   * {@link #getAsString(IJSDeclaration, JSWriterSettings)}.
+   *
+   * @param aDeclaration
+   *        The object to be written. May not be <code>null</code>.
+   * @param aAppendable
+   *        The target to write to. May not be <code>null</code>.
+   * @param aSettings
+   *        The settings to use. May not be <code>null</code>.
+   * @throws IOException
+   *         If writing to the {@link Appendable} failed
+   */
+  public static void writeDeclaration (@Nonnull final IJSDeclaration aDeclaration,
+                                       @Nonnull @WillNotClose final Appendable aAppendable,
+                                       @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    final JSFormatter aFormatter = createFormatter (new TrimmingAppendable (aAppendable), aSettings);
+    aFormatter.decl (aDeclaration);
+    aFormatter.flush ();
+  }
+
+  /**
+   * Write the passed statement to the passed {@link Appendable} without any
+   * intermediate string. Leading and trailing whitespaces are not written, so
+   * the result is identical to
+   * {@link #getAsString(IJSStatement, JSWriterSettings)}.
+   *
+   * @param aStatement
+   *        The object to be written. May not be <code>null</code>.
+   * @param aAppendable
+   *        The target to write to. May not be <code>null</code>.
+   * @param aSettings
+   *        The settings to use. May not be <code>null</code>.
+   * @throws IOException
+   *         If writing to the {@link Appendable} failed
+   */
+  public static void writeStatement (@Nonnull final IJSStatement aStatement,
+                                     @Nonnull @WillNotClose final Appendable aAppendable,
+                                     @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    final JSFormatter aFormatter = createFormatter (new TrimmingAppendable (aAppendable), aSettings);
+    aFormatter.stmt (aStatement);
+    aFormatter.flush ();
+  }
+
+  /**
+   * Write the passed package to the passed {@link Appendable} without any
+   * intermediate string. Leading and trailing whitespaces are not written, so
+   * the result is identical to
+   * {@link #getAsString(JSPackage, JSWriterSettings)}.
+   *
+   * @param aPackage
+   *        The object to be written. May not be <code>null</code>.
+   * @param aAppendable
+   *        The target to write to. May not be <code>null</code>.
+   * @param aSettings
+   *        The settings to use. May not be <code>null</code>.
+   * @throws IOException
+   *         If writing to the {@link Appendable} failed
+   */
+  public static void writePackage (@Nonnull final JSPackage aPackage,
+                                   @Nonnull @WillNotClose final Appendable aAppendable,
+                                   @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    final JSFormatter aFormatter = createFormatter (new TrimmingAppendable (aAppendable), aSettings);
+    writePackageInternal (aPackage, aFormatter);
+    aFormatter.flush ();
+  }
+
+  @Nonnull
+  private static BufferStack _getBuffers ()
+  {
+    BufferStack ret = s_aBuffers.get ();
+    if (ret == null)
+    {
+      ret = new BufferStack ();
+      s_aBuffers.set (ret);
+    }
+    return ret;
+  }
+
+  /**
+   * Flush the passed formatter, that writes to a {@link StringBuilder}, and
+   * get the trimmed content of the buffer, without creating an intermediate
+   * untrimmed string.
+   */
+  @Nonnull
+  private static String _getTrimmed (@Nonnull final JSFormatter aFormatter, @Nonnull final StringBuilder aSB)
+  {
+    try
+    {
+      aFormatter.flush ();
+    }
+    catch (final IOException ex)
+    {
+      // Can only be thrown by a streaming code provider
+      throw new IllegalStateException ("Failed to create JS code", ex);
+    }
+    int nStart = 0;
+    int nEnd = aSB.length ();
+    while (nStart < nEnd && aSB.charAt (nStart) <= ' ')
+      nStart++;
+    while (nEnd > nStart && aSB.charAt (nEnd - 1) <= ' ')
+      nEnd--;
+    return aSB.substring (nStart, nEnd);
+  }
+
   @Nonnull
   public static String getAsString (@Nonnull final IJSGeneratable aGeneratable)
+  {
+    return getAsString (aGeneratable, s_aSettings);
+  }
+
+  @Nonnull
+  public static String getAsString (@Nonnull final IJSGeneratable aGeneratable,
+                                    @Nonnull final JSWriterSettings aSettings)
   {
     ValueEnforcer.notNull (aGeneratable, "Generatable"); //$NON-NLS-1$
-    final NonBlockingStringWriter aSW = new NonBlockingStringWriter ();
-    writeGeneratable (aGeneratable, aSW);
-    return aSW.getAsString ().trim ();
+    final BufferStack aBuffers = _getBuffers ();
+    final StringBuilder aSB = aBuffers.acquire ();
+    try
+    {
+      final JSFormatter aFormatter = createFormatter (aSB, aSettings);
+      aFormatter.generatable (aGeneratable);
+      return _getTrimmed (aFormatter, aSB);
+    }
+    finally
+    {
+      aBuffers.release (aSB);
+    }
   }
 
   @Nonnull
   public static String getAsString (@Nonnull final IJSDeclaration aDecl)
+  {
+    return getAsString (aDecl, s_aSettings);
+  }
+
+  @Nonnull
+  public static String getAsString (@Nonnull final IJSDeclaration aDecl, @Nonnull final JSWriterSettings aSettings)
   {
     ValueEnforcer.notNull (aDecl, "Decl"); //$NON-NLS-1$
-    final NonBlockingStringWriter aSW = new NonBlockingStringWriter ();
-    writeDeclaration (aDecl, aSW);
-    return aSW.getAsString ().trim ();
+    final BufferStack aBuffers = _getBuffers ();
+    final StringBuilder aSB = aBuffers.acquire ();
+    try
+    {
+      final JSFormatter aFormatter = createFormatter (aSB, aSettings);
+      aFormatter.decl (aDecl);
+      return _getTrimmed (aFormatter, aSB);
+    }
+    finally
+    {
+      aBuffers.release (aSB);
+    }
   }
 
   @Nonnull
   public static String getAsString (@Nonnull final IJSStatement aStatement)
+  {
+    return getAsString (aStatement, s_aSettings);
+  }
+
+  @Nonnull
+  public static String getAsString (@Nonnull final IJSStatement aStatement, @Nonnull final JSWriterSettings aSettings)
   {
     ValueEnforcer.notNull (aStatement, "Statement"); //$NON-NLS-1$
-    final NonBlockingStringWriter aSW = new NonBlockingStringWriter ();
-    writeStatement (aStatement, aSW);
-    return aSW.getAsString ().trim ();
+    final BufferStack aBuffers = _getBuffers ();
+    final StringBuilder aSB = aBuffers.acquire ();
+    try
+    {
+      final JSFormatter aFormatter = createFormatter (aSB, aSettings);
+      aFormatter.stmt (aStatement);
+      return _getTrimmed (aFormatter, aSB);
+    }
+    finally
+    {
+      aBuffers.release (aSB);
+    }
   }
 
   @Nonnull
   public static String getAsString (@Nonnull final JSPackage aPackage)
+  {
+    return getAsString (aPackage, s_aSettings);
+  }
+
+  @Nonnull
+  public static String getAsString (@Nonnull final JSPackage aPackage, @Nonnull final JSWriterSettings aSettings)
   {
     ValueEnforcer.notNull (aPackage, "Package"); //$NON-NLS-1$
     if (aPackage.memberCount () == 0)
       return ""; //$NON-NLS-1$
 
-    final NonBlockingStringWriter aSW = new NonBlockingStringWriter ();
-    writePackage (aPackage, aSW);
-    return aSW.getAsString ().trim ();
+    final BufferStack aBuffers = _getBuffers ();
+    final StringBuilder aSB = aBuffers.acquire ();
+    try
+    {
+      final JSFormatter aFormatter = createFormatter (aSB, aSettings);
+      writePackageInternal (aPackage, aFormatter);
+      return _getTrimmed (aFormatter, aSB);
+    }
+    finally
+    {
+      aBuffers.release (aSB);
+    }
   }
 }
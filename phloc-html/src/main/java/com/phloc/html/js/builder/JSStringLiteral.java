@@ -33,6 +33,8 @@ import com.phloc.html.js.marshal.JSMarshaller;
 public class JSStringLiteral extends AbstractJSExpression
 {
   private final String m_sStr;
+  // Lazily created escaped representation; the string is immutable
+  private transient String m_sEscaped;
 
   public JSStringLiteral (@Nonnull final String sStr)
   {
@@ -58,7 +60,13 @@ public class JSStringLiteral extends AbstractJSExpression
 
   public void generate (@Nonnull final JSFormatter aFormatter)
   {
-    aFormatter.plain (getAsString (m_sStr));
+    String sEscaped = m_sEscaped;
+    if (sEscaped == null)
+    {
+      sEscaped = getAsString (m_sStr);
+      m_sEscaped = sEscaped;
+    }
+    aFormatter.plain (sEscaped);
   }
 
   @Override
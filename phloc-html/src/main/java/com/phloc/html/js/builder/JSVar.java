@@ -17,8 +17,11 @@
  */
 package com.phloc.html.js.builder;
 
+import java.io.IOException;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
 
 import com.phloc.commons.annotations.Nonempty;
 import com.phloc.commons.equals.EqualsUtils;
@@ -214,6 +217,13 @@ public class JSVar extends AbstractJSAssignmentTarget implements IJSDeclaration
     return JSPrinter.getAsString ((IJSDeclaration) this);
   }
 
+  @Override
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    JSPrinter.writeDeclaration (this, aAppendable, aSettings);
+  }
+
   @Override
   public boolean equals (final Object o)
   {
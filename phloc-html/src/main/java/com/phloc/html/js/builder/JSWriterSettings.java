@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.js.builder;
+
+import java.io.Serializable;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.hash.HashCodeGenerator;
+import com.phloc.commons.string.ToStringGenerator;
+
+/**
+ * Immutable settings for the JS code generation via {@link JSFormatter} and
+ * {@link JSPrinter}. As instances are immutable they can be shared between
+ * threads without any synchronization.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class JSWriterSettings implements Serializable
+{
+  public static final boolean DEFAULT_INDENT_AND_ALIGN = false;
+  public static final boolean DEFAULT_GENERATE_TYPE_NAMES = false;
+  public static final boolean DEFAULT_GENERATE_COMMENTS = true;
+  public static final String DEFAULT_INDENT = JSFormatter.DEFAULT_INDENT;
+
+  /** The default settings */
+  public static final JSWriterSettings DEFAULT_SETTINGS = new JSWriterSettings (DEFAULT_INDENT_AND_ALIGN,
+                                                                                DEFAULT_GENERATE_TYPE_NAMES,
+                                                                                DEFAULT_GENERATE_COMMENTS);
+
+  /** Settings that create the smallest possible code */
+  public static final JSWriterSettings MINIMUM_CODE_SIZE = createForMinimumCodeSize (true);
+
+  private final boolean m_bIndentAndAlign;
+  private final boolean m_bGenerateTypeNames;
+  private final boolean m_bGenerateComments;
+  private final String m_sIndent;
+
+  public JSWriterSettings (final boolean bIndentAndAlign,
+                           final boolean bGenerateTypeNames,
+                           final boolean bGenerateComments)
+  {
+    this (bIndentAndAlign, bGenerateTypeNames, bGenerateComments, DEFAULT_INDENT);
+  }
+
+  public JSWriterSettings (final boolean bIndentAndAlign,
+                           final boolean bGenerateTypeNames,
+                           final boolean bGenerateComments,
+                           @Nonnull final String sIndent)
+  {
+    m_bIndentAndAlign = bIndentAndAlign;
+    m_bGenerateTypeNames = bGenerateTypeNames;
+    m_bGenerateComments = bGenerateComments;
+    m_sIndent = ValueEnforcer.notNull (sIndent, "Indent");
+  }
+
+  /**
+   * @return <code>true</code> if the code should be indented and aligned.
+   */
+  public boolean isIndentAndAlign ()
+  {
+    return m_bIndentAndAlign;
+  }
+
+  /**
+   * @return <code>true</code> if type names should be emitted.
+   */
+  public boolean isGenerateTypeNames ()
+  {
+    return m_bGenerateTypeNames;
+  }
+
+  /**
+   * @return <code>true</code> if comments should be emitted.
+   */
+  public boolean isGenerateComments ()
+  {
+    return m_bGenerateComments;
+  }
+
+  /**
+   * @return The string used for a single indentation level. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public String getIndent ()
+  {
+    return m_sIndent;
+  }
+
+  @Nonnull
+  public JSWriterSettings getWithIndentAndAlign (final boolean bIndentAndAlign)
+  {
+    if (bIndentAndAlign == m_bIndentAndAlign)
+      return this;
+    return new JSWriterSettings (bIndentAndAlign, m_bGenerateTypeNames, m_bGenerateComments, m_sIndent);
+  }
+
+  @Nonnull
+  public JSWriterSettings getWithGenerateTypeNames (final boolean bGenerateTypeNames)
+  {
+    if (bGenerateTypeNames == m_bGenerateTypeNames)
+      return this;
+    return new JSWriterSettings (m_bIndentAndAlign, bGenerateTypeNames, m_bGenerateComments, m_sIndent);
+  }
+
+  @Nonnull
+  public JSWriterSettings getWithGenerateComments (final boolean bGenerateComments)
+  {
+    if (bGenerateComments == m_bGenerateComments)
+      return this;
+    return new JSWriterSettings (m_bIndentAndAlign, m_bGenerateTypeNames, bGenerateComments, m_sIndent);
+  }
+
+  /**
+   * Create settings that either create the smallest possible code or a fully
+   * readable code.
+   *
+   * @param bMinimumCodeSize
+   *        <code>true</code> for minimum code size
+   * @return The new settings. Never <code>null</code>.
+   */
+  @Nonnull
+  public static JSWriterSettings createForMinimumCodeSize (final boolean bMinimumCodeSize)
+  {
+    return new JSWriterSettings (!bMinimumCodeSize, !bMinimumCodeSize, !bMinimumCodeSize);
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (!(o instanceof JSWriterSettings))
+      return false;
+    final JSWriterSettings rhs = (JSWriterSettings) o;
+    return m_bIndentAndAlign == rhs.m_bIndentAndAlign &&
+           m_bGenerateTypeNames == rhs.m_bGenerateTypeNames &&
+           m_bGenerateComments == rhs.m_bGenerateComments &&
+           m_sIndent.equals (rhs.m_sIndent);
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return new HashCodeGenerator (this).append (m_bIndentAndAlign)
+                                       .append (m_bGenerateTypeNames)
+                                       .append (m_bGenerateComments)
+                                       .append (m_sIndent)
+                                       .getHashCode ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("indentAndAlign", m_bIndentAndAlign)
+                                       .append ("generateTypeNames", m_bGenerateTypeNames)
+                                       .append ("generateComments", m_bGenerateComments)
+                                       .append ("indent", m_sIndent)
+                                       .toString ();
+  }
+}
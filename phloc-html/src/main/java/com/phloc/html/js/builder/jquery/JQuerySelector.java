@@ -17,12 +17,14 @@
  */
 package com.phloc.html.js.builder.jquery;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.List;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
 import javax.annotation.concurrent.Immutable;
 
 import com.phloc.commons.ValueEnforcer;
@@ -37,13 +39,16 @@ import com.phloc.commons.string.ToStringGenerator;
 import com.phloc.html.EHTMLElement;
 import com.phloc.html.css.ICSSClassProvider;
 import com.phloc.html.hc.IHCElement;
+import com.phloc.html.js.IJSStreamingCodeProvider;
+import com.phloc.html.js.JSCodeHelper;
 import com.phloc.html.js.builder.IJSExpression;
 import com.phloc.html.js.builder.JSExpr;
 import com.phloc.html.js.builder.JSStringLiteral;
+import com.phloc.html.js.builder.JSWriterSettings;
 
 @Immutable
 @CodingStyleguideUnaware
-public final class JQuerySelector implements IJQuerySelector
+public final class JQuerySelector implements IJQuerySelector, IJSStreamingCodeProvider
 {
   public static final IJQuerySelector all = new JQuerySelector ("*");
   // @since jQuery 1.2
@@ -126,6 +131,12 @@ public final class JQuerySelector implements IJQuerySelector
     return m_aExpr.getJSCode ();
   }
 
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    JSCodeHelper.writeJSCode (m_aExpr, aAppendable, aSettings);
+  }
+
   @Override
   public String toString ()
   {
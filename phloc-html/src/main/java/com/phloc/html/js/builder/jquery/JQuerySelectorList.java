@@ -17,26 +17,30 @@
  */
 package com.phloc.html.js.builder.jquery;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
 
 import com.phloc.commons.ValueEnforcer;
 import com.phloc.commons.annotations.ReturnsMutableCopy;
 import com.phloc.commons.collections.ContainerHelper;
 import com.phloc.commons.state.EChange;
-import com.phloc.html.js.IJSCodeProvider;
+import com.phloc.html.js.IJSStreamingCodeProvider;
+import com.phloc.html.js.JSCodeHelper;
 import com.phloc.html.js.builder.IJSExpression;
+import com.phloc.html.js.builder.JSWriterSettings;
 
 /**
  * A list of jQuery selectors that are chained with ' ' (space)
  * 
  * @author Philip Helger
  */
-public class JQuerySelectorList implements IJSCodeProvider
+public class JQuerySelectorList implements IJSStreamingCodeProvider
 {
   private final List <IJQuerySelector> m_aElements = new ArrayList <IJQuerySelector> ();
 
@@ -140,4 +144,10 @@ public class JQuerySelectorList implements IJSCodeProvider
   {
     return getAsExpression ().getJSCode ();
   }
+
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    JSCodeHelper.writeJSCode (getAsExpression (), aAppendable, aSettings);
+  }
 }
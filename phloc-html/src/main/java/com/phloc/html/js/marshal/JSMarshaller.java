@@ -40,6 +40,8 @@ import com.phloc.html.hc.IHCNode;
 import com.phloc.html.hc.conversion.HCSettings;
 import com.phloc.html.js.CJS;
 import com.phloc.html.js.IJSCodeProvider;
+import com.phloc.html.js.JSCodeHelper;
+import com.phloc.html.js.builder.JSPrinter;
 import com.phloc.json.IJSON;
 import com.phloc.json2.IJson;
 
@@ -318,7 +320,7 @@ public final class JSMarshaller
         case JS:
           // Use JS as is
           if (aObject instanceof IJSCodeProvider)
-            aSB.append (((IJSCodeProvider) aObject).getJSCode ());
+            JSCodeHelper.appendJSCode (aSB, (IJSCodeProvider) aObject, JSPrinter.getSettings ());
           else
             aSB.append ((String) aObject);
           break;
@@ -17,12 +17,14 @@
  */
 package com.phloc.html.js.provider;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
 import javax.annotation.concurrent.NotThreadSafe;
 
 import com.phloc.commons.ICloneable;
@@ -32,15 +34,21 @@ import com.phloc.commons.collections.ContainerHelper;
 import com.phloc.commons.hash.HashCodeGenerator;
 import com.phloc.commons.string.ToStringGenerator;
 import com.phloc.html.js.IJSCodeProvider;
+import com.phloc.html.js.IJSStreamingCodeProvider;
+import com.phloc.html.js.JSCodeHelper;
+import com.phloc.html.js.builder.JSPrinter;
+import com.phloc.html.js.builder.JSWriterSettings;
 
 /**
  * A JSCode provider that encapsulates a list of {@link IJSCodeProvider}
- * elements and itself implements {@link IJSCodeProvider}.
+ * elements and itself implements {@link IJSCodeProvider}. The contained
+ * elements are written one after the other into the same target, so no
+ * intermediate strings are created for streaming capable providers.
  *
  * @author Philip Helger
  */
 @NotThreadSafe
-public final class CollectingJSCodeProvider implements IJSCodeProvider, IHasSize, ICloneable <CollectingJSCodeProvider>
+public final class CollectingJSCodeProvider implements IJSStreamingCodeProvider, IHasSize, ICloneable <CollectingJSCodeProvider>
 {
   private final List <IJSCodeProvider> m_aList = new ArrayList <IJSCodeProvider> ();
 
@@ -153,10 +161,14 @@ public final class CollectingJSCodeProvider implements IJSCodeProvider, IHasSize
   @Nonnull
   public String getJSCode ()
   {
-    final StringBuilder aSB = new StringBuilder ();
+    return JSCodeHelper.getJSCode (this, JSPrinter.getSettings ());
+  }
+
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
     for (final IJSCodeProvider aJSCodeProvider : m_aList)
-      aSB.append (aJSCodeProvider.getJSCode ());
-    return aSB.toString ();
+      JSCodeHelper.writeJSCode (aJSCodeProvider, aAppendable, aSettings);
   }
 
   @Nonnull
@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.js.provider;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.hash.HashCodeGenerator;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.js.IJSCodeProvider;
+import com.phloc.html.js.IJSStreamingCodeProvider;
+import com.phloc.html.js.JSCodeHelper;
+import com.phloc.html.js.builder.JSPrinter;
+import com.phloc.html.js.builder.JSWriterSettings;
+
+/**
+ * A wrapper around an {@link IJSCodeProvider} tree that is considered to be
+ * immutable from now on. The JS code is created only once per
+ * {@link JSWriterSettings} and afterwards served from a cache. This is meant
+ * for constant JS code like event handlers that are emitted many times. The
+ * wrapped provider must not be modified after it was sealed, as the changes
+ * would not be reflected!<br>
+ * Equality and the hash code are based on the JS code rendered with
+ * {@link #CANONICAL_SETTINGS} when sealing, so two sealed providers are equal
+ * exactly if they emit the same JS code. Use
+ * {@link #createInterned(IJSCodeProvider)} to share a single sealed provider
+ * (and its code cache) for identical JS code. The intern pool is bounded (see
+ * {@link #setMaxInternedCount(int)}) - if it is full, new sealed providers are
+ * still created but no longer shared, so there is no identity guarantee.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class SealedJSCodeProvider implements IJSStreamingCodeProvider
+{
+  /**
+   * The settings used to render the JS code that determines equality. All
+   * options are enabled, so that no difference between two trees is hidden.
+   */
+  public static final JSWriterSettings CANONICAL_SETTINGS = JSWriterSettings.createForMinimumCodeSize (false);
+
+  /** The default maximum number of interned sealed providers */
+  public static final int DEFAULT_MAX_INTERNED_COUNT = 1000;
+
+  private static final ConcurrentMap <String, SealedJSCodeProvider> s_aInterned = new ConcurrentHashMap <String, SealedJSCodeProvider> ();
+  private static final AtomicInteger s_aMaxInternedCount = new AtomicInteger (DEFAULT_MAX_INTERNED_COUNT);
+
+  private final IJSCodeProvider m_aProvider;
+  private final Map <JSWriterSettings, String> m_aCodeCache = new ConcurrentHashMap <JSWriterSettings, String> ();
+  private final String m_sCanonicalJSCode;
+  private final int m_nHashCode;
+
+  private SealedJSCodeProvider (@Nonnull final IJSCodeProvider aProvider)
+  {
+    m_aProvider = aProvider;
+    m_sCanonicalJSCode = getJSCode (CANONICAL_SETTINGS);
+    m_nHashCode = new HashCodeGenerator (this).append (m_sCanonicalJSCode).getHashCode ();
+  }
+
+  /**
+   * @return The sealed provider. Never <code>null</code>. It must not be
+   *         modified!
+   */
+  @Nonnull
+  public IJSCodeProvider getSealedProvider ()
+  {
+    return m_aProvider;
+  }
+
+  /**
+   * @return The JS code rendered with {@link #CANONICAL_SETTINGS} when
+   *         sealing. Never <code>null</code>.
+   */
+  @Nonnull
+  public String getCanonicalJSCode ()
+  {
+    return m_sCanonicalJSCode;
+  }
+
+  /**
+   * @return The number of different settings for which the JS code is cached.
+   */
+  public int getCachedCodeCount ()
+  {
+    return m_aCodeCache.size ();
+  }
+
+  /**
+   * Get the JS code for the passed settings, using the cache.
+   *
+   * @param aSettings
+   *        The settings to use. May not be <code>null</code>.
+   * @return The JS code. Never <code>null</code>.
+   */
+  @Nonnull
+  public String getJSCode (@Nonnull final JSWriterSettings aSettings)
+  {
+    ValueEnforcer.notNull (aSettings, "Settings");
+
+    String ret = m_aCodeCache.get (aSettings);
+    if (ret == null)
+    {
+      // Creating the code twice in concurrent calls does not harm
+      final StringBuilder aSB = new StringBuilder ();
+      JSCodeHelper.appendJSCode (aSB, m_aProvider, aSettings);
+      ret = aSB.toString ();
+      m_aCodeCache.put (aSettings, ret);
+    }
+    return ret;
+  }
+
+  @Nonnull
+  public String getJSCode ()
+  {
+    return getJSCode (JSPrinter.getSettings ());
+  }
+
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    aAppendable.append (getJSCode (aSettings));
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (!(o instanceof SealedJSCodeProvider))
+      return false;
+    final SealedJSCodeProvider rhs = (SealedJSCodeProvider) o;
+    return m_nHashCode == rhs.m_nHashCode && m_sCanonicalJSCode.equals (rhs.m_sCanonicalJSCode);
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return m_nHashCode;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("provider", m_aProvider)
+                                       .append ("canonicalJSCode", m_sCanonicalJSCode)
+                                       .toString ();
+  }
+
+  /**
+   * Seal the passed JS code provider.
+   *
+   * @param aProvider
+   *        The provider to be sealed. May not be <code>null</code>. It must not
+   *        be modified afterwards.
+   * @return The sealed provider. If the passed provider is already sealed, it
+   *         is returned unchanged.
+   */
+  @Nonnull
+  public static SealedJSCodeProvider create (@Nonnull final IJSCodeProvider aProvider)
+  {
+    ValueEnforcer.notNull (aProvider, "Provider");
+    if (aProvider instanceof SealedJSCodeProvider)
+      return (SealedJSCodeProvider) aProvider;
+    return new SealedJSCodeProvider (aProvider);
+  }
+
+  /**
+   * Seal the passed JS code provider and share the result with all other
+   * interned sealed providers that emit the same JS code.
+   *
+   * @param aProvider
+   *        The provider to be sealed. May not be <code>null</code>. It must not
+   *        be modified afterwards.
+   * @return The interned sealed provider with the same JS code. Never
+   *         <code>null</code>. If the intern pool is full, an equal but not
+   *         shared sealed provider is returned.
+   */
+  @Nonnull
+  public static SealedJSCodeProvider createInterned (@Nonnull final IJSCodeProvider aProvider)
+  {
+    final SealedJSCodeProvider aSealed = create (aProvider);
+    final SealedJSCodeProvider aInterned = s_aInterned.get (aSealed.m_sCanonicalJSCode);
+    if (aInterned != null)
+      return aInterned;
+
+    // The bound is not strict in case of concurrent creation, but the map
+    // cannot grow endlessly
+    if (s_aInterned.size () >= s_aMaxInternedCount.get ())
+      return aSealed;
+
+    final SealedJSCodeProvider aOld = s_aInterned.putIfAbsent (aSealed.m_sCanonicalJSCode, aSealed);
+    return aOld != null ? aOld : aSealed;
+  }
+
+  /**
+   * @return The number of currently interned sealed providers.
+   */
+  @Nonnegative
+  public static int getInternedCount ()
+  {
+    return s_aInterned.size ();
+  }
+
+  /**
+   * @return The maximum number of sealed providers to be interned.
+   */
+  @Nonnegative
+  public static int getMaxInternedCount ()
+  {
+    return s_aMaxInternedCount.get ();
+  }
+
+  /**
+   * Set the maximum number of sealed providers to be interned. Already
+   * interned providers are not removed if the new maximum is lower than the
+   * current number of interned providers.
+   *
+   * @param nMaxInternedCount
+   *        The maximum number to use. Must be &ge; 0. 0 means no interning at
+   *        all.
+   */
+  public static void setMaxInternedCount (@Nonnegative final int nMaxInternedCount)
+  {
+    ValueEnforcer.isGE0 (nMaxInternedCount, "MaxInternedCount");
+    s_aMaxInternedCount.set (nMaxInternedCount);
+  }
+}
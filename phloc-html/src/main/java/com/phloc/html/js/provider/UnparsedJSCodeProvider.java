@@ -17,13 +17,18 @@
  */
 package com.phloc.html.js.provider;
 
+import java.io.IOException;
+
 import javax.annotation.Nonnull;
+import javax.annotation.WillNotClose;
 import javax.annotation.concurrent.Immutable;
 
 import com.phloc.commons.ValueEnforcer;
 import com.phloc.commons.hash.HashCodeGenerator;
 import com.phloc.commons.string.ToStringGenerator;
 import com.phloc.html.js.IJSCodeProvider;
+import com.phloc.html.js.IJSStreamingCodeProvider;
+import com.phloc.html.js.builder.JSWriterSettings;
 
 /**
  * Implementation of {@link IJSCodeProvider} that takes an arbitrary string from
@@ -32,7 +37,7 @@ import com.phloc.html.js.IJSCodeProvider;
  * @author Philip Helger
  */
 @Immutable
-public final class UnparsedJSCodeProvider implements IJSCodeProvider
+public final class UnparsedJSCodeProvider implements IJSStreamingCodeProvider
 {
   private final String m_sJSCode;
 
@@ -50,6 +55,12 @@ public final class UnparsedJSCodeProvider implements IJSCodeProvider
     return m_sJSCode;
   }
 
+  public void writeJSCode (@Nonnull @WillNotClose final Appendable aAppendable,
+                           @Nonnull final JSWriterSettings aSettings) throws IOException
+  {
+    aAppendable.append (m_sJSCode);
+  }
+
   @Override
   public boolean equals (final Object o)
   {
@@ -59,25 +59,46 @@ final class Emitter
   /** The configuration. */
   private final MarkdownConfiguration m_aConfig;
   /** Extension flag. */
-  public boolean m_bUseExtensions = false;
+  private boolean m_bUseExtensions;
   /** Newline flag. */
-  public boolean m_bConvertNewline2Br = false;
-  /** Plugins references **/
-  private final Map <String, AbstractMarkdownPlugin> m_aPlugins = new HashMap <String, AbstractMarkdownPlugin> ();
+  private final boolean m_bConvertNewline2Br;
+  /** Plugins references - shared and never modified **/
+  private final Map <String, AbstractMarkdownPlugin> m_aPlugins;
 
-  /** Constructor. */
-  public Emitter (final MarkdownConfiguration config)
+  /**
+   * Constructor. A new emitter is created for each processed document.
+   *
+   * @param config
+   *        The configuration to use.
+   * @param aPlugins
+   *        All plugins by ID. This map is not modified.
+   */
+  public Emitter (final MarkdownConfiguration config, final Map <String, AbstractMarkdownPlugin> aPlugins)
   {
     m_aConfig = config;
     m_bUseExtensions = config.isExtendedProfile ();
     m_bConvertNewline2Br = config.isConvertNewline2Br ();
-    for (final AbstractMarkdownPlugin plugin : config.getAllPlugins ())
-      register (plugin);
+    m_aPlugins = aPlugins;
+  }
+
+  public boolean isUseExtensions ()
+  {
+    return m_bUseExtensions;
   }
 
-  public void register (final AbstractMarkdownPlugin plugin)
+  public void setUseExtensions (final boolean bUseExtensions)
+  {
+    m_bUseExtensions = bUseExtensions;
+  }
+
+  /**
+   * @return All link references collected while reading the document. The
+   *         keys are lower cased. Never <code>null</code>.
+   */
+  @Nonnull
+  Map <String, LinkRef> getAllLinkRefs ()
   {
-    m_aPlugins.put (plugin.getPluginID (), plugin);
+    return m_aLinkRefs;
   }
 
   /**
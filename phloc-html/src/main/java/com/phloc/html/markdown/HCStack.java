@@ -50,12 +50,24 @@ import com.phloc.html.hc.impl.HCTextNode;
 final class HCStack
 {
   private final NonBlockingStack <IHCNode> m_aStack = new NonBlockingStack <IHCNode> ();
+  // Text appended to the top node that was not yet added as a text node
+  private final StringBuilder m_aPendingText = new StringBuilder ();
 
   public HCStack ()
   {
     m_aStack.push (new HCNodeList ());
   }
 
+  private void _flushPendingText ()
+  {
+    if (m_aPendingText.length () > 0)
+    {
+      final HCTextNode aTextNode = new HCTextNode (m_aPendingText.toString ());
+      m_aPendingText.setLength (0);
+      _append (aTextNode);
+    }
+  }
+
   public void push (@Nonnull final IHCNode aNode)
   {
     append (aNode);
@@ -75,37 +87,47 @@ final class HCStack
     // Never pop the fixed nodelist
     if (m_aStack.size () == 1)
       throw new MarkdownException ("Can't pop from empty stack");
+    _flushPendingText ();
     m_aStack.pop ();
   }
 
   @Nonnull
   public HCNodeList getRoot ()
   {
+    _flushPendingText ();
     return (HCNodeList) m_aStack.get (0);
   }
 
   public void reset ()
   {
     // Ensure to create a new node list in case the object was appended!
+    m_aPendingText.setLength (0);
     m_aStack.clear ();
     m_aStack.push (new HCNodeList ());
   }
 
   public void append (final char c)
   {
-    append (new HCTextNode (c));
+    // Consecutive text is collected and added as a single text node
+    m_aPendingText.append (c);
   }
 
   public void append (@Nullable final String s)
   {
     if (StringHelper.hasText (s))
-      append (new HCTextNode (s));
+      m_aPendingText.append (s);
   }
 
   public void append (@Nonnull final IHCNode aNode)
   {
     ValueEnforcer.notNull (aNode, "Node");
 
+    _flushPendingText ();
+    _append (aNode);
+  }
+
+  private void _append (@Nonnull final IHCNode aNode)
+  {
     final IHCNode aParent = m_aStack.peek ();
 
     // Handle special cases
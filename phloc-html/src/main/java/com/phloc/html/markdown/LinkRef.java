@@ -19,6 +19,9 @@ package com.phloc.html.markdown;
 
 import javax.annotation.Nonnull;
 
+import com.phloc.commons.equals.EqualsUtils;
+import com.phloc.commons.hash.HashCodeGenerator;
+
 /**
  * A markdown link reference.
  *
@@ -68,4 +71,23 @@ final class LinkRef
   {
     return m_bIsAbbrev;
   }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (!(o instanceof LinkRef))
+      return false;
+    final LinkRef rhs = (LinkRef) o;
+    return m_sLink.equals (rhs.m_sLink) &&
+           EqualsUtils.equals (m_sTitle, rhs.m_sTitle) &&
+           m_bIsAbbrev == rhs.m_bIsAbbrev;
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return new HashCodeGenerator (this).append (m_sLink).append (m_sTitle).append (m_bIsAbbrev).getHashCode ();
+  }
 }
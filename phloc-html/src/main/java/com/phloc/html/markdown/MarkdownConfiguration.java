@@ -20,7 +20,9 @@ package com.phloc.html.markdown;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -95,6 +97,12 @@ public class MarkdownConfiguration
                                                                                            .setExtendedProfile (true)
                                                                                            .build ();
 
+  /**
+   * Default minimum number of characters of a document, so that its blocks
+   * are emitted in parallel, if an executor is present.
+   */
+  public static final int DEFAULT_PARALLEL_EMIT_THRESHOLD = 64 * 1024;
+
   private final boolean m_bSafeMode;
   private final Charset m_aEncoding;
   private final IMarkdownDecorator m_aDecorator;
@@ -103,6 +111,8 @@ public class MarkdownConfiguration
   private final boolean m_bConvertNewline2Br;
   private final IMarkdownSpanEmitter m_aSpecialLinkEmitter;
   private final List <AbstractMarkdownPlugin> m_aPlugins;
+  private final Executor m_aParallelEmitExecutor;
+  private final int m_nParallelEmitThreshold;
 
   /**
    * Constructor.
@@ -119,9 +129,61 @@ public class MarkdownConfiguration
                                 final boolean bConvertNewline2Br,
                                 @Nullable final IMarkdownSpanEmitter aSpecialLinkEmitter,
                                 @Nullable final List <? extends AbstractMarkdownPlugin> aPlugins)
+  {
+    this (bSafeMode,
+          aEncoding,
+          aDecorator,
+          aCodeBlockEmitter,
+          bForceExtendedProfile,
+          bConvertNewline2Br,
+          aSpecialLinkEmitter,
+          aPlugins,
+          null,
+          DEFAULT_PARALLEL_EMIT_THRESHOLD);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param bSafeMode
+   *        <code>true</code> to enable the HTML safe mode
+   * @param aEncoding
+   *        The character encoding. May not be <code>null</code>.
+   * @param aDecorator
+   *        The decorator. May not be <code>null</code>.
+   * @param aCodeBlockEmitter
+   *        The code block emitter. May be <code>null</code>.
+   * @param bForceExtendedProfile
+   *        <code>true</code> to enable the extended profile by default
+   * @param bConvertNewline2Br
+   *        <code>true</code> to convert new lines to <code>br</code>
+   *        elements
+   * @param aSpecialLinkEmitter
+   *        The emitter for special link spans ([[ ... ]]). May be
+   *        <code>null</code>.
+   * @param aPlugins
+   *        The plugins to use. May be <code>null</code>.
+   * @param aParallelEmitExecutor
+   *        The executor to emit the top-level blocks of large documents in
+   *        parallel. May be <code>null</code> to always emit sequentially.
+   * @param nParallelEmitThreshold
+   *        The minimum number of characters of a document to be emitted in
+   *        parallel. Must be &ge; 0.
+   */
+  public MarkdownConfiguration (final boolean bSafeMode,
+                                @Nonnull final Charset aEncoding,
+                                @Nonnull final IMarkdownDecorator aDecorator,
+                                @Nullable final IMarkdownBlockEmitter aCodeBlockEmitter,
+                                final boolean bForceExtendedProfile,
+                                final boolean bConvertNewline2Br,
+                                @Nullable final IMarkdownSpanEmitter aSpecialLinkEmitter,
+                                @Nullable final List <? extends AbstractMarkdownPlugin> aPlugins,
+                                @Nullable final Executor aParallelEmitExecutor,
+                                @Nonnegative final int nParallelEmitThreshold)
   {
     ValueEnforcer.notNull (aEncoding, "Encoding");
     ValueEnforcer.notNull (aDecorator, "Decorator");
+    ValueEnforcer.isGE0 (nParallelEmitThreshold, "ParallelEmitThreshold");
 
     m_bSafeMode = bSafeMode;
     m_aEncoding = aEncoding;
@@ -131,6 +193,8 @@ public class MarkdownConfiguration
     m_bConvertNewline2Br = bConvertNewline2Br;
     m_aSpecialLinkEmitter = aSpecialLinkEmitter;
     m_aPlugins = ContainerHelper.newList (aPlugins);
+    m_aParallelEmitExecutor = aParallelEmitExecutor;
+    m_nParallelEmitThreshold = nParallelEmitThreshold;
   }
 
   public boolean isSafeMode ()
@@ -179,6 +243,27 @@ public class MarkdownConfiguration
     return ContainerHelper.newList (m_aPlugins);
   }
 
+  /**
+   * @return The executor used to emit the top-level blocks of large documents
+   *         in parallel. May be <code>null</code> if all documents are emitted
+   *         sequentially.
+   */
+  @Nullable
+  public Executor getParallelEmitExecutor ()
+  {
+    return m_aParallelEmitExecutor;
+  }
+
+  /**
+   * @return The minimum number of characters of a document, so that it is
+   *         emitted in parallel.
+   */
+  @Nonnegative
+  public int getParallelEmitThreshold ()
+  {
+    return m_nParallelEmitThreshold;
+  }
+
   /**
    * Creates a new Builder instance.
    *
@@ -206,6 +291,8 @@ public class MarkdownConfiguration
     private IMarkdownBlockEmitter m_aCodeBlockEmitter = null;
     private IMarkdownSpanEmitter m_aSpecialLinkEmitter = null;
     private final List <AbstractMarkdownPlugin> m_aPlugins = new ArrayList <AbstractMarkdownPlugin> ();
+    private Executor m_aParallelEmitExecutor = null;
+    private int m_nParallelEmitThreshold = DEFAULT_PARALLEL_EMIT_THRESHOLD;
 
     /**
      * Constructor.
@@ -337,6 +424,42 @@ public class MarkdownConfiguration
       return this;
     }
 
+    /**
+     * Emit the top-level blocks of large documents in parallel on the passed
+     * executor. The created output is identical to the sequential output. All
+     * used plugins, decorators and emitters must be thread-safe. Default:
+     * <code>null</code>
+     *
+     * @param aParallelEmitExecutor
+     *        The executor to use. May be <code>null</code> to always emit
+     *        sequentially.
+     * @return This builder
+     */
+    @Nonnull
+    public Builder setParallelEmitExecutor (@Nullable final Executor aParallelEmitExecutor)
+    {
+      m_aParallelEmitExecutor = aParallelEmitExecutor;
+      return this;
+    }
+
+    /**
+     * Sets the minimum number of characters of a document, so that its blocks
+     * are emitted in parallel. Smaller documents are always emitted
+     * sequentially, as the overhead would outweigh the gain. Default:
+     * {@link MarkdownConfiguration#DEFAULT_PARALLEL_EMIT_THRESHOLD}
+     *
+     * @param nParallelEmitThreshold
+     *        The threshold in characters. Must be &ge; 0.
+     * @return This builder
+     */
+    @Nonnull
+    public Builder setParallelEmitThreshold (@Nonnegative final int nParallelEmitThreshold)
+    {
+      ValueEnforcer.isGE0 (nParallelEmitThreshold, "ParallelEmitThreshold");
+      m_nParallelEmitThreshold = nParallelEmitThreshold;
+      return this;
+    }
+
     /**
      * Builds a configuration instance.
      *
@@ -353,7 +476,9 @@ public class MarkdownConfiguration
                                         m_bForceExtendedProfile,
                                         m_bConvertNewline2Br,
                                         m_aSpecialLinkEmitter,
-                                        m_aPlugins);
+                                        m_aPlugins,
+                                        m_aParallelEmitExecutor,
+                                        m_nParallelEmitThreshold);
     }
   }
 }
@@ -18,6 +18,7 @@
 package com.phloc.html.markdown;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 public class MarkdownException extends RuntimeException
 {
@@ -25,4 +26,9 @@ public class MarkdownException extends RuntimeException
   {
     super (sMessage);
   }
+
+  public MarkdownException (@Nonnull final String sMessage, @Nullable final Throwable aCause)
+  {
+    super (sMessage, aCause);
+  }
 }
@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.markdown;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.io.streams.NonBlockingByteArrayInputStream;
+import com.phloc.commons.io.streams.NonBlockingByteArrayOutputStream;
+import com.phloc.commons.io.streams.NonBlockingStringReader;
+import com.phloc.commons.io.streams.StreamUtils;
+import com.phloc.commons.string.StringHelper;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.hc.impl.HCNodeList;
+
+/**
+ * Incremental Markdown processor for editors with a live preview, where the
+ * same document is processed again after every small change. The emitted
+ * nodes of each top-level block are remembered in serialized form and copies
+ * of them are reused for all blocks of the next document that are unchanged -
+ * independent of their position, so inserting or deleting a paragraph does
+ * not invalidate the following blocks. Only new or modified blocks are
+ * emitted again.<br>
+ * The whole document is parsed for every call, because parsing is linear and
+ * cheap compared to emitting, and because a single changed line may change
+ * the block structure around it. As link references and the extension
+ * profile affect the whole document, any change to them leads to a complete
+ * re-rendering.<br>
+ * Each result contains its own nodes, as rendering modifies the nodes. The
+ * nodes are serialized directly after emitting, so a result may be modified
+ * and rendered freely. Blocks with nodes that cannot be serialized are emitted
+ * again every time.<br>
+ * Use one instance per edited document.
+ * 
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public class MarkdownIncrementalProcessor
+{
+  private final MarkdownProcessor m_aProcessor;
+  // Link references and profile of the last document
+  private Map <String, LinkRef> m_aLinkRefs;
+  private boolean m_bUseExtensions;
+  // The serialized nodes of the last document per block signature, in
+  // document order, as equal blocks may occur more than once
+  private Map <String, List <byte []>> m_aBlockNodes = new HashMap <String, List <byte []>> ();
+  private int m_nBlockCount = 0;
+
+  public MarkdownIncrementalProcessor (@Nonnull final MarkdownProcessor aProcessor)
+  {
+    m_aProcessor = ValueEnforcer.notNull (aProcessor, "Processor");
+  }
+
+  /**
+   * @return The underlying processor. Never <code>null</code>.
+   */
+  @Nonnull
+  public MarkdownProcessor getProcessor ()
+  {
+    return m_aProcessor;
+  }
+
+  /**
+   * Forget all previously rendered blocks, so that the next call to
+   * {@link #process(String)} renders the whole document.
+   */
+  public void reset ()
+  {
+    m_aLinkRefs = null;
+    m_bUseExtensions = false;
+    m_aBlockNodes.clear ();
+    m_nBlockCount = 0;
+  }
+
+  private static void _appendSignature (@Nullable final String s, @Nonnull final StringBuilder aSB)
+  {
+    // Length prefix to make the signature unambiguous
+    if (s == null)
+      aSB.append ("-1:");
+    else
+      aSB.append (s.length ()).append (':').append (s);
+  }
+
+  private static void _appendSignature (@Nonnull final Block aBlock, @Nonnull final StringBuilder aSB)
+  {
+    aSB.append (aBlock.m_eType.ordinal ()).append (',').append (aBlock.m_nHeadlineDepth).append (',');
+    _appendSignature (aBlock.m_sId, aSB);
+    _appendSignature (aBlock.m_sMeta, aSB);
+    for (Line aLine = aBlock.m_aLines; aLine != null; aLine = aLine.m_aNext)
+    {
+      aSB.append (aLine.m_bIsEmpty ? 'E' : 'L')
+         .append (aLine.m_bPrevEmpty ? 'P' : 'N')
+         .append (aLine.m_nLeading)
+         .append (',')
+         .append (aLine.m_nTrailing)
+         .append (',');
+      _appendSignature (aLine.m_sValue, aSB);
+    }
+    aSB.append ('{');
+    for (Block aChild = aBlock.m_aBlocks; aChild != null; aChild = aChild.m_aNext)
+      _appendSignature (aChild, aSB);
+    aSB.append ('}');
+  }
+
+  /**
+   * Get a string that is equal for two top-level blocks if and only if they
+   * create the same output (given the same link references and profile).
+   * Must be called before the block is emitted, as emitting modifies the
+   * block.
+   * 
+   * @param aBlock
+   *        The block to use. May not be <code>null</code>.
+   * @return The signature of the block.
+   */
+  @Nonnull
+  private static String _getSignature (@Nonnull final Block aBlock)
+  {
+    final StringBuilder aSB = new StringBuilder ();
+    _appendSignature (aBlock, aSB);
+    return aSB.toString ();
+  }
+
+  /**
+   * Serialize the freshly emitted nodes of a block.
+   * 
+   * @param aNodes
+   *        The nodes to serialize. May not be <code>null</code>.
+   * @return <code>null</code> if the nodes cannot be serialized.
+   */
+  @Nullable
+  private static byte [] _serializeNodes (@Nonnull final HCNodeList aNodes)
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    ObjectOutputStream aOOS = null;
+    try
+    {
+      aOOS = new ObjectOutputStream (aBAOS);
+      aOOS.writeObject (aNodes);
+      aOOS.flush ();
+      return aBAOS.toByteArray ();
+    }
+    catch (final IOException ex)
+    {
+      // E.g. a plugin created a node that is not serializable
+      return null;
+    }
+    finally
+    {
+      StreamUtils.close (aOOS);
+    }
+  }
+
+  @Nonnull
+  private static HCNodeList _deserializeNodes (@Nonnull final byte [] aBytes)
+  {
+    ObjectInputStream aOIS = null;
+    try
+    {
+      aOIS = new ObjectInputStream (new NonBlockingByteArrayInputStream (aBytes));
+      return (HCNodeList) aOIS.readObject ();
+    }
+    catch (final IOException ex)
+    {
+      throw new IllegalStateException ("Failed to read the nodes of a Markdown block", ex);
+    }
+    catch (final ClassNotFoundException ex)
+    {
+      throw new IllegalStateException ("Failed to read the nodes of a Markdown block", ex);
+    }
+    finally
+    {
+      StreamUtils.close (aOIS);
+    }
+  }
+
+  /**
+   * Process the passed document, reusing the rendered blocks of the previous
+   * invocation where possible.
+   * 
+   * @param sText
+   *        The whole markdown document. May be <code>null</code>.
+   * @return The processing result containing the nodes of all blocks and the
+   *         indices of the blocks that were rendered anew.
+   * @throws IOException
+   *         If an IO error occurred.
+   */
+  @Nonnull
+  public MarkdownIncrementalResult process (@Nullable final String sText) throws IOException
+  {
+    final Emitter aEmitter = m_aProcessor.createEmitter ();
+    final Block aParent = m_aProcessor.parse (new NonBlockingStringReader (StringHelper.getNotNull (sText)), aEmitter);
+
+    // Link references and the profile are global to the document
+    if (m_aLinkRefs == null ||
+        m_bUseExtensions != aEmitter.isUseExtensions () ||
+        !m_aLinkRefs.equals (aEmitter.getAllLinkRefs ()))
+      m_aBlockNodes.clear ();
+
+    final Map <String, List <byte []>> aBlockNodes = new HashMap <String, List <byte []>> ();
+    final HCNodeList aResult = new HCNodeList ();
+    final List <Integer> aChangedBlockIndices = new ArrayList <Integer> ();
+    int nBlockIndex = 0;
+    for (Block aBlock = aParent.m_aBlocks; aBlock != null; aBlock = aBlock.m_aNext, ++nBlockIndex)
+    {
+      final String sSignature = _getSignature (aBlock);
+      // Each previously rendered block is reused at most once
+      final List <byte []> aUnused = m_aBlockNodes.get (sSignature);
+      byte [] aSerializedNodes = aUnused == null || aUnused.isEmpty () ? null : aUnused.remove (0);
+      HCNodeList aNodes;
+      if (aSerializedNodes != null)
+      {
+        // Use a copy, as the nodes of the previous result may have been
+        // modified by rendering
+        aNodes = _deserializeNodes (aSerializedNodes);
+      }
+      else
+      {
+        final HCStack aOut = new HCStack ();
+        aEmitter.emit (aOut, aBlock);
+        aNodes = aOut.getRoot ();
+        aSerializedNodes = _serializeNodes (aNodes);
+        aChangedBlockIndices.add (Integer.valueOf (nBlockIndex));
+      }
+      if (aSerializedNodes != null)
+      {
+        List <byte []> aSameBlockNodes = aBlockNodes.get (sSignature);
+        if (aSameBlockNodes == null)
+        {
+          aSameBlockNodes = new ArrayList <byte []> ();
+          aBlockNodes.put (sSignature, aSameBlockNodes);
+        }
+        aSameBlockNodes.add (aSerializedNodes);
+      }
+      // Add the children directly, so that the structure is identical to the
+      // one created by the MarkdownProcessor
+      aResult.addChildren (aNodes.getChildren ());
+    }
+
+    m_aBlockNodes = aBlockNodes;
+    m_nBlockCount = nBlockIndex;
+    m_aLinkRefs = aEmitter.getAllLinkRefs ();
+    m_bUseExtensions = aEmitter.isUseExtensions ();
+    return new MarkdownIncrementalResult (aResult, aChangedBlockIndices, nBlockIndex);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("processor", m_aProcessor)
+                                       .append ("blockCount", m_nBlockCount)
+                                       .toString ();
+  }
+}
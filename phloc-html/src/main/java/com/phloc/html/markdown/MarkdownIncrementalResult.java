@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.markdown;
+
+import java.util.List;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.annotations.ReturnsMutableCopy;
+import com.phloc.commons.collections.ContainerHelper;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.hc.impl.HCNodeList;
+
+/**
+ * The result of an incremental Markdown processing as done by
+ * {@link MarkdownIncrementalProcessor}. Additionally to the created nodes it
+ * contains the indices of all top-level blocks that were rendered anew.
+ * 
+ * @author Philip Helger
+ */
+public class MarkdownIncrementalResult extends MarkdownProcessingResult
+{
+  private final List <Integer> m_aChangedBlockIndices;
+  private final int m_nBlockCount;
+
+  public MarkdownIncrementalResult (@Nonnull final HCNodeList aNodeList,
+                                    @Nonnull final List <Integer> aChangedBlockIndices,
+                                    @Nonnegative final int nBlockCount)
+  {
+    super (aNodeList);
+    ValueEnforcer.notNull (aChangedBlockIndices, "ChangedBlockIndices");
+    ValueEnforcer.isGE0 (nBlockCount, "BlockCount");
+
+    m_aChangedBlockIndices = ContainerHelper.newList (aChangedBlockIndices);
+    m_nBlockCount = nBlockCount;
+  }
+
+  /**
+   * @return The 0-based indices of all top-level blocks of the current
+   *         document, that were rendered anew, in ascending order. All other
+   *         blocks were taken from the previous result. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public List <Integer> getAllChangedBlockIndices ()
+  {
+    return ContainerHelper.newList (m_aChangedBlockIndices);
+  }
+
+  /**
+   * @return The number of top-level blocks in the current document.
+   */
+  @Nonnegative
+  public int getBlockCount ()
+  {
+    return m_nBlockCount;
+  }
+
+  /**
+   * @return <code>true</code> if all top-level blocks were rendered anew.
+   */
+  public boolean isCompletelyRendered ()
+  {
+    return m_aChangedBlockIndices.size () == m_nBlockCount;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("changedBlockIndices", m_aChangedBlockIndices)
+                                       .append ("blockCount", m_nBlockCount)
+                                       .toString ();
+  }
+}
@@ -40,6 +40,13 @@ public class MarkdownProcessingResult
     m_aNodeList = aResult.getRoot ();
   }
 
+  protected MarkdownProcessingResult (@Nonnull final HCNodeList aNodeList)
+  {
+    ValueEnforcer.notNull (aNodeList, "NodeList");
+
+    m_aNodeList = aNodeList;
+  }
+
   @Nonnull
   public HCNodeList getNodeList ()
   {
@@ -20,17 +20,31 @@ package com.phloc.html.markdown;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.WillClose;
+import javax.annotation.concurrent.ThreadSafe;
 
 import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.collections.ContainerHelper;
 import com.phloc.commons.io.IReadableResource;
 import com.phloc.commons.io.streams.NonBlockingStringReader;
 import com.phloc.commons.io.streams.StreamUtils;
 import com.phloc.commons.string.StringHelper;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.impl.HCNodeList;
 
 /**
  * Markdown processor class.
@@ -42,17 +56,32 @@ import com.phloc.commons.string.StringHelper;
  * <code>String result = MarkdownProcessor.process("This is ***TXTMARK***");
  * </code>
  * </pre>
+ * <p>
+ * A processor is immutable after construction: the configuration and the
+ * plugin registry are resolved once. All state that is created while
+ * processing a document (the link references and the extension flag in an
+ * {@link Emitter} as well as the output {@link HCStack}) is created per
+ * invocation, so a single instance can be shared and used concurrently by
+ * multiple threads.
+ * </p>
+ * <p>
+ * If the configuration contains a parallel emit executor, the top-level blocks
+ * of large documents are emitted in parallel after all link references were
+ * read. The output is identical to the sequential output.
+ * </p>
  *
  * @author René Jeschke &lt;rene_jeschke@yahoo.de&gt;
  */
+@ThreadSafe
 public class MarkdownProcessor
 {
-  /** The emitter. */
-  private final Emitter m_aEmitter;
+  /** The minimum number of characters of a chunk emitted in parallel. */
+  private static final int PARALLEL_EMIT_CHUNK_CHARS = 8 * 1024;
+
   /** The Configuration. */
   final MarkdownConfiguration m_aConfig;
-  /** Extension flag. */
-  private boolean m_bUseExtensions;
+  /** All plugins by ID. */
+  private final Map <String, AbstractMarkdownPlugin> m_aPlugins;
 
   public MarkdownProcessor ()
   {
@@ -70,8 +99,10 @@ public class MarkdownProcessor
     ValueEnforcer.notNull (aConfig, "Config");
 
     m_aConfig = aConfig;
-    m_bUseExtensions = aConfig.isExtendedProfile ();
-    m_aEmitter = new Emitter (m_aConfig);
+    final Map <String, AbstractMarkdownPlugin> aPlugins = new HashMap <String, AbstractMarkdownPlugin> ();
+    for (final AbstractMarkdownPlugin aPlugin : aConfig.getAllPlugins ())
+      aPlugins.put (aPlugin.getPluginID (), aPlugin);
+    m_aPlugins = ContainerHelper.makeUnmodifiableNotNull (aPlugins);
   }
 
   /**
@@ -80,12 +111,17 @@ public class MarkdownProcessor
    * Takes care of markdown link references.
    * </p>
    *
+   * @param aReader
+   *        The reader to read from.
+   * @param aEmitter
+   *        The emitter of the current invocation that receives the link
+   *        references.
    * @return A Block containing all lines.
    * @throws IOException
    *         If an IO error occurred.
    */
   @Nonnull
-  private Block _readLines (@Nonnull final Reader aReader) throws IOException
+  private static Block _readLines (@Nonnull final Reader aReader, @Nonnull final Emitter aEmitter) throws IOException
   {
     final Block block = new Block ();
     final StringBuilder sb = new StringBuilder (80);
@@ -193,7 +229,7 @@ public class MarkdownProcessor
       {
         if (sID.toLowerCase (Locale.US).equals ("$profile$"))
         {
-          m_aEmitter.m_bUseExtensions = m_bUseExtensions = sLink.toLowerCase (Locale.US).equals ("extended");
+          aEmitter.setUseExtensions (sLink.toLowerCase (Locale.US).equals ("extended"));
           aLastLinkRef = null;
         }
         else
@@ -201,7 +237,7 @@ public class MarkdownProcessor
           // Store linkRef and skip line
           final LinkRef aLinkRef = new LinkRef (sLink, sComment, sComment != null &&
                                                                  (sLink.length () == 1 && sLink.charAt (0) == '*'));
-          m_aEmitter.addLinkRef (sID, aLinkRef);
+          aEmitter.addLinkRef (sID, aLinkRef);
           if (sComment == null)
             aLastLinkRef = aLinkRef;
         }
@@ -242,14 +278,16 @@ public class MarkdownProcessor
    *
    * @param aRoot
    *        The Block to process.
+   * @param bUseExtensions
+   *        Extension flag.
    */
-  private void _initListBlock (@Nonnull final Block aRoot)
+  private static void _initListBlock (@Nonnull final Block aRoot, final boolean bUseExtensions)
   {
     Line aLine = aRoot.m_aLines;
     aLine = aLine.m_aNext;
     while (aLine != null)
     {
-      final ELineType t = aLine.getLineType (m_bUseExtensions);
+      final ELineType t = aLine.getLineType (bUseExtensions);
       if (t == ELineType.OLIST ||
           t == ELineType.ULIST ||
           (!aLine.m_bIsEmpty && aLine.m_bPrevEmpty && aLine.m_nLeading == 0 && !(t == ELineType.OLIST || t == ELineType.ULIST)))
@@ -268,16 +306,18 @@ public class MarkdownProcessor
    *        The Block to process.
    * @param listMode
    *        Flag indicating that we're in a list item block.
+   * @param bUseExtensions
+   *        Extension flag.
    */
-  private void _recurse (@Nonnull final Block aRoot, final boolean listMode)
+  private static void _recurse (@Nonnull final Block aRoot, final boolean listMode, final boolean bUseExtensions)
   {
     Block aBlock, list;
     Line aLine = aRoot.m_aLines;
 
     if (listMode)
     {
-      aRoot.removeListIndent (m_bUseExtensions);
-      if (m_bUseExtensions && aRoot.m_aLines != null && aRoot.m_aLines.getLineType (m_bUseExtensions) != ELineType.CODE)
+      aRoot.removeListIndent (bUseExtensions);
+      if (bUseExtensions && aRoot.m_aLines != null && aRoot.m_aLines.getLineType (bUseExtensions) != ELineType.CODE)
       {
         aRoot.m_sId = aRoot.m_aLines.stripID ();
       }
@@ -290,7 +330,7 @@ public class MarkdownProcessor
 
     while (aLine != null)
     {
-      final ELineType eType = aLine.getLineType (m_bUseExtensions);
+      final ELineType eType = aLine.getLineType (bUseExtensions);
       switch (eType)
       {
         case OTHER:
@@ -298,10 +338,10 @@ public class MarkdownProcessor
           final boolean bWasEmpty = aLine.m_bPrevEmpty;
           while (aLine != null && !aLine.m_bIsEmpty)
           {
-            final ELineType t = aLine.getLineType (m_bUseExtensions);
-            if ((listMode || m_bUseExtensions) && (t == ELineType.OLIST || t == ELineType.ULIST))
+            final ELineType t = aLine.getLineType (bUseExtensions);
+            if ((listMode || bUseExtensions) && (t == ELineType.OLIST || t == ELineType.ULIST))
               break;
-            if (m_bUseExtensions && (t == ELineType.CODE || t == ELineType.FENCED_CODE || t == ELineType.PLUGIN))
+            if (bUseExtensions && (t == ELineType.CODE || t == ELineType.FENCED_CODE || t == ELineType.PLUGIN))
               break;
             if (t == ELineType.HEADLINE ||
                 t == ELineType.HEADLINE1 ||
@@ -356,7 +396,7 @@ public class MarkdownProcessor
             if (!aLine.m_bIsEmpty &&
                 aLine.m_bPrevEmpty &&
                 aLine.m_nLeading == 0 &&
-                aLine.getLineType (m_bUseExtensions) != ELineType.BQUOTE)
+                aLine.getLineType (bUseExtensions) != ELineType.BQUOTE)
               break;
             aLine = aLine.m_aNext;
           }
@@ -364,7 +404,7 @@ public class MarkdownProcessor
           aBlock.m_eType = EBlockType.BLOCKQUOTE;
           aBlock.removeSurroundingEmptyLines ();
           aBlock.removeBlockQuotePrefix ();
-          _recurse (aBlock, false);
+          _recurse (aBlock, false, bUseExtensions);
           aLine = aRoot.m_aLines;
           break;
         case HR:
@@ -381,7 +421,7 @@ public class MarkdownProcessor
           aLine = aLine.m_aNext;
           while (aLine != null)
           {
-            if (aLine.getLineType (m_bUseExtensions) == ELineType.FENCED_CODE)
+            if (aLine.getLineType (bUseExtensions) == ELineType.FENCED_CODE)
               break;
             // TODO ... is this really necessary? Maybe add a special
             // flag?
@@ -393,7 +433,7 @@ public class MarkdownProcessor
           aBlock.m_eType = EBlockType.FENCED_CODE;
           aBlock.m_sMeta = Utils.getMetaFromFence (aBlock.m_aLines.m_sValue);
           aBlock.m_aLines.setEmpty ();
-          if (aBlock.m_aLineTail.getLineType (m_bUseExtensions) == ELineType.FENCED_CODE)
+          if (aBlock.m_aLineTail.getLineType (bUseExtensions) == ELineType.FENCED_CODE)
             aBlock.m_aLineTail.setEmpty ();
           aBlock.removeSurroundingEmptyLines ();
           break;
@@ -401,7 +441,7 @@ public class MarkdownProcessor
           aLine = aLine.m_aNext;
           while (aLine != null)
           {
-            if (aLine.getLineType (m_bUseExtensions) == ELineType.PLUGIN)
+            if (aLine.getLineType (bUseExtensions) == ELineType.PLUGIN)
               break;
             // TODO ... is this really necessary? Maybe add a special
             // flag?
@@ -413,7 +453,7 @@ public class MarkdownProcessor
           aBlock.m_eType = EBlockType.PLUGIN;
           aBlock.m_sMeta = Utils.getMetaFromFence (aBlock.m_aLines.m_sValue);
           aBlock.m_aLines.setEmpty ();
-          if (aBlock.m_aLineTail.getLineType (m_bUseExtensions) == ELineType.PLUGIN)
+          if (aBlock.m_aLineTail.getLineType (bUseExtensions) == ELineType.PLUGIN)
             aBlock.m_aLineTail.setEmpty ();
           aBlock.removeSurroundingEmptyLines ();
           break;
@@ -428,7 +468,7 @@ public class MarkdownProcessor
           aBlock.m_eType = EBlockType.HEADLINE;
           if (eType != ELineType.HEADLINE)
             aBlock.m_nHeadlineDepth = eType == ELineType.HEADLINE1 ? 1 : 2;
-          if (m_bUseExtensions)
+          if (bUseExtensions)
             aBlock.m_sId = aBlock.m_aLines.stripID ();
           aBlock.transfromHeadline ();
           aRoot.removeLeadingEmptyLines ();
@@ -438,7 +478,7 @@ public class MarkdownProcessor
         case ULIST:
           while (aLine != null)
           {
-            final ELineType e = aLine.getLineType (m_bUseExtensions);
+            final ELineType e = aLine.getLineType (bUseExtensions);
             if (!aLine.m_bIsEmpty &&
                 (aLine.m_bPrevEmpty && aLine.m_nLeading == 0 && !(e == ELineType.OLIST || e == ELineType.ULIST)))
               break;
@@ -449,11 +489,11 @@ public class MarkdownProcessor
           list.m_aLines.m_bPrevEmpty = false;
           list.removeSurroundingEmptyLines ();
           list.m_aLines.m_bPrevEmpty = false;
-          _initListBlock (list);
+          _initListBlock (list, bUseExtensions);
           aBlock = list.m_aBlocks;
           while (aBlock != null)
           {
-            _recurse (aBlock, true);
+            _recurse (aBlock, true, bUseExtensions);
             aBlock = aBlock.m_aNext;
           }
           list.expandListParagraphs ();
@@ -488,33 +528,173 @@ public class MarkdownProcessor
   }
 
   /**
-   * Does all the processing.
+   * @return A new emitter holding all the state of a single processing run.
+   */
+  @Nonnull
+  Emitter createEmitter ()
+  {
+    return new Emitter (m_aConfig, m_aPlugins);
+  }
+
+  /**
+   * Read the passed document and split it into blocks. Link references and
+   * the profile switch found in the document are stored in the passed
+   * emitter.
    *
-   * @return The processing result.
+   * @param aReader
+   *        The reader to read from. Is closed afterwards.
+   * @param aEmitter
+   *        The emitter of this processing run.
+   * @return The parent block. The top-level blocks are its children.
    * @throws IOException
    *         If an IO error occurred.
    */
   @Nonnull
-  public MarkdownProcessingResult process (@Nonnull @WillClose final Reader aReader) throws IOException
+  Block parse (@Nonnull @WillClose final Reader aReader, @Nonnull final Emitter aEmitter) throws IOException
   {
     try
     {
-      final Block aParent = _readLines (aReader);
+      final Block aParent = _readLines (aReader, aEmitter);
       aParent.removeSurroundingEmptyLines ();
-      _recurse (aParent, false);
+      _recurse (aParent, false, aEmitter.isUseExtensions ());
+      return aParent;
+    }
+    finally
+    {
+      StreamUtils.close (aReader);
+    }
+  }
 
-      final HCStack aOut = new HCStack ();
-      Block aBlock = aParent.m_aBlocks;
-      while (aBlock != null)
+  /**
+   * Get the number of characters of all lines of the passed block and all
+   * nested blocks.
+   */
+  @Nonnegative
+  private static long _getCharCount (@Nonnull final Block aBlock)
+  {
+    long ret = 0;
+    for (Line aLine = aBlock.m_aLines; aLine != null; aLine = aLine.m_aNext)
+      if (aLine.m_sValue != null)
+        ret += aLine.m_sValue.length ();
+    for (Block aChild = aBlock.m_aBlocks; aChild != null; aChild = aChild.m_aNext)
+      ret += _getCharCount (aChild);
+    return ret;
+  }
+
+  @Nonnull
+  private static HCNodeList _getResult (@Nonnull final FutureTask <HCNodeList> aTask)
+  {
+    // Run the task in this thread, if no executor thread picked it up so far
+    aTask.run ();
+    try
+    {
+      return aTask.get ();
+    }
+    catch (final InterruptedException ex)
+    {
+      Thread.currentThread ().interrupt ();
+      throw new MarkdownException ("Interrupted while waiting for parallel emit", ex);
+    }
+    catch (final ExecutionException ex)
+    {
+      final Throwable aCause = ex.getCause ();
+      if (aCause instanceof RuntimeException)
+        throw (RuntimeException) aCause;
+      if (aCause instanceof Error)
+        throw (Error) aCause;
+      throw new MarkdownException ("Failed to emit blocks in parallel", aCause);
+    }
+  }
+
+  /**
+   * Emit the top-level blocks in chunks of consecutive blocks on the passed
+   * executor and append the results to the passed output in the original
+   * order.
+   */
+  private static void _emitParallel (@Nonnull final Emitter aEmitter,
+                                     @Nonnull final Block aParent,
+                                     @Nonnull final Executor aExecutor,
+                                     @Nonnull final HCStack aOut)
+  {
+    final List <FutureTask <HCNodeList>> aTasks = new ArrayList <FutureTask <HCNodeList>> ();
+    Block aBlock = aParent.m_aBlocks;
+    while (aBlock != null)
+    {
+      // Collect consecutive blocks until the chunk is large enough
+      final Block aFirstBlock = aBlock;
+      long nChunkChars = 0;
+      while (aBlock != null && nChunkChars < PARALLEL_EMIT_CHUNK_CHARS)
       {
-        m_aEmitter.emit (aOut, aBlock);
+        nChunkChars += _getCharCount (aBlock);
         aBlock = aBlock.m_aNext;
       }
-      return new MarkdownProcessingResult (aOut);
+      final Block aEndBlock = aBlock;
+
+      final FutureTask <HCNodeList> aTask = new FutureTask <HCNodeList> (new Callable <HCNodeList> ()
+      {
+        public HCNodeList call ()
+        {
+          final HCStack aChunkOut = new HCStack ();
+          for (Block aCur = aFirstBlock; aCur != aEndBlock; aCur = aCur.m_aNext)
+            aEmitter.emit (aChunkOut, aCur);
+          return aChunkOut.getRoot ();
+        }
+      });
+      // The first chunk is emitted in this thread
+      if (!aTasks.isEmpty ())
+      {
+        try
+        {
+          aExecutor.execute (aTask);
+        }
+        catch (final RejectedExecutionException ex)
+        {
+          // Ignore - the task is run in this thread
+        }
+      }
+      aTasks.add (aTask);
     }
-    finally
+
+    // Stitch the results in the original order. Text nodes at chunk borders
+    // are merged by the stack, exactly as in sequential emitting.
+    for (final FutureTask <HCNodeList> aTask : aTasks)
+      for (final IHCNode aNode : _getResult (aTask).getChildren ())
+        aOut.append (aNode);
+  }
+
+  /**
+   * Does all the processing.
+   *
+   * @return The processing result.
+   * @throws IOException
+   *         If an IO error occurred.
+   */
+  @Nonnull
+  public MarkdownProcessingResult process (@Nonnull @WillClose final Reader aReader) throws IOException
+  {
+    // All state of this invocation is kept in the emitter
+    final Emitter aEmitter = createEmitter ();
+    final Block aParent = parse (aReader, aEmitter);
+
+    final HCStack aOut = new HCStack ();
+    final Executor aExecutor = m_aConfig.getParallelEmitExecutor ();
+    if (aExecutor != null &&
+        aParent.m_aBlocks != null &&
+        aParent.m_aBlocks.m_aNext != null &&
+        _getCharCount (aParent) >= m_aConfig.getParallelEmitThreshold ())
     {
-      StreamUtils.close (aReader);
+      // All link references are known - the top-level blocks are independent
+      _emitParallel (aEmitter, aParent, aExecutor, aOut);
+    }
+    else
+    {
+      Block aBlock = aParent.m_aBlocks;
+      while (aBlock != null)
+      {
+        aEmitter.emit (aOut, aBlock);
+        aBlock = aBlock.m_aNext;
+      }
     }
+    return new MarkdownProcessingResult (aOut);
   }
 }
@@ -0,0 +1,481 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.markdown;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.charset.CCharset;
+import com.phloc.commons.hash.HashCodeGenerator;
+import com.phloc.commons.microdom.IMicroNode;
+import com.phloc.commons.microdom.impl.MicroContainer;
+import com.phloc.commons.microdom.serialize.MicroWriter;
+import com.phloc.commons.state.EChange;
+import com.phloc.commons.string.ToStringGenerator;
+import com.phloc.html.EHTMLVersion;
+import com.phloc.html.hc.conversion.HCSettings;
+import com.phloc.html.hc.conversion.IHCConversionSettings;
+import com.phloc.html.hc.impl.HCDOMWrapper;
+import com.phloc.html.hc.impl.HCXMLWriterSettingsFingerprint;
+import com.phloc.html.hc.utils.AbstractBoundedLRUCache;
+
+/**
+ * A bounded LRU cache for rendered markdown. Each entry is identified by the
+ * SHA-256 hash of the markdown source, a fingerprint of the
+ * {@link MarkdownConfiguration} of the used {@link MarkdownProcessor} (safe
+ * mode, extended profile, newline handling and the identities of the
+ * decorator, the emitters and all plugins), the HTML version and the XML
+ * writer settings. The source text itself is not kept. Each entry holds the
+ * rendered HTML string and the converted micro node it was created from. The
+ * cache is bounded by the total number of cached HTML characters.
+ * {@link #getAsNode(MarkdownProcessor, String, boolean)} returns a new frozen
+ * {@link HCDOMWrapper} around the cached micro node on each call.
+ * 
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class MarkdownRenderCache
+{
+  /** The default maximum number of cached HTML characters */
+  public static final long DEFAULT_MAX_CHARS = 4 * 1024 * 1024;
+
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+
+  private static final MarkdownRenderCache s_aDefaultInstance = new MarkdownRenderCache (DEFAULT_MAX_CHARS);
+
+  /**
+   * The parts of the markdown configuration that influence the created HTML.
+   * The pluggable components are compared by identity.
+   * 
+   * @author Philip Helger
+   */
+  @Immutable
+  private static final class ConfigFingerprint
+  {
+    private final boolean m_bSafeMode;
+    private final boolean m_bExtendedProfile;
+    private final boolean m_bConvertNewline2Br;
+    private final Object [] m_aComponents;
+    private final int m_nHashCode;
+
+    ConfigFingerprint (@Nonnull final MarkdownConfiguration aConfig)
+    {
+      m_bSafeMode = aConfig.isSafeMode ();
+      m_bExtendedProfile = aConfig.isExtendedProfile ();
+      m_bConvertNewline2Br = aConfig.isConvertNewline2Br ();
+      final List <AbstractMarkdownPlugin> aPlugins = aConfig.getAllPlugins ();
+      m_aComponents = new Object [3 + aPlugins.size ()];
+      m_aComponents[0] = aConfig.getDecorator ();
+      m_aComponents[1] = aConfig.getCodeBlockEmitter ();
+      m_aComponents[2] = aConfig.getSpecialLinkEmitter ();
+      for (int i = 0; i < aPlugins.size (); ++i)
+        m_aComponents[3 + i] = aPlugins.get (i);
+
+      final HashCodeGenerator aHCG = new HashCodeGenerator (this).append (m_bSafeMode)
+                                                                 .append (m_bExtendedProfile)
+                                                                 .append (m_bConvertNewline2Br);
+      for (final Object aComponent : m_aComponents)
+        aHCG.append (System.identityHashCode (aComponent));
+      m_nHashCode = aHCG.getHashCode ();
+    }
+
+    @Override
+    public boolean equals (final Object o)
+    {
+      if (o == this)
+        return true;
+      if (!(o instanceof ConfigFingerprint))
+        return false;
+      final ConfigFingerprint rhs = (ConfigFingerprint) o;
+      if (m_nHashCode != rhs.m_nHashCode ||
+          m_bSafeMode != rhs.m_bSafeMode ||
+          m_bExtendedProfile != rhs.m_bExtendedProfile ||
+          m_bConvertNewline2Br != rhs.m_bConvertNewline2Br ||
+          m_aComponents.length != rhs.m_aComponents.length)
+        return false;
+      for (int i = 0; i < m_aComponents.length; ++i)
+        if (m_aComponents[i] != rhs.m_aComponents[i])
+          return false;
+      return true;
+    }
+
+    @Override
+    public int hashCode ()
+    {
+      return m_nHashCode;
+    }
+  }
+
+  @Immutable
+  private static final class CacheKey
+  {
+    private final byte [] m_aSourceHash;
+    private final ConfigFingerprint m_aConfig;
+    private final EHTMLVersion m_eHTMLVersion;
+    private final HCXMLWriterSettingsFingerprint m_aXWS;
+    private final int m_nHashCode;
+
+    CacheKey (@Nonnull final byte [] aSourceHash,
+              @Nonnull final ConfigFingerprint aConfig,
+              @Nonnull final IHCConversionSettings aConversionSettings)
+    {
+      m_aSourceHash = aSourceHash;
+      m_aConfig = aConfig;
+      m_eHTMLVersion = aConversionSettings.getHTMLVersion ();
+      m_aXWS = new HCXMLWriterSettingsFingerprint (aConversionSettings.getXMLWriterSettings ());
+      m_nHashCode = new HashCodeGenerator (this).append (Arrays.hashCode (aSourceHash))
+                                                .append (aConfig)
+                                                .append (m_eHTMLVersion)
+                                                .append (m_aXWS)
+                                                .getHashCode ();
+    }
+
+    @Override
+    public boolean equals (final Object o)
+    {
+      if (o == this)
+        return true;
+      if (!(o instanceof CacheKey))
+        return false;
+      final CacheKey rhs = (CacheKey) o;
+      return m_nHashCode == rhs.m_nHashCode &&
+             Arrays.equals (m_aSourceHash, rhs.m_aSourceHash) &&
+             m_aConfig.equals (rhs.m_aConfig) &&
+             m_eHTMLVersion.equals (rhs.m_eHTMLVersion) &&
+             m_aXWS.equals (rhs.m_aXWS);
+    }
+
+    @Override
+    public int hashCode ()
+    {
+      return m_nHashCode;
+    }
+  }
+
+  /**
+   * A single cache entry: the rendered HTML and a frozen wrapper around the
+   * converted micro node. The wrapper itself is never handed out - only
+   * copies of it.
+   * 
+   * @author Philip Helger
+   */
+  @Immutable
+  private static final class CachedMarkdown
+  {
+    private final String m_sHTML;
+    private final HCDOMWrapper m_aNode;
+
+    CachedMarkdown (@Nonnull final String sHTML, @Nonnull final HCDOMWrapper aNode)
+    {
+      m_sHTML = sHTML;
+      m_aNode = aNode;
+    }
+
+    @Nonnull
+    String getHTML ()
+    {
+      return m_sHTML;
+    }
+
+    @Nonnull
+    HCDOMWrapper getNode ()
+    {
+      return m_aNode;
+    }
+  }
+
+  /**
+   * The bounded LRU map from the cache key to the cached markdown. The size of
+   * an entry is the length of its HTML string - the micro node is roughly
+   * proportional to it.
+   * 
+   * @author Philip Helger
+   */
+  private static final class HTMLLRUCache extends AbstractBoundedLRUCache <CacheKey, CachedMarkdown>
+  {
+    HTMLLRUCache (@Nonnegative final long nMaxChars)
+    {
+      super (Integer.MAX_VALUE, nMaxChars);
+    }
+
+    @Override
+    protected long getValueSize (@Nonnull final CachedMarkdown aValue)
+    {
+      return aValue.getHTML ().length ();
+    }
+  }
+
+  private final HTMLLRUCache m_aCache;
+
+  /**
+   * Constructor
+   * 
+   * @param nMaxChars
+   *        The maximum number of HTML characters to keep over all entries.
+   *        Must be &gt; 0.
+   */
+  public MarkdownRenderCache (@Nonnegative final long nMaxChars)
+  {
+    m_aCache = new HTMLLRUCache (nMaxChars);
+  }
+
+  /**
+   * @return The global default cache instance. Never <code>null</code>.
+   */
+  @Nonnull
+  public static MarkdownRenderCache getDefaultInstance ()
+  {
+    return s_aDefaultInstance;
+  }
+
+  @Nonnegative
+  public long getMaxChars ()
+  {
+    return m_aCache.getMaxSize ();
+  }
+
+  /**
+   * @return The number of currently cached entries.
+   */
+  @Nonnegative
+  public int getEntryCount ()
+  {
+    return m_aCache.getEntryCount ();
+  }
+
+  /**
+   * @return The number of HTML characters currently cached.
+   */
+  @Nonnegative
+  public long getCachedCharCount ()
+  {
+    return m_aCache.getTotalSize ();
+  }
+
+  /**
+   * @return The number of lookups that were served from the cache.
+   */
+  @Nonnegative
+  public long getHitCount ()
+  {
+    return m_aCache.getHitCount ();
+  }
+
+  /**
+   * @return The number of lookups that required rendering.
+   */
+  @Nonnegative
+  public long getMissCount ()
+  {
+    return m_aCache.getMissCount ();
+  }
+
+  /**
+   * @return The number of entries that were removed because the limit was hit.
+   */
+  @Nonnegative
+  public long getEvictionCount ()
+  {
+    return m_aCache.getEvictionCount ();
+  }
+
+  /**
+   * Reset the hit, miss and eviction counters. The cache content is not
+   * touched.
+   */
+  public void resetStatistics ()
+  {
+    m_aCache.resetStatistics ();
+  }
+
+  /**
+   * Remove all entries.
+   * 
+   * @return {@link EChange}
+   */
+  @Nonnull
+  public EChange clearCache ()
+  {
+    return m_aCache.clear ();
+  }
+
+  @Nonnull
+  private static byte [] _getSourceHash (@Nullable final String sText)
+  {
+    try
+    {
+      final MessageDigest aMD = MessageDigest.getInstance (DIGEST_ALGORITHM);
+      return aMD.digest ((sText == null ? "" : sText).getBytes (CCharset.CHARSET_UTF_8_OBJ));
+    }
+    catch (final NoSuchAlgorithmException ex)
+    {
+      throw new IllegalStateException ("Message digest " + DIGEST_ALGORITHM + " is not available", ex);
+    }
+  }
+
+  /**
+   * Get the passed markdown source as HTML in the default pretty print mode.
+   * 
+   * @param aProcessor
+   *        The processor to be used on a cache miss. May not be
+   *        <code>null</code>.
+   * @param sText
+   *        The markdown source. May be <code>null</code>.
+   * @return The same HTML as
+   *         {@link MarkdownProcessingResult#getAsHTMLString()}. Never
+   *         <code>null</code>.
+   * @throws IOException
+   *         If processing failed
+   */
+  @Nonnull
+  public String getAsHTMLString (@Nonnull final MarkdownProcessor aProcessor, @Nullable final String sText) throws IOException
+  {
+    return getAsHTMLString (aProcessor, sText, HCSettings.isDefaultPrettyPrint ());
+  }
+
+  /**
+   * Get the passed markdown source as HTML.
+   * 
+   * @param aProcessor
+   *        The processor to be used on a cache miss. May not be
+   *        <code>null</code>.
+   * @param sText
+   *        The markdown source. May be <code>null</code>.
+   * @param bPrettyPrint
+   *        For pretty printed output?
+   * @return The same HTML as
+   *         {@link MarkdownProcessingResult#getAsHTMLString(boolean)}. Never
+   *         <code>null</code>.
+   * @throws IOException
+   *         If processing failed
+   */
+  @Nonnull
+  public String getAsHTMLString (@Nonnull final MarkdownProcessor aProcessor,
+                                 @Nullable final String sText,
+                                 final boolean bPrettyPrint) throws IOException
+  {
+    return getAsHTMLString (aProcessor, sText, HCSettings.getConversionSettings (bPrettyPrint));
+  }
+
+  /**
+   * Get the passed markdown source as HTML without namespace declarations.
+   * 
+   * @param aProcessor
+   *        The processor to be used on a cache miss. May not be
+   *        <code>null</code>.
+   * @param sText
+   *        The markdown source. May be <code>null</code>.
+   * @param aConversionSettings
+   *        The conversion settings to use. The HTML version and the XML writer
+   *        settings are part of the cache key. May not be <code>null</code>.
+   * @return The rendered and trimmed HTML. Never <code>null</code>.
+   * @throws IOException
+   *         If processing failed
+   */
+  @Nonnull
+  public String getAsHTMLString (@Nonnull final MarkdownProcessor aProcessor,
+                                 @Nullable final String sText,
+                                 @Nonnull final IHCConversionSettings aConversionSettings) throws IOException
+  {
+    return _getCached (aProcessor, sText, aConversionSettings).getHTML ();
+  }
+
+  @Nonnull
+  private CachedMarkdown _getCached (@Nonnull final MarkdownProcessor aProcessor,
+                                     @Nullable final String sText,
+                                     @Nonnull final IHCConversionSettings aConversionSettings) throws IOException
+  {
+    ValueEnforcer.notNull (aProcessor, "Processor");
+    ValueEnforcer.notNull (aConversionSettings, "ConversionSettings");
+
+    final IHCConversionSettings aRealSettings = HCSettings.getConversionSettingsWithoutNamespaces (aConversionSettings);
+    final CacheKey aKey = new CacheKey (_getSourceHash (sText),
+                                        new ConfigFingerprint (aProcessor.m_aConfig),
+                                        aRealSettings);
+    CachedMarkdown ret = m_aCache.get (aKey);
+    if (ret == null)
+    {
+      // Rendering the same source concurrently more than once does no harm
+      final IMicroNode aMicroNode = HCSettings.getAsNode (aProcessor.process (sText).getNodeList (), aRealSettings);
+      String sHTML;
+      HCDOMWrapper aNode;
+      if (aMicroNode == null)
+      {
+        sHTML = "";
+        aNode = new HCDOMWrapper (new MicroContainer (), true);
+      }
+      else
+      {
+        final String sSerialized = MicroWriter.getNodeAsString (aMicroNode, aRealSettings.getXMLWriterSettings ());
+        sHTML = sSerialized == null ? "" : sSerialized.trim ();
+        aNode = new HCDOMWrapper (aMicroNode, true);
+      }
+      // Calculate the plain text once, so that all copies share it
+      aNode.getPlainText ();
+      ret = new CachedMarkdown (sHTML, aNode);
+      m_aCache.put (aKey, ret);
+    }
+    return ret;
+  }
+
+  /**
+   * Get the passed markdown source as an HC node that can be embedded into any
+   * HC tree. The returned node is a new frozen {@link HCDOMWrapper} around the
+   * cached micro node, so it is serialized with the XML writer settings of the
+   * document it is used in (each distinct settings only once over all returned
+   * nodes) and it provides the real plain text of the markdown source. The
+   * micro node is created with the default conversion settings, so the
+   * document should use the default HTML version.
+   * 
+   * @param aProcessor
+   *        The processor to be used on a cache miss. May not be
+   *        <code>null</code>.
+   * @param sText
+   *        The markdown source. May be <code>null</code>.
+   * @param bPrettyPrint
+   *        <code>true</code> if the node is used in a pretty printed document,
+   *        <code>false</code> otherwise.
+   * @return A new frozen node. Never <code>null</code>.
+   * @throws IOException
+   *         If processing failed
+   */
+  @Nonnull
+  public HCDOMWrapper getAsNode (@Nonnull final MarkdownProcessor aProcessor,
+                                 @Nullable final String sText,
+                                 final boolean bPrettyPrint) throws IOException
+  {
+    return _getCached (aProcessor, sText, HCSettings.getConversionSettings (bPrettyPrint)).getNode ()
+                                                                                          .getFrozenCopy ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("cache", m_aCache).toString ();
+  }
+}
@@ -0,0 +1,645 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.parser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.phloc.commons.ValueEnforcer;
+import com.phloc.commons.microdom.IMicroContainer;
+import com.phloc.commons.microdom.IMicroElement;
+import com.phloc.commons.microdom.IMicroNodeWithChildren;
+import com.phloc.commons.microdom.impl.MicroContainer;
+import com.phloc.commons.string.StringHelper;
+import com.phloc.commons.xml.CXML;
+import com.phloc.html.EHTMLVersion;
+import com.phloc.html.entities.EHTMLEntity;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.impl.HCDOMWrapper;
+import com.phloc.html.hc.impl.HCTextNode;
+
+/**
+ * A fast XHTML fragment parser that does not use a DTD at all. It is an
+ * alternative to {@link XHTMLParser2#unescapeXHTMLFragment(String)} for small
+ * fragments. The fragment is checked for well-formedness and all named entities
+ * are resolved via {@link EHTMLEntity}. The main differences to the DTD based
+ * parser are:
+ * <ul>
+ * <li>No default attribute values from the DTD are added (e.g.
+ * <code>shape="rect"</code> on <code>a</code> elements).</li>
+ * <li>Whitespace in element-only content is not removed, as no content models
+ * are known.</li>
+ * <li>All named HTML entities are resolved for all HTML versions, including
+ * HTML5.</li>
+ * </ul>
+ * This class is thread-safe, as all parsing state is kept per call.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class XHTMLFragmentParser
+{
+  /**
+   * Internal exception for well-formedness errors.
+   *
+   * @author Philip Helger
+   */
+  private static final class ParseException extends Exception
+  {
+    ParseException (@Nonnull final String sMessage, final int nIndex)
+    {
+      super (sMessage + " at index " + nIndex);
+    }
+  }
+
+  /**
+   * The parsing state of a single fragment.
+   *
+   * @author Philip Helger
+   */
+  private static final class Tokenizer
+  {
+    private static final String NS_PREFIX_XML = "xml";
+    private static final String NS_URI_XML = "http://www.w3.org/XML/1998/namespace";
+    private static final String XMLNS_PREFIX = CXML.XML_ATTR_XMLNS + ':';
+
+    private final String m_sText;
+    private final int m_nLength;
+    private int m_nPos = 0;
+    private final StringBuilder m_aSB = new StringBuilder ();
+    private final List <IMicroNodeWithChildren> m_aParents = new ArrayList <IMicroNodeWithChildren> ();
+    private final List <String> m_aOpenTagNames = new ArrayList <String> ();
+    // Namespace prefix to URI; the default namespace has the empty prefix
+    private final List <Map <String, String>> m_aNamespaces = new ArrayList <Map <String, String>> ();
+
+    Tokenizer (@Nonnull final String sText, @Nullable final String sDefaultNamespaceURI)
+    {
+      m_sText = sText;
+      m_nLength = sText.length ();
+      final Map <String, String> aInitialNS = new HashMap <String, String> ();
+      aInitialNS.put ("", StringHelper.getNotNull (sDefaultNamespaceURI));
+      aInitialNS.put (NS_PREFIX_XML, NS_URI_XML);
+      m_aNamespaces.add (aInitialNS);
+    }
+
+    private static boolean _isNameStartChar (final char c)
+    {
+      return (c >= 'a' && c <= 'z') ||
+             (c >= 'A' && c <= 'Z') ||
+             c == '_' ||
+             c == ':' ||
+             (c >= '\u00c0' && c <= '\u00d6') ||
+             (c >= '\u00d8' && c <= '\u00f6') ||
+             (c >= '\u00f8' && c <= '\u02ff') ||
+             (c >= '\u0370' && c <= '\u037d') ||
+             (c >= '\u037f' && c <= '\u1fff') ||
+             (c >= '\u200c' && c <= '\u200d') ||
+             (c >= '\u2070' && c <= '\u218f') ||
+             (c >= '\u2c00' && c <= '\u2fef') ||
+             (c >= '\u3001' && c <= '\ufdcf') ||
+             (c >= '\ufdf0' && c <= '\ufffd');
+    }
+
+    private static boolean _isNameChar (final char c)
+    {
+      return _isNameStartChar (c) ||
+             (c >= '0' && c <= '9') ||
+             c == '-' ||
+             c == '.' ||
+             c == '\u00b7' ||
+             (c >= '\u0300' && c <= '\u036f') ||
+             (c >= '\u203f' && c <= '\u2040');
+    }
+
+    private static boolean _isWhitespace (final char c)
+    {
+      return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static boolean _isValidXMLChar (final int c)
+    {
+      return c == 0x9 ||
+             c == 0xa ||
+             c == 0xd ||
+             (c >= 0x20 && c <= 0xd7ff) ||
+             (c >= 0xe000 && c <= 0xfffd) ||
+             (c >= 0x10000 && c <= 0x10ffff);
+    }
+
+    @Nonnull
+    private ParseException _error (@Nonnull final String sMessage)
+    {
+      return new ParseException (sMessage, m_nPos);
+    }
+
+    private boolean _startsWith (@Nonnull final String s)
+    {
+      return m_sText.startsWith (s, m_nPos);
+    }
+
+    private boolean _skipWhitespaces ()
+    {
+      final int nStart = m_nPos;
+      while (m_nPos < m_nLength && _isWhitespace (m_sText.charAt (m_nPos)))
+        m_nPos++;
+      return m_nPos > nStart;
+    }
+
+    /**
+     * Append the character at the current position to the buffer, normalizing
+     * line endings and checking for valid XML characters.
+     *
+     * @param bAttrValue
+     *        <code>true</code> if the character is part of an attribute value
+     *        and whitespaces need to be normalized.
+     */
+    private void _appendChar (final boolean bAttrValue) throws ParseException
+    {
+      final char c = m_sText.charAt (m_nPos);
+      if (c == '\r')
+      {
+        // Line ending normalization: CR LF and single CR become LF
+        m_aSB.append (bAttrValue ? ' ' : '\n');
+        m_nPos++;
+        if (m_nPos < m_nLength && m_sText.charAt (m_nPos) == '\n')
+          m_nPos++;
+        return;
+      }
+      if (Character.isHighSurrogate (c))
+      {
+        if (m_nPos + 1 >= m_nLength || !Character.isLowSurrogate (m_sText.charAt (m_nPos + 1)))
+          throw _error ("Invalid surrogate pair");
+        m_aSB.append (c).append (m_sText.charAt (m_nPos + 1));
+        m_nPos += 2;
+        return;
+      }
+      if (!_isValidXMLChar (c))
+        throw _error ("Invalid XML character 0x" + Integer.toHexString (c));
+      m_aSB.append (bAttrValue && _isWhitespace (c) ? ' ' : c);
+      m_nPos++;
+    }
+
+    @Nonnull
+    private String _readName () throws ParseException
+    {
+      final int nStart = m_nPos;
+      if (m_nPos >= m_nLength || !_isNameStartChar (m_sText.charAt (m_nPos)))
+        throw _error ("Name expected");
+      m_nPos++;
+      while (m_nPos < m_nLength && _isNameChar (m_sText.charAt (m_nPos)))
+        m_nPos++;
+      return m_sText.substring (nStart, m_nPos);
+    }
+
+    /**
+     * Read a character or entity reference starting at '&amp;' and append the
+     * resolved character to the buffer.
+     */
+    private void _readReference () throws ParseException
+    {
+      // Skip '&'
+      m_nPos++;
+      final int nEnd = m_sText.indexOf (';', m_nPos);
+      if (nEnd < 0)
+        throw _error ("Unterminated reference");
+      final String sRef = m_sText.substring (m_nPos, nEnd);
+      if (sRef.length () > 1 && sRef.charAt (0) == '#')
+      {
+        int nCodePoint;
+        try
+        {
+          if (sRef.charAt (1) == 'x')
+            nCodePoint = sRef.length () > 2 ? Integer.parseInt (sRef.substring (2), 16) : -1;
+          else
+            nCodePoint = Integer.parseInt (sRef.substring (1), 10);
+        }
+        catch (final NumberFormatException ex)
+        {
+          nCodePoint = -1;
+        }
+        if (!_isValidXMLChar (nCodePoint) || sRef.indexOf ('+') >= 0 || sRef.indexOf ('-') >= 0)
+          throw _error ("Invalid character reference '&" + sRef + ";'");
+        m_aSB.appendCodePoint (nCodePoint);
+      }
+      else
+      {
+        // Contains the 5 XML entities as well
+        final EHTMLEntity eEntity = EHTMLEntity.getFromEntityReferenceOrNull ('&' + sRef + ';');
+        if (eEntity == null)
+          throw _error ("Unknown entity '&" + sRef + ";'");
+        m_aSB.append (eEntity.getChar ());
+      }
+      m_nPos = nEnd + 1;
+    }
+
+    @Nonnull
+    private IMicroNodeWithChildren _getCurrentParent ()
+    {
+      return m_aParents.get (m_aParents.size () - 1);
+    }
+
+    private void _flushText ()
+    {
+      if (m_aSB.length () > 0)
+      {
+        _getCurrentParent ().appendText (m_aSB.toString ());
+        m_aSB.setLength (0);
+      }
+    }
+
+    @Nullable
+    private String _getNamespaceURI (@Nonnull final String sPrefix)
+    {
+      for (int i = m_aNamespaces.size () - 1; i >= 0; --i)
+      {
+        final Map <String, String> aMap = m_aNamespaces.get (i);
+        if (aMap != null)
+        {
+          final String sURI = aMap.get (sPrefix);
+          if (sURI != null)
+            return sURI;
+        }
+      }
+      return null;
+    }
+
+    private void _readComment () throws ParseException
+    {
+      // Skip "<!--"
+      m_nPos += 4;
+      final int nEnd = m_sText.indexOf ("--", m_nPos);
+      if (nEnd < 0)
+        throw _error ("Unterminated comment");
+      if (nEnd + 2 >= m_nLength || m_sText.charAt (nEnd + 2) != '>')
+        throw _error ("'--' is not allowed inside comments");
+      while (m_nPos < nEnd)
+        _appendChar (false);
+      _getCurrentParent ().appendComment (m_aSB.toString ());
+      m_aSB.setLength (0);
+      m_nPos = nEnd + 3;
+    }
+
+    private void _readCDATA () throws ParseException
+    {
+      // Skip "<![CDATA["
+      m_nPos += 9;
+      final int nEnd = m_sText.indexOf ("]]>", m_nPos);
+      if (nEnd < 0)
+        throw _error ("Unterminated CDATA section");
+      while (m_nPos < nEnd)
+        _appendChar (false);
+      _getCurrentParent ().appendCDATA (m_aSB.toString ());
+      m_aSB.setLength (0);
+      m_nPos = nEnd + 3;
+    }
+
+    private void _readProcessingInstruction () throws ParseException
+    {
+      // Skip "<?"
+      m_nPos += 2;
+      final String sTarget = _readName ();
+      if (sTarget.equalsIgnoreCase ("xml"))
+        throw _error ("XML declaration is not allowed inside a fragment");
+      final int nEnd = m_sText.indexOf ("?>", m_nPos);
+      if (nEnd < 0)
+        throw _error ("Unterminated processing instruction");
+      if (m_nPos < nEnd && !_skipWhitespaces ())
+        throw _error ("Whitespace expected after processing instruction target");
+      while (m_nPos < nEnd)
+        _appendChar (false);
+      _getCurrentParent ().appendProcessingInstruction (sTarget, m_aSB.toString ());
+      m_aSB.setLength (0);
+      m_nPos = nEnd + 2;
+    }
+
+    private void _readEndTag () throws ParseException
+    {
+      // Skip "</"
+      m_nPos += 2;
+      final String sTagName = _readName ();
+      _skipWhitespaces ();
+      if (m_nPos >= m_nLength || m_sText.charAt (m_nPos) != '>')
+        throw _error ("'>' expected");
+      m_nPos++;
+
+      final int nIndex = m_aOpenTagNames.size () - 1;
+      if (nIndex < 0 || !m_aOpenTagNames.get (nIndex).equals (sTagName))
+        throw _error ("Unexpected end tag '" + sTagName + "'");
+      m_aOpenTagNames.remove (nIndex);
+      m_aParents.remove (m_aParents.size () - 1);
+      m_aNamespaces.remove (m_aNamespaces.size () - 1);
+    }
+
+    @Nonnull
+    private String _readAttributeValue () throws ParseException
+    {
+      if (m_nPos >= m_nLength)
+        throw _error ("Attribute value expected");
+      final char cQuote = m_sText.charAt (m_nPos);
+      if (cQuote != '"' && cQuote != '\'')
+        throw _error ("Quoted attribute value expected");
+      m_nPos++;
+      while (true)
+      {
+        if (m_nPos >= m_nLength)
+          throw _error ("Unterminated attribute value");
+        final char c = m_sText.charAt (m_nPos);
+        if (c == cQuote)
+          break;
+        if (c == '<')
+          throw _error ("'<' is not allowed in attribute values");
+        if (c == '&')
+          _readReference ();
+        else
+          _appendChar (true);
+      }
+      m_nPos++;
+      final String ret = m_aSB.toString ();
+      m_aSB.setLength (0);
+      return ret;
+    }
+
+    private void _readStartTag () throws ParseException
+    {
+      // Skip "<"
+      m_nPos++;
+      final String sTagName = _readName ();
+
+      // Read all attributes
+      final List <String> aAttrs = new ArrayList <String> ();
+      final Set <String> aAttrNames = new HashSet <String> ();
+      Map <String, String> aNamespaces = null;
+      boolean bEmpty = false;
+      while (true)
+      {
+        final boolean bHadWhitespace = _skipWhitespaces ();
+        if (m_nPos >= m_nLength)
+          throw _error ("Unterminated start tag");
+        final char c = m_sText.charAt (m_nPos);
+        if (c == '>')
+        {
+          m_nPos++;
+          break;
+        }
+        if (c == '/')
+        {
+          if (m_nPos + 1 >= m_nLength || m_sText.charAt (m_nPos + 1) != '>')
+            throw _error ("'/>' expected");
+          m_nPos += 2;
+          bEmpty = true;
+          break;
+        }
+        if (!bHadWhitespace)
+          throw _error ("Whitespace expected before attribute");
+
+        final String sAttrName = _readName ();
+        _skipWhitespaces ();
+        if (m_nPos >= m_nLength || m_sText.charAt (m_nPos) != '=')
+          throw _error ("'=' expected after attribute name");
+        m_nPos++;
+        _skipWhitespaces ();
+        final String sAttrValue = _readAttributeValue ();
+        if (!aAttrNames.add (sAttrName))
+          throw _error ("Duplicate attribute '" + sAttrName + "'");
+
+        if (sAttrName.equals (CXML.XML_ATTR_XMLNS) || sAttrName.startsWith (XMLNS_PREFIX))
+        {
+          // Namespace declarations are not attributes
+          final String sPrefix = sAttrName.equals (CXML.XML_ATTR_XMLNS) ? ""
+                                                                        : sAttrName.substring (XMLNS_PREFIX.length ());
+          if (sPrefix.length () > 0 && sAttrValue.length () == 0)
+            throw _error ("Namespace prefix '" + sPrefix + "' may not be undeclared");
+          if (aNamespaces == null)
+            aNamespaces = new HashMap <String, String> ();
+          aNamespaces.put (sPrefix, sAttrValue);
+        }
+        else
+        {
+          aAttrs.add (sAttrName);
+          aAttrs.add (sAttrValue);
+        }
+      }
+
+      m_aNamespaces.add (aNamespaces);
+
+      // Resolve the namespace of the element
+      final int nColon = sTagName.indexOf (':');
+      final String sPrefix = nColon < 0 ? "" : sTagName.substring (0, nColon);
+      final String sLocalName = nColon < 0 ? sTagName : sTagName.substring (nColon + 1);
+      final String sNamespaceURI = _getNamespaceURI (sPrefix);
+      if (sNamespaceURI == null)
+        throw _error ("Undeclared namespace prefix '" + sPrefix + "'");
+
+      // Check attribute prefixes
+      for (int i = 0; i < aAttrs.size (); i += 2)
+      {
+        final String sAttrName = aAttrs.get (i);
+        final int nAttrColon = sAttrName.indexOf (':');
+        if (nAttrColon >= 0 && _getNamespaceURI (sAttrName.substring (0, nAttrColon)) == null)
+          throw _error ("Undeclared namespace prefix of attribute '" + sAttrName + "'");
+      }
+
+      // Create the element
+      _flushText ();
+      final IMicroNodeWithChildren aParent = _getCurrentParent ();
+      final IMicroElement aElement = sNamespaceURI.length () > 0 ? aParent.appendElement (sNamespaceURI, sLocalName)
+                                                                 : aParent.appendElement (sLocalName);
+      for (int i = 0; i < aAttrs.size (); i += 2)
+        aElement.setAttribute (aAttrs.get (i), aAttrs.get (i + 1));
+
+      if (bEmpty)
+        m_aNamespaces.remove (m_aNamespaces.size () - 1);
+      else
+      {
+        m_aParents.add (aElement);
+        m_aOpenTagNames.add (sTagName);
+      }
+    }
+
+    @Nonnull
+    IMicroContainer parse () throws ParseException
+    {
+      final IMicroContainer ret = new MicroContainer ();
+      m_aParents.add (ret);
+
+      while (m_nPos < m_nLength)
+      {
+        final char c = m_sText.charAt (m_nPos);
+        if (c == '<')
+        {
+          _flushText ();
+          if (_startsWith ("<!--"))
+            _readComment ();
+          else
+            if (_startsWith ("<![CDATA["))
+              _readCDATA ();
+            else
+              if (_startsWith ("<?"))
+                _readProcessingInstruction ();
+              else
+                if (_startsWith ("</"))
+                  _readEndTag ();
+                else
+                  if (_startsWith ("<!"))
+                    throw _error ("Declarations are not allowed inside a fragment");
+                  else
+                    _readStartTag ();
+        }
+        else
+          if (c == '&')
+            _readReference ();
+          else
+          {
+            if (c == '>' && m_nPos >= 2 && _isCDATAEnd ())
+              throw _error ("']]>' is not allowed in text");
+            _appendChar (false);
+          }
+      }
+
+      if (!m_aOpenTagNames.isEmpty ())
+        throw _error ("Unclosed element '" + m_aOpenTagNames.get (m_aOpenTagNames.size () - 1) + "'");
+      _flushText ();
+      return ret;
+    }
+
+    private boolean _isCDATAEnd ()
+    {
+      // The two preceding characters must be unescaped text
+      return m_aSB.length () >= 2 &&
+             m_sText.charAt (m_nPos - 1) == ']' &&
+             m_sText.charAt (m_nPos - 2) == ']' &&
+             m_aSB.charAt (m_aSB.length () - 1) == ']' &&
+             m_aSB.charAt (m_aSB.length () - 2) == ']';
+    }
+  }
+
+  private static final Logger s_aLogger = LoggerFactory.getLogger (XHTMLFragmentParser.class);
+
+  private final EHTMLVersion m_eHTMLVersion;
+
+  public XHTMLFragmentParser ()
+  {
+    this (EHTMLVersion.DEFAULT);
+  }
+
+  public XHTMLFragmentParser (@Nonnull final EHTMLVersion eHTMLVersion)
+  {
+    m_eHTMLVersion = ValueEnforcer.notNull (eHTMLVersion, "HTMLVersion");
+  }
+
+  /**
+   * @return The HTML version as specified in the constructor. It determines
+   *         the namespace of the created elements. Never <code>null</code>.
+   */
+  @Nonnull
+  public EHTMLVersion getHTMLVersion ()
+  {
+    return m_eHTMLVersion;
+  }
+
+  /**
+   * Check if the given fragment is well-formed XHTML mark-up.
+   *
+   * @param sXHTMLFragment
+   *        The XHTML fragment to parse. It is not checked, whether the value
+   *        looks like HTML or not.
+   * @return <code>true</code> if the fragment is valid, <code>false</code>
+   *         otherwise.
+   */
+  public boolean isValidXHTMLFragment (@Nullable final String sXHTMLFragment)
+  {
+    return StringHelper.hasNoText (sXHTMLFragment) || unescapeXHTMLFragment (sXHTMLFragment) != null;
+  }
+
+  /**
+   * Interpret the passed XHTML fragment as HTML and retrieve a result container
+   * with all contained nodes.
+   *
+   * @param sXHTML
+   *        The XHTML text fragment. May be <code>null</code>.
+   * @return <code>null</code> if the passed text is not well-formed, an
+   *         {@link IMicroContainer} with all nodes otherwise.
+   */
+  @Nullable
+  public IMicroContainer unescapeXHTMLFragment (@Nullable final String sXHTML)
+  {
+    try
+    {
+      return new Tokenizer (StringHelper.getNotNull (sXHTML), m_eHTMLVersion.getNamespaceURI ()).parse ();
+    }
+    catch (final ParseException ex)
+    {
+      s_aLogger.warn ("Failed to parse XHTML fragment: " + ex.getMessage ());
+      return null;
+    }
+  }
+
+  /**
+   * If the passed text looks like XHTML, unescape it (using
+   * {@link #unescapeXHTMLFragment(String)}) else return a simple text node.
+   *
+   * @param sText
+   *        The text to be converted. May be <code>null</code>.
+   * @return A non-<code>null</code> IHCNode with the result representation
+   *         (e.g. an {@link HCTextNode} or an {@link HCDOMWrapper} with an
+   *         {@link IMicroContainer} having all the nodes)
+   */
+  @Nonnull
+  public IHCNode convertToXHTMLFragmentOnDemand (@Nullable final String sText)
+  {
+    return convertToXHTMLFragmentOnDemand (sText, false);
+  }
+
+  /**
+   * If the passed text looks like XHTML, unescape it (using
+   * {@link #unescapeXHTMLFragment(String)}) else return a simple text node.
+   *
+   * @param sText
+   *        The text to be converted. May be <code>null</code>.
+   * @param bFrozen
+   *        <code>true</code> to create a frozen {@link HCDOMWrapper} that
+   *        serializes the parsed content only once. Use this for content that
+   *        is rendered many times.
+   * @return A non-<code>null</code> IHCNode with the result representation
+   *         (e.g. an {@link HCTextNode} or an {@link HCDOMWrapper} with an
+   *         {@link IMicroContainer} having all the nodes)
+   */
+  @Nonnull
+  public IHCNode convertToXHTMLFragmentOnDemand (@Nullable final String sText, final boolean bFrozen)
+  {
+    if (XHTMLParser2.looksLikeXHTML (sText))
+    {
+      final IMicroContainer aCont = unescapeXHTMLFragment (sText);
+      if (aCont != null)
+        return new HCDOMWrapper (aCont, bFrozen);
+      s_aLogger.error ("Failed to unescape XHTML:\n" + sText);
+    }
+    return new HCTextNode (sText);
+  }
+}
@@ -17,6 +17,9 @@
  */
 package com.phloc.html.parser;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
@@ -40,9 +43,35 @@ import com.phloc.html.hc.impl.HCTextNode;
 @Deprecated
 public final class XHTMLParser
 {
+  // The parsers are not thread-safe, so each thread reuses its own parsers
+  private static final ThreadLocal <Map <EHTMLVersion, XHTMLParser2>> s_aParsers = new ThreadLocal <Map <EHTMLVersion, XHTMLParser2>> ();
+
   private XHTMLParser ()
   {}
 
+  @Nonnull
+  private static XHTMLParser2 _getParser (@Nonnull final EHTMLVersion eHTMLVersion)
+  {
+    Map <EHTMLVersion, XHTMLParser2> aParsers = s_aParsers.get ();
+    if (aParsers == null)
+    {
+      aParsers = new EnumMap <EHTMLVersion, XHTMLParser2> (EHTMLVersion.class);
+      s_aParsers.set (aParsers);
+    }
+    XHTMLParser2 ret = aParsers.get (eHTMLVersion);
+    if (ret == null)
+    {
+      ret = new XHTMLParser2 (eHTMLVersion);
+      aParsers.put (eHTMLVersion, ret);
+    }
+    else
+    {
+      // Make sure no setting of a previous usage survives
+      ret.setToDefault ();
+    }
+    return ret;
+  }
+
   /**
    * Check whether the passed text looks like it contains XHTML code. This is a
    * heuristic check only and does not perform actual parsing!
@@ -68,7 +97,7 @@ public final class XHTMLParser
    */
   public static boolean isValidXHTMLFragment (@Nullable final String sXHTMLFragment)
   {
-    return new XHTMLParser2 ().isValidXHTMLFragment (sXHTMLFragment);
+    return _getParser (EHTMLVersion.DEFAULT).isValidXHTMLFragment (sXHTMLFragment);
   }
 
   /**
@@ -83,7 +112,7 @@ public final class XHTMLParser
   @Nullable
   public static IMicroDocument parseXHTMLFragment (@Nullable final String sXHTMLFragment)
   {
-    return new XHTMLParser2 ().parseXHTMLFragment (sXHTMLFragment);
+    return _getParser (EHTMLVersion.DEFAULT).parseXHTMLFragment (sXHTMLFragment);
   }
 
   /**
@@ -99,7 +128,7 @@ public final class XHTMLParser
   public static IMicroDocument parseXHTMLFragment (@Nonnull final EHTMLVersion eHTMLVersion,
                                                    @Nullable final String sXHTMLFragment)
   {
-    return new XHTMLParser2 (eHTMLVersion).parseXHTMLFragment (sXHTMLFragment);
+    return _getParser (eHTMLVersion).parseXHTMLFragment (sXHTMLFragment);
   }
 
   /**
@@ -113,7 +142,7 @@ public final class XHTMLParser
   @Nullable
   public static IMicroDocument parseXHTMLDocument (@Nullable final String sXHTML)
   {
-    return new XHTMLParser2 ().parseXHTMLDocument (sXHTML);
+    return _getParser (EHTMLVersion.DEFAULT).parseXHTMLDocument (sXHTML);
   }
 
   /**
@@ -128,7 +157,7 @@ public final class XHTMLParser
   @Nullable
   public static IMicroContainer unescapeXHTML (@Nullable final String sXHTML)
   {
-    return new XHTMLParser2 ().unescapeXHTMLFragment (sXHTML);
+    return _getParser (EHTMLVersion.DEFAULT).unescapeXHTMLFragment (sXHTML);
   }
 
   /**
@@ -146,7 +175,7 @@ public final class XHTMLParser
   @Nullable
   public static IMicroContainer unescapeXHTML (@Nonnull final EHTMLVersion eHTMLVersion, @Nullable final String sXHTML)
   {
-    return new XHTMLParser2 (eHTMLVersion).unescapeXHTMLFragment (sXHTML);
+    return _getParser (eHTMLVersion).unescapeXHTMLFragment (sXHTML);
   }
 
   /**
@@ -162,6 +191,24 @@ public final class XHTMLParser
   @Nonnull
   public static IHCNode convertToXHTMLOnDemand (@Nullable final String sText)
   {
-    return new XHTMLParser2 ().convertToXHTMLFragmentOnDemand (sText);
+    return _getParser (EHTMLVersion.DEFAULT).convertToXHTMLFragmentOnDemand (sText);
+  }
+
+  /**
+   * If the passed text looks like XHTML, unescape it (using
+   * {@link #unescapeXHTML(String)}) else return a simple text node. In case of
+   * XHTML a frozen {@link HCDOMWrapper} is returned, that serializes the parsed
+   * content only once, so it can be efficiently rendered many times.
+   *
+   * @param sText
+   *        The text to be converted. May be <code>null</code>.
+   * @return A non-<code>null</code> IHCNode with the result representation
+   *         (e.g. an {@link HCTextNode} or a frozen {@link HCDOMWrapper} with
+   *         an {@link IMicroContainer} having all the body elements)
+   */
+  @Nonnull
+  public static IHCNode convertToFrozenXHTMLOnDemand (@Nullable final String sText)
+  {
+    return _getParser (EHTMLVersion.DEFAULT).convertToXHTMLFragmentOnDemand (sText, true);
   }
 }
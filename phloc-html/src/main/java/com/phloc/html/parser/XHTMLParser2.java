@@ -23,6 +23,7 @@ import javax.annotation.concurrent.NotThreadSafe;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.EntityResolver;
 
 import com.phloc.commons.ValueEnforcer;
 import com.phloc.commons.annotations.ReturnsMutableCopy;
@@ -33,7 +34,6 @@ import com.phloc.commons.microdom.IMicroElement;
 import com.phloc.commons.microdom.IMicroNode;
 import com.phloc.commons.microdom.impl.MicroContainer;
 import com.phloc.commons.microdom.serialize.MicroReader;
-import com.phloc.commons.regex.RegExHelper;
 import com.phloc.commons.string.StringHelper;
 import com.phloc.commons.xml.CXML;
 import com.phloc.commons.xml.EXMLIncorrectCharacterHandling;
@@ -44,6 +44,7 @@ import com.phloc.commons.xml.serialize.SAXReaderSettings;
 import com.phloc.commons.xml.serialize.XMLEmitterPhloc;
 import com.phloc.html.EHTMLElement;
 import com.phloc.html.EHTMLVersion;
+import com.phloc.html.entities.HTMLCompiledEntityResolver;
 import com.phloc.html.entities.HTMLEntityResolver;
 import com.phloc.html.hc.IHCNode;
 import com.phloc.html.hc.htmlext.HCUtils;
@@ -58,9 +59,15 @@ import com.phloc.html.hc.impl.HCTextNode;
 @NotThreadSafe
 public final class XHTMLParser2
 {
+  /** By default the pre-compiled DTDs are used */
+  public static final boolean DEFAULT_USE_COMPILED_DTD = true;
+
   private static final Logger s_aLogger = LoggerFactory.getLogger (XHTMLParser2.class);
 
   private final EHTMLVersion m_eHTMLVersion;
+  // The static part of each fragment document before the fragment itself
+  private final String m_sFragmentPrefix;
+  private boolean m_bUseCompiledDTD = DEFAULT_USE_COMPILED_DTD;
 
   // By default enable a little secured reader settings.
   // * DOCTYPE must be allowed because it is common in HTML files
@@ -69,10 +76,11 @@ public final class XHTMLParser2
   // Note: SECURE_PROCESSING is not available in JDK parser 1.6.0_32 (most
   // probably also not in the previous versions)
 
-  private SAXReaderSettings m_aAdditionalSAXReaderSettings = new SAXReaderSettings ().setFeatureValue (EXMLParserFeature.SECURE_PROCESSING,
-                                                                                                       true)
-                                                                                     .setFeatureValue (EXMLParserFeature.EXTERNAL_GENERAL_ENTITIES,
-                                                                                                       false);
+  private SAXReaderSettings m_aAdditionalSAXReaderSettings = _createDefaultAdditionalSAXReaderSettings ();
+  // The effective settings including the entity resolver
+  private SAXReaderSettings m_aSAXReaderSettings;
+  // Was any setting changed after construction?
+  private boolean m_bModified = false;
 
   public XHTMLParser2 ()
   {
@@ -82,6 +90,30 @@ public final class XHTMLParser2
   public XHTMLParser2 (@Nonnull final EHTMLVersion eHTMLVersion)
   {
     this.m_eHTMLVersion = ValueEnforcer.notNull (eHTMLVersion, "HTMLVersion");
+
+    final String sHTMLNamespaceURI = eHTMLVersion.getNamespaceURI ();
+    this.m_sFragmentPrefix = XMLEmitterPhloc.getDocTypeHTMLRepresentation (EXMLSerializeVersion.XML_10,
+                                                                           EXMLIncorrectCharacterHandling.DEFAULT,
+                                                                           eHTMLVersion.getDocType ()) +
+                             "<html" +
+                             (sHTMLNamespaceURI != null ? ' ' + CXML.XML_ATTR_XMLNS + "=\"" + sHTMLNamespaceURI + '"'
+                                                       : "") +
+                             "><head><title></title></head><body>";
+    _updateSAXReaderSettings ();
+  }
+
+  @Nonnull
+  private static SAXReaderSettings _createDefaultAdditionalSAXReaderSettings ()
+  {
+    return new SAXReaderSettings ().setFeatureValue (EXMLParserFeature.SECURE_PROCESSING, true)
+                                   .setFeatureValue (EXMLParserFeature.EXTERNAL_GENERAL_ENTITIES, false);
+  }
+
+  private void _updateSAXReaderSettings ()
+  {
+    final EntityResolver aEntityResolver = this.m_bUseCompiledDTD ? HTMLCompiledEntityResolver.getInstance ()
+                                                                  : HTMLEntityResolver.getInstance ();
+    this.m_aSAXReaderSettings = this.m_aAdditionalSAXReaderSettings.getClone ().setEntityResolver (aEntityResolver);
   }
 
   /**
@@ -118,6 +150,51 @@ public final class XHTMLParser2
   public void setAdditionalSAXReaderSettings (@Nullable final ISAXReaderSettings aAdditionalSaxReaderSettings)
   {
     this.m_aAdditionalSAXReaderSettings = SAXReaderSettings.createCloneOnDemand (aAdditionalSaxReaderSettings);
+    this.m_bModified = true;
+    _updateSAXReaderSettings ();
+  }
+
+  /**
+   * @return <code>true</code> if the pre-compiled DTDs of
+   *         {@link HTMLCompiledEntityResolver} are used, <code>false</code> if
+   *         the complete DTDs of {@link HTMLEntityResolver} are read upon each
+   *         parsing. Default is {@value #DEFAULT_USE_COMPILED_DTD}.
+   */
+  public boolean isUseCompiledDTD ()
+  {
+    return this.m_bUseCompiledDTD;
+  }
+
+  /**
+   * Determine whether the pre-compiled DTDs should be used. The pre-compiled
+   * DTDs contain the same declarations as the original ones, but they consist
+   * of a single file without parameter entities, so that parsing small
+   * fragments is a lot faster.
+   *
+   * @param bUseCompiledDTD
+   *        <code>true</code> to use the pre-compiled DTDs, <code>false</code>
+   *        to use the original DTDs.
+   */
+  public void setUseCompiledDTD (final boolean bUseCompiledDTD)
+  {
+    this.m_bUseCompiledDTD = bUseCompiledDTD;
+    this.m_bModified = true;
+    _updateSAXReaderSettings ();
+  }
+
+  /**
+   * Restore the settings of a newly constructed parser. Used before a parser
+   * instance is reused.
+   */
+  void setToDefault ()
+  {
+    if (this.m_bModified)
+    {
+      this.m_bUseCompiledDTD = DEFAULT_USE_COMPILED_DTD;
+      this.m_aAdditionalSAXReaderSettings = _createDefaultAdditionalSAXReaderSettings ();
+      this.m_bModified = false;
+      _updateSAXReaderSettings ();
+    }
   }
 
   /**
@@ -132,8 +209,20 @@ public final class XHTMLParser2
   {
     // If the text contains an open angle bracket followed by a character that
     // we think of it as HTML
-    // (?s) enables the "dotall" mode - see Pattern.DOTALL
-    return StringHelper.hasText (sText) && RegExHelper.stringMatchesPattern ("(?s).*<[a-zA-Z].+", sText);
+    if (StringHelper.hasNoText (sText))
+      return false;
+
+    // Linear scan instead of a regular expression: an open angle bracket,
+    // followed by an ASCII letter, followed by at least one more character
+    final int nMax = sText.length () - 2;
+    for (int i = 0; i < nMax; ++i)
+      if (sText.charAt (i) == '<')
+      {
+        final char c = sText.charAt (i + 1);
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))
+          return true;
+      }
+    return false;
   }
 
   /**
@@ -165,22 +254,15 @@ public final class XHTMLParser2
   {
     // Build mini HTML and insert fragment in the middle.
     // If parsing succeeds, it is considered valid HTML.
-    final String sHTMLNamespaceURI = this.m_eHTMLVersion.getNamespaceURI ();
-    final String sXHTML = XMLEmitterPhloc.getDocTypeHTMLRepresentation (EXMLSerializeVersion.XML_10,
-                                                                        EXMLIncorrectCharacterHandling.DEFAULT,
-                                                                        this.m_eHTMLVersion.getDocType ()) +
-                          "<html" +
-                          (sHTMLNamespaceURI != null ? ' ' + CXML.XML_ATTR_XMLNS + "=\"" + sHTMLNamespaceURI + '"' : "") +
-                          "><head><title></title></head><body>" +
-                          StringHelper.getNotNull (sXHTMLFragment) +
-                          "</body></html>";
+    final String sXHTML = this.m_sFragmentPrefix + StringHelper.getNotNull (sXHTMLFragment) + "</body></html>";
     return parseXHTMLDocument (sXHTML);
   }
 
   /**
    * This method parses a full HTML document into a {@link IMicroDocument} using
    * the additional SAX reader settings and always the
-   * {@link HTMLEntityResolver} as an entity resolver.
+   * {@link HTMLCompiledEntityResolver} or the {@link HTMLEntityResolver} (see
+   * {@link #isUseCompiledDTD()}) as an entity resolver.
    *
    * @param sXHTML
    *        The complete XHTML document as a string. May be <code>null</code>.
@@ -189,9 +271,7 @@ public final class XHTMLParser2
   @Nullable
   public IMicroDocument parseXHTMLDocument (@Nullable final String sXHTML)
   {
-    return MicroReader.readMicroXML (sXHTML,
-                                     this.m_aAdditionalSAXReaderSettings.getClone ()
-                                                                        .setEntityResolver (HTMLEntityResolver.getInstance ()));
+    return MicroReader.readMicroXML (sXHTML, this.m_aSAXReaderSettings);
   }
 
   /**
@@ -242,12 +322,32 @@ public final class XHTMLParser2
    */
   @Nonnull
   public IHCNode convertToXHTMLFragmentOnDemand (@Nullable final String sText)
+  {
+    return convertToXHTMLFragmentOnDemand (sText, false);
+  }
+
+  /**
+   * If the passed text looks like XHTML, unescape it (using
+   * {@link #unescapeXHTMLFragment(String)}) else return a simple text node.
+   *
+   * @param sText
+   *        The text to be converted. May be <code>null</code>.
+   * @param bFrozen
+   *        <code>true</code> to create a frozen {@link HCDOMWrapper} that
+   *        serializes the parsed content only once. Use this for content that
+   *        is rendered many times.
+   * @return A non-<code>null</code> IHCNode with the result representation
+   *         (e.g. an {@link HCTextNode} or an {@link HCDOMWrapper} with an
+   *         {@link IMicroContainer} having all the body elements)
+   */
+  @Nonnull
+  public IHCNode convertToXHTMLFragmentOnDemand (@Nullable final String sText, final boolean bFrozen)
   {
     if (looksLikeXHTML (sText))
     {
       final IMicroContainer aCont = unescapeXHTMLFragment (sText);
       if (aCont != null)
-        return new HCDOMWrapper (aCont);
+        return new HCDOMWrapper (aCont, bFrozen);
       s_aLogger.error ("Failed to unescape XHTML:\n" + sText);
     }
     return new HCTextNode (sText);
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test class for class {@link CHTMLAttributes}.
+ * 
+ * @author Philip Helger
+ */
+public final class CHTMLAttributesTest
+{
+  @Test
+  public void testLookup ()
+  {
+    assertTrue (CHTMLAttributes.isHTMLAttributeName ("class"));
+    assertTrue (CHTMLAttributes.isHTMLAttributeName ("CLASS"));
+    assertTrue (CHTMLAttributes.isHTMLAttributeName ("Accept-Charset"));
+    assertTrue (CHTMLAttributes.isHTMLAttributeName ("aria-valuetext"));
+    assertFalse (CHTMLAttributes.isHTMLAttributeName (null));
+    assertFalse (CHTMLAttributes.isHTMLAttributeName (""));
+    assertFalse (CHTMLAttributes.isHTMLAttributeName ("classx"));
+
+    // Prefixes are no attribute names
+    assertFalse (CHTMLAttributes.isHTMLAttributeName (CHTMLAttributes.HTML5_PREFIX_DATA));
+    assertFalse (CHTMLAttributes.isHTMLAttributeName (CHTMLAttributes.PREFIX_ARIA));
+    assertFalse (CHTMLAttributes.isHTMLAttributeName ("ARIA-"));
+    assertNull (CHTMLAttributes.getFromAttributeNameOrNull ("data-"));
+    assertFalse (CHTMLAttributes.getAllAttributeNames ().contains (CHTMLAttributes.HTML5_PREFIX_DATA));
+    assertFalse (CHTMLAttributes.getAllAttributeNames ().contains (CHTMLAttributes.PREFIX_ARIA));
+
+    assertSame (CHTMLAttributes.CLASS, CHTMLAttributes.getFromAttributeNameOrNull ("Class"));
+    assertEquals (CHTMLAttributes.ACCEPTCHARSET, CHTMLAttributes.getFromAttributeNameOrNull ("ACCEPT-CHARSET"));
+    assertNull (CHTMLAttributes.getFromAttributeNameOrNull ("unknown-attr"));
+
+    assertTrue (CHTMLAttributes.getAllAttributeNames ().contains (CHTMLAttributes.CLASS));
+    assertTrue (CHTMLAttributes.getAllAttributeNames ().contains (CHTMLAttributes.ARIA_VALUETEXT));
+    assertFalse (CHTMLAttributes.getAllAttributeNames ().contains ("CLASS"));
+  }
+}
@@ -18,6 +18,8 @@
 package com.phloc.html;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -45,5 +47,32 @@ public final class EHTMLElementTest
     assertFalse (EHTMLElement.isTagThatMayBeSelfClosed ("A"));
     assertTrue (EHTMLElement.isTagThatMayNotBeSelfClosed ("a"));
     assertTrue (EHTMLElement.isTagThatMayNotBeSelfClosed ("A"));
+
+    // Unknown elements
+    assertFalse (EHTMLElement.isTagThatMayBeSelfClosed ("unknown"));
+    assertTrue (EHTMLElement.isTagThatMayNotBeSelfClosed ("unknown"));
+    assertFalse (EHTMLElement.isTagThatMayBeSelfClosed (null));
+    assertFalse (EHTMLElement.isTagThatMayNotBeSelfClosed (""));
+
+    for (final EHTMLElement e : EHTMLElement.values ())
+      assertTrue (e.mayBeSelfClosed () == EHTMLElement.getAllElementNamesThatMayBeSelfClosed ()
+                                                      .contains (e.getElementNameLowerCase ()));
+  }
+
+  @Test
+  public void testGetFromTagNameOrNull ()
+  {
+    for (final EHTMLElement e : EHTMLElement.values ())
+    {
+      assertSame (e, EHTMLElement.getFromTagNameOrNull (e.getElementNameLowerCase ()));
+      assertSame (e, EHTMLElement.getFromTagNameOrNull (e.getElementNameUpperCase ()));
+      assertTrue (EHTMLElement.isHTMLTagName (e.getElementName ()));
+    }
+    assertSame (EHTMLElement.BLOCKQUOTE, EHTMLElement.getFromTagNameOrNull ("BlockQuote"));
+    assertNull (EHTMLElement.getFromTagNameOrNull (null));
+    assertNull (EHTMLElement.getFromTagNameOrNull (""));
+    assertNull (EHTMLElement.getFromTagNameOrNull ("blockquote "));
+    assertNull (EHTMLElement.getFromTagNameOrNull ("xyz"));
+    assertFalse (EHTMLElement.isHTMLTagName ("b r"));
   }
 }
@@ -18,8 +18,11 @@
 package com.phloc.html.css;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -41,4 +44,53 @@ public final class DefaultCSSClassProviderTest
     assertSame (x, DefaultCSSClassProvider.create ("any"));
     PhlocTestUtils.testDefaultImplementationWithDifferentContentObject (x, DefaultCSSClassProvider.create ("anyOther"));
   }
+
+  @Test
+  public void testIsValidCSSClassName ()
+  {
+    assertTrue (DefaultCSSClassProvider.isValidCSSClassName ("a"));
+    assertTrue (DefaultCSSClassProvider.isValidCSSClassName ("_a"));
+    assertTrue (DefaultCSSClassProvider.isValidCSSClassName ("-a"));
+    assertTrue (DefaultCSSClassProvider.isValidCSSClassName ("a-1_b"));
+    assertTrue (DefaultCSSClassProvider.isValidCSSClassName ("A--"));
+    assertFalse (DefaultCSSClassProvider.isValidCSSClassName (null));
+    assertFalse (DefaultCSSClassProvider.isValidCSSClassName (""));
+    assertFalse (DefaultCSSClassProvider.isValidCSSClassName ("-"));
+    assertFalse (DefaultCSSClassProvider.isValidCSSClassName ("--a"));
+    assertFalse (DefaultCSSClassProvider.isValidCSSClassName ("1a"));
+    assertFalse (DefaultCSSClassProvider.isValidCSSClassName ("-1a"));
+    assertFalse (DefaultCSSClassProvider.isValidCSSClassName ("a.b"));
+    assertFalse (DefaultCSSClassProvider.isValidCSSClassName ("\u00e4"));
+  }
+
+  @Test
+  public void testStatistics ()
+  {
+    final long nHits = DefaultCSSClassProvider.getHitCount ();
+    final long nMisses = DefaultCSSClassProvider.getMissCount ();
+    final DefaultCSSClassProvider x = DefaultCSSClassProvider.create ("stats-test");
+    assertSame (x, DefaultCSSClassProvider.create ("stats-test"));
+    assertEquals (nHits + 1, DefaultCSSClassProvider.getHitCount ());
+    assertEquals (nMisses + 1, DefaultCSSClassProvider.getMissCount ());
+    assertTrue (DefaultCSSClassProvider.getInternedCount () > 0);
+    assertTrue (DefaultCSSClassProvider.getHitRate () > 0);
+  }
+
+  @Test
+  public void testMaxInternedCount ()
+  {
+    final int nOldMax = DefaultCSSClassProvider.getMaxInternedCount ();
+    DefaultCSSClassProvider.setMaxInternedCount (0);
+    try
+    {
+      final DefaultCSSClassProvider x = DefaultCSSClassProvider.create ("not-interned");
+      final DefaultCSSClassProvider y = DefaultCSSClassProvider.create ("not-interned");
+      assertNotSame (x, y);
+      assertEquals (x, y);
+    }
+    finally
+    {
+      DefaultCSSClassProvider.setMaxInternedCount (nOldMax);
+    }
+  }
 }
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.phloc.commons.microdom.IMicroNode;
+import com.phloc.html.EHTMLVersion;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.html.HCA;
+import com.phloc.html.hc.html.HCDiv;
+import com.phloc.html.hc.html.HCSpan;
+import com.phloc.html.hc.impl.AbstractHCNode;
+
+/**
+ * Test class for class {@link HCConsistencyChecker}.
+ * 
+ * @author Philip Helger
+ */
+public final class HCConsistencyCheckerTest
+{
+  private static final class CollectingHandler implements IHCConsistencyIssueHandler
+  {
+    private final List <HCConsistencyIssue> m_aIssues = new ArrayList <HCConsistencyIssue> ();
+
+    public void onConsistencyIssue (@Nonnull final HCConsistencyIssue aIssue)
+    {
+      m_aIssues.add (aIssue);
+    }
+  }
+
+  @Test
+  public void testRunConsistencyCheckForConversion ()
+  {
+    final CollectingHandler aHandler = new CollectingHandler ();
+    final HCConversionSettings aCS = new HCConversionSettings (EHTMLVersion.HTML5).setConsistencyIssueHandler (aHandler);
+
+    // Reported exactly once, although all nodes of the tree are converted
+    final HCA aInnerA = new HCA ("http://www.phloc.com");
+    final HCDiv aDiv = new HCDiv ().addChild (new HCA ("http://www.phloc.com").addChild (new HCSpan ().addChild (aInnerA)));
+    assertNotNull (aDiv.convertToNode (aCS));
+    assertEquals (1, aHandler.m_aIssues.size ());
+    assertSame (aInnerA, aHandler.m_aIssues.get (0).getNode ());
+    assertFalse (aCS.isConsistencyCheckPerformed ());
+
+    // Disabled checks
+    aHandler.m_aIssues.clear ();
+    final HCDiv aDiv2 = new HCDiv ().addChild (new HCA ("http://www.phloc.com").addChild (new HCA ("http://www.phloc.com")));
+    assertNotNull (aDiv2.convertToNode (aCS.getClone ().setConsistencyChecksEnabled (false)));
+    assertTrue (aHandler.m_aIssues.isEmpty ());
+  }
+
+  @Test
+  public void testUnrelatedTreeInSameThread ()
+  {
+    final CollectingHandler aHandler = new CollectingHandler ();
+    final HCConversionSettings aCS = new HCConversionSettings (EHTMLVersion.HTML5).setConsistencyIssueHandler (aHandler);
+
+    // A node that converts an unrelated tree while it is converted itself
+    final HCA aInnerA = new HCA ("http://www.phloc.com");
+    final IHCNode aOther = new HCA ("http://www.phloc.com").addChild (aInnerA);
+    final HCDiv aDiv = new HCDiv ().addChild (new AbstractHCNode ()
+    {
+      @Override
+      protected IMicroNode internalConvertToNode (@Nonnull final IHCConversionSettingsToNode aConversionSettings)
+      {
+        return aOther.convertToNode (aCS);
+      }
+    });
+    assertNotNull (aDiv.convertToNode (aCS));
+    assertEquals (1, aHandler.m_aIssues.size ());
+    assertSame (aInnerA, aHandler.m_aIssues.get (0).getNode ());
+  }
+
+  @Test
+  public void testFrozen ()
+  {
+    final HCFrozenConversionSettings aFrozen = new HCConversionSettings (EHTMLVersion.HTML5).getFrozen ();
+    assertFalse (aFrozen.isConsistencyCheckPerformed ());
+
+    final HCFrozenConversionSettings aChecked = aFrozen.getWithConsistencyCheckPerformed ();
+    assertTrue (aChecked.isConsistencyCheckPerformed ());
+    assertSame (aChecked, aFrozen.getWithConsistencyCheckPerformed ());
+    assertSame (aChecked, aChecked.getWithConsistencyCheckPerformed ());
+    assertSame (aChecked, HCConsistencyChecker.runConsistencyCheckForConversion (new HCDiv (), aFrozen));
+
+    // Derived settings of the same conversion are not checked again
+    assertTrue (aChecked.getCloneIfNecessary (EHTMLVersion.XHTML11).isConsistencyCheckPerformed ());
+    assertTrue (aChecked.getWithoutNamespaces ().isConsistencyCheckPerformed ());
+    assertTrue (aChecked.getClone ().isConsistencyCheckPerformed ());
+    assertFalse (aFrozen.getCloneIfNecessary (EHTMLVersion.XHTML11).isConsistencyCheckPerformed ());
+  }
+}
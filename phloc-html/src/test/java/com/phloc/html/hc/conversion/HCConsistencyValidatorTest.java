@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.phloc.html.EHTMLVersion;
+import com.phloc.html.hc.html.HCA;
+import com.phloc.html.hc.html.HCButton;
+import com.phloc.html.hc.html.HCDiv;
+import com.phloc.html.hc.html.HCFont;
+import com.phloc.html.hc.html.HCForm;
+import com.phloc.html.hc.html.HCHtml;
+import com.phloc.html.hc.html.HCImg;
+import com.phloc.html.hc.html.HCObject;
+import com.phloc.html.hc.html.HCPre;
+import com.phloc.html.hc.html.HCSelect;
+import com.phloc.html.hc.html.HCSpan;
+import com.phloc.html.hc.html.HCTable;
+import com.phloc.html.hc.impl.HCConditionalCommentNode;
+
+/**
+ * Test class for class {@link HCConsistencyValidator}.
+ * 
+ * @author Philip Helger
+ */
+public final class HCConsistencyValidatorTest
+{
+  @Test
+  public void testNoIssues ()
+  {
+    final HCDiv aDiv = new HCDiv ();
+    aDiv.addChild (new HCA ("http://www.phloc.com").addChild (new HCSpan ().addChild ("x")));
+    aDiv.addChild (new HCForm ().addChild (new HCButton ("b")));
+    assertTrue (HCConsistencyValidator.validate (aDiv, EHTMLVersion.HTML5).isEmpty ());
+  }
+
+  @Test
+  public void testForbiddenDescendants ()
+  {
+    // Nested deeply to ensure all ancestors are considered
+    final HCA aInnerA = new HCA ("http://www.phloc.com");
+    final HCSelect aSelect = new HCSelect ();
+    final HCA aOuterA = new HCA ("http://www.phloc.com");
+    aOuterA.addChild (new HCSpan ().addChild (new HCSpan ().addChild (aInnerA)));
+    aOuterA.addChild (aSelect);
+
+    List <HCConsistencyIssue> aIssues = HCConsistencyValidator.validate (aOuterA, EHTMLVersion.HTML5);
+    assertEquals (2, aIssues.size ());
+    assertSame (aInnerA, aIssues.get (0).getNode ());
+    assertEquals ("A may never contain other links!", aIssues.get (0).getMessage ());
+    assertSame (aSelect, aIssues.get (1).getNode ());
+    assertEquals ("A contains invalid child element!", aIssues.get (1).getMessage ());
+
+    // Nested form inside a button inside a form
+    final HCForm aInnerForm = new HCForm ();
+    final HCForm aOuterForm = new HCForm ().addChild (new HCButton ().addChild (aInnerForm));
+    aIssues = HCConsistencyValidator.validate (aOuterForm, EHTMLVersion.HTML5);
+    assertEquals (2, aIssues.size ());
+    assertSame (aInnerForm, aIssues.get (0).getNode ());
+    assertEquals ("BUTTON element contains forbidden tag FORM", aIssues.get (0).getMessage ());
+    assertEquals ("FORM contains other nested form", aIssues.get (1).getMessage ());
+
+    // The ancestor is closed after the PRE
+    final HCDiv aDiv = new HCDiv ();
+    aDiv.addChild (new HCPre ().addChild (new HCImg ()));
+    aDiv.addChild (new HCImg ());
+    aIssues = HCConsistencyValidator.validate (aDiv, EHTMLVersion.HTML5);
+    assertEquals (1, aIssues.size ());
+    assertEquals ("PRE elements contains forbidden tag IMG", aIssues.get (0).getMessage ());
+  }
+
+  @Test
+  public void testElementChecks ()
+  {
+    final HCFont aFont = new HCFont ();
+    final HCObject aObject = new HCObject ();
+    final HCDiv aDiv = new HCDiv ().addChild (aFont).addChild (aObject);
+
+    List <HCConsistencyIssue> aIssues = HCConsistencyValidator.validate (aDiv, EHTMLVersion.HTML5);
+    assertEquals (2, aIssues.size ());
+    assertSame (aFont, aIssues.get (0).getNode ());
+    assertEquals ("The element 'font' is deprecated in HTML5", aIssues.get (0).getMessage ());
+    assertSame (aObject, aIssues.get (1).getNode ());
+
+    // Font is not deprecated in XHTML 1.1
+    aIssues = HCConsistencyValidator.validate (aDiv, EHTMLVersion.XHTML11);
+    assertEquals (1, aIssues.size ());
+    assertSame (aObject, aIssues.get (0).getNode ());
+  }
+
+  @Test
+  public void testNestedInNonChildStructures ()
+  {
+    // Body content of a complete page
+    final HCHtml aHtml = new HCHtml ();
+    final HCA aInnerA = new HCA ("http://www.phloc.com");
+    aHtml.getBody ().addChild (new HCA ("http://www.phloc.com").addChild (aInnerA));
+    List <HCConsistencyIssue> aIssues = HCConsistencyValidator.validate (aHtml, EHTMLVersion.HTML5);
+    assertEquals (1, aIssues.size ());
+    assertSame (aInnerA, aIssues.get (0).getNode ());
+    assertEquals ("A may never contain other links!", aIssues.get (0).getMessage ());
+
+    // Table cells
+    final HCForm aInnerForm = new HCForm ();
+    final HCTable aTable = new HCTable ();
+    aTable.addBodyRow ().addCell (aInnerForm);
+    aIssues = HCConsistencyValidator.validate (new HCForm ().addChild (aTable), EHTMLVersion.HTML5);
+    assertEquals (1, aIssues.size ());
+    assertSame (aInnerForm, aIssues.get (0).getNode ());
+    assertEquals ("FORM contains other nested form", aIssues.get (0).getMessage ());
+
+    // Wrapped nodes
+    final HCFont aFont = new HCFont ();
+    aIssues = HCConsistencyValidator.validate (new HCDiv ().addChild (new HCConditionalCommentNode ("IE", aFont)),
+                                               EHTMLVersion.HTML5);
+    assertEquals (1, aIssues.size ());
+    assertSame (aFont, aIssues.get (0).getNode ());
+  }
+}
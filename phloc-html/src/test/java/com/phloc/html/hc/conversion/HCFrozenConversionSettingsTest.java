@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.phloc.html.EHTMLVersion;
+
+/**
+ * Test class for class {@link HCFrozenConversionSettings}.
+ * 
+ * @author Philip Helger
+ */
+public final class HCFrozenConversionSettingsTest
+{
+  @Test
+  public void testBasic ()
+  {
+    final HCConversionSettings aCS = new HCConversionSettings (EHTMLVersion.HTML5);
+    final HCFrozenConversionSettings aFrozen = aCS.getFrozen ();
+    assertNotSame (aFrozen, aCS.getFrozen ());
+    assertEquals (EHTMLVersion.HTML5, aFrozen.getHTMLVersion ());
+    assertEquals (aCS.areConsistencyChecksEnabled (), aFrozen.areConsistencyChecksEnabled ());
+
+    // Modifying the source does not modify the frozen object
+    aCS.setConsistencyChecksEnabled (!aCS.areConsistencyChecksEnabled ());
+    aCS.getXMLWriterSettings ().setEmitNamespaces (false);
+    assertFalse (aCS.areConsistencyChecksEnabled () == aFrozen.areConsistencyChecksEnabled ());
+    assertTrue (aFrozen.getXMLWriterSettings ().isEmitNamespaces ());
+
+    // Clones are mutable again
+    assertNotSame (aFrozen.getClone (), aFrozen.getClone ());
+    assertSame (aFrozen, aFrozen.getCloneIfNecessary (EHTMLVersion.HTML5));
+
+    // Other HTML versions are cached
+    final HCFrozenConversionSettings aXHTML11 = aFrozen.getCloneIfNecessary (EHTMLVersion.XHTML11);
+    assertEquals (EHTMLVersion.XHTML11, aXHTML11.getHTMLVersion ());
+    assertSame (aXHTML11, aFrozen.getCloneIfNecessary (EHTMLVersion.XHTML11));
+    assertEquals (aFrozen.areConsistencyChecksEnabled (), aXHTML11.areConsistencyChecksEnabled ());
+  }
+
+  @Test
+  public void testWithoutNamespaces ()
+  {
+    final HCFrozenConversionSettings aFrozen = new HCConversionSettings (EHTMLVersion.XHTML11).getFrozen ();
+    final HCFrozenConversionSettings aWithout = aFrozen.getWithoutNamespaces ();
+    assertNotSame (aFrozen, aWithout);
+    assertFalse (aWithout.getXMLWriterSettings ().isEmitNamespaces ());
+    // Cached
+    assertSame (aWithout, aFrozen.getWithoutNamespaces ());
+    assertSame (aWithout, aWithout.getWithoutNamespaces ());
+  }
+
+  @Test
+  public void testProvider ()
+  {
+    final HCConversionSettingsProvider aProvider = new HCConversionSettingsProvider (EHTMLVersion.XHTML11);
+    final HCFrozenConversionSettings aPretty = aProvider.getFrozenConversionSettings (true);
+    final HCFrozenConversionSettings aOptimized = aProvider.getFrozenConversionSettings (false);
+    assertSame (aPretty, aProvider.getFrozenConversionSettings (true));
+    assertSame (aOptimized, aProvider.getFrozenConversionSettings (false));
+    assertTrue (aPretty.areConsistencyChecksEnabled ());
+    assertFalse (aOptimized.areConsistencyChecksEnabled ());
+
+    // The mutable settings are copies
+    final HCConversionSettings aCopy = aProvider.getConversionSettings (true);
+    assertNotSame (aCopy, aProvider.getConversionSettings (true));
+    aCopy.setConsistencyChecksEnabled (false);
+    assertTrue (aProvider.getFrozenConversionSettings (true).areConsistencyChecksEnabled ());
+
+    // Changing the provider publishes new settings but leaves the old ones
+    // untouched
+    aProvider.setConsistencyChecksEnabled (false);
+    assertTrue (aPretty.areConsistencyChecksEnabled ());
+    assertFalse (aProvider.getFrozenConversionSettings (true).areConsistencyChecksEnabled ());
+    assertNotSame (aOptimized, aProvider.getFrozenConversionSettings (false));
+  }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.phloc.commons.charset.CCharset;
+import com.phloc.commons.io.streams.NonBlockingByteArrayOutputStream;
+import com.phloc.html.CHTMLAttributes;
+import com.phloc.html.EHTMLElement;
+
+/**
+ * Test class for class {@link HCHTMLByteWriter}
+ * 
+ * @author Philip Helger
+ */
+public final class HCHTMLByteWriterTest
+{
+  @Nonnull
+  private static byte [] _getBytes (@Nonnull final String sText, @Nonnull final Charset aCharset) throws IOException
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    final HCHTMLByteWriter aWriter = new HCHTMLByteWriter (aBAOS, aCharset);
+    try
+    {
+      aWriter.write (sText);
+      aWriter.writeBufferedBytes ();
+      assertEquals (aBAOS.size (), aWriter.getWrittenByteCount ());
+      assertEquals (sText.length (), aWriter.getWrittenCharCount ());
+    }
+    finally
+    {
+      aWriter.releaseBuffer ();
+    }
+    return aBAOS.toByteArray ();
+  }
+
+  @Nonnull
+  private static byte [] _getBytesCharByChar (@Nonnull final String sText, @Nonnull final Charset aCharset) throws IOException
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    final HCHTMLByteWriter aWriter = new HCHTMLByteWriter (aBAOS, aCharset);
+    for (final char c : sText.toCharArray ())
+      aWriter.write (c);
+    aWriter.close ();
+    return aBAOS.toByteArray ();
+  }
+
+  @Test
+  public void testIsSupportedCharset ()
+  {
+    assertTrue (HCHTMLByteWriter.isSupportedCharset (CCharset.CHARSET_UTF_8_OBJ));
+    assertTrue (HCHTMLByteWriter.isSupportedCharset (CCharset.CHARSET_ISO_8859_1_OBJ));
+    assertTrue (HCHTMLByteWriter.isSupportedCharset (CCharset.CHARSET_US_ASCII_OBJ));
+    assertTrue (HCHTMLByteWriter.isSupportedCharset (Charset.forName ("windows-1252")));
+    assertFalse (HCHTMLByteWriter.isSupportedCharset (CCharset.CHARSET_UTF_16_OBJ));
+    // ASCII compatible, but multi byte or stateful
+    assertFalse (HCHTMLByteWriter.isSupportedCharset (Charset.forName ("Shift_JIS")));
+    assertFalse (HCHTMLByteWriter.isSupportedCharset (Charset.forName ("ISO-2022-JP")));
+    assertFalse (HCHTMLByteWriter.isSupportedCharset (null));
+  }
+
+  @Test
+  public void testMultipleWriteOperations () throws IOException
+  {
+    // The encoder is finished and reset after each operation
+    final Charset aCharset = Charset.forName ("windows-1252");
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    final HCHTMLByteWriter aWriter = new HCHTMLByteWriter (aBAOS, aCharset);
+    try
+    {
+      aWriter.write ("\u00e4\u20ac");
+      aWriter.writeBufferedBytes ();
+      aWriter.write ("x\u20acy");
+      aWriter.writeBufferedBytes ();
+    }
+    finally
+    {
+      aWriter.releaseBuffer ();
+    }
+    assertArrayEquals ("\u00e4\u20acx\u20acy".getBytes (aCharset), aBAOS.toByteArray ());
+  }
+
+  @Test
+  public void testEncoding () throws IOException
+  {
+    final StringBuilder aLong = new StringBuilder ();
+    while (aLong.length () < 3 * HCHTMLByteWriter.BUFFER_SIZE)
+      aLong.append ("abc\u00e4\u20ac\ud834\udd1e<&>");
+    // Long runs of non ASCII chars without any ASCII char in between
+    final StringBuilder aLongNonASCII = new StringBuilder ();
+    while (aLongNonASCII.length () < 3 * HCHTMLByteWriter.BUFFER_SIZE)
+      aLongNonASCII.append ("\u00e4\u20ac\u00f6\ud834\udd1e\u4e2d");
+
+    for (final Charset aCharset : new Charset [] { CCharset.CHARSET_UTF_8_OBJ,
+                                                   CCharset.CHARSET_ISO_8859_1_OBJ,
+                                                   CCharset.CHARSET_US_ASCII_OBJ,
+                                                   Charset.forName ("windows-1252") })
+      for (final String sText : new String [] { "",
+                                                "abc",
+                                                "\u00e4\u00f6\u00fc\u00df",
+                                                "\u20ac \u4e2d\u6587",
+                                                "x\ud834\udd1ey",
+                                                "unpaired \ud834 high",
+                                                "unpaired \udd1e low",
+                                                "end \ud834",
+                                                "\ud834\ud834x",
+                                                aLong.toString (),
+                                                aLongNonASCII.toString () })
+      {
+        assertArrayEquals (sText, sText.getBytes (aCharset), _getBytes (sText, aCharset));
+        assertArrayEquals (sText, sText.getBytes (aCharset), _getBytesCharByChar (sText, aCharset));
+      }
+  }
+
+  @Test
+  public void testTokens () throws IOException
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    final HCHTMLByteWriter aWriter = new HCHTMLByteWriter (aBAOS, CCharset.CHARSET_UTF_8_OBJ);
+    aWriter.writeStartTag (EHTMLElement.DIV, "div");
+    aWriter.writeAttributeStart (CHTMLAttributes.CLASS);
+    aWriter.write ("c\"");
+    aWriter.writeAttributeStart ("data-x");
+    aWriter.write ("1\">");
+    aWriter.writeEndTag (EHTMLElement.DIV, "div");
+    // Different case and unknown elements are written as they are
+    aWriter.writeStartTag (EHTMLElement.DIV, "DIV");
+    aWriter.writeEndTag (EHTMLElement.DIV, "DIV");
+    aWriter.writeStartTag (null, "x");
+    aWriter.writeEndTag (null, "x");
+    aWriter.close ();
+    assertEquals ("<div class=\"c\" data-x=\"1\"></div><DIV</DIV><x</x>",
+                  new String (aBAOS.toByteArray (), CCharset.CHARSET_UTF_8_OBJ));
+  }
+
+  @Test
+  public void testTokensAfterNonASCII () throws IOException
+  {
+    // Pending non ASCII chars must be encoded before a token is written
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    final HCHTMLByteWriter aWriter = new HCHTMLByteWriter (aBAOS, CCharset.CHARSET_ISO_8859_1_OBJ);
+    aWriter.writeStartTag (EHTMLElement.DIV, "div");
+    aWriter.writeAttributeStart (CHTMLAttributes.TITLE);
+    aWriter.write ("\u00e4\"");
+    aWriter.write ('>');
+    aWriter.write ("\u00f6\u00fc");
+    aWriter.writeEndTag (EHTMLElement.DIV, "div");
+    aWriter.writeBufferedBytes ();
+    final String sExpected = "<div title=\"\u00e4\">\u00f6\u00fc</div>";
+    assertEquals (sExpected.length (), aWriter.getWrittenCharCount ());
+    aWriter.releaseBuffer ();
+    assertArrayEquals (sExpected.getBytes (CCharset.CHARSET_ISO_8859_1_OBJ), aBAOS.toByteArray ());
+  }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.phloc.commons.charset.CCharset;
+import com.phloc.commons.io.streams.NonBlockingByteArrayOutputStream;
+import com.phloc.commons.io.streams.NonBlockingStringWriter;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.html.HCBR;
+import com.phloc.html.hc.html.HCDiv;
+import com.phloc.html.hc.html.HCH1;
+import com.phloc.html.hc.html.HCHtml;
+import com.phloc.html.hc.html.HCRow;
+import com.phloc.html.hc.html.HCSpan;
+import com.phloc.html.hc.html.HCStyle;
+import com.phloc.html.hc.html.HCTable;
+import com.phloc.html.hc.impl.HCNodeList;
+import com.phloc.html.hc.impl.HCTextNode;
+
+/**
+ * Test class for class {@link HCHTMLSerializer}
+ * 
+ * @author Philip Helger
+ */
+public final class HCHTMLSerializerTest
+{
+  @Nonnull
+  private static String _write (@Nonnull final IHCNode aNode, @Nonnull final IHCConversionSettings aCS) throws IOException
+  {
+    final NonBlockingStringWriter aSW = new NonBlockingStringWriter ();
+    HCSettings.writeHTML (aNode, aSW, aCS);
+    return aSW.getAsString ();
+  }
+
+  @Nonnull
+  private static byte [] _writeBytes (@Nonnull final IHCNode aNode, @Nonnull final IHCConversionSettings aCS) throws IOException
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    HCSettings.writeHTML (aNode, aBAOS, aCS);
+    return aBAOS.toByteArray ();
+  }
+
+  @Nonnull
+  private static IHCNode _createDivs ()
+  {
+    final HCDiv aDiv = new HCDiv ().addChild ("a & b");
+    aDiv.addChild (new HCSpan ().addChild (new HCNodeList ().addChild ("x").addChild (new HCBR ())));
+    aDiv.addChild (new HCDiv ());
+    aDiv.addChild (new HCDiv ().addChild (new HCNodeList ()));
+    aDiv.addChild (new HCTextNode ("<y>"));
+    return aDiv;
+  }
+
+  @Nonnull
+  private static IHCNode _createTable ()
+  {
+    final HCTable aTable = new HCTable ();
+    final HCRow aRow = aTable.addBodyRow ();
+    aRow.addCell (new HCNodeList ().addChild (new HCDiv ().addChild ("dd2")).addChild (new HCDiv ().addChild ("dd1")));
+    aRow.addCell ("c\"2");
+    return aTable;
+  }
+
+  @Nonnull
+  private static IHCNode _createHtml ()
+  {
+    final HCHtml aHtml = new HCHtml ();
+    aHtml.getBody ().addChild (new HCH1 ().addChild ("Test"));
+    aHtml.getBody ().addChild (new HCStyle ("h1{color:red;}"));
+    return aHtml;
+  }
+
+  @Test
+  public void testSameAsString () throws IOException
+  {
+    for (final boolean bPrettyPrint : new boolean [] { false, true })
+    {
+      final IHCConversionSettings aCS = HCSettings.getConversionSettings (bPrettyPrint);
+      assertEquals (_createDivs ().getAsHTMLString (aCS), _write (_createDivs (), aCS));
+      assertEquals (_createTable ().getAsHTMLString (aCS), _write (_createTable (), aCS));
+      assertEquals (_createHtml ().getAsHTMLString (aCS), _write (_createHtml (), aCS));
+    }
+  }
+
+  @Nonnull
+  private static IHCNode _createNonASCII ()
+  {
+    final HCDiv aDiv = new HCDiv ().setTitle ("\u00e4 \u20ac \"q\"");
+    aDiv.addChild ("\u00e4\u00f6\u00fc \u20ac \ud834\udd1e & <x>");
+    aDiv.addChild (new HCSpan ().addChild ("\u4e2d\u6587"));
+    return aDiv;
+  }
+
+  @Test
+  public void testOutputStream () throws IOException
+  {
+    for (final boolean bPrettyPrint : new boolean [] { false, true })
+      for (final Charset aCharset : new Charset [] { CCharset.CHARSET_UTF_8_OBJ,
+                                                     CCharset.CHARSET_ISO_8859_1_OBJ,
+                                                     CCharset.CHARSET_UTF_16_OBJ })
+      {
+        final HCConversionSettings aCS = new HCConversionSettings (HCSettings.getConversionSettings (bPrettyPrint));
+        aCS.getXMLWriterSettings ().setCharset (aCharset);
+        assertArrayEquals (_write (_createDivs (), aCS).getBytes (aCharset), _writeBytes (_createDivs (), aCS));
+        assertArrayEquals (_write (_createTable (), aCS).getBytes (aCharset), _writeBytes (_createTable (), aCS));
+        assertArrayEquals (_write (_createHtml (), aCS).getBytes (aCharset), _writeBytes (_createHtml (), aCS));
+        assertArrayEquals (_write (_createNonASCII (), aCS).getBytes (aCharset), _writeBytes (_createNonASCII (), aCS));
+      }
+  }
+
+  @Test
+  public void testOutputStreamRenderListener () throws IOException
+  {
+    final HCRenderMetrics aMetrics = new HCRenderMetrics ();
+    final HCConversionSettings aCS = new HCConversionSettings (HCSettings.getConversionSettings (false));
+    aCS.getXMLWriterSettings ().setCharset (CCharset.CHARSET_UTF_8_OBJ);
+    aCS.setRenderListener (aMetrics);
+    final byte [] aBytes = _writeBytes (_createNonASCII (), aCS);
+    // Chars and bytes are reported
+    final String sHTML = new String (aBytes, CCharset.CHARSET_UTF_8_OBJ);
+    assertTrue (aBytes.length > sHTML.length ());
+    assertEquals (sHTML.length (), aMetrics.getSerializedCharCount ());
+    assertEquals (aBytes.length, aMetrics.getSerializedByteCount ());
+    assertEquals (1, aMetrics.getRenderingCount ());
+
+    // Same for a writer, but without bytes
+    final HCRenderMetrics aMetrics2 = new HCRenderMetrics ();
+    aCS.setRenderListener (aMetrics2);
+    assertEquals (sHTML, _write (_createNonASCII (), aCS));
+    assertEquals (aMetrics.getSerializedCharCount (), aMetrics2.getSerializedCharCount ());
+    assertEquals (0, aMetrics2.getSerializedByteCount ());
+
+    // And for charsets that are not supported by the byte writer
+    final HCRenderMetrics aMetrics3 = new HCRenderMetrics ();
+    aCS.setRenderListener (aMetrics3);
+    aCS.getXMLWriterSettings ().setCharset (CCharset.CHARSET_UTF_16_OBJ);
+    final byte [] aBytes16 = _writeBytes (_createNonASCII (), aCS);
+    assertEquals (aBytes16.length, aMetrics3.getSerializedByteCount ());
+    assertEquals (new String (aBytes16, CCharset.CHARSET_UTF_16_OBJ).length (), aMetrics3.getSerializedCharCount ());
+  }
+
+  @Test
+  public void testHtml () throws IOException
+  {
+    final IHCConversionSettings aCS = HCSettings.getConversionSettings (false);
+    final IHCNode aHtml = _createHtml ();
+    final String sExpected = "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.1//EN\" \"http://www.w3.org/TR/xhtml11/DTD/xhtml11.dtd\">"
+                             + "<html dir=\"ltr\" xmlns=\"http://www.w3.org/1999/xhtml\">"
+                             + "<head><style type=\"text/css\">h1{color:red;}</style></head>"
+                             + "<body><h1>Test</h1></body>"
+                             + "</html>";
+    assertEquals (sExpected, _write (aHtml, aCS));
+    // Do it again and check for node consistency
+    assertEquals (sExpected, _write (aHtml, aCS));
+  }
+
+  @Test
+  public void testWithoutNamespaces () throws IOException
+  {
+    final HCConversionSettings aCS = new HCConversionSettings (HCSettings.getConversionSettings (false));
+    aCS.getXMLWriterSettings ().setEmitNamespaces (false);
+    assertEquals ("<br />", _write (new HCBR (), aCS));
+    assertEquals ("<div><span>x</span></div>", _write (new HCDiv ().addChild (new HCSpan ().addChild ("x")), aCS));
+  }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.phloc.commons.io.streams.NonBlockingStringWriter;
+import com.phloc.html.EHTMLElement;
+import com.phloc.html.EHTMLVersion;
+import com.phloc.html.hc.html.HCDiv;
+import com.phloc.html.hc.html.HCH1;
+import com.phloc.html.hc.html.HCHtml;
+import com.phloc.html.hc.html.HCSpan;
+import com.phloc.html.hc.html.HCStyle;
+
+/**
+ * Test class for class {@link HCRenderMetrics}.
+ * 
+ * @author Philip Helger
+ */
+public final class HCRenderMetricsTest
+{
+  @Test
+  public void testBasic () throws IOException
+  {
+    final HCRenderMetrics aMetrics = new HCRenderMetrics ();
+    final HCConversionSettings aCS = new HCConversionSettings (EHTMLVersion.XHTML11).setRenderListener (aMetrics);
+    final HCHtml aHtml = new HCHtml ();
+    aHtml.getBody ().addChild (new HCH1 ().addChild ("Test"));
+    aHtml.getBody ().addChild (new HCDiv ().setID ("id1").addChild (new HCSpan ().addChild ("x")));
+    aHtml.getBody ().addChild (new HCStyle ("h1{color:red;}"));
+    final String sHTML = aHtml.getAsHTMLString (aCS);
+
+    assertEquals (1, aMetrics.getRenderingCount ());
+    assertEquals (1, aMetrics.getSampledRenderingCount ());
+    assertEquals (sHTML.length (), aMetrics.getSerializedCharCount ());
+    assertEquals (0, aMetrics.getSerializedByteCount ());
+    assertEquals (1, aMetrics.getSerializationStatistics ().getInvocationCount ());
+    assertEquals (1, aMetrics.getCreatedElementCount (EHTMLElement.H1));
+    assertEquals (1, aMetrics.getCreatedElementCount (EHTMLElement.SPAN));
+    assertEquals (0, aMetrics.getCreatedElementCount (EHTMLElement.TABLE));
+    assertTrue (aMetrics.getConvertedNodeCount () >= aMetrics.getCreatedElementCount ());
+    assertTrue (aMetrics.getEmittedAttributeCount () >= 2);
+    assertEquals (1, aMetrics.getExtractedOutOfBandNodeCount ());
+    assertEquals (1, aMetrics.getOutOfBandExtractionStatistics ().getInvocationCount ());
+
+    final HCRenderTimingStatistics aHtmlStats = aMetrics.getAllConvertToNodeStatistics ().get (HCHtml.class);
+    assertNotNull (aHtmlStats);
+    assertEquals (1, aHtmlStats.getInvocationCount ());
+    assertTrue (aHtmlStats.getTotalNanos () >= aHtmlStats.getTotalSelfNanos ());
+    assertEquals (aHtmlStats.getTotalNanos (), aHtmlStats.getMaxNanos ());
+    assertEquals (aHtmlStats.getMinNanos (), aHtmlStats.getMaxNanos ());
+    assertEquals (1, aHtmlStats.getHistogram ()[HCRenderTimingStatistics.getBucketIndex (aHtmlStats.getTotalNanos ())]);
+    assertNotNull (aMetrics.getAllConvertToNodeStatistics ().get (HCSpan.class));
+    assertNotNull (aMetrics.getAllBeforeConvertToNodeStatistics ().get (HCHtml.class));
+    assertFalse (aMetrics.getAllCustomizationStatistics ().isEmpty ());
+
+    // Streaming serialization reports the same number of characters and
+    // converts the children lazily within the same rendering
+    final HCRenderMetrics aMetrics2 = new HCRenderMetrics ();
+    final HCConversionSettings aCS2 = aCS.getClone ().setRenderListener (aMetrics2);
+    final NonBlockingStringWriter aSW = new NonBlockingStringWriter ();
+    new HCDiv ().addChild (new HCSpan ().addChild ("y")).addChild (new HCSpan ().addChild ("z")).writeTo (aSW, aCS2);
+    assertEquals (aSW.getAsString ().length (), aMetrics2.getSerializedCharCount ());
+    assertEquals (2, aMetrics2.getCreatedElementCount (EHTMLElement.SPAN));
+    assertEquals (1, aMetrics2.getRenderingCount ());
+    assertEquals (1, aMetrics2.getSerializationStatistics ().getInvocationCount ());
+  }
+
+  @Test
+  public void testSampling ()
+  {
+    final HCRenderMetrics aMetrics = new HCRenderMetrics (2);
+    assertEquals (2, aMetrics.getSampleRate ());
+    final HCFrozenConversionSettings aCS = new HCConversionSettings (EHTMLVersion.XHTML11).setConsistencyChecksEnabled (false)
+                                                                                          .setRenderListener (aMetrics)
+                                                                                          .getFrozen ();
+    assertSame (aMetrics, aCS.getRenderListener ());
+    assertSame (aMetrics, HCSettings.getRenderListener (aCS));
+    for (int i = 0; i < 4; ++i)
+      new HCSpan ().addChild ("x").getAsHTMLString (aCS);
+
+    assertEquals (4, aMetrics.getRenderingCount ());
+    assertEquals (2, aMetrics.getSampledRenderingCount ());
+    assertEquals (2, aMetrics.getCreatedElementCount (EHTMLElement.SPAN));
+    assertEquals (2, aMetrics.getAllConvertToNodeStatistics ().get (HCSpan.class).getInvocationCount ());
+  }
+
+  @Test
+  public void testDisabled ()
+  {
+    final HCConversionSettings aCS = new HCConversionSettings (EHTMLVersion.XHTML11);
+    assertNull (aCS.getRenderListener ());
+    assertNull (aCS.getFrozen ().getRenderListener ());
+    assertNull (HCSettings.getRenderListener (aCS));
+    assertEquals ("<span xmlns=\"http://www.w3.org/1999/xhtml\">x</span>", new HCSpan ().addChild ("x").getAsHTMLString (aCS));
+  }
+}
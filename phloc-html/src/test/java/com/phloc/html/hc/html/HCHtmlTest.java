@@ -18,11 +18,18 @@
 package com.phloc.html.hc.html;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
 import com.phloc.html.hc.conversion.HCSettings;
 import com.phloc.html.hc.conversion.IHCConversionSettings;
+import com.phloc.html.hc.impl.HCFlushPoint;
 import com.phloc.html.js.provider.UnparsedJSCodeProvider;
 import com.phloc.html.meta.MetaElement;
 
@@ -92,4 +99,40 @@ public final class HCHtmlTest
                       "</html>",
                   aHtml.getAsHTMLString (aCS));
   }
+
+  @Test
+  public void testProgressiveRendering () throws IOException
+  {
+    final IHCConversionSettings aCS = HCSettings.getConversionSettings (false);
+    final HCHtml aHtml = new HCHtml ().setProgressiveRendering (true);
+    aHtml.getBody ().addChild (new HCH1 ().addChild ("Test"));
+    aHtml.getBody ().addChild (new HCFlushPoint ());
+    aHtml.getBody ().addChild (new HCDiv ().addChild ("Rest"));
+    aHtml.getBody ().addChild (new HCStyle ("h1{color:red;}"));
+
+    final List <String> aFlushed = new ArrayList <String> ();
+    final StringWriter aSW = new StringWriter ()
+    {
+      @Override
+      public void flush ()
+      {
+        aFlushed.add (toString ());
+      }
+    };
+    HCSettings.writeHTML (aHtml, aSW, aCS);
+
+    final String sExpected = "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.1//EN\" \"http://www.w3.org/TR/xhtml11/DTD/xhtml11.dtd\">"
+                             + "<html dir=\"ltr\" xmlns=\"http://www.w3.org/1999/xhtml\">"
+                             + "<head><style type=\"text/css\">h1{color:red;}</style></head>"
+                             + "<body><h1>Test</h1><div>Rest</div></body>"
+                             + "</html>";
+    assertEquals (sExpected, aSW.toString ());
+    // Regular conversion ignores the flush points
+    assertEquals (sExpected, aHtml.getAsHTMLString (aCS));
+
+    // Flushed after the head and after the h1
+    assertEquals (2, aFlushed.size ());
+    assertTrue (aFlushed.get (0).endsWith ("</head>"));
+    assertTrue (aFlushed.get (1).endsWith ("</h1>"));
+  }
 }
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.html;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.phloc.commons.collections.ContainerHelper;
+import com.phloc.html.hc.conversion.HCSettings;
+
+/**
+ * Test class for class {@link HCSelect}
+ * 
+ * @author Philip Helger
+ */
+public final class HCSelectTest
+{
+  @Test
+  public void testCompactOptions ()
+  {
+    final HCSelect aRegular = new HCSelect ("x", ContainerHelper.newSet ("v2"));
+    final HCSelect aCompact = new HCSelect ("x", ContainerHelper.newSet ("v2"));
+    final Map <String, String> aMap = new LinkedHashMap <String, String> ();
+    for (int i = 0; i < 100; ++i)
+    {
+      aRegular.addOption ("v" + i, "Text <" + i + ">");
+      aMap.put ("v" + i, "Text <" + i + ">");
+    }
+    aRegular.addOption (null, "no value", true);
+    aCompact.addCompactOptions (aMap);
+    aCompact.addCompactOption (null, "no value", true);
+
+    // Same output
+    assertEquals (HCSettings.getAsHTMLString (aRegular, false), HCSettings.getAsHTMLString (aCompact, false));
+    assertEquals (101, aCompact.getOptionCount ());
+    assertTrue (aCompact.hasOptions ());
+    assertTrue (aCompact.hasSelectedOption ());
+    assertEquals (2, aCompact.getSelectedOptionCount ());
+    assertEquals ("v2", aCompact.getSelectedOptions ().get (0).getValue ());
+
+    // Materialize and modify an option
+    final HCOption aOption = aCompact.getOptionAtIndex (2);
+    assertNotNull (aOption);
+    assertTrue (aOption.isSelected ());
+    assertEquals ("Text <2>", aOption.getPlainText ());
+    aOption.setSelected (false);
+    assertEquals (1, aCompact.getSelectedOptionCount ());
+    aRegular.getOptionAtIndex (2).setSelected (false);
+    assertEquals (HCSettings.getAsHTMLString (aRegular, false), HCSettings.getAsHTMLString (aCompact, false));
+
+    // Remove options
+    aCompact.removeOptionAtIndex (0);
+    aRegular.removeOptionAtIndex (0);
+    assertEquals (100, aCompact.getOptionCount ());
+    assertEquals ("v1", aCompact.getOptionAtIndex (0).getValue ());
+    assertEquals (HCSettings.getAsHTMLString (aRegular, false), HCSettings.getAsHTMLString (aCompact, false));
+    assertNull (aCompact.getOptionAtIndex (100));
+
+    aCompact.removeAllOptions ();
+    assertEquals (0, aCompact.getOptionCount ());
+    assertFalse (aCompact.hasOptions ());
+    assertFalse (aCompact.hasSelectedOption ());
+  }
+
+  @Test
+  public void testMixedOptions ()
+  {
+    final HCSelect aSelect = new HCSelect ("x");
+    aSelect.addOption ("a", "A");
+    aSelect.addCompactOption ("b", "B");
+    aSelect.addCompactOption ("c", "C");
+    aSelect.addOption ("d", "D");
+    aSelect.addCompactOption ("e", "E");
+    assertEquals (5, aSelect.getOptionCount ());
+    assertEquals (5, aSelect.getOptions ().size ());
+    assertEquals ("c", aSelect.getOptionAtIndex (2).getValue ());
+    assertEquals ("d", aSelect.getOptionAtIndex (3).getValue ());
+    assertEquals ("e", aSelect.getOptionAtIndex (4).getValue ());
+    assertEquals ("<select name=\"x\" xmlns=\"http://www.w3.org/1999/xhtml\">"
+                      + "<option value=\"a\">A</option>"
+                      + "<option value=\"b\">B</option>"
+                      + "<option value=\"c\">C</option>"
+                      + "<option value=\"d\">D</option>"
+                      + "<option value=\"e\">E</option>"
+                      + "</select>",
+                  HCSettings.getAsHTMLString (aSelect, false));
+  }
+}
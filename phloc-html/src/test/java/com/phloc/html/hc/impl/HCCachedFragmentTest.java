@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.phloc.commons.state.EChange;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.IHCNodeBuilder;
+import com.phloc.html.hc.conversion.HCSettings;
+import com.phloc.html.hc.conversion.IHCConversionSettings;
+import com.phloc.html.hc.html.HCDiv;
+import com.phloc.html.hc.html.HCH1;
+import com.phloc.html.hc.html.HCHtml;
+import com.phloc.html.hc.html.HCStyle;
+
+/**
+ * Test class for class {@link HCCachedFragment} and {@link HCFragmentCache}.
+ *
+ * @author Philip Helger
+ */
+public final class HCCachedFragmentTest
+{
+  private static final class MockBuilder implements IHCNodeBuilder
+  {
+    private final boolean m_bWithStyle;
+    private final AtomicInteger m_aCount = new AtomicInteger ();
+
+    MockBuilder (final boolean bWithStyle)
+    {
+      m_bWithStyle = bWithStyle;
+    }
+
+    public IHCNode build ()
+    {
+      m_aCount.incrementAndGet ();
+      final HCNodeList ret = new HCNodeList ().addChild (new HCDiv ().addChild ("cached"));
+      if (m_bWithStyle)
+        ret.addChild (new HCStyle ("h1{color:red;}"));
+      return ret;
+    }
+  }
+
+  @Test
+  public void testCaching ()
+  {
+    final IHCConversionSettings aCS = HCSettings.getConversionSettings (false);
+    final HCFragmentCache aCache = new HCFragmentCache (10, 10000);
+    final MockBuilder aBuilder = new MockBuilder (false);
+
+    final HCCachedFragment aFragment = new HCCachedFragment (aBuilder, "nav", 1, aCache);
+    assertNull (aFragment.getCachedMarkup ());
+    assertEquals ("<div>cached</div>", HCSettings.getAsHTMLString (aFragment, false));
+    assertEquals ("<div>cached</div>", aFragment.getCachedMarkup ());
+    assertEquals (1, aBuilder.m_aCount.get ());
+    assertEquals (0, aCache.getHitCount ());
+    assertEquals (1, aCache.getMissCount ());
+
+    // Same key and version - no rebuild
+    for (int i = 0; i < 5; ++i)
+      assertEquals ("<div>cached</div>", new HCCachedFragment (aBuilder, "nav", 1, aCache).getAsHTMLString (aCS));
+    assertEquals (1, aBuilder.m_aCount.get ());
+    assertEquals (5, aCache.getHitCount ());
+    assertEquals (1, aCache.getEntryCount ());
+
+    // New version
+    new HCCachedFragment (aBuilder, "nav", 2, aCache).getAsHTMLString (aCS);
+    assertEquals (2, aBuilder.m_aCount.get ());
+    assertEquals (2, aCache.getEntryCount ());
+
+    // Different settings
+    new HCCachedFragment (aBuilder, "nav", 2, aCache).getAsHTMLString (HCSettings.getConversionSettings (true));
+    assertEquals (3, aBuilder.m_aCount.get ());
+    assertEquals (3, aCache.getEntryCount ());
+
+    assertEquals (EChange.CHANGED, aCache.removeCacheKey ("nav"));
+    assertEquals (0, aCache.getEntryCount ());
+    assertEquals (0, aCache.getCachedCharCount ());
+    assertEquals (EChange.UNCHANGED, aCache.clearCache ());
+  }
+
+  @Test
+  public void testOutOfBandNodes ()
+  {
+    final IHCConversionSettings aCS = HCSettings.getConversionSettings (false);
+    final HCFragmentCache aCache = new HCFragmentCache (10, 10000);
+    final MockBuilder aBuilder = new MockBuilder (true);
+
+    for (int i = 0; i < 3; ++i)
+    {
+      final HCHtml aHtml = new HCHtml ();
+      aHtml.getBody ().addChild (new HCH1 ().addChild ("Test"));
+      aHtml.getBody ().addChild (new HCCachedFragment (aBuilder, "footer", 1, aCache));
+      assertEquals ("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.1//EN\" \"http://www.w3.org/TR/xhtml11/DTD/xhtml11.dtd\">"
+                        + "<html dir=\"ltr\" xmlns=\"http://www.w3.org/1999/xhtml\">"
+                        + "<head><style type=\"text/css\">h1{color:red;}</style></head>"
+                        + "<body><h1>Test</h1><div>cached</div></body>"
+                        + "</html>",
+                    aHtml.getAsHTMLString (aCS));
+    }
+    assertEquals (1, aBuilder.m_aCount.get ());
+    assertEquals (2, aCache.getHitCount ());
+
+    // Every usage gets its own out-of-band nodes
+    final HCCachedFragment aFragment1 = new HCCachedFragment (aBuilder, "footer", 1, aCache);
+    aFragment1.beforeConvertToNode (aCS);
+    final HCCachedFragment aFragment2 = new HCCachedFragment (aBuilder, "footer", 1, aCache);
+    aFragment2.beforeConvertToNode (aCS);
+    assertTrue (aFragment1.getFirstChild () instanceof HCStyle);
+    assertTrue (aFragment2.getFirstChild () instanceof HCStyle);
+    assertNotSame (aFragment1.getFirstChild (), aFragment2.getFirstChild ());
+    assertEquals (1, aBuilder.m_aCount.get ());
+  }
+
+  @Test
+  public void testEviction ()
+  {
+    final IHCConversionSettings aCS = HCSettings.getConversionSettings (false);
+    final HCFragmentCache aCache = new HCFragmentCache (2, 10000);
+    final MockBuilder aBuilder = new MockBuilder (false);
+    new HCCachedFragment (aBuilder, "a", 1, aCache).getAsHTMLString (aCS);
+    new HCCachedFragment (aBuilder, "b", 1, aCache).getAsHTMLString (aCS);
+    // Access "a" so that "b" is the least recently used
+    new HCCachedFragment (aBuilder, "a", 1, aCache).getAsHTMLString (aCS);
+    new HCCachedFragment (aBuilder, "c", 1, aCache).getAsHTMLString (aCS);
+    assertEquals (2, aCache.getEntryCount ());
+    assertEquals (1, aCache.getEvictionCount ());
+    assertEquals ("[a, c]", aCache.getAllCacheKeys ().toString ());
+
+    // Limit by size
+    final HCFragmentCache aSmallCache = new HCFragmentCache (100, 20);
+    new HCCachedFragment (aBuilder, "a", 1, aSmallCache).getAsHTMLString (aCS);
+    new HCCachedFragment (aBuilder, "b", 1, aSmallCache).getAsHTMLString (aCS);
+    assertEquals (1, aSmallCache.getEntryCount ());
+    assertEquals (17, aSmallCache.getCachedCharCount ());
+  }
+}
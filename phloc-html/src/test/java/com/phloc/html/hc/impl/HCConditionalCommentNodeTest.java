@@ -19,15 +19,22 @@ package com.phloc.html.hc.impl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
 
 import org.junit.Test;
 
 import com.phloc.commons.GlobalDebug;
+import com.phloc.commons.string.StringHelper;
 import com.phloc.commons.xml.serialize.EXMLSerializeIndent;
 import com.phloc.commons.xml.serialize.IXMLWriterSettings;
 import com.phloc.html.hc.conversion.HCConversionSettings;
 import com.phloc.html.hc.conversion.HCSettings;
 import com.phloc.html.hc.html.HCB;
+import com.phloc.html.hc.html.HCHead;
+import com.phloc.html.hc.html.HCScriptFile;
 
 /**
  * Test class for class {@link HCConditionalCommentNode}
@@ -76,4 +83,31 @@ public final class HCConditionalCommentNodeTest
     HCSettings.getConversionSettingsProvider ()
               .setXMLWriterSettings (HCConversionSettings.createDefaultXMLWriterSettings ());
   }
+
+  @Test
+  public void testStreamingAndMerging () throws IOException
+  {
+    final HCHead aHead = new HCHead ();
+    aHead.addJS (HCConditionalCommentNode.createForIELowerThanVersion9 (HCScriptFile.create ("a.js")));
+    aHead.addJS (HCConditionalCommentNode.createForIELowerThanVersion9 (HCScriptFile.create ("b.js")));
+    aHead.addJS (HCConditionalCommentNode.createForIE (HCScriptFile.create ("c.js")));
+
+    for (final boolean bPrettyPrint : new boolean [] { false, true })
+    {
+      // The streaming serializer writes the markers directly
+      final String sExpected = HCSettings.getAsHTMLString (aHead, bPrettyPrint);
+      final StringWriter aSW = new StringWriter ();
+      HCSettings.writeHTML (aHead, aSW, bPrettyPrint);
+      assertEquals (sExpected, aSW.toString ());
+
+      // Both files for IE < 9 share one conditional comment
+      assertEquals (1, StringHelper.getOccurrenceCount (sExpected, "[if lt IE 9]"));
+      assertEquals (1, StringHelper.getOccurrenceCount (sExpected, "[if IE]"));
+      assertEquals (2, StringHelper.getOccurrenceCount (sExpected, HCConditionalCommentNode.CONDITIONAL_END));
+      assertTrue (sExpected.indexOf ("a.js") < sExpected.indexOf ("b.js"));
+    }
+
+    // The source nodes are not modified
+    assertEquals (3, aHead.getJSCount ());
+  }
 }
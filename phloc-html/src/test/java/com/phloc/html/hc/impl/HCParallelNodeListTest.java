@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.hc.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.phloc.commons.io.streams.NonBlockingStringWriter;
+import com.phloc.html.EHTMLElement;
+import com.phloc.html.hc.conversion.HCConversionSettings;
+import com.phloc.html.hc.conversion.HCRenderMetrics;
+import com.phloc.html.hc.conversion.HCSettings;
+import com.phloc.html.hc.html.HCDiv;
+import com.phloc.html.hc.html.HCHtml;
+import com.phloc.html.hc.html.HCRow;
+import com.phloc.html.hc.html.HCStyle;
+import com.phloc.html.hc.html.HCTable;
+
+/**
+ * Test class for class {@link HCParallelNodeList}.
+ * 
+ * @author Philip Helger
+ */
+public final class HCParallelNodeListTest
+{
+  @Nonnull
+  private static <T extends AbstractHCNodeList <T>> T _fill (@Nonnull final T aList, final boolean bNested)
+  {
+    for (int i = 0; i < 10; ++i)
+    {
+      final HCDiv aWidget = new HCDiv ().setID ("widget" + i);
+      final HCTable aTable = aWidget.addAndReturnChild (new HCTable ());
+      for (int nRow = 0; nRow < 20; ++nRow)
+      {
+        final HCRow aRow = aTable.addBodyRow ();
+        aRow.addCell ("Cell " + i + "/" + nRow);
+        aRow.addCell ("a & b");
+      }
+      aWidget.addChild (new HCStyle ("#widget" + i + "{color:red;}"));
+      if (bNested && i == 5)
+        aWidget.addChild (_fill (new HCParallelNodeList (), false));
+      aList.addChild (aWidget);
+    }
+    return aList;
+  }
+
+  @Nonnull
+  private static HCHtml _createHtml (@Nonnull final AbstractHCNodeList <?> aList)
+  {
+    final HCHtml aHtml = new HCHtml ();
+    aHtml.getBody ().addChild (aList);
+    return aHtml;
+  }
+
+  @Nonnull
+  private static String _write (@Nonnull final HCHtml aHtml, @Nonnull final HCConversionSettings aCS) throws IOException
+  {
+    final NonBlockingStringWriter aSW = new NonBlockingStringWriter ();
+    aHtml.writeTo (aSW, aCS);
+    return aSW.getAsString ();
+  }
+
+  @Test
+  public void testIdenticalOutput () throws IOException
+  {
+    final ExecutorService aES = Executors.newFixedThreadPool (4);
+    try
+    {
+      for (final boolean bPrettyPrint : new boolean [] { true, false })
+      {
+        final HCConversionSettings aCS = new HCConversionSettings (HCSettings.getConversionSettings (bPrettyPrint));
+        final HCConversionSettings aCSParallel = aCS.getClone ().setParallelConversionExecutor (aES);
+
+        // Without executor
+        assertEquals (HCSettings.getAsHTMLString (_fill (new HCNodeList (), true), aCS),
+                      HCSettings.getAsHTMLString (_fill (new HCParallelNodeList (), true), aCS));
+
+        // Standalone
+        final String sExpected = HCSettings.getAsHTMLString (_fill (new HCNodeList (), true), aCS);
+        assertEquals (sExpected, HCSettings.getAsHTMLString (_fill (new HCParallelNodeList (), true), aCSParallel));
+
+        // Within a document incl. out-of-band nodes
+        final String sExpectedHtml = _createHtml (_fill (new HCNodeList (), true)).getAsHTMLString (aCS);
+        assertTrue (sExpectedHtml.contains ("#widget9{color:red;}"));
+        assertEquals (sExpectedHtml, _createHtml (_fill (new HCParallelNodeList (), true)).getAsHTMLString (aCSParallel));
+
+        // Streaming
+        assertEquals (_write (_createHtml (_fill (new HCNodeList (), true)), aCS),
+                      _write (_createHtml (_fill (new HCParallelNodeList (), true)), aCSParallel));
+      }
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+
+  @Test
+  public void testSingleThreadNested ()
+  {
+    // Nested parallel lists on a single thread must not dead lock
+    final ExecutorService aES = Executors.newSingleThreadExecutor ();
+    try
+    {
+      final HCConversionSettings aCS = new HCConversionSettings (HCSettings.getConversionSettings (false));
+      final String sExpected = HCSettings.getAsHTMLString (_fill (new HCNodeList (), true), aCS);
+      aCS.setParallelConversionExecutor (aES);
+      for (int i = 0; i < 5; ++i)
+        assertEquals (sExpected, HCSettings.getAsHTMLString (_fill (new HCParallelNodeList (), true), aCS));
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+
+  @Test
+  public void testRenderMetrics ()
+  {
+    final ExecutorService aES = Executors.newFixedThreadPool (4);
+    try
+    {
+      final HCRenderMetrics aMetrics = new HCRenderMetrics ();
+      final HCConversionSettings aCS = new HCConversionSettings (HCSettings.getConversionSettings (false)).setRenderListener (aMetrics)
+                                                                                                          .setParallelConversionExecutor (aES);
+      final HCHtml aHtml = _createHtml (_fill (new HCParallelNodeList (), true));
+      final String sHTML = aHtml.getAsHTMLString (aCS);
+
+      // Exactly one top-level rendering, also if children were converted in
+      // other threads
+      assertEquals (1, aMetrics.getRenderingCount ());
+      assertEquals (sHTML.length (), aMetrics.getSerializedCharCount ());
+      assertEquals (1, aMetrics.getCreatedElementCount (EHTMLElement.BODY));
+      assertNotNull (aMetrics.getAllConvertToNodeStatistics ().get (HCParallelNodeList.class));
+      assertEquals (1, aMetrics.getAllConvertToNodeStatistics ().get (HCParallelNodeList.class).getInvocationCount ());
+
+      // The children are not reported separately
+      assertEquals (0, aMetrics.getCreatedElementCount (EHTMLElement.TABLE));
+      assertNull (aMetrics.getAllConvertToNodeStatistics ().get (HCTable.class));
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.js;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.phloc.html.js.builder.JSBlock;
+import com.phloc.html.js.builder.JSExpr;
+import com.phloc.html.js.builder.JSPackage;
+import com.phloc.html.js.builder.JSPrinter;
+import com.phloc.html.js.builder.JSWriterSettings;
+import com.phloc.html.js.builder.jquery.JQuery;
+import com.phloc.html.js.provider.CollectingJSCodeProvider;
+import com.phloc.html.js.provider.UnparsedJSCodeProvider;
+
+/**
+ * Test class for class {@link JSCodeHelper}.
+ *
+ * @author Philip Helger
+ */
+public final class JSCodeHelperTest
+{
+  private static void _testSameAsGetJSCode (final IJSCodeProvider aProvider)
+  {
+    final StringBuilder aSB = new StringBuilder ();
+    JSCodeHelper.appendJSCode (aSB, aProvider, JSPrinter.getSettings ());
+    assertEquals (aProvider.getJSCode (), aSB.toString ());
+  }
+
+  private static JSPackage _createPackage ()
+  {
+    final JSPackage aPkg = new JSPackage ();
+    aPkg.var ("a", 5);
+    aPkg.invoke ("alert").arg (JSExpr.ref ("a"));
+    aPkg.add (new UnparsedJSCodeProvider ("b=c;"));
+    final JSBlock aBlock = aPkg._if (JSExpr.ref ("a").gt (3))._then ();
+    aBlock.comment ("Comment");
+    aBlock.add (JQuery.idRef ("id").hide ());
+    return aPkg;
+  }
+
+  @Test
+  public void testWriteJSCode ()
+  {
+    _testSameAsGetJSCode (new UnparsedJSCodeProvider ("var x=1;"));
+    _testSameAsGetJSCode (JSExpr.lit (5).plus (JSExpr.ref ("x")));
+    _testSameAsGetJSCode (JQuery.idRef ("id").hide ());
+    _testSameAsGetJSCode (_createPackage ());
+    _testSameAsGetJSCode (new CollectingJSCodeProvider (_createPackage (),
+                                                        new UnparsedJSCodeProvider ("x();"),
+                                                        JQuery.onDocumentReady (_createPackage ())));
+
+    JSPrinter.setMinimumCodeSize (false);
+    try
+    {
+      _testSameAsGetJSCode (_createPackage ());
+      _testSameAsGetJSCode (JQuery.onDocumentReady (_createPackage ()));
+    }
+    finally
+    {
+      JSPrinter.setToDefault ();
+    }
+  }
+
+  @Test
+  public void testExplicitSettings ()
+  {
+    final JSPackage aPkg = _createPackage ();
+    final StringBuilder aSB = new StringBuilder ();
+    JSCodeHelper.appendJSCode (aSB, aPkg, JSWriterSettings.MINIMUM_CODE_SIZE);
+    assertEquals (JSPrinter.getAsString (aPkg, JSWriterSettings.MINIMUM_CODE_SIZE), aSB.toString ());
+    assertTrue (aSB.toString ().startsWith ("var a=5;alert(a);b=c;"));
+    assertFalse (aSB.toString ().contains ("Comment"));
+
+    // Nothing is written for null providers
+    aSB.setLength (0);
+    JSCodeHelper.appendJSCode (aSB, null, JSWriterSettings.MINIMUM_CODE_SIZE);
+    assertEquals ("", aSB.toString ());
+  }
+}
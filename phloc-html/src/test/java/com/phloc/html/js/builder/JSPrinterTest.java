@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.js.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.phloc.commons.mock.PhlocTestUtils;
+
+/**
+ * Test class for class {@link JSPrinter} and {@link JSWriterSettings}.
+ *
+ * @author Philip Helger
+ */
+public final class JSPrinterTest
+{
+  @Test
+  public void testSettings ()
+  {
+    final JSWriterSettings aSettings = JSWriterSettings.DEFAULT_SETTINGS;
+    assertFalse (aSettings.isIndentAndAlign ());
+    assertFalse (aSettings.isGenerateTypeNames ());
+    assertTrue (aSettings.isGenerateComments ());
+    assertSame (aSettings, aSettings.getWithIndentAndAlign (false));
+    assertTrue (aSettings.getWithIndentAndAlign (true).isIndentAndAlign ());
+    assertFalse (aSettings.getWithIndentAndAlign (true).isGenerateTypeNames ());
+
+    PhlocTestUtils.testDefaultImplementationWithEqualContentObject (aSettings,
+                                                                    new JSWriterSettings (JSWriterSettings.DEFAULT_INDENT_AND_ALIGN,
+                                                                                          JSWriterSettings.DEFAULT_GENERATE_TYPE_NAMES,
+                                                                                          JSWriterSettings.DEFAULT_GENERATE_COMMENTS));
+    PhlocTestUtils.testDefaultImplementationWithDifferentContentObject (aSettings,
+                                                                        JSWriterSettings.MINIMUM_CODE_SIZE);
+    PhlocTestUtils.testDefaultImplementationWithDifferentContentObject (aSettings,
+                                                                        aSettings.getWithGenerateComments (false));
+  }
+
+  @Test
+  public void testExplicitSettings ()
+  {
+    final JSBlock aBlock = new JSBlock ();
+    aBlock.comment ("Comment");
+    aBlock.var ("a", 5);
+
+    final JSWriterSettings aReadable = JSWriterSettings.createForMinimumCodeSize (false);
+    assertEquals ("{var a=5;}", JSPrinter.getAsString ((IJSGeneratable) aBlock, JSWriterSettings.MINIMUM_CODE_SIZE));
+    final String sReadable = JSPrinter.getAsString ((IJSGeneratable) aBlock, aReadable);
+    assertTrue (sReadable, sReadable.indexOf ('\n') > 0);
+    assertTrue (sReadable, sReadable.contains ("Comment"));
+
+    // Explicit settings do not change the global settings
+    assertSame (JSWriterSettings.DEFAULT_SETTINGS, JSPrinter.getSettings ());
+
+    JSPrinter.setMinimumCodeSize (false);
+    try
+    {
+      assertEquals (aReadable, JSPrinter.getSettings ());
+      assertEquals (sReadable, aBlock.getJSCode ());
+    }
+    finally
+    {
+      JSPrinter.setToDefault ();
+    }
+  }
+
+  @Test
+  public void testNested ()
+  {
+    // A package inside a block is emitted via a nested getJSCode call, that
+    // must use a different buffer
+    final JSPackage aInner = new JSPackage ();
+    aInner.var ("x", 1);
+    final JSBlock aBlock = new JSBlock ();
+    aBlock.var ("a", 5);
+    aBlock.add (aInner);
+    aBlock.var ("b", 6);
+    assertEquals ("{var a=5;var x=1;var b=6;}",
+                  JSPrinter.getAsString ((IJSGeneratable) aBlock, JSWriterSettings.MINIMUM_CODE_SIZE));
+
+    // Buffers are reused afterwards
+    assertEquals ("{var a=5;var x=1;var b=6;}",
+                  JSPrinter.getAsString ((IJSGeneratable) aBlock, JSWriterSettings.MINIMUM_CODE_SIZE));
+  }
+
+  @Test
+  public void testStreamingIsTrimmed () throws IOException
+  {
+    final JSWriterSettings aReadable = JSWriterSettings.createForMinimumCodeSize (false);
+    final JSPackage aPkg = new JSPackage ();
+    aPkg.comment ("Comment");
+    aPkg.var ("a", 5);
+    final JSBlock aBlock = aPkg._if (JSExpr.ref ("a").gt (3))._then ();
+    aBlock.invoke ("alert").arg (JSExpr.ref ("a"));
+
+    for (final JSWriterSettings aSettings : new JSWriterSettings [] { aReadable, JSWriterSettings.MINIMUM_CODE_SIZE })
+    {
+      final StringBuilder aSB = new StringBuilder ();
+      JSPrinter.writePackage (aPkg, aSB, aSettings);
+      assertEquals (JSPrinter.getAsString (aPkg, aSettings), aSB.toString ());
+      assertEquals (aSB.toString ().trim (), aSB.toString ());
+
+      aSB.setLength (0);
+      JSPrinter.writeGeneratable (aBlock, aSB, aSettings);
+      assertEquals (JSPrinter.getAsString ((IJSGeneratable) aBlock, aSettings), aSB.toString ());
+      assertEquals (aSB.toString ().trim (), aSB.toString ());
+    }
+
+    // Whitespaces inside the code are kept
+    final StringBuilder aSB = new StringBuilder ();
+    JSPrinter.writePackage (aPkg, aSB, aReadable);
+    assertTrue (aSB.toString ().indexOf ('\n') > 0);
+  }
+
+  @Test
+  public void testFormatterOnAppendable () throws IOException
+  {
+    final StringBuilder aSB = new StringBuilder ();
+    new JSFormatter (aSB, JSWriterSettings.MINIMUM_CODE_SIZE).plain ("a").nl ().plain ('b');
+    assertEquals ("ab", aSB.toString ());
+
+    aSB.setLength (0);
+    new JSFormatter (aSB, JSWriterSettings.createForMinimumCodeSize (false)).plain ("a").nl ().plain ('b');
+    assertEquals ("a\nb", aSB.toString ());
+
+    // Trailing new lines are written upon flush
+    aSB.setLength (0);
+    final JSFormatter aFormatter = new JSFormatter (aSB, JSWriterSettings.createForMinimumCodeSize (false));
+    aFormatter.plain ("a").nl ();
+    assertEquals ("a", aSB.toString ());
+    aFormatter.flush ();
+    assertEquals ("a\n", aSB.toString ());
+  }
+
+  @Test
+  public void testFormatterException ()
+  {
+    final IOException aEx = new IOException ("Disk full");
+    final Appendable aFailing = new Appendable ()
+    {
+      public Appendable append (final CharSequence aCS, final int nStart, final int nEnd) throws IOException
+      {
+        throw aEx;
+      }
+
+      public Appendable append (final char c) throws IOException
+      {
+        throw aEx;
+      }
+
+      public Appendable append (final CharSequence aCS) throws IOException
+      {
+        throw aEx;
+      }
+    };
+    final JSFormatter aFormatter = new JSFormatter (aFailing, JSWriterSettings.MINIMUM_CODE_SIZE);
+    // Writing itself does not throw
+    aFormatter.plain ("a").plain ('b');
+    try
+    {
+      aFormatter.flush ();
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      assertSame (aEx, ex);
+    }
+
+    try
+    {
+      JSPrinter.writeGeneratable (JSExpr.lit (5), aFailing, JSWriterSettings.MINIMUM_CODE_SIZE);
+      fail ();
+    }
+    catch (final IOException ex)
+    {
+      assertSame (aEx, ex);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.js.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.phloc.commons.mock.PhlocTestUtils;
+import com.phloc.html.js.builder.IJSStatement;
+import com.phloc.html.js.builder.JSExpr;
+import com.phloc.html.js.builder.JSInvocation;
+import com.phloc.html.js.builder.JSPackage;
+import com.phloc.html.js.builder.JSPrinter;
+import com.phloc.html.js.builder.JSWriterSettings;
+
+/**
+ * Test class for class {@link SealedJSCodeProvider}.
+ *
+ * @author Philip Helger
+ */
+public final class SealedJSCodeProviderTest
+{
+  private static JSPackage _createPackage ()
+  {
+    final JSPackage aPkg = new JSPackage ();
+    aPkg.comment ("Comment");
+    aPkg.var ("a", JSExpr.lit ("it's"));
+    aPkg.invoke ("alert").arg (JSExpr.ref ("a"));
+    return aPkg;
+  }
+
+  @Test
+  public void testBasic ()
+  {
+    final JSInvocation aBlur = JSExpr.invoke ("blur");
+    final SealedJSCodeProvider aSealed = JSExpr.seal (aBlur);
+    assertSame (aBlur, aSealed.getSealedProvider ());
+    assertSame (aSealed, JSExpr.seal (aSealed));
+    assertEquals (aBlur.getJSCode (), aSealed.getJSCode ());
+    assertEquals (JSPrinter.getAsString ((IJSStatement) aBlur, SealedJSCodeProvider.CANONICAL_SETTINGS),
+                  aSealed.getCanonicalJSCode ());
+    // The canonical and the default code
+    assertEquals (2, aSealed.getCachedCodeCount ());
+
+    // Served from the cache
+    assertSame (aSealed.getJSCode (), aSealed.getJSCode ());
+    assertEquals (2, aSealed.getCachedCodeCount ());
+
+    PhlocTestUtils.testDefaultImplementationWithEqualContentObject (aSealed, JSExpr.seal (JSExpr.invoke ("blur")));
+    PhlocTestUtils.testDefaultImplementationWithDifferentContentObject (aSealed, JSExpr.seal (JSExpr.invoke ("focus")));
+  }
+
+  @Test
+  public void testSettings ()
+  {
+    final JSPackage aPkg = _createPackage ();
+    final SealedJSCodeProvider aSealed = JSExpr.seal (aPkg);
+
+    final JSWriterSettings aReadable = JSWriterSettings.createForMinimumCodeSize (false);
+    assertEquals (aPkg.getJSCode (), aSealed.getJSCode ());
+    assertEquals (JSPrinter.getAsString (aPkg, JSWriterSettings.MINIMUM_CODE_SIZE),
+                  aSealed.getJSCode (JSWriterSettings.MINIMUM_CODE_SIZE));
+    assertEquals (JSPrinter.getAsString (aPkg, aReadable), aSealed.getJSCode (aReadable));
+    assertEquals (3, aSealed.getCachedCodeCount ());
+
+    // Identical trees emit identical code
+    PhlocTestUtils.testDefaultImplementationWithEqualContentObject (aSealed, JSExpr.seal (_createPackage ()));
+  }
+
+  @Test
+  public void testInterned ()
+  {
+    final SealedJSCodeProvider aSealed = SealedJSCodeProvider.createInterned (_createPackage ());
+    assertSame (aSealed, SealedJSCodeProvider.createInterned (_createPackage ()));
+    assertSame (aSealed, SealedJSCodeProvider.createInterned (aSealed));
+    assertNotSame (aSealed, SealedJSCodeProvider.create (_createPackage ()));
+
+    final int nOldMax = SealedJSCodeProvider.getMaxInternedCount ();
+    SealedJSCodeProvider.setMaxInternedCount (0);
+    try
+    {
+      // Still equal, but no longer shared
+      final JSInvocation aFocus = JSExpr.invoke ("focus");
+      final SealedJSCodeProvider aSealed1 = SealedJSCodeProvider.createInterned (aFocus);
+      final SealedJSCodeProvider aSealed2 = SealedJSCodeProvider.createInterned (aFocus);
+      assertEquals (aSealed1, aSealed2);
+      assertNotSame (aSealed1, aSealed2);
+    }
+    finally
+    {
+      SealedJSCodeProvider.setMaxInternedCount (nOldMax);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.markdown;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.phloc.html.hc.IHCHasChildren;
+import com.phloc.html.hc.IHCNode;
+import com.phloc.html.hc.conversion.HCSettings;
+import com.phloc.html.hc.html.HCP;
+import com.phloc.html.hc.html.HCStrong;
+import com.phloc.html.hc.impl.HCNodeList;
+import com.phloc.html.hc.impl.HCTextNode;
+
+/**
+ * Test class for class {@link HCStack}
+ * 
+ * @author Philip Helger
+ */
+public final class HCStackTest
+{
+  private static void _checkNoAdjacentTextNodes (@Nonnull final IHCNode aNode)
+  {
+    if (aNode instanceof IHCHasChildren)
+    {
+      final IHCHasChildren aParent = (IHCHasChildren) aNode;
+      if (aParent.hasChildren ())
+      {
+        IHCNode aPrev = null;
+        for (final IHCNode aChild : aParent.getChildren ())
+        {
+          assertFalse (aPrev instanceof HCTextNode && aChild instanceof HCTextNode);
+          _checkNoAdjacentTextNodes (aChild);
+          aPrev = aChild;
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testTextCoalescing ()
+  {
+    final HCStack aStack = new HCStack ();
+    aStack.append ('a');
+    aStack.append ("bc");
+    aStack.append ((String) null);
+    aStack.append ('d');
+    final HCP aP = new HCP ();
+    aStack.push (aP);
+    aStack.append ('e');
+    aStack.append ('f');
+    aStack.push (new HCStrong ());
+    aStack.append ("g");
+    aStack.pop ();
+    aStack.append ('h');
+    aStack.pop ();
+    aStack.append ('i');
+
+    final HCNodeList aRoot = aStack.getRoot ();
+    assertEquals (3, aRoot.getChildCount ());
+    assertEquals ("abcd", ((HCTextNode) aRoot.getChildAtIndex (0)).getText ());
+    assertEquals ("i", ((HCTextNode) aRoot.getChildAtIndex (2)).getText ());
+    assertEquals (3, aP.getChildCount ());
+    assertEquals ("ef", ((HCTextNode) aP.getChildAtIndex (0)).getText ());
+    assertEquals ("h", ((HCTextNode) aP.getChildAtIndex (2)).getText ());
+    assertEquals ("<p>ef<strong>g</strong>h</p>", HCSettings.getAsHTMLStringWithoutNamespaces (aP, false));
+  }
+
+  @Test
+  public void testReset ()
+  {
+    final HCStack aStack = new HCStack ();
+    aStack.append ("abc");
+    aStack.reset ();
+    assertFalse (aStack.getRoot ().hasChildren ());
+    aStack.append ('x');
+    assertEquals (1, aStack.getRoot ().getChildCount ());
+  }
+
+  @Test
+  public void testProcess () throws IOException
+  {
+    final StringBuilder aSB = new StringBuilder ();
+    for (int i = 0; i < 20; ++i)
+      aSB.append ("Some *text* with <b>html</b> & \\*escapes\\* and `code`\n\n");
+    for (final MarkdownConfiguration aConfig : new MarkdownConfiguration [] { MarkdownConfiguration.DEFAULT,
+                                                                             MarkdownConfiguration.DEFAULT_SAFE })
+    {
+      final MarkdownProcessingResult aResult = new MarkdownProcessor (aConfig).process (aSB.toString ());
+      _checkNoAdjacentTextNodes (aResult.getNodeList ());
+      assertTrue (aResult.getAsHTMLString ().contains ("Some <em>text</em> with "));
+    }
+  }
+}
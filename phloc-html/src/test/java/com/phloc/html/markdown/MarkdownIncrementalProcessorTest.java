@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.markdown;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+/**
+ * Test class for class {@link MarkdownIncrementalProcessor}
+ * 
+ * @author Philip Helger
+ */
+public final class MarkdownIncrementalProcessorTest
+{
+  private static final String DOC = "# Head\n\nPara one with [a link][ref]\n\nPara two\n\n* a\n* b\n\n[ref]: http://www.phloc.com\n";
+
+  @Nonnull
+  private static List <Integer> _list (@Nonnull final int... aInts)
+  {
+    final List <Integer> ret = new ArrayList <Integer> ();
+    for (final int i : aInts)
+      ret.add (Integer.valueOf (i));
+    return ret;
+  }
+
+  @Nonnull
+  private static MarkdownIncrementalResult _process (@Nonnull final MarkdownIncrementalProcessor aIP,
+                                                     @Nonnull final String sText) throws IOException
+  {
+    final MarkdownIncrementalResult aResult = aIP.process (sText);
+    // The output must always be identical to a complete processing
+    final MarkdownProcessingResult aExpected = aIP.getProcessor ().process (sText);
+    assertEquals (aExpected.getAsHTMLString (false), aResult.getAsHTMLString (false));
+    assertEquals (aExpected.getAsHTMLString (true), aResult.getAsHTMLString (true));
+    return aResult;
+  }
+
+  @Test
+  public void testUnchangedAndChangedBlocks () throws IOException
+  {
+    final MarkdownIncrementalProcessor aIP = new MarkdownIncrementalProcessor (new MarkdownProcessor ());
+
+    // Initially everything is rendered
+    MarkdownIncrementalResult aResult = _process (aIP, DOC);
+    assertEquals (4, aResult.getBlockCount ());
+    assertEquals (_list (0, 1, 2, 3), aResult.getAllChangedBlockIndices ());
+    assertTrue (aResult.isCompletelyRendered ());
+
+    // Same document - nothing is rendered
+    aResult = _process (aIP, DOC);
+    assertEquals (4, aResult.getBlockCount ());
+    assertTrue (aResult.getAllChangedBlockIndices ().isEmpty ());
+    assertFalse (aResult.isCompletelyRendered ());
+
+    // Modify a single paragraph
+    aResult = _process (aIP, DOC.replace ("Para two", "Para *two*"));
+    assertEquals (4, aResult.getBlockCount ());
+    assertEquals (_list (2), aResult.getAllChangedBlockIndices ());
+
+    // Reused blocks are copies, so rendering one result does not affect the
+    // next one
+    final MarkdownIncrementalResult aResult2 = _process (aIP, DOC.replace ("Para two", "Para *two*"));
+    assertTrue (aResult2.getAllChangedBlockIndices ().isEmpty ());
+    assertNotSame (aResult.getNodeList ().getFirstChild (), aResult2.getNodeList ().getFirstChild ());
+
+    // Insert a paragraph - the following blocks are not affected
+    aResult = _process (aIP, DOC.replace ("Para two", "Inserted\n\nPara *two*"));
+    assertEquals (5, aResult.getBlockCount ());
+    assertEquals (_list (2), aResult.getAllChangedBlockIndices ());
+
+    // Delete it again
+    aResult = _process (aIP, DOC.replace ("Para two", "Para *two*"));
+    assertEquals (4, aResult.getBlockCount ());
+    assertTrue (aResult.getAllChangedBlockIndices ().isEmpty ());
+  }
+
+  @Test
+  public void testLinkReferenceChange () throws IOException
+  {
+    final MarkdownIncrementalProcessor aIP = new MarkdownIncrementalProcessor (new MarkdownProcessor ());
+    _process (aIP, DOC);
+
+    // A changed link reference affects the whole document
+    MarkdownIncrementalResult aResult = _process (aIP, DOC.replace ("http://www.phloc.com", "http://www.phloc.org"));
+    assertTrue (aResult.getAsHTMLString ().contains ("http://www.phloc.org"));
+    assertTrue (aResult.isCompletelyRendered ());
+
+    aResult = _process (aIP, DOC.replace ("http://www.phloc.com", "http://www.phloc.org"));
+    assertTrue (aResult.getAllChangedBlockIndices ().isEmpty ());
+
+    // Same for the profile switch
+    aResult = _process (aIP, "[$profile$]: extended\n\n" + DOC.replace ("http://www.phloc.com", "http://www.phloc.org"));
+    assertTrue (aResult.isCompletelyRendered ());
+  }
+
+  @Test
+  public void testDuplicateBlocksAndReset () throws IOException
+  {
+    final MarkdownIncrementalProcessor aIP = new MarkdownIncrementalProcessor (new MarkdownProcessor ());
+    final String sDoc = "Same\n\nSame\n\nSame\n";
+    MarkdownIncrementalResult aResult = _process (aIP, sDoc);
+    assertEquals (3, aResult.getBlockCount ());
+    assertTrue (aResult.isCompletelyRendered ());
+
+    // Each rendered block is reused
+    aResult = _process (aIP, sDoc);
+    assertTrue (aResult.getAllChangedBlockIndices ().isEmpty ());
+
+    // Only the additional block is rendered
+    aResult = _process (aIP, sDoc + "\nSame\n");
+    assertEquals (4, aResult.getBlockCount ());
+    assertEquals (_list (3), aResult.getAllChangedBlockIndices ());
+    aResult = _process (aIP, sDoc);
+    assertTrue (aResult.getAllChangedBlockIndices ().isEmpty ());
+
+    // Repeated rules with a modified block in between
+    final String sRules = "a\n\n---\n\nb\n\n---\n\nc\n\n---\n";
+    aResult = _process (aIP, sRules);
+    assertEquals (6, aResult.getBlockCount ());
+    assertEquals (_list (0, 1, 2, 3, 4, 5), aResult.getAllChangedBlockIndices ());
+    aResult = _process (aIP, sRules.replace ("b", "*b*"));
+    assertEquals (_list (2), aResult.getAllChangedBlockIndices ());
+    aResult = _process (aIP, sRules.replace ("b", "*b*"));
+    assertTrue (aResult.getAllChangedBlockIndices ().isEmpty ());
+
+    aIP.reset ();
+    aResult = _process (aIP, sDoc);
+    assertTrue (aResult.isCompletelyRendered ());
+
+    // Empty documents
+    aResult = _process (aIP, null);
+    assertEquals (0, aResult.getBlockCount ());
+    aResult = _process (aIP, "");
+    assertEquals (0, aResult.getBlockCount ());
+  }
+}
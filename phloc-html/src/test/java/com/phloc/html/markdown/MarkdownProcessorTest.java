@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.markdown;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+/**
+ * Test class for class {@link MarkdownProcessor}
+ * 
+ * @author Philip Helger
+ */
+public final class MarkdownProcessorTest
+{
+  @Nonnull
+  private static String _createDocument (final int nIndex)
+  {
+    return "[ref" +
+           nIndex +
+           "]: http://www.phloc.com/page" +
+           nIndex +
+           " \"Title\"\n\nParagraph *" +
+           nIndex +
+           "* with a [link][ref" +
+           nIndex +
+           "] and `code`.\n\n* item\n* item " +
+           nIndex +
+           "\n";
+  }
+
+  @Test
+  public void testNoStateBetweenInvocations () throws IOException
+  {
+    final MarkdownProcessor aProcessor = new MarkdownProcessor ();
+    assertTrue (aProcessor.process ("[a]: http://www.phloc.com\n\n[x][a]")
+                          .getAsHTMLString ()
+                          .contains ("href=\"http://www.phloc.com\""));
+    // The link reference of the previous document must not be used
+    assertFalse (aProcessor.process ("[x][a]").getAsHTMLString ().contains ("href"));
+
+    // Same for the profile switch
+    assertTrue (aProcessor.process ("[$profile$]: extended\n\n~~x~~").getAsHTMLString ().contains ("<s>x</s>"));
+    assertEquals ("<p>~~x~~</p>", aProcessor.process ("~~x~~").getAsHTMLString ());
+  }
+
+  @Test
+  public void testConcurrentUse () throws Exception
+  {
+    final int nDocs = 200;
+    final List <String> aExpected = new ArrayList <String> ();
+    for (int i = 0; i < nDocs; ++i)
+      aExpected.add (new MarkdownProcessor ().process (_createDocument (i)).getAsHTMLString ());
+
+    final MarkdownProcessor aSharedProcessor = new MarkdownProcessor ();
+    final ExecutorService aES = Executors.newFixedThreadPool (8);
+    try
+    {
+      final List <Future <String>> aResults = new ArrayList <Future <String>> ();
+      for (int i = 0; i < nDocs; ++i)
+      {
+        final int nIndex = i;
+        aResults.add (aES.submit (new Callable <String> ()
+        {
+          public String call () throws IOException
+          {
+            return aSharedProcessor.process (_createDocument (nIndex)).getAsHTMLString ();
+          }
+        }));
+      }
+      for (int i = 0; i < nDocs; ++i)
+        assertEquals (aExpected.get (i), aResults.get (i).get ());
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+
+  @Nonnull
+  private static String _createLargeDocument (final int nSections)
+  {
+    final StringBuilder aSB = new StringBuilder ();
+    for (int i = 0; i < nSections; ++i)
+    {
+      aSB.append ("## Section ").append (i).append ("\n\n");
+      aSB.append ("Some *emphasized* text with a [link][ref").append (i % 10).append ("] and `code`.\n");
+      aSB.append ("A second line & <b>inline HTML</b>.\n\n");
+      aSB.append ("* item 1\n* item 2\n    * nested\n\n");
+      aSB.append ("    code block ").append (i).append ("\n\n");
+      aSB.append ("> quoted ").append (i).append ("\n\n");
+    }
+    // Link references at the end are used by all blocks
+    for (int i = 0; i < 10; ++i)
+      aSB.append ("[ref").append (i).append ("]: http://www.phloc.com/").append (i).append (" \"Title ").append (i).append ("\"\n");
+    return aSB.toString ();
+  }
+
+  @Test
+  public void testParallelEmit () throws IOException
+  {
+    final String sDoc = _createLargeDocument (500);
+    final MarkdownProcessingResult aExpected = new MarkdownProcessor ().process (sDoc);
+
+    final ExecutorService aES = Executors.newFixedThreadPool (4);
+    try
+    {
+      final MarkdownProcessor aProcessor = new MarkdownProcessor (MarkdownConfiguration.builder ()
+                                                                                       .setParallelEmitExecutor (aES)
+                                                                                       .setParallelEmitThreshold (0)
+                                                                                       .build ());
+      for (int i = 0; i < 5; ++i)
+      {
+        final MarkdownProcessingResult aResult = aProcessor.process (sDoc);
+        assertEquals (aExpected.getAsHTMLString (false), aResult.getAsHTMLString (false));
+        assertEquals (aExpected.getAsHTMLString (true), aResult.getAsHTMLString (true));
+      }
+
+      // Small documents
+      assertEquals ("<p>x</p>", aProcessor.process ("x").getAsHTMLString ());
+      assertEquals ("", aProcessor.process ("").getAsHTMLString ());
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+
+    // An executor rejecting all tasks - everything is emitted in the calling
+    // thread
+    final MarkdownProcessor aProcessor = new MarkdownProcessor (MarkdownConfiguration.builder ()
+                                                                                     .setParallelEmitExecutor (new Executor ()
+                                                                                     {
+                                                                                       public void execute (final Runnable aRunnable)
+                                                                                       {
+                                                                                         throw new RejectedExecutionException ();
+                                                                                       }
+                                                                                     })
+                                                                                     .setParallelEmitThreshold (0)
+                                                                                     .build ());
+    assertEquals (aExpected.getAsHTMLString (false), aProcessor.process (sDoc).getAsHTMLString (false));
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.markdown;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.phloc.commons.state.EChange;
+import com.phloc.html.EHTMLVersion;
+import com.phloc.html.hc.conversion.HCConversionSettings;
+import com.phloc.html.hc.conversion.HCSettings;
+import com.phloc.html.hc.html.HCDiv;
+import com.phloc.html.hc.impl.HCDOMWrapper;
+
+/**
+ * Test class for class {@link MarkdownRenderCache}
+ * 
+ * @author Philip Helger
+ */
+public final class MarkdownRenderCacheTest
+{
+  private static final String TEXT = "Heading\n=======\n\nSome *text* with a [link](http://www.phloc.com) & <b>HTML</b>.\n\n* a\n* b\n";
+
+  @Test
+  public void testBasic () throws IOException
+  {
+    final MarkdownRenderCache aCache = new MarkdownRenderCache (MarkdownRenderCache.DEFAULT_MAX_CHARS);
+    final MarkdownProcessor aProcessor = new MarkdownProcessor ();
+    for (final boolean bPrettyPrint : new boolean [] { false, true })
+    {
+      final String sExpected = aProcessor.process (TEXT).getAsHTMLString (bPrettyPrint);
+      assertEquals (sExpected, aCache.getAsHTMLString (aProcessor, TEXT, bPrettyPrint));
+      assertEquals (sExpected, aCache.getAsHTMLString (aProcessor, TEXT, bPrettyPrint));
+    }
+    assertEquals (2, aCache.getMissCount ());
+    assertEquals (2, aCache.getHitCount ());
+    assertEquals (2, aCache.getEntryCount ());
+    assertTrue (aCache.getCachedCharCount () > 0);
+
+    // Another processor with the same configuration shares the entries
+    assertEquals (aProcessor.process (TEXT).getAsHTMLString (false),
+                  aCache.getAsHTMLString (new MarkdownProcessor (), TEXT, false));
+    assertEquals (3, aCache.getHitCount ());
+
+    // Safe mode creates different HTML
+    final MarkdownProcessor aSafeProcessor = new MarkdownProcessor (MarkdownConfiguration.DEFAULT_SAFE);
+    assertEquals (aSafeProcessor.process (TEXT).getAsHTMLString (false),
+                  aCache.getAsHTMLString (aSafeProcessor, TEXT, false));
+    assertEquals (3, aCache.getMissCount ());
+
+    // Empty sources
+    assertEquals ("", aCache.getAsHTMLString (aProcessor, null, false));
+    assertEquals ("", aCache.getAsHTMLString (aProcessor, "", false));
+
+    aCache.resetStatistics ();
+    assertEquals (0, aCache.getHitCount ());
+    assertEquals (EChange.CHANGED, aCache.clearCache ());
+    assertEquals (EChange.UNCHANGED, aCache.clearCache ());
+    assertEquals (0, aCache.getCachedCharCount ());
+  }
+
+  @Test
+  public void testNode () throws IOException
+  {
+    final MarkdownRenderCache aCache = new MarkdownRenderCache (MarkdownRenderCache.DEFAULT_MAX_CHARS);
+    final MarkdownProcessor aProcessor = new MarkdownProcessor ();
+    final String sExpected = HCSettings.getAsHTMLStringWithoutNamespaces (new HCDiv ().addChild (aProcessor.process (TEXT)
+                                                                                                         .getNodeList ()),
+                                                                          false);
+    // The node may be used more than once
+    final HCDOMWrapper aNode = aCache.getAsNode (aProcessor, TEXT, false);
+    assertTrue (aNode.isFrozen ());
+    final String sPlainText = aNode.getPlainText ();
+    assertTrue (sPlainText.contains ("Heading"));
+    assertFalse (sPlainText.contains ("<h1"));
+    for (int i = 0; i < 2; ++i)
+      assertEquals (sExpected, HCSettings.getAsHTMLStringWithoutNamespaces (new HCDiv ().addChild (aNode), false));
+    assertEquals (sExpected,
+                  HCSettings.getAsHTMLStringWithoutNamespaces (new HCDiv ().addChild (aCache.getAsNode (aProcessor,
+                                                                                                       TEXT,
+                                                                                                       false)),
+                                                               false));
+    assertEquals (1, aCache.getMissCount ());
+    assertEquals (1, aCache.getHitCount ());
+
+    // Each call returns a new node with the same plain text
+    final HCDOMWrapper aNode2 = aCache.getAsNode (aProcessor, TEXT, false);
+    assertNotSame (aNode, aNode2);
+    assertEquals (sPlainText, aNode2.getPlainText ());
+  }
+
+  @Test
+  public void testConversionSettingsInKey () throws IOException
+  {
+    final MarkdownRenderCache aCache = new MarkdownRenderCache (MarkdownRenderCache.DEFAULT_MAX_CHARS);
+    final MarkdownProcessor aProcessor = new MarkdownProcessor ();
+    final String sText = "a  \nb";
+    final HCConversionSettings aHTML5 = new HCConversionSettings (EHTMLVersion.HTML5);
+    final HCConversionSettings aXHTML = new HCConversionSettings (EHTMLVersion.XHTML11);
+
+    for (final HCConversionSettings aCS : new HCConversionSettings [] { aHTML5, aXHTML })
+      assertEquals (HCSettings.getAsHTMLStringWithoutNamespaces (aProcessor.process (sText).getNodeList (), aCS).trim (),
+                    aCache.getAsHTMLString (aProcessor, sText, aCS));
+    assertEquals (2, aCache.getEntryCount ());
+
+    // Different writer settings
+    final HCConversionSettings aOtherXWS = new HCConversionSettings (aHTML5);
+    aOtherXWS.getXMLWriterSettings ().setNewlineString ("\r\n");
+    aCache.getAsHTMLString (aProcessor, sText, aOtherXWS);
+    assertEquals (3, aCache.getEntryCount ());
+
+    // Same values as before
+    aCache.getAsHTMLString (aProcessor, sText, new HCConversionSettings (EHTMLVersion.XHTML11));
+    assertEquals (3, aCache.getEntryCount ());
+    assertEquals (1, aCache.getHitCount ());
+  }
+
+  @Test
+  public void testEviction () throws IOException
+  {
+    final MarkdownProcessor aProcessor = new MarkdownProcessor ();
+    final int nLen = aProcessor.process ("text 0").getAsHTMLString (false).length ();
+    final MarkdownRenderCache aCache = new MarkdownRenderCache (3 * nLen);
+    for (int i = 0; i < 5; ++i)
+      aCache.getAsHTMLString (aProcessor, "text " + i, false);
+    assertEquals (3, aCache.getEntryCount ());
+    assertEquals (2, aCache.getEvictionCount ());
+    assertEquals (3 * nLen, aCache.getCachedCharCount ());
+
+    // The least recently used entries were evicted
+    aCache.getAsHTMLString (aProcessor, "text 4", false);
+    assertEquals (1, aCache.getHitCount ());
+    aCache.getAsHTMLString (aProcessor, "text 0", false);
+    assertEquals (6, aCache.getMissCount ());
+
+    // A result larger than the cache is not kept
+    final MarkdownRenderCache aSmallCache = new MarkdownRenderCache (1);
+    final String sHTML = aSmallCache.getAsHTMLString (aProcessor, "text", false);
+    assertEquals ("<p>text</p>", sHTML);
+    assertEquals (0, aSmallCache.getEntryCount ());
+  }
+}
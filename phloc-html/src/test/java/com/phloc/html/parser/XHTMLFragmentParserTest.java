@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2006-2014 phloc systems
+ * http://www.phloc.com
+ * office[at]phloc[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.phloc.html.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.phloc.commons.microdom.IMicroContainer;
+import com.phloc.commons.microdom.IMicroElement;
+import com.phloc.commons.microdom.IMicroNode;
+import com.phloc.commons.microdom.serialize.MicroWriter;
+import com.phloc.commons.xml.serialize.EXMLSerializeIndent;
+import com.phloc.commons.xml.serialize.XMLWriterSettings;
+import com.phloc.html.EHTMLVersion;
+import com.phloc.html.hc.impl.HCDOMWrapper;
+import com.phloc.html.hc.impl.HCTextNode;
+
+/**
+ * Test class for class {@link XHTMLFragmentParser}.
+ *
+ * @author Philip Helger
+ */
+public final class XHTMLFragmentParserTest
+{
+  private static String _getAsString (final IMicroNode aNode)
+  {
+    return MicroWriter.getNodeAsString (aNode, new XMLWriterSettings ().setIndent (EXMLSerializeIndent.NONE));
+  }
+
+  @Test
+  public void testBasic ()
+  {
+    final XHTMLFragmentParser aParser = new XHTMLFragmentParser (EHTMLVersion.XHTML11);
+    assertEquals (EHTMLVersion.XHTML11, aParser.getHTMLVersion ());
+
+    assertTrue (aParser.isValidXHTMLFragment (null));
+    assertTrue (aParser.isValidXHTMLFragment (""));
+    assertTrue (aParser.isValidXHTMLFragment ("Hallo"));
+    assertTrue (aParser.isValidXHTMLFragment ("<b>Hallo</b>"));
+    assertTrue (aParser.isValidXHTMLFragment ("<b>Hallo</b><i>Welt</i>"));
+    assertTrue (aParser.isValidXHTMLFragment ("<img src='a.png' alt=\"\" />"));
+    assertTrue (aParser.isValidXHTMLFragment ("<!-- comment --><![CDATA[ <x> ]]>"));
+
+    assertFalse (aParser.isValidXHTMLFragment ("<b>Hallo"));
+    assertFalse (aParser.isValidXHTMLFragment ("Hallo</b>"));
+    assertFalse (aParser.isValidXHTMLFragment ("<b><i>Hallo</b></i>"));
+    assertFalse (aParser.isValidXHTMLFragment ("&"));
+    assertFalse (aParser.isValidXHTMLFragment ("&unknown;"));
+    assertFalse (aParser.isValidXHTMLFragment ("&#xZZ;"));
+    assertFalse (aParser.isValidXHTMLFragment ("&#0;"));
+    assertFalse (aParser.isValidXHTMLFragment ("a ]]> b"));
+    assertFalse (aParser.isValidXHTMLFragment ("<b class=x>Hallo</b>"));
+    assertFalse (aParser.isValidXHTMLFragment ("<b class='x' class='y'>Hallo</b>"));
+    assertFalse (aParser.isValidXHTMLFragment ("<b class='<'>Hallo</b>"));
+    assertFalse (aParser.isValidXHTMLFragment ("<b class='x'id='y'>Hallo</b>"));
+    assertFalse (aParser.isValidXHTMLFragment ("<!-- a -- b -->"));
+    assertFalse (aParser.isValidXHTMLFragment ("<!DOCTYPE html>"));
+    assertFalse (aParser.isValidXHTMLFragment ("<?xml version='1.0'?>"));
+    assertFalse (aParser.isValidXHTMLFragment ("<x:b>Hallo</x:b>"));
+    assertFalse (aParser.isValidXHTMLFragment ("\u0001"));
+  }
+
+  @Test
+  public void testContent ()
+  {
+    final XHTMLFragmentParser aParser = new XHTMLFragmentParser (EHTMLVersion.XHTML11);
+
+    IMicroContainer aCont = aParser.unescapeXHTMLFragment ("a&nbsp;b &amp; c &lt; &euro;&#160;&#x41;\r\nx\ry");
+    assertNotNull (aCont);
+    assertEquals (1, aCont.getChildCount ());
+    assertEquals ("a b & c < € A\nx\ny", aCont.getFirstChild ().getNodeValue ());
+
+    aCont = aParser.unescapeXHTMLFragment ("<span class=\" a\tb \">x</span>");
+    assertNotNull (aCont);
+    final IMicroElement eSpan = (IMicroElement) aCont.getFirstChild ();
+    assertEquals ("span", eSpan.getTagName ());
+    assertEquals (EHTMLVersion.XHTML11.getNamespaceURI (), eSpan.getNamespaceURI ());
+    assertEquals (" a b ", eSpan.getAttribute ("class"));
+
+    // Namespace declarations are resolved but not emitted as attributes
+    aCont = aParser.unescapeXHTMLFragment ("<x:b xmlns:x=\"urn:test\" x:a=\"1\"><c/></x:b>");
+    assertNotNull (aCont);
+    final IMicroElement eB = (IMicroElement) aCont.getFirstChild ();
+    assertEquals ("urn:test", eB.getNamespaceURI ());
+    assertEquals ("b", eB.getLocalName ());
+    assertNull (eB.getAttribute ("xmlns:x"));
+    assertEquals ("1", eB.getAttribute ("x:a"));
+    assertEquals (EHTMLVersion.XHTML11.getNamespaceURI (), ((IMicroElement) eB.getFirstChild ()).getNamespaceURI ());
+  }
+
+  @Test
+  public void testConvertToXHTMLFragmentOnDemand ()
+  {
+    final XHTMLFragmentParser aParser = new XHTMLFragmentParser ();
+    assertTrue (aParser.convertToXHTMLFragmentOnDemand ("Hallo") instanceof HCTextNode);
+    assertTrue (aParser.convertToXHTMLFragmentOnDemand ("<b>Hallo</b>") instanceof HCDOMWrapper);
+    assertTrue (aParser.convertToXHTMLFragmentOnDemand ("<b>Hallo") instanceof HCTextNode);
+  }
+
+  @Test
+  public void testConformanceWithDTDParser ()
+  {
+    // Fragments without DTD default attributes and without whitespace in
+    // element-only content, so that the results must be identical
+    final String [] aValidFragments = new String [] { "Hallo",
+                                                      "<b>Hallo</b>",
+                                                      "<b>Hallo</b> <i>Welt</i>",
+                                                      "a&nbsp;b &amp; c &lt; &gt; &quot; &euro; &auml;&#160;&#x20AC;",
+                                                      "<span class=\"x\" title=\"a&amp;b\">text</span>",
+                                                      "<div>a<span>b</span>c<em>d&lt;e</em></div>",
+                                                      "<img src=\"a.png\" alt=\"\" />",
+                                                      "<p>line1\r\nline2\rline3</p>",
+                                                      "<span title=\" a\tb\nc \">x</span>",
+                                                      "<!-- a comment --><b>x</b>",
+                                                      "<ul><li>1</li><li>2</li></ul>" };
+    final String [] aInvalidFragments = new String [] { "<b>Hallo",
+                                                        "Hallo</b>",
+                                                        "<b><i>Hallo</b></i>",
+                                                        "&",
+                                                        "&unknown;",
+                                                        "<b class=x>Hallo</b>",
+                                                        "<b class='x' class='y'>Hallo</b>",
+                                                        "<b class='<'>Hallo</b>",
+                                                        "a ]]> b",
+                                                        "<!-- a -- b -->",
+                                                        "<x:b>Hallo</x:b>" };
+
+    for (final EHTMLVersion eVersion : new EHTMLVersion [] { EHTMLVersion.XHTML10_STRICT,
+                                                             EHTMLVersion.XHTML10_TRANSITIONAL,
+                                                             EHTMLVersion.XHTML11 })
+    {
+      final XHTMLFragmentParser aFast = new XHTMLFragmentParser (eVersion);
+      final XHTMLParser2 aCompiled = new XHTMLParser2 (eVersion);
+      final XHTMLParser2 aOriginal = new XHTMLParser2 (eVersion);
+      aOriginal.setUseCompiledDTD (false);
+
+      for (final String sFragment : aValidFragments)
+      {
+        final IMicroContainer aFastCont = aFast.unescapeXHTMLFragment (sFragment);
+        assertNotNull (sFragment, aFastCont);
+        final String sFast = _getAsString (aFastCont);
+        for (final XHTMLParser2 aDTDParser : new XHTMLParser2 [] { aCompiled, aOriginal })
+        {
+          final IMicroContainer aDTDCont = aDTDParser.unescapeXHTMLFragment (sFragment);
+          assertNotNull (sFragment, aDTDCont);
+          assertEquals (sFragment, _getAsString (aDTDCont), sFast);
+        }
+      }
+
+      for (final String sFragment : aInvalidFragments)
+      {
+        assertFalse (sFragment, aFast.isValidXHTMLFragment (sFragment));
+        assertFalse (sFragment, aCompiled.isValidXHTMLFragment (sFragment));
+        assertFalse (sFragment, aOriginal.isValidXHTMLFragment (sFragment));
+      }
+    }
+  }
+}
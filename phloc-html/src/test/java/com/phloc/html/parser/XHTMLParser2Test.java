@@ -35,6 +35,8 @@ import com.phloc.commons.microdom.IMicroNode;
 import com.phloc.commons.microdom.serialize.MicroReader;
 import com.phloc.commons.string.StringHelper;
 import com.phloc.commons.xml.serialize.SAXReaderSettings;
+import com.phloc.html.EHTMLVersion;
+import com.phloc.html.entities.HTMLCompiledEntityResolver;
 import com.phloc.html.entities.HTMLEntityResolver;
 import com.phloc.html.hc.IHCNode;
 import com.phloc.html.hc.conversion.HCSettings;
@@ -385,6 +387,54 @@ public final class XHTMLParser2Test
     }
   }
 
+  @Test
+  public void testCompiledDTD ()
+  {
+    final String [] aFragments = new String [] { "<b>Hallo</b>",
+                                                 "a&nbsp;b &amp; c &lt; &euro; &auml;&#160;",
+                                                 "<a href=\"x?a=b&amp;c=d\">link</a>",
+                                                 "<pre>  x  </pre>",
+                                                 "<table><tr><td colspan=\" 2 \">x</td></tr></table>",
+                                                 "<ul>\n  <li>x</li>\n</ul>",
+                                                 "<b>Hallo",
+                                                 "&unknown;" };
+    for (final EHTMLVersion eVersion : new EHTMLVersion [] { EHTMLVersion.XHTML10_STRICT,
+                                                             EHTMLVersion.XHTML10_TRANSITIONAL,
+                                                             EHTMLVersion.XHTML11 })
+    {
+      assertTrue (HTMLCompiledEntityResolver.getInstance ().isCompiled (eVersion.getDocType ().getPublicID ()));
+
+      final XHTMLParser2 aCompiled = new XHTMLParser2 (eVersion);
+      assertTrue (aCompiled.isUseCompiledDTD ());
+      final XHTMLParser2 aOriginal = new XHTMLParser2 (eVersion);
+      aOriginal.setUseCompiledDTD (false);
+
+      for (final String sFragment : aFragments)
+      {
+        final IMicroDocument aDoc1 = aCompiled.parseXHTMLFragment (sFragment);
+        final IMicroDocument aDoc2 = aOriginal.parseXHTMLFragment (sFragment);
+        if (aDoc2 == null)
+          assertNull (sFragment, aDoc1);
+        else
+        {
+          assertNotNull (sFragment, aDoc1);
+          assertTrue (sFragment, aDoc2.isEqualContent (aDoc1));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSetToDefault ()
+  {
+    final XHTMLParser2 aParser = new XHTMLParser2 ();
+    aParser.setUseCompiledDTD (false);
+    aParser.setAdditionalSAXReaderSettings (new SAXReaderSettings ());
+    aParser.setToDefault ();
+    assertEquals (XHTMLParser2.DEFAULT_USE_COMPILED_DTD, aParser.isUseCompiledDTD ());
+    assertNotNull (aParser.parseXHTMLFragment ("a&nbsp;b"));
+  }
+
   @Test
   @Ignore ("Depends heavily on used JDK version. Fails with 1.6.0_32")
   public void testEntityExpansionLimit ()
@@ -36,6 +36,7 @@ import com.phloc.commons.xml.serialize.SAXReaderSettings;
 import com.phloc.html.entities.HTMLEntityResolver;
 import com.phloc.html.hc.IHCNode;
 import com.phloc.html.hc.conversion.HCSettings;
+import com.phloc.html.hc.html.HCDiv;
 import com.phloc.html.hc.impl.HCDOMWrapper;
 import com.phloc.html.hc.impl.HCTextNode;
 
@@ -334,6 +335,22 @@ public final class XHTMLParserTest
     assertNull (XHTMLParser.unescapeXHTML ("&"));
   }
 
+  @Test
+  public void testConvertToFrozenXHTMLOnDemand ()
+  {
+    final IHCNode aNode = XHTMLParser.convertToFrozenXHTMLOnDemand ("<b>Hallo<br/>phloc</b>");
+    assertTrue (aNode instanceof HCDOMWrapper);
+    assertTrue (((HCDOMWrapper) aNode).isFrozen ());
+    assertEquals ("Hallo phloc", aNode.getPlainText ());
+
+    // The same frozen node can be rendered multiple times
+    for (int i = 0; i < 3; ++i)
+      assertEquals ("<div xmlns=\"http://www.w3.org/1999/xhtml\"><b>Hallo<br />phloc</b></div>",
+                    HCSettings.getAsHTMLString (new HCDiv ().addChild (aNode), false));
+
+    assertTrue (XHTMLParser.convertToFrozenXHTMLOnDemand ("<b>Hallo") instanceof HCTextNode);
+  }
+
   @Test
   public void testconvertToXHTMLOnDemand ()
   {